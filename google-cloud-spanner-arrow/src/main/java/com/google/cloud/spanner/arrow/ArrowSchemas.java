@@ -0,0 +1,116 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner.arrow;
+
+import com.google.cloud.spanner.Type;
+import com.google.cloud.spanner.Type.Code;
+import com.google.cloud.spanner.Type.StructField;
+import com.google.common.base.Preconditions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.arrow.vector.complex.ListVector;
+import org.apache.arrow.vector.types.DateUnit;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+/**
+ * Maps Cloud Spanner types to Apache Arrow types. The mapping is:
+ *
+ * <ul>
+ *   <li>{@code BOOL}: {@code Bool}
+ *   <li>{@code INT64}: {@code Int(64, signed)}
+ *   <li>{@code FLOAT64}: {@code FloatingPoint(DOUBLE)}
+ *   <li>{@code NUMERIC}: {@code Decimal(38, 9)}
+ *   <li>{@code STRING}: {@code Utf8}
+ *   <li>{@code BYTES}: {@code Binary}
+ *   <li>{@code TIMESTAMP}: {@code Timestamp(MICROSECOND, "UTC")}. The nanoseconds of a timestamp
+ *       are truncated to microseconds, as most Arrow consumers do not support timestamps with
+ *       nanosecond precision outside the years 1677-2262.
+ *   <li>{@code DATE}: {@code Date(DAY)}
+ *   <li>{@code ARRAY}: {@code List} of the element type
+ *   <li>{@code STRUCT}: {@code Struct} with the fields of the struct
+ * </ul>
+ *
+ * All fields are nullable.
+ */
+public final class ArrowSchemas {
+  /** The precision of a Cloud Spanner {@code NUMERIC} value. */
+  static final int NUMERIC_PRECISION = 38;
+  /** The scale of a Cloud Spanner {@code NUMERIC} value. */
+  static final int NUMERIC_SCALE = 9;
+
+  private ArrowSchemas() {}
+
+  /** Returns the Arrow schema for rows of the given {@code STRUCT} type. */
+  public static Schema toArrowSchema(Type rowType) {
+    Preconditions.checkArgument(
+        rowType.getCode() == Code.STRUCT, "rowType must be a STRUCT, but was %s", rowType);
+    return new Schema(toArrowFields(rowType));
+  }
+
+  /** Returns the Arrow field for a column with the given name and type. */
+  public static Field toArrowField(String name, Type type) {
+    switch (type.getCode()) {
+      case ARRAY:
+        return new Field(
+            name,
+            FieldType.nullable(ArrowType.List.INSTANCE),
+            Collections.singletonList(
+                toArrowField(ListVector.DATA_VECTOR_NAME, type.getArrayElementType())));
+      case STRUCT:
+        return new Field(name, FieldType.nullable(ArrowType.Struct.INSTANCE), toArrowFields(type));
+      default:
+        return new Field(name, FieldType.nullable(toArrowType(type)), null);
+    }
+  }
+
+  private static List<Field> toArrowFields(Type structType) {
+    List<Field> fields = new ArrayList<>(structType.getStructFields().size());
+    for (StructField field : structType.getStructFields()) {
+      fields.add(toArrowField(field.getName(), field.getType()));
+    }
+    return fields;
+  }
+
+  private static ArrowType toArrowType(Type type) {
+    switch (type.getCode()) {
+      case BOOL:
+        return ArrowType.Bool.INSTANCE;
+      case INT64:
+        return new ArrowType.Int(64, true);
+      case FLOAT64:
+        return new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE);
+      case NUMERIC:
+        return new ArrowType.Decimal(NUMERIC_PRECISION, NUMERIC_SCALE, 128);
+      case STRING:
+        return ArrowType.Utf8.INSTANCE;
+      case BYTES:
+        return ArrowType.Binary.INSTANCE;
+      case TIMESTAMP:
+        return new ArrowType.Timestamp(TimeUnit.MICROSECOND, "UTC");
+      case DATE:
+        return new ArrowType.Date(DateUnit.DAY);
+      default:
+        throw new IllegalArgumentException("Unsupported type: " + type);
+    }
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner.arrow;
+
+import com.google.cloud.spanner.BatchReadOnlyTransaction;
+import com.google.cloud.spanner.ColumnarBatch;
+import com.google.cloud.spanner.Partition;
+import com.google.cloud.spanner.ResultSet;
+import com.google.cloud.spanner.SpannerException;
+import com.google.cloud.spanner.Type;
+import com.google.common.base.Preconditions;
+import java.util.List;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+/**
+ * Reads the rows of a Cloud Spanner {@link ResultSet} into Arrow record batches. The rows are read
+ * with {@link ResultSet#nextBatch(int)}, which decodes the values of a batch of rows directly into
+ * columns, and the columns are then written into the vectors of a {@link VectorSchemaRoot}. The
+ * schema of the record batches is determined by {@link ArrowSchemas#toArrowSchema(Type)}.
+ *
+ * <p>Usage example:
+ *
+ * <pre>{@code
+ * try (BufferAllocator allocator = new RootAllocator();
+ *     ResultSetArrowReader reader =
+ *         new ResultSetArrowReader(
+ *             client.singleUse().executeQuery(Statement.of("SELECT * FROM Singers")),
+ *             allocator,
+ *             10_000)) {
+ *   while (reader.loadNextBatch()) {
+ *     VectorSchemaRoot root = reader.getVectorSchemaRoot();
+ *     // Process the record batch in the root.
+ *   }
+ * }
+ * }</pre>
+ *
+ * <p>The same {@link VectorSchemaRoot} is reused for all record batches, which means that a record
+ * batch must be processed or copied before the next batch is loaded. This class is not thread-safe.
+ */
+public class ResultSetArrowReader implements AutoCloseable {
+  private final ResultSet resultSet;
+  private final BufferAllocator allocator;
+  private final int batchSize;
+  private VectorSchemaRoot root;
+  private VectorWriter[] writers;
+  private boolean closed;
+
+  /**
+   * Creates a reader for the given {@link ResultSet}. The reader takes ownership of the result set
+   * and closes it when the reader is closed.
+   *
+   * @param resultSet the result set to read
+   * @param allocator the allocator for the buffers of the record batches
+   * @param batchSize the maximum number of rows in a record batch
+   */
+  public ResultSetArrowReader(ResultSet resultSet, BufferAllocator allocator, int batchSize) {
+    Preconditions.checkArgument(batchSize > 0, "batchSize must be > 0");
+    this.resultSet = Preconditions.checkNotNull(resultSet);
+    this.allocator = Preconditions.checkNotNull(allocator);
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * Creates a reader for the rows of the given partition of a {@link BatchReadOnlyTransaction}.
+   *
+   * @see BatchReadOnlyTransaction#execute(Partition)
+   */
+  public static ResultSetArrowReader forPartition(
+      BatchReadOnlyTransaction transaction,
+      Partition partition,
+      BufferAllocator allocator,
+      int batchSize) {
+    return new ResultSetArrowReader(transaction.execute(partition), allocator, batchSize);
+  }
+
+  /**
+   * Loads the next record batch into the {@link VectorSchemaRoot} of this reader. Returns false if
+   * all rows have been read. The root then contains zero rows.
+   */
+  public boolean loadNextBatch() throws SpannerException {
+    Preconditions.checkState(!closed, "This reader has been closed");
+    ColumnarBatch batch = resultSet.nextBatch(batchSize);
+    if (root == null) {
+      createRoot(batch.getType());
+    }
+    root.allocateNew();
+    for (int i = 0; i < writers.length; i++) {
+      writers[i].writeColumn(batch, i);
+    }
+    root.setRowCount(batch.getRowCount());
+    return batch.getRowCount() > 0;
+  }
+
+  /**
+   * Returns the {@link VectorSchemaRoot} that contains the last record batch that was loaded by
+   * {@link #loadNextBatch()}.
+   */
+  public VectorSchemaRoot getVectorSchemaRoot() {
+    Preconditions.checkState(root != null, "loadNextBatch() call required");
+    return root;
+  }
+
+  private void createRoot(Type type) {
+    Schema schema = ArrowSchemas.toArrowSchema(type);
+    root = VectorSchemaRoot.create(schema, allocator);
+    List<Type.StructField> fields = type.getStructFields();
+    writers = new VectorWriter[fields.size()];
+    for (int i = 0; i < writers.length; i++) {
+      writers[i] = VectorWriter.create(fields.get(i).getType(), root.getVector(i));
+    }
+  }
+
+  /** Closes the underlying {@link ResultSet} and releases the buffers of the record batches. */
+  @Override
+  public void close() {
+    if (!closed) {
+      closed = true;
+      try {
+        resultSet.close();
+      } finally {
+        if (root != null) {
+          root.close();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,480 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner.arrow;
+
+import com.google.cloud.ByteArray;
+import com.google.cloud.Date;
+import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.ColumnarBatch;
+import com.google.cloud.spanner.Struct;
+import com.google.cloud.spanner.Type;
+import com.google.cloud.spanner.Value;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.DecimalVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.TimeStampMicroTZVector;
+import org.apache.arrow.vector.VarBinaryVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.complex.ListVector;
+import org.apache.arrow.vector.complex.StructVector;
+
+/**
+ * Writes Cloud Spanner values into an Arrow vector. A writer is created for a vector with the type
+ * that is returned by {@link ArrowSchemas#toArrowField(String, Type)}. Values are passed to the
+ * writer as the Java objects that are returned by the getters of {@link Value}.
+ */
+abstract class VectorWriter {
+  static VectorWriter create(Type type, FieldVector vector) {
+    switch (type.getCode()) {
+      case BOOL:
+        return new BoolWriter((BitVector) vector);
+      case INT64:
+        return new Int64Writer((BigIntVector) vector);
+      case FLOAT64:
+        return new Float64Writer((Float8Vector) vector);
+      case NUMERIC:
+        return new NumericWriter((DecimalVector) vector);
+      case STRING:
+        return new StringWriter((VarCharVector) vector);
+      case BYTES:
+        return new BytesWriter((VarBinaryVector) vector);
+      case TIMESTAMP:
+        return new TimestampWriter((TimeStampMicroTZVector) vector);
+      case DATE:
+        return new DateWriter((DateDayVector) vector);
+      case ARRAY:
+        return new ListWriter(type, (ListVector) vector);
+      case STRUCT:
+        return new StructWriter(type, (StructVector) vector);
+      default:
+        throw new IllegalArgumentException("Unsupported type: " + type);
+    }
+  }
+
+  /** Sets the value at the given index of the vector to null. */
+  abstract void writeNull(int index);
+
+  /** Writes the given non-null value at the given index of the vector. */
+  abstract void write(int index, Object value);
+
+  /**
+   * Writes all rows of the given column of a batch into the vector. The writers of scalar types
+   * override this method to write the primitive or decoded values of the batch directly. {@code
+   * ARRAY} and {@code STRUCT} columns are written from the {@link Value}s of the batch.
+   */
+  void writeColumn(ColumnarBatch batch, int columnIndex) {
+    for (int row = 0; row < batch.getRowCount(); row++) {
+      Value value = batch.getValue(columnIndex, row);
+      if (value.isNull()) {
+        writeNull(row);
+      } else {
+        write(row, toObject(value));
+      }
+    }
+  }
+
+  /** Returns the Java object of a non-null {@link Value}. */
+  static Object toObject(Value value) {
+    Type type = value.getType();
+    switch (type.getCode()) {
+      case BOOL:
+        return value.getBool();
+      case INT64:
+        return value.getInt64();
+      case FLOAT64:
+        return value.getFloat64();
+      case NUMERIC:
+        return value.getNumeric();
+      case STRING:
+        return value.getString();
+      case BYTES:
+        return value.getBytes();
+      case TIMESTAMP:
+        return value.getTimestamp();
+      case DATE:
+        return value.getDate();
+      case STRUCT:
+        return value.getStruct();
+      case ARRAY:
+        switch (type.getArrayElementType().getCode()) {
+          case BOOL:
+            return value.getBoolArray();
+          case INT64:
+            return value.getInt64Array();
+          case FLOAT64:
+            return value.getFloat64Array();
+          case NUMERIC:
+            return value.getNumericArray();
+          case STRING:
+            return value.getStringArray();
+          case BYTES:
+            return value.getBytesArray();
+          case TIMESTAMP:
+            return value.getTimestampArray();
+          case DATE:
+            return value.getDateArray();
+          case STRUCT:
+            return value.getStructArray();
+          default:
+            throw new IllegalArgumentException("Unsupported type: " + type);
+        }
+      default:
+        throw new IllegalArgumentException("Unsupported type: " + type);
+    }
+  }
+
+  private static final class BoolWriter extends VectorWriter {
+    private final BitVector vector;
+
+    BoolWriter(BitVector vector) {
+      this.vector = vector;
+    }
+
+    @Override
+    void writeNull(int index) {
+      vector.setNull(index);
+    }
+
+    @Override
+    void write(int index, Object value) {
+      vector.setSafe(index, (Boolean) value ? 1 : 0);
+    }
+
+    @Override
+    void writeColumn(ColumnarBatch batch, int columnIndex) {
+      boolean[] values = batch.getBooleanColumn(columnIndex);
+      BitSet nulls = batch.getNulls(columnIndex);
+      for (int row = 0; row < values.length; row++) {
+        if (nulls.get(row)) {
+          vector.setNull(row);
+        } else {
+          vector.setSafe(row, values[row] ? 1 : 0);
+        }
+      }
+    }
+  }
+
+  private static final class Int64Writer extends VectorWriter {
+    private final BigIntVector vector;
+
+    Int64Writer(BigIntVector vector) {
+      this.vector = vector;
+    }
+
+    @Override
+    void writeNull(int index) {
+      vector.setNull(index);
+    }
+
+    @Override
+    void write(int index, Object value) {
+      vector.setSafe(index, (Long) value);
+    }
+
+    @Override
+    void writeColumn(ColumnarBatch batch, int columnIndex) {
+      long[] values = batch.getLongColumn(columnIndex);
+      BitSet nulls = batch.getNulls(columnIndex);
+      for (int row = 0; row < values.length; row++) {
+        if (nulls.get(row)) {
+          vector.setNull(row);
+        } else {
+          vector.setSafe(row, values[row]);
+        }
+      }
+    }
+  }
+
+  private static final class Float64Writer extends VectorWriter {
+    private final Float8Vector vector;
+
+    Float64Writer(Float8Vector vector) {
+      this.vector = vector;
+    }
+
+    @Override
+    void writeNull(int index) {
+      vector.setNull(index);
+    }
+
+    @Override
+    void write(int index, Object value) {
+      vector.setSafe(index, (Double) value);
+    }
+
+    @Override
+    void writeColumn(ColumnarBatch batch, int columnIndex) {
+      double[] values = batch.getDoubleColumn(columnIndex);
+      BitSet nulls = batch.getNulls(columnIndex);
+      for (int row = 0; row < values.length; row++) {
+        if (nulls.get(row)) {
+          vector.setNull(row);
+        } else {
+          vector.setSafe(row, values[row]);
+        }
+      }
+    }
+  }
+
+  private static final class NumericWriter extends VectorWriter {
+    private final DecimalVector vector;
+
+    NumericWriter(DecimalVector vector) {
+      this.vector = vector;
+    }
+
+    @Override
+    void writeNull(int index) {
+      vector.setNull(index);
+    }
+
+    @Override
+    void write(int index, Object value) {
+      write(index, (BigDecimal) value);
+    }
+
+    private void write(int index, BigDecimal value) {
+      // A NUMERIC value never has more than 9 digits after the decimal point, so this never rounds.
+      vector.setSafe(index, value.setScale(ArrowSchemas.NUMERIC_SCALE));
+    }
+
+    @Override
+    void writeColumn(ColumnarBatch batch, int columnIndex) {
+      BigDecimal[] values = batch.getNumericColumn(columnIndex);
+      for (int row = 0; row < values.length; row++) {
+        if (values[row] == null) {
+          vector.setNull(row);
+        } else {
+          write(row, values[row]);
+        }
+      }
+    }
+  }
+
+  private static final class StringWriter extends VectorWriter {
+    private final VarCharVector vector;
+
+    StringWriter(VarCharVector vector) {
+      this.vector = vector;
+    }
+
+    @Override
+    void writeNull(int index) {
+      vector.setNull(index);
+    }
+
+    @Override
+    void write(int index, Object value) {
+      vector.setSafe(index, ((String) value).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Encodes each distinct string of the batch only once. */
+    @Override
+    void writeColumn(ColumnarBatch batch, int columnIndex) {
+      List<String> dictionary = batch.getStringDictionary(columnIndex);
+      List<byte[]> encoded = new ArrayList<>(dictionary.size());
+      for (String value : dictionary) {
+        encoded.add(value.getBytes(StandardCharsets.UTF_8));
+      }
+      int[] indices = batch.getStringIndices(columnIndex);
+      for (int row = 0; row < indices.length; row++) {
+        if (indices[row] < 0) {
+          vector.setNull(row);
+        } else {
+          vector.setSafe(row, encoded.get(indices[row]));
+        }
+      }
+    }
+  }
+
+  private static final class BytesWriter extends VectorWriter {
+    private final VarBinaryVector vector;
+
+    BytesWriter(VarBinaryVector vector) {
+      this.vector = vector;
+    }
+
+    @Override
+    void writeNull(int index) {
+      vector.setNull(index);
+    }
+
+    @Override
+    void write(int index, Object value) {
+      vector.setSafe(index, ((ByteArray) value).toByteArray());
+    }
+
+    /** Writes the values that the batch decoded from the result stream without copying them. */
+    @Override
+    void writeColumn(ColumnarBatch batch, int columnIndex) {
+      byte[][] values = batch.getBytesColumn(columnIndex);
+      for (int row = 0; row < values.length; row++) {
+        if (values[row] == null) {
+          vector.setNull(row);
+        } else {
+          vector.setSafe(row, values[row]);
+        }
+      }
+    }
+  }
+
+  private static final class TimestampWriter extends VectorWriter {
+    private final TimeStampMicroTZVector vector;
+
+    TimestampWriter(TimeStampMicroTZVector vector) {
+      this.vector = vector;
+    }
+
+    @Override
+    void writeNull(int index) {
+      vector.setNull(index);
+    }
+
+    @Override
+    void write(int index, Object value) {
+      Timestamp timestamp = (Timestamp) value;
+      vector.setSafe(index, toMicros(timestamp.getSeconds(), timestamp.getNanos()));
+    }
+
+    @Override
+    void writeColumn(ColumnarBatch batch, int columnIndex) {
+      long[] seconds = batch.getTimestampSecondsColumn(columnIndex);
+      int[] nanos = batch.getTimestampNanosColumn(columnIndex);
+      BitSet nulls = batch.getNulls(columnIndex);
+      for (int row = 0; row < seconds.length; row++) {
+        if (nulls.get(row)) {
+          vector.setNull(row);
+        } else {
+          vector.setSafe(row, toMicros(seconds[row], nanos[row]));
+        }
+      }
+    }
+
+    private static long toMicros(long seconds, int nanos) {
+      return seconds * 1_000_000L + nanos / 1_000;
+    }
+  }
+
+  private static final class DateWriter extends VectorWriter {
+    private final DateDayVector vector;
+
+    DateWriter(DateDayVector vector) {
+      this.vector = vector;
+    }
+
+    @Override
+    void writeNull(int index) {
+      vector.setNull(index);
+    }
+
+    @Override
+    void write(int index, Object value) {
+      Date date = (Date) value;
+      vector.setSafe(
+          index,
+          (int) LocalDate.of(date.getYear(), date.getMonth(), date.getDayOfMonth()).toEpochDay());
+    }
+
+    @Override
+    void writeColumn(ColumnarBatch batch, int columnIndex) {
+      int[] days = batch.getDateColumn(columnIndex);
+      BitSet nulls = batch.getNulls(columnIndex);
+      for (int row = 0; row < days.length; row++) {
+        if (nulls.get(row)) {
+          vector.setNull(row);
+        } else {
+          vector.setSafe(row, days[row]);
+        }
+      }
+    }
+  }
+
+  private static final class ListWriter extends VectorWriter {
+    private final ListVector vector;
+    private final VectorWriter elementWriter;
+
+    ListWriter(Type type, ListVector vector) {
+      this.vector = vector;
+      this.elementWriter = create(type.getArrayElementType(), vector.getDataVector());
+    }
+
+    @Override
+    void writeNull(int index) {
+      vector.setNull(index);
+    }
+
+    @Override
+    void write(int index, Object value) {
+      List<?> elements = (List<?>) value;
+      int offset = vector.startNewValue(index);
+      for (int i = 0; i < elements.size(); i++) {
+        Object element = elements.get(i);
+        if (element == null) {
+          elementWriter.writeNull(offset + i);
+        } else {
+          elementWriter.write(offset + i, element);
+        }
+      }
+      vector.endValue(index, elements.size());
+    }
+  }
+
+  private static final class StructWriter extends VectorWriter {
+    private final StructVector vector;
+    private final VectorWriter[] fieldWriters;
+
+    StructWriter(Type type, StructVector vector) {
+      this.vector = vector;
+      List<Type.StructField> fields = type.getStructFields();
+      List<FieldVector> children = vector.getChildrenFromFields();
+      this.fieldWriters = new VectorWriter[fields.size()];
+      for (int i = 0; i < fieldWriters.length; i++) {
+        fieldWriters[i] = create(fields.get(i).getType(), children.get(i));
+      }
+    }
+
+    @Override
+    void writeNull(int index) {
+      vector.setNull(index);
+      for (VectorWriter fieldWriter : fieldWriters) {
+        fieldWriter.writeNull(index);
+      }
+    }
+
+    @Override
+    void write(int index, Object value) {
+      Struct struct = (Struct) value;
+      vector.setIndexDefined(index);
+      for (int i = 0; i < fieldWriters.length; i++) {
+        if (struct.isNull(i)) {
+          fieldWriters[i].writeNull(index);
+        } else {
+          fieldWriters[i].write(index, toObject(struct.getValue(i)));
+        }
+      }
+    }
+  }
+}
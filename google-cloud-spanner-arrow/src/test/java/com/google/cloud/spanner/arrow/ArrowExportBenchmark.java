@@ -0,0 +1,291 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner.arrow;
+
+import com.google.api.gax.grpc.testing.LocalChannelProvider;
+import com.google.cloud.NoCredentials;
+import com.google.cloud.spanner.DatabaseClient;
+import com.google.cloud.spanner.DatabaseId;
+import com.google.cloud.spanner.MockSpannerServiceImpl;
+import com.google.cloud.spanner.MockSpannerServiceImpl.StatementResult;
+import com.google.cloud.spanner.ResultSet;
+import com.google.cloud.spanner.Spanner;
+import com.google.cloud.spanner.SpannerOptions;
+import com.google.cloud.spanner.Statement;
+import com.google.cloud.spanner.Struct;
+import com.google.cloud.spanner.Type;
+import com.google.protobuf.ListValue;
+import com.google.protobuf.util.Values;
+import com.google.spanner.v1.ResultSetMetadata;
+import com.google.spanner.v1.StructType;
+import com.google.spanner.v1.TypeCode;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessServerBuilder;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for exporting a query result to Arrow record batches with {@link
+ * ResultSetArrowReader}, compared to converting the result row by row through {@link Struct}. The
+ * query result is served by an in-process mock server. Run these benchmarks from the command line
+ * like this: <code>
+ * mvn clean test -DskipTests -Pbenchmark -Dbenchmark.name=ArrowExportBenchmark
+ * </code>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(value = 1, warmups = 0)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ArrowExportBenchmark {
+  private static final int NUM_ROWS = 10_000;
+  private static final Statement QUERY = Statement.of("SELECT * FROM Export");
+  private static final String[] COUNTRIES = {"NL", "DE", "US", "JP", "BR"};
+
+  @State(Scope.Benchmark)
+  public static class BenchmarkState {
+    @Param({"1024", "8192"})
+    int batchSize;
+
+    /**
+     * The type of the columns of the query result. MIXED returns columns of the most common types,
+     * the other values return four columns of the given type.
+     */
+    @Param({"MIXED", "NUMERIC", "BYTES", "TIMESTAMP", "DATE", "ARRAY"})
+    String columnType;
+
+    private Server server;
+    private Spanner spanner;
+    private DatabaseClient client;
+    private BufferAllocator allocator;
+
+    @Setup
+    public void setup() throws Exception {
+      MockSpannerServiceImpl mockSpanner = new MockSpannerServiceImpl();
+      mockSpanner.setAbortProbability(0.0D);
+      mockSpanner.putStatementResult(
+          StatementResult.query(
+              QUERY,
+              "MIXED".equals(columnType)
+                  ? createResultSet()
+                  : createSingleTypeResultSet(TypeCode.valueOf(columnType))));
+      String uniqueName = InProcessServerBuilder.generateName();
+      server =
+          InProcessServerBuilder.forName(uniqueName)
+              .directExecutor()
+              .addService(mockSpanner)
+              .build()
+              .start();
+      spanner =
+          SpannerOptions.newBuilder()
+              .setProjectId("p")
+              .setChannelProvider(LocalChannelProvider.create(uniqueName))
+              .setCredentials(NoCredentials.getInstance())
+              .build()
+              .getService();
+      client = spanner.getDatabaseClient(DatabaseId.of("p", "i", "d"));
+      allocator = new RootAllocator();
+    }
+
+    @TearDown
+    public void teardown() throws Exception {
+      allocator.close();
+      spanner.close();
+      server.shutdown();
+      server.awaitTermination();
+    }
+  }
+
+  private static com.google.spanner.v1.ResultSet createResultSet() {
+    StructType.Builder rowType = StructType.newBuilder();
+    TypeCode[] codes = {
+      TypeCode.INT64,
+      TypeCode.INT64,
+      TypeCode.FLOAT64,
+      TypeCode.FLOAT64,
+      TypeCode.BOOL,
+      TypeCode.STRING,
+      TypeCode.STRING,
+      TypeCode.TIMESTAMP
+    };
+    for (int i = 0; i < codes.length; i++) {
+      rowType.addFields(
+          StructType.Field.newBuilder()
+              .setName("C" + i)
+              .setType(com.google.spanner.v1.Type.newBuilder().setCode(codes[i])));
+    }
+    com.google.spanner.v1.ResultSet.Builder builder =
+        com.google.spanner.v1.ResultSet.newBuilder()
+            .setMetadata(ResultSetMetadata.newBuilder().setRowType(rowType));
+    for (int row = 0; row < NUM_ROWS; row++) {
+      builder.addRows(
+          ListValue.newBuilder()
+              .addValues(Values.of(String.valueOf(row)))
+              .addValues(row % 10 == 0 ? Values.ofNull() : Values.of(String.valueOf(row * 31L)))
+              .addValues(Values.of(row / 3d))
+              .addValues(Values.of(row * 1.5d))
+              .addValues(Values.of(row % 2 == 0))
+              .addValues(Values.of(COUNTRIES[row % COUNTRIES.length]))
+              .addValues(Values.of("Name " + row))
+              .addValues(Values.of("2021-06-01T10:00:00." + String.format("%06d", row) + "Z")));
+    }
+    return builder.build();
+  }
+
+  /** Returns a result with four columns of the given type. ARRAY columns are of ARRAY<INT64>. */
+  private static com.google.spanner.v1.ResultSet createSingleTypeResultSet(TypeCode code) {
+    com.google.spanner.v1.Type.Builder type = com.google.spanner.v1.Type.newBuilder().setCode(code);
+    if (code == TypeCode.ARRAY) {
+      type.setArrayElementType(com.google.spanner.v1.Type.newBuilder().setCode(TypeCode.INT64));
+    }
+    int numColumns = 4;
+    StructType.Builder rowType = StructType.newBuilder();
+    for (int i = 0; i < numColumns; i++) {
+      rowType.addFields(StructType.Field.newBuilder().setName("C" + i).setType(type));
+    }
+    com.google.spanner.v1.ResultSet.Builder builder =
+        com.google.spanner.v1.ResultSet.newBuilder()
+            .setMetadata(ResultSetMetadata.newBuilder().setRowType(rowType));
+    for (int row = 0; row < NUM_ROWS; row++) {
+      ListValue.Builder values = ListValue.newBuilder();
+      for (int i = 0; i < numColumns; i++) {
+        values.addValues(row % 10 == i ? Values.ofNull() : createValue(code, row * numColumns + i));
+      }
+      builder.addRows(values);
+    }
+    return builder.build();
+  }
+
+  private static com.google.protobuf.Value createValue(TypeCode code, int seed) {
+    switch (code) {
+      case NUMERIC:
+        return Values.of(String.format("%d.%09d", seed * 7L, seed % 1_000_000_000));
+      case BYTES:
+        byte[] bytes = new byte[16 + seed % 48];
+        for (int i = 0; i < bytes.length; i++) {
+          bytes[i] = (byte) (seed + i);
+        }
+        return Values.of(Base64.getEncoder().encodeToString(bytes));
+      case TIMESTAMP:
+        return Values.of(String.format("2021-06-01T10:%02d:00.%06dZ", seed % 60, seed % 1_000_000));
+      case DATE:
+        return Values.of(
+            String.format("%04d-%02d-%02d", 1970 + seed % 100, 1 + seed % 12, 1 + seed % 28));
+      case ARRAY:
+        ListValue.Builder list = ListValue.newBuilder();
+        for (int i = 0; i < seed % 8; i++) {
+          list.addValues(Values.of(String.valueOf(seed + i)));
+        }
+        return Values.of(list.build());
+      default:
+        throw new IllegalArgumentException("Unsupported type: " + code);
+    }
+  }
+
+  /**
+   * Only iterates over the rows of the query result. This is the baseline for the other benchmarks,
+   * which includes the time that is needed to stream the result from the mock server.
+   */
+  @Benchmark
+  public long baseline(BenchmarkState state) {
+    long rows = 0L;
+    try (ResultSet resultSet = state.client.singleUse().executeQuery(QUERY)) {
+      while (resultSet.next()) {
+        rows++;
+      }
+    }
+    return rows;
+  }
+
+  /** Exports the query result with {@link ResultSetArrowReader}. */
+  @Benchmark
+  public long columnar(BenchmarkState state) {
+    long rows = 0L;
+    try (ResultSetArrowReader reader =
+        new ResultSetArrowReader(
+            state.client.singleUse().executeQuery(QUERY), state.allocator, state.batchSize)) {
+      while (reader.loadNextBatch()) {
+        rows += reader.getVectorSchemaRoot().getRowCount();
+      }
+    }
+    return rows;
+  }
+
+  /** Exports the query result by converting each row to a {@link Struct}. */
+  @Benchmark
+  public long rowBased(BenchmarkState state) {
+    long rows = 0L;
+    try (ResultSet resultSet = state.client.singleUse().executeQuery(QUERY)) {
+      VectorSchemaRoot root = null;
+      VectorWriter[] writers = null;
+      int index = 0;
+      try {
+        while (resultSet.next()) {
+          Struct row = resultSet.getCurrentRowAsStruct();
+          if (root == null) {
+            root =
+                VectorSchemaRoot.create(ArrowSchemas.toArrowSchema(row.getType()), state.allocator);
+            root.allocateNew();
+            List<Type.StructField> fields = row.getType().getStructFields();
+            writers = new VectorWriter[fields.size()];
+            for (int i = 0; i < writers.length; i++) {
+              writers[i] = VectorWriter.create(fields.get(i).getType(), root.getVector(i));
+            }
+          }
+          for (int i = 0; i < writers.length; i++) {
+            if (row.isNull(i)) {
+              writers[i].writeNull(index);
+            } else {
+              writers[i].write(index, VectorWriter.toObject(row.getValue(i)));
+            }
+          }
+          if (++index == state.batchSize) {
+            root.setRowCount(index);
+            rows += index;
+            root.allocateNew();
+            index = 0;
+          }
+        }
+        if (root != null) {
+          root.setRowCount(index);
+          rows += index;
+        }
+      } finally {
+        if (root != null) {
+          root.close();
+        }
+      }
+    }
+    return rows;
+  }
+}
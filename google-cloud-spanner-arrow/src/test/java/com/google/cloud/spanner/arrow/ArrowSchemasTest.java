@@ -0,0 +1,91 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner.arrow;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.cloud.spanner.Type;
+import com.google.cloud.spanner.Type.StructField;
+import org.apache.arrow.vector.types.DateUnit;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ArrowSchemasTest {
+
+  @Test
+  public void testScalarTypes() {
+    Schema schema =
+        ArrowSchemas.toArrowSchema(
+            Type.struct(
+                StructField.of("bool", Type.bool()),
+                StructField.of("int64", Type.int64()),
+                StructField.of("float64", Type.float64()),
+                StructField.of("numeric", Type.numeric()),
+                StructField.of("string", Type.string()),
+                StructField.of("bytes", Type.bytes()),
+                StructField.of("timestamp", Type.timestamp()),
+                StructField.of("date", Type.date())));
+
+    assertThat(schema.getFields()).hasSize(8);
+    assertThat(schema.findField("bool").getType()).isEqualTo(ArrowType.Bool.INSTANCE);
+    assertThat(schema.findField("int64").getType()).isEqualTo(new ArrowType.Int(64, true));
+    assertThat(schema.findField("float64").getType())
+        .isEqualTo(new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE));
+    assertThat(schema.findField("numeric").getType()).isEqualTo(new ArrowType.Decimal(38, 9, 128));
+    assertThat(schema.findField("string").getType()).isEqualTo(ArrowType.Utf8.INSTANCE);
+    assertThat(schema.findField("bytes").getType()).isEqualTo(ArrowType.Binary.INSTANCE);
+    assertThat(schema.findField("timestamp").getType())
+        .isEqualTo(new ArrowType.Timestamp(TimeUnit.MICROSECOND, "UTC"));
+    assertThat(schema.findField("date").getType()).isEqualTo(new ArrowType.Date(DateUnit.DAY));
+    for (Field field : schema.getFields()) {
+      assertThat(field.isNullable()).isTrue();
+    }
+  }
+
+  @Test
+  public void testNestedTypes() {
+    Field field =
+        ArrowSchemas.toArrowField(
+            "s",
+            Type.struct(
+                StructField.of("a", Type.array(Type.string())),
+                StructField.of("n", Type.struct(StructField.of("x", Type.int64())))));
+
+    assertThat(field.getType()).isEqualTo(ArrowType.Struct.INSTANCE);
+    assertThat(field.getChildren()).hasSize(2);
+    Field array = field.getChildren().get(0);
+    assertThat(array.getName()).isEqualTo("a");
+    assertThat(array.getType()).isEqualTo(ArrowType.List.INSTANCE);
+    assertThat(array.getChildren().get(0).getType()).isEqualTo(ArrowType.Utf8.INSTANCE);
+    Field nested = field.getChildren().get(1);
+    assertThat(nested.getType()).isEqualTo(ArrowType.Struct.INSTANCE);
+    assertThat(nested.getChildren().get(0).getName()).isEqualTo("x");
+  }
+
+  @Test
+  public void testSchemaRequiresStruct() {
+    assertThrows(IllegalArgumentException.class, () -> ArrowSchemas.toArrowSchema(Type.int64()));
+  }
+}
@@ -0,0 +1,391 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner.arrow;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.api.gax.grpc.testing.LocalChannelProvider;
+import com.google.cloud.ByteArray;
+import com.google.cloud.Date;
+import com.google.cloud.NoCredentials;
+import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.BatchClient;
+import com.google.cloud.spanner.BatchReadOnlyTransaction;
+import com.google.cloud.spanner.DatabaseId;
+import com.google.cloud.spanner.MockSpannerServiceImpl;
+import com.google.cloud.spanner.MockSpannerServiceImpl.StatementResult;
+import com.google.cloud.spanner.Partition;
+import com.google.cloud.spanner.PartitionOptions;
+import com.google.cloud.spanner.ResultSet;
+import com.google.cloud.spanner.Spanner;
+import com.google.cloud.spanner.SpannerOptions;
+import com.google.cloud.spanner.Statement;
+import com.google.cloud.spanner.Struct;
+import com.google.cloud.spanner.TimestampBound;
+import com.google.cloud.spanner.Type;
+import com.google.cloud.spanner.Type.StructField;
+import com.google.protobuf.ListValue;
+import com.google.protobuf.util.Values;
+import com.google.spanner.v1.ResultSetMetadata;
+import com.google.spanner.v1.StructType;
+import com.google.spanner.v1.TypeCode;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessServerBuilder;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ResultSetArrowReaderTest {
+  private static final Type TYPE =
+      Type.struct(
+          StructField.of("bool", Type.bool()),
+          StructField.of("int64", Type.int64()),
+          StructField.of("float64", Type.float64()),
+          StructField.of("numeric", Type.numeric()),
+          StructField.of("string", Type.string()),
+          StructField.of("bytes", Type.bytes()),
+          StructField.of("timestamp", Type.timestamp()),
+          StructField.of("date", Type.date()),
+          StructField.of("array", Type.array(Type.int64())),
+          StructField.of("struct", Type.struct(StructField.of("name", Type.string()))));
+
+  private static final List<Struct> ROWS =
+      Arrays.asList(
+          Struct.newBuilder()
+              .set("bool")
+              .to(true)
+              .set("int64")
+              .to(1L)
+              .set("float64")
+              .to(1.5d)
+              .set("numeric")
+              .to(new BigDecimal("3.14"))
+              .set("string")
+              .to("one")
+              .set("bytes")
+              .to(ByteArray.copyFrom("b1"))
+              .set("timestamp")
+              .to(Timestamp.ofTimeSecondsAndNanos(1L, 2_000))
+              .set("date")
+              .to(Date.fromYearMonthDay(1970, 1, 2))
+              .set("array")
+              .toInt64Array(Arrays.asList(1L, null, 3L))
+              .set("struct")
+              .to(Struct.newBuilder().set("name").to("s1").build())
+              .build(),
+          Struct.newBuilder()
+              .set("bool")
+              .to((Boolean) null)
+              .set("int64")
+              .to((Long) null)
+              .set("float64")
+              .to((Double) null)
+              .set("numeric")
+              .to((BigDecimal) null)
+              .set("string")
+              .to((String) null)
+              .set("bytes")
+              .to((ByteArray) null)
+              .set("timestamp")
+              .to((Timestamp) null)
+              .set("date")
+              .to((Date) null)
+              .set("array")
+              .toInt64Array((long[]) null)
+              .set("struct")
+              .to(Type.struct(StructField.of("name", Type.string())), null)
+              .build(),
+          Struct.newBuilder()
+              .set("bool")
+              .to(false)
+              .set("int64")
+              .to(3L)
+              .set("float64")
+              .to(-1d)
+              .set("numeric")
+              .to(BigDecimal.ZERO)
+              .set("string")
+              .to("one")
+              .set("bytes")
+              .to(ByteArray.copyFrom(""))
+              .set("timestamp")
+              .to(Timestamp.ofTimeSecondsAndNanos(-1L, 0))
+              .set("date")
+              .to(Date.fromYearMonthDay(1969, 12, 31))
+              .set("array")
+              .toInt64Array(new long[0])
+              .set("struct")
+              .to(Struct.newBuilder().set("name").to((String) null).build())
+              .build());
+
+  private static final Statement QUERY = Statement.of("SELECT * FROM AllTypes");
+
+  private static MockSpannerServiceImpl mockSpanner;
+  private static Server server;
+  private static LocalChannelProvider channelProvider;
+  private Spanner spanner;
+  private BufferAllocator allocator;
+
+  @BeforeClass
+  public static void startStaticServer() throws IOException {
+    mockSpanner = new MockSpannerServiceImpl();
+    mockSpanner.setAbortProbability(0.0D);
+    com.google.spanner.v1.ResultSet resultSet =
+        com.google.spanner.v1.ResultSet.newBuilder()
+            .setMetadata(
+                ResultSetMetadata.newBuilder()
+                    .setRowType(
+                        StructType.newBuilder()
+                            .addFields(field("bool", TypeCode.BOOL))
+                            .addFields(field("int64", TypeCode.INT64))
+                            .addFields(field("float64", TypeCode.FLOAT64))
+                            .addFields(field("numeric", TypeCode.NUMERIC))
+                            .addFields(field("string", TypeCode.STRING))
+                            .addFields(field("bytes", TypeCode.BYTES))
+                            .addFields(field("timestamp", TypeCode.TIMESTAMP))
+                            .addFields(field("date", TypeCode.DATE))
+                            .addFields(
+                                StructType.Field.newBuilder()
+                                    .setName("array")
+                                    .setType(
+                                        com.google.spanner.v1.Type.newBuilder()
+                                            .setCode(TypeCode.ARRAY)
+                                            .setArrayElementType(
+                                                com.google.spanner.v1.Type.newBuilder()
+                                                    .setCode(TypeCode.INT64))))
+                            .addFields(
+                                StructType.Field.newBuilder()
+                                    .setName("struct")
+                                    .setType(
+                                        com.google.spanner.v1.Type.newBuilder()
+                                            .setCode(TypeCode.STRUCT)
+                                            .setStructType(
+                                                StructType.newBuilder()
+                                                    .addFields(field("name", TypeCode.STRING)))))))
+            .addRows(
+                ListValue.newBuilder()
+                    .addValues(Values.of(true))
+                    .addValues(Values.of("1"))
+                    .addValues(Values.of(1.5d))
+                    .addValues(Values.of("3.14"))
+                    .addValues(Values.of("one"))
+                    .addValues(Values.of(ByteArray.copyFrom("b1").toBase64()))
+                    .addValues(Values.of("1970-01-01T00:00:01.000002Z"))
+                    .addValues(Values.of("1970-01-02"))
+                    .addValues(list(Values.of("1"), Values.ofNull(), Values.of("3")))
+                    .addValues(list(Values.of("s1"))))
+            .addRows(
+                ListValue.newBuilder()
+                    .addAllValues(
+                        Collections.nCopies(TYPE.getStructFields().size(), Values.ofNull())))
+            .addRows(
+                ListValue.newBuilder()
+                    .addValues(Values.of(false))
+                    .addValues(Values.of("3"))
+                    .addValues(Values.of(-1d))
+                    .addValues(Values.of("0"))
+                    .addValues(Values.of("one"))
+                    .addValues(Values.of(""))
+                    .addValues(Values.of("1969-12-31T23:59:59Z"))
+                    .addValues(Values.of("1969-12-31"))
+                    .addValues(list())
+                    .addValues(list(Values.ofNull())))
+            .build();
+    mockSpanner.putStatementResult(StatementResult.query(QUERY, resultSet));
+    String uniqueName = InProcessServerBuilder.generateName();
+    server =
+        InProcessServerBuilder.forName(uniqueName)
+            .directExecutor()
+            .addService(mockSpanner)
+            .build()
+            .start();
+    channelProvider = LocalChannelProvider.create(uniqueName);
+  }
+
+  private static StructType.Field field(String name, TypeCode code) {
+    return StructType.Field.newBuilder()
+        .setName(name)
+        .setType(com.google.spanner.v1.Type.newBuilder().setCode(code))
+        .build();
+  }
+
+  private static com.google.protobuf.Value list(com.google.protobuf.Value... values) {
+    return Values.of(ListValue.newBuilder().addAllValues(Arrays.asList(values)).build());
+  }
+
+  @AfterClass
+  public static void stopServer() throws InterruptedException {
+    server.shutdown();
+    server.awaitTermination();
+  }
+
+  @Before
+  public void setUp() {
+    spanner =
+        SpannerOptions.newBuilder()
+            .setProjectId("p")
+            .setChannelProvider(channelProvider)
+            .setCredentials(NoCredentials.getInstance())
+            .build()
+            .getService();
+    allocator = new RootAllocator();
+  }
+
+  @After
+  public void tearDown() {
+    spanner.close();
+    mockSpanner.reset();
+    allocator.close();
+  }
+
+  private ResultSet executeQuery() {
+    return spanner.getDatabaseClient(DatabaseId.of("p", "i", "d")).singleUse().executeQuery(QUERY);
+  }
+
+  /** Verifies that the rows of the root are equal to the given rows of {@link #ROWS}. */
+  private static void assertRows(VectorSchemaRoot root, int firstRow) {
+    for (int i = 0; i < root.getRowCount(); i++) {
+      Struct expected = ROWS.get(firstRow + i);
+      for (int col = 0; col < TYPE.getStructFields().size(); col++) {
+        Object actual = root.getVector(col).getObject(i);
+        if (expected.isNull(col)) {
+          assertThat(actual).isNull();
+        } else {
+          assertThat(actual).isNotNull();
+        }
+      }
+      if (expected.isNull(0)) {
+        continue;
+      }
+      assertThat(root.getVector("bool").getObject(i)).isEqualTo(expected.getBoolean(0));
+      assertThat(root.getVector("int64").getObject(i)).isEqualTo(expected.getLong(1));
+      assertThat(root.getVector("float64").getObject(i)).isEqualTo(expected.getDouble(2));
+      assertThat(
+              ((BigDecimal) root.getVector("numeric").getObject(i))
+                  .compareTo(expected.getBigDecimal(3)))
+          .isEqualTo(0);
+      assertThat(root.getVector("string").getObject(i).toString()).isEqualTo(expected.getString(4));
+      assertThat(root.getVector("bytes").getObject(i))
+          .isEqualTo(expected.getBytes(5).toByteArray());
+      Timestamp timestamp = expected.getTimestamp(6);
+      assertThat(root.getVector("timestamp").getObject(i))
+          .isEqualTo(timestamp.getSeconds() * 1_000_000L + timestamp.getNanos() / 1_000);
+      Date date = expected.getDate(7);
+      assertThat(root.getVector("date").getObject(i))
+          .isEqualTo(
+              (int)
+                  java.time.LocalDate.of(date.getYear(), date.getMonth(), date.getDayOfMonth())
+                      .toEpochDay());
+      assertThat((List<?>) root.getVector("array").getObject(i))
+          .containsExactlyElementsIn(expected.getLongList(8))
+          .inOrder();
+      Map<?, ?> struct = (Map<?, ?>) root.getVector("struct").getObject(i);
+      Struct expectedStruct = expected.getStruct(9);
+      if (expectedStruct.isNull(0)) {
+        assertThat(struct.get("name")).isNull();
+      } else {
+        assertThat(struct.get("name").toString()).isEqualTo(expectedStruct.getString(0));
+      }
+    }
+  }
+
+  @Test
+  public void testReadRows() {
+    try (ResultSetArrowReader reader = new ResultSetArrowReader(executeQuery(), allocator, 2)) {
+      assertThat(reader.loadNextBatch()).isTrue();
+      VectorSchemaRoot root = reader.getVectorSchemaRoot();
+      assertThat(root.getSchema()).isEqualTo(ArrowSchemas.toArrowSchema(TYPE));
+      assertThat(root.getRowCount()).isEqualTo(2);
+      assertRows(root, 0);
+
+      assertThat(reader.loadNextBatch()).isTrue();
+      assertThat(reader.getVectorSchemaRoot()).isSameInstanceAs(root);
+      assertThat(root.getRowCount()).isEqualTo(1);
+      assertRows(root, 2);
+
+      assertThat(reader.loadNextBatch()).isFalse();
+      assertThat(root.getRowCount()).isEqualTo(0);
+    }
+  }
+
+  @Test
+  public void testReadAllRowsInOneBatch() {
+    try (ResultSetArrowReader reader = new ResultSetArrowReader(executeQuery(), allocator, 10)) {
+      assertThat(reader.loadNextBatch()).isTrue();
+      VectorSchemaRoot root = reader.getVectorSchemaRoot();
+      assertThat(root.getRowCount()).isEqualTo(3);
+      assertRows(root, 0);
+      // The STRING column is written from the dictionary of the batch.
+      VarCharVector strings = (VarCharVector) root.getVector("string");
+      assertThat(strings.getObject(2).toString()).isEqualTo("one");
+      assertThat(reader.loadNextBatch()).isFalse();
+    }
+  }
+
+  @Test
+  public void testReadPartitions() {
+    BatchClient client = spanner.getBatchClient(DatabaseId.of("p", "i", "d"));
+    BatchReadOnlyTransaction transaction = client.batchReadOnlyTransaction(TimestampBound.strong());
+    try {
+      long rowCount = 0L;
+      long sum = 0L;
+      for (Partition partition :
+          transaction.partitionQuery(PartitionOptions.getDefaultInstance(), QUERY)) {
+        try (ResultSetArrowReader reader =
+            ResultSetArrowReader.forPartition(transaction, partition, allocator, 2)) {
+          while (reader.loadNextBatch()) {
+            BigIntVector int64 = (BigIntVector) reader.getVectorSchemaRoot().getVector("int64");
+            for (int i = 0; i < int64.getValueCount(); i++) {
+              rowCount++;
+              sum += int64.isNull(i) ? 0L : int64.get(i);
+            }
+          }
+        }
+      }
+      assertThat(rowCount).isGreaterThan(0L);
+      assertThat(rowCount % ROWS.size()).isEqualTo(0L);
+      assertThat(sum).isEqualTo(4L * rowCount / ROWS.size());
+    } finally {
+      transaction.close();
+    }
+  }
+
+  @Test
+  public void testCloseReleasesBuffers() {
+    ResultSetArrowReader reader = new ResultSetArrowReader(executeQuery(), allocator, 10);
+    assertThat(reader.loadNextBatch()).isTrue();
+    assertThat(allocator.getAllocatedMemory()).isGreaterThan(0L);
+    reader.close();
+    assertThat(allocator.getAllocatedMemory()).isEqualTo(0L);
+  }
+}
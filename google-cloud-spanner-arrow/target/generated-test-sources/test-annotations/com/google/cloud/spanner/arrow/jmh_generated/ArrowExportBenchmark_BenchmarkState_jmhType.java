@@ -0,0 +1,4 @@
+package com.google.cloud.spanner.arrow.jmh_generated;
+public class ArrowExportBenchmark_BenchmarkState_jmhType extends ArrowExportBenchmark_BenchmarkState_jmhType_B3 {
+}
+
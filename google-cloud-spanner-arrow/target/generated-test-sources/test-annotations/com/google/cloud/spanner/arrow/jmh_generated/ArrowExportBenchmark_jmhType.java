@@ -0,0 +1,4 @@
+package com.google.cloud.spanner.arrow.jmh_generated;
+public class ArrowExportBenchmark_jmhType extends ArrowExportBenchmark_jmhType_B3 {
+}
+
@@ -33,6 +33,7 @@ import com.google.cloud.spanner.AbstractResultSet.GrpcStreamIterator;
 import com.google.cloud.spanner.AbstractResultSet.ResumableStreamIterator;
 import com.google.cloud.spanner.AsyncResultSet.CallbackResponse;
 import com.google.cloud.spanner.AsyncResultSet.ReadyCallback;
+import com.google.cloud.spanner.Options.DecodeMode;
 import com.google.cloud.spanner.Options.QueryOption;
 import com.google.cloud.spanner.Options.ReadOption;
 import com.google.cloud.spanner.SessionImpl.SessionTransaction;
@@ -70,6 +71,8 @@ abstract class AbstractReadContext
     private SpannerRpc rpc;
     private Span span = Tracing.getTracer().getCurrentSpan();
     private int defaultPrefetchChunks = SpannerOptions.Builder.DEFAULT_PREFETCH_CHUNKS;
+    private long maxResumeBufferBytes = SpannerOptions.Builder.DEFAULT_MAX_RESUME_BUFFER_BYTES;
+    private ResultMemoryGovernor resultMemoryGovernor;
     private QueryOptions defaultQueryOptions = SpannerOptions.Builder.DEFAULT_QUERY_OPTIONS;
     private ExecutorProvider executorProvider;
 
@@ -100,6 +103,16 @@ abstract class AbstractReadContext
       return self();
     }
 
+    B setMaxResumeBufferBytes(long maxResumeBufferBytes) {
+      this.maxResumeBufferBytes = maxResumeBufferBytes;
+      return self();
+    }
+
+    B setResultMemoryGovernor(ResultMemoryGovernor resultMemoryGovernor) {
+      this.resultMemoryGovernor = resultMemoryGovernor;
+      return self();
+    }
+
     B setDefaultQueryOptions(QueryOptions defaultQueryOptions) {
       this.defaultQueryOptions = defaultQueryOptions;
       return self();
@@ -379,6 +392,8 @@ abstract class AbstractReadContext
   final ExecutorProvider executorProvider;
   Span span;
   private final int defaultPrefetchChunks;
+  private final long maxResumeBufferBytes;
+  @Nullable private final ResultMemoryGovernor resultMemoryGovernor;
   private final QueryOptions defaultQueryOptions;
 
   @GuardedBy("lock")
@@ -391,8 +406,8 @@ abstract class AbstractReadContext
   // ignored for query by the server.
   private AtomicLong seqNo = new AtomicLong();
 
-  // Allow up to 512MB to be buffered (assuming 1MB chunks). In practice, restart tokens are sent
-  // much more frequently.
+  // Allow up to 512 chunks to be buffered. The total size of the buffered chunks is limited by
+  // maxResumeBufferBytes. In practice, restart tokens are sent much more frequently.
   private static final int MAX_BUFFERED_CHUNKS = 512;
 
   protected static final String NO_TRANSACTION_RETURNED_MSG =
@@ -402,6 +417,8 @@ abstract class AbstractReadContext
     this.session = builder.session;
     this.rpc = builder.rpc;
     this.defaultPrefetchChunks = builder.defaultPrefetchChunks;
+    this.maxResumeBufferBytes = builder.maxResumeBufferBytes;
+    this.resultMemoryGovernor = builder.resultMemoryGovernor;
     this.defaultQueryOptions = builder.defaultQueryOptions;
     this.span = builder.span;
     this.executorProvider = builder.executorProvider;
@@ -430,8 +447,12 @@ abstract class AbstractReadContext
         readOptions.hasBufferRows()
             ? readOptions.bufferRows()
             : AsyncResultSetImpl.DEFAULT_BUFFER_SIZE;
+    final int batchRows =
+        readOptions.hasBatchRows()
+            ? readOptions.batchRows()
+            : AsyncResultSetImpl.DEFAULT_BATCH_SIZE;
     return new AsyncResultSetImpl(
-        executorProvider, readInternal(table, null, keys, columns, options), bufferRows);
+        executorProvider, readInternal(table, null, keys, columns, options), bufferRows, batchRows);
   }
 
   @Override
@@ -448,10 +469,15 @@ abstract class AbstractReadContext
         readOptions.hasBufferRows()
             ? readOptions.bufferRows()
             : AsyncResultSetImpl.DEFAULT_BUFFER_SIZE;
+    final int batchRows =
+        readOptions.hasBatchRows()
+            ? readOptions.batchRows()
+            : AsyncResultSetImpl.DEFAULT_BATCH_SIZE;
     return new AsyncResultSetImpl(
         executorProvider,
         readInternal(table, checkNotNull(index), keys, columns, options),
-        bufferRows);
+        bufferRows,
+        batchRows);
   }
 
   @Nullable
@@ -500,11 +526,16 @@ abstract class AbstractReadContext
         readOptions.hasBufferRows()
             ? readOptions.bufferRows()
             : AsyncResultSetImpl.DEFAULT_BUFFER_SIZE;
+    final int batchRows =
+        readOptions.hasBatchRows()
+            ? readOptions.batchRows()
+            : AsyncResultSetImpl.DEFAULT_BATCH_SIZE;
     return new AsyncResultSetImpl(
         executorProvider,
         executeQueryInternal(
             statement, com.google.spanner.v1.ExecuteSqlRequest.QueryMode.NORMAL, options),
-        bufferRows);
+        bufferRows,
+        batchRows);
   }
 
   @Override
@@ -636,16 +667,21 @@ abstract class AbstractReadContext
       final Options options,
       final ByteString partitionToken) {
     beforeReadOrQuery();
-    final int prefetchChunks =
-        options.hasPrefetchChunks() ? options.prefetchChunks() : defaultPrefetchChunks;
+    final PrefetchWindow prefetchWindow = createPrefetchWindow(options);
     final ExecuteSqlRequest.Builder request =
         getExecuteSqlRequestBuilder(
             statement, queryMode, options, /* withTransactionSelector = */ false);
     ResumableStreamIterator stream =
-        new ResumableStreamIterator(MAX_BUFFERED_CHUNKS, SpannerImpl.QUERY, span) {
+        new ResumableStreamIterator(
+            MAX_BUFFERED_CHUNKS,
+            maxResumeBufferBytes,
+            resultMemoryGovernor,
+            SpannerImpl.QUERY,
+            span) {
           @Override
           CloseableIterator<PartialResultSet> startStream(@Nullable ByteString resumeToken) {
-            GrpcStreamIterator stream = new GrpcStreamIterator(statement, prefetchChunks);
+            GrpcStreamIterator stream =
+                new GrpcStreamIterator(statement, prefetchWindow, resultMemoryGovernor);
             if (partitionToken != null) {
               request.setPartitionToken(partitionToken);
             }
@@ -661,12 +697,42 @@ abstract class AbstractReadContext
             }
             SpannerRpc.StreamingCall call =
                 rpc.executeQuery(request.build(), stream.consumer(), session.getOptions());
-            call.request(prefetchChunks);
+            call.request(prefetchWindow.getSize());
             stream.setCall(call, request.getTransaction().hasBegin());
             return stream;
           }
         };
-    return new GrpcResultSet(stream, this);
+    return createResultSet(stream, options);
+  }
+
+  /**
+   * Creates the {@link ResultSet} for the given stream. The rows are decoded on a background thread
+   * if the options ask for pipelined decoding and a decoding thread is available.
+   */
+  private ResultSet createResultSet(ResumableStreamIterator stream, Options options) {
+    if (options.hasPipelinedDecoding()) {
+      return PipelinedResultSet.create(
+          new GrpcResultSet(stream, this, DecodeMode.DIRECT),
+          () -> stream.cancel("ResultSet closed"),
+          options.pipelinedDecodingRows());
+    }
+    return new GrpcResultSet(
+        stream, this, options.hasDecodeMode() ? options.decodeMode() : DecodeMode.DIRECT);
+  }
+
+  /**
+   * Creates the window for the number of chunks that a read or query prefetches. The window is
+   * shared by all the streams of the read or query, so a resumed stream keeps the window size that
+   * an adaptive window has grown or shrunk to.
+   */
+  private PrefetchWindow createPrefetchWindow(Options options) {
+    int prefetchChunks =
+        options.hasPrefetchChunks() ? options.prefetchChunks() : defaultPrefetchChunks;
+    if (options.hasAdaptivePrefetchChunks()) {
+      return PrefetchWindow.adaptive(
+          prefetchChunks, options.minPrefetchChunks(), options.maxPrefetchChunks(), span);
+    }
+    return PrefetchWindow.fixed(prefetchChunks);
   }
 
   /**
@@ -769,13 +835,18 @@ abstract class AbstractReadContext
     if (partitionToken != null) {
       builder.setPartitionToken(partitionToken);
     }
-    final int prefetchChunks =
-        readOptions.hasPrefetchChunks() ? readOptions.prefetchChunks() : defaultPrefetchChunks;
+    final PrefetchWindow prefetchWindow = createPrefetchWindow(readOptions);
     ResumableStreamIterator stream =
-        new ResumableStreamIterator(MAX_BUFFERED_CHUNKS, SpannerImpl.READ, span) {
+        new ResumableStreamIterator(
+            MAX_BUFFERED_CHUNKS,
+            maxResumeBufferBytes,
+            resultMemoryGovernor,
+            SpannerImpl.READ,
+            span) {
           @Override
           CloseableIterator<PartialResultSet> startStream(@Nullable ByteString resumeToken) {
-            GrpcStreamIterator stream = new GrpcStreamIterator(prefetchChunks);
+            GrpcStreamIterator stream =
+                new GrpcStreamIterator(null, prefetchWindow, resultMemoryGovernor);
             TransactionSelector selector = null;
             if (resumeToken != null) {
               builder.setResumeToken(resumeToken);
@@ -789,12 +860,12 @@ abstract class AbstractReadContext
             builder.setRequestOptions(buildRequestOptions(readOptions));
             SpannerRpc.StreamingCall call =
                 rpc.read(builder.build(), stream.consumer(), session.getOptions());
-            call.request(prefetchChunks);
+            call.request(prefetchWindow.getSize());
             stream.setCall(call, selector != null && selector.hasBegin());
             return stream;
           }
         };
-    return new GrpcResultSet(stream, this);
+    return createResultSet(stream, readOptions);
   }
 
   private Struct consumeSingleRow(ResultSet resultSet) {
@@ -28,14 +28,14 @@ import com.google.api.gax.retrying.RetrySettings;
 import com.google.cloud.ByteArray;
 import com.google.cloud.Date;
 import com.google.cloud.Timestamp;
-import com.google.cloud.spanner.Type.StructField;
+import com.google.cloud.spanner.Options.DecodeMode;
 import com.google.cloud.spanner.spi.v1.SpannerRpc;
 import com.google.cloud.spanner.v1.stub.SpannerStubSettings;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
-import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.common.io.ByteStreams;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.ListValue;
 import com.google.protobuf.Value.KindCase;
@@ -43,7 +43,6 @@ import com.google.spanner.v1.PartialResultSet;
 import com.google.spanner.v1.ResultSetMetadata;
 import com.google.spanner.v1.ResultSetStats;
 import com.google.spanner.v1.Transaction;
-import com.google.spanner.v1.TypeCode;
 import io.grpc.Context;
 import io.opencensus.common.Scope;
 import io.opencensus.trace.AttributeValue;
@@ -51,19 +50,19 @@ import io.opencensus.trace.Span;
 import io.opencensus.trace.Tracer;
 import io.opencensus.trace.Tracing;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.BitSet;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -92,20 +91,32 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
   static class GrpcResultSet extends AbstractResultSet<List<Object>> {
     private final GrpcValueIterator iterator;
     private final Listener listener;
+    private final DecodeMode decodeMode;
     private GrpcStruct currRow;
+    /**
+     * Set when {@link #nextBatch(int)} has read rows past {@link #currRow}, so the values of {@link
+     * #currRow} no longer belong to the current position of the result set.
+     */
+    private boolean currRowStale;
     private SpannerException error;
     private ResultSetStats statistics;
     private boolean closed;
 
     GrpcResultSet(CloseableIterator<PartialResultSet> iterator, Listener listener) {
+      this(iterator, listener, DecodeMode.DIRECT);
+    }
+
+    GrpcResultSet(
+        CloseableIterator<PartialResultSet> iterator, Listener listener, DecodeMode decodeMode) {
       this.iterator = new GrpcValueIterator(iterator);
       this.listener = listener;
+      this.decodeMode = checkNotNull(decodeMode);
     }
 
     @Override
     protected GrpcStruct currRow() {
       checkState(!closed, "ResultSet is closed");
-      checkState(currRow != null, "next() call required");
+      checkState(currRow != null && !currRowStale, "next() call required");
       return currRow;
     }
 
@@ -115,18 +126,8 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
         throw newSpannerException(error);
       }
       try {
-        if (currRow == null) {
-          ResultSetMetadata metadata = iterator.getMetadata();
-          if (metadata.hasTransaction()) {
-            listener.onTransactionMetadata(
-                metadata.getTransaction(), iterator.isWithBeginTransaction());
-          } else if (iterator.isWithBeginTransaction()) {
-            // The query should have returned a transaction.
-            throw SpannerExceptionFactory.newSpannerException(
-                ErrorCode.FAILED_PRECONDITION, AbstractReadContext.NO_TRANSACTION_RETURNED_MSG);
-          }
-          currRow = new GrpcStruct(iterator.type(), new ArrayList<>());
-        }
+        initCurrRow();
+        currRowStale = false;
         boolean hasNext = currRow.consumeRow(iterator);
         if (!hasNext) {
           statistics = iterator.getStats();
@@ -139,6 +140,50 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
       }
     }
 
+    /**
+     * Reads the next rows directly from the stream of values into a {@link ColumnarBatch}, without
+     * decoding the rows into the current row of the result set.
+     */
+    @Override
+    public ColumnarBatch nextBatch(int maxRows) throws SpannerException {
+      checkArgument(maxRows > 0, "maxRows must be > 0");
+      if (error != null) {
+        throw newSpannerException(error);
+      }
+      try {
+        initCurrRow();
+        currRowStale = true;
+        ColumnarBatch.Builder builder = new ColumnarBatch.Builder(currRow.getType(), maxRows);
+        boolean hasNext = true;
+        while (hasNext && builder.getRowCount() < maxRows) {
+          hasNext = builder.appendRow(iterator);
+        }
+        if (!hasNext) {
+          statistics = iterator.getStats();
+        }
+        return builder.build();
+      } catch (Throwable t) {
+        throw yieldError(
+            SpannerExceptionFactory.asSpannerException(t),
+            iterator.isWithBeginTransaction() && currRow == null);
+      }
+    }
+
+    private void initCurrRow() {
+      if (currRow == null) {
+        ResultSetMetadata metadata = iterator.getMetadata();
+        if (metadata.hasTransaction()) {
+          listener.onTransactionMetadata(
+              metadata.getTransaction(), iterator.isWithBeginTransaction());
+        } else if (iterator.isWithBeginTransaction()) {
+          // The query should have returned a transaction.
+          throw SpannerExceptionFactory.newSpannerException(
+              ErrorCode.FAILED_PRECONDITION, AbstractReadContext.NO_TRANSACTION_RETURNED_MSG);
+        }
+        currRow = new GrpcStruct(iterator.type(), new ArrayList<>(), decodeMode);
+      }
+    }
+
     @Override
     @Nullable
     public ResultSetStats getStats() {
@@ -152,6 +197,11 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
       closed = true;
     }
 
+    @Override
+    public int getPrefetchChunks() {
+      return iterator.getPrefetchChunks();
+    }
+
     @Override
     public Type getType() {
       checkState(currRow != null, "next() call required");
@@ -184,7 +234,6 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
       this.stream = stream;
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     protected com.google.protobuf.Value computeNext() {
       if (!ensureReady(StreamValue.RESULT)) {
@@ -205,10 +254,7 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
         return value;
       }
 
-      Object merged =
-          kind == KindCase.STRING_VALUE
-              ? value.getStringValue()
-              : new ArrayList<>(value.getListValue().getValuesList());
+      ChunkedValueMerger merged = new ChunkedValueMerger(value);
       while (current.getChunkedValue() && pos == current.getValuesCount()) {
         if (!ensureReady(StreamValue.RESULT)) {
           throw newSpannerException(
@@ -223,21 +269,9 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
                   + " but got: "
                   + newValue.getKindCase());
         }
-        if (kind == KindCase.STRING_VALUE) {
-          merged = merged + newValue.getStringValue();
-        } else {
-          concatLists(
-              (List<com.google.protobuf.Value>) merged, newValue.getListValue().getValuesList());
-        }
-      }
-      if (kind == KindCase.STRING_VALUE) {
-        return com.google.protobuf.Value.newBuilder().setStringValue((String) merged).build();
-      } else {
-        return com.google.protobuf.Value.newBuilder()
-            .setListValue(
-                ListValue.newBuilder().addAllValues((List<com.google.protobuf.Value>) merged))
-            .build();
+        merged.add(newValue);
       }
+      return merged.build();
     }
 
     ResultSetMetadata getMetadata() throws SpannerException {
@@ -277,13 +311,8 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
             throw newSpannerException(ErrorCode.INTERNAL, "Missing type metadata in first message");
           }
           metadata = current.getMetadata();
-          com.google.spanner.v1.Type typeProto =
-              com.google.spanner.v1.Type.newBuilder()
-                  .setCode(TypeCode.STRUCT)
-                  .setStructType(metadata.getRowType())
-                  .build();
           try {
-            type = Type.fromProto(typeProto);
+            type = Type.fromRowTypeProto(metadata.getRowType());
           } catch (IllegalArgumentException e) {
             throw newSpannerException(
                 ErrorCode.INTERNAL, "Invalid type metadata: " + e.getMessage(), e);
@@ -307,54 +336,140 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
       return stream.isWithBeginTransaction();
     }
 
-    /** @param a is a mutable list and b will be concatenated into a. */
-    private void concatLists(List<com.google.protobuf.Value> a, List<com.google.protobuf.Value> b) {
-      if (a.size() == 0 || b.size() == 0) {
-        a.addAll(b);
-        return;
+    int getPrefetchChunks() {
+      return stream.getPrefetchChunks();
+    }
+
+    private static boolean isMergeable(KindCase kind) {
+      return kind == KindCase.STRING_VALUE || kind == KindCase.LIST_VALUE;
+    }
+  }
+
+  /**
+   * Collects the chunks of a chunked {@code STRING_VALUE} or {@code LIST_VALUE} and builds the
+   * merged value once, after the last chunk has been added. Strings are kept as UTF-8 {@link
+   * ByteString}s, which are concatenated without copying. The elements of a list are collected in a
+   * single list, and the last element of a list is kept open in a nested merger as long as it can
+   * be continued by the next chunk. Adding a chunk therefore only costs the size of the chunk,
+   * regardless of the size of the value that has been merged so far.
+   */
+  private static final class ChunkedValueMerger {
+    private final KindCase kind;
+    private ByteString stringValue;
+    private List<com.google.protobuf.Value> listValues;
+    /** The last element of the list, if that element can be continued by the next chunk. */
+    private ChunkedValueMerger openElement;
+
+    ChunkedValueMerger(com.google.protobuf.Value first) {
+      this.kind = first.getKindCase();
+      if (kind == KindCase.STRING_VALUE) {
+        stringValue = first.getStringValueBytes();
       } else {
-        com.google.protobuf.Value last = a.get(a.size() - 1);
-        com.google.protobuf.Value first = b.get(0);
-        KindCase lastKind = last.getKindCase();
-        KindCase firstKind = first.getKindCase();
-        if (isMergeable(lastKind) && lastKind == firstKind) {
-          com.google.protobuf.Value merged;
-          if (lastKind == KindCase.STRING_VALUE) {
-            String lastStr = last.getStringValue();
-            String firstStr = first.getStringValue();
-            merged =
-                com.google.protobuf.Value.newBuilder().setStringValue(lastStr + firstStr).build();
-          } else { // List
-            List<com.google.protobuf.Value> mergedList = new ArrayList<>();
-            mergedList.addAll(last.getListValue().getValuesList());
-            concatLists(mergedList, first.getListValue().getValuesList());
-            merged =
-                com.google.protobuf.Value.newBuilder()
-                    .setListValue(ListValue.newBuilder().addAllValues(mergedList))
-                    .build();
-          }
-          a.set(a.size() - 1, merged);
-          a.addAll(b.subList(1, b.size()));
+        listValues = new ArrayList<>();
+        addListElements(first.getListValue().getValuesList(), 0);
+      }
+    }
+
+    /** Adds the next chunk. The chunk must have the same kind as the first chunk. */
+    void add(com.google.protobuf.Value chunk) {
+      if (kind == KindCase.STRING_VALUE) {
+        stringValue = stringValue.concat(chunk.getStringValueBytes());
+        return;
+      }
+      List<com.google.protobuf.Value> elements = chunk.getListValue().getValuesList();
+      if (elements.isEmpty()) {
+        return;
+      }
+      int start = 0;
+      if (openElement != null) {
+        if (openElement.kind == elements.get(0).getKindCase()) {
+          // The first element of the chunk continues the last element of the list.
+          openElement.add(elements.get(0));
+          start = 1;
+        }
+        if (start < elements.size()) {
+          closeOpenElement();
+        }
+      }
+      addListElements(elements, start);
+    }
+
+    private void addListElements(List<com.google.protobuf.Value> elements, int start) {
+      int last = elements.size() - 1;
+      for (int i = start; i < last; i++) {
+        listValues.add(elements.get(i));
+      }
+      if (start <= last) {
+        com.google.protobuf.Value element = elements.get(last);
+        if (GrpcValueIterator.isMergeable(element.getKindCase())) {
+          openElement = new ChunkedValueMerger(element);
         } else {
-          a.addAll(b);
+          listValues.add(element);
         }
       }
     }
 
-    private boolean isMergeable(KindCase kind) {
-      return kind == KindCase.STRING_VALUE || kind == KindCase.LIST_VALUE;
+    private void closeOpenElement() {
+      listValues.add(openElement.build());
+      openElement = null;
+    }
+
+    /** Builds the merged value. */
+    com.google.protobuf.Value build() {
+      if (kind == KindCase.STRING_VALUE) {
+        return com.google.protobuf.Value.newBuilder().setStringValueBytes(stringValue).build();
+      }
+      if (openElement != null) {
+        closeOpenElement();
+      }
+      return com.google.protobuf.Value.newBuilder()
+          .setListValue(ListValue.newBuilder().addAllValues(listValues))
+          .build();
     }
   }
 
   static class GrpcStruct extends Struct implements Serializable {
+    /** Shared by all structs without primitive columns. These are never written. */
+    private static final long[] NO_PRIMITIVE_DATA = new long[0];
+
+    private static final BitSet NO_PRIMITIVE_NULLS = new BitSet(0);
+
     private final Type type;
     private final List<Object> rowData;
+    private final DecodeMode decodeMode;
+
+    /**
+     * The columns that have been decoded in {@link DecodeMode#LAZY_PER_COL} mode. Columns that have
+     * not been decoded contain the raw {@link com.google.protobuf.Value} in {@link #rowData}.
+     */
+    private final BitSet colDecoded;
+
+    /** Whether the current row has been decoded in {@link DecodeMode#LAZY_PER_ROW} mode. */
+    private boolean rowDecoded;
+
+    /**
+     * The columns of type BOOL, INT64 and FLOAT64. The decoded values of these columns are stored
+     * in {@link #primitiveData} instead of {@link #rowData} to prevent boxing. This set is shared
+     * by all structs of the same {@link Type}, see {@link Type#getPrimitiveFields()}.
+     */
+    private final BitSet primitiveColumns;
+
+    /**
+     * The decoded values of the primitive columns of the current row, indexed by column. FLOAT64
+     * values are stored as their raw long bits and BOOL values as 0 or 1. Empty if the struct has
+     * no primitive columns.
+     */
+    private final long[] primitiveData;
+
+    /** The primitive columns of the current row that are null. */
+    private final BitSet primitiveNulls;
 
     /**
      * Builds an immutable version of this struct using {@link Struct#newBuilder()} which is used as
      * a serialization proxy.
      */
     private Object writeReplace() {
+      ensureDecoded();
       Builder builder = Struct.newBuilder();
       List<Type.StructField> structFields = getType().getStructFields();
       for (int i = 0; i < structFields.size(); i++) {
@@ -364,13 +479,13 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
         Type fieldType = field.getType();
         switch (fieldType.getCode()) {
           case BOOL:
-            builder.set(fieldName).to((Boolean) value);
+            builder.set(fieldName).to(isNull(i) ? null : getBooleanInternal(i));
             break;
           case INT64:
-            builder.set(fieldName).to((Long) value);
+            builder.set(fieldName).to(isNull(i) ? null : getLongInternal(i));
             break;
           case FLOAT64:
-            builder.set(fieldName).to((Double) value);
+            builder.set(fieldName).to(isNull(i) ? null : getDoubleInternal(i));
             break;
           case NUMERIC:
             builder.set(fieldName).to((BigDecimal) value);
@@ -437,34 +552,172 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
       return builder.build();
     }
 
-    GrpcStruct(Type type, List<Object> rowData) {
+    GrpcStruct(Type type, List<Object> rowData, DecodeMode decodeMode) {
       this.type = type;
       this.rowData = rowData;
+      this.decodeMode = decodeMode;
+      int numColumns = type.getStructFields().size();
+      this.colDecoded = decodeMode == DecodeMode.LAZY_PER_COL ? new BitSet(numColumns) : null;
+      this.primitiveColumns = type.getPrimitiveFields();
+      if (primitiveColumns.isEmpty()) {
+        this.primitiveData = NO_PRIMITIVE_DATA;
+        this.primitiveNulls = NO_PRIMITIVE_NULLS;
+      } else {
+        this.primitiveData = new long[numColumns];
+        this.primitiveNulls = new BitSet(numColumns);
+      }
+    }
+
+    /** Creates a decoded copy of the given struct. */
+    private GrpcStruct(GrpcStruct other) {
+      this.type = other.type;
+      this.rowData = new ArrayList<>(other.rowData);
+      this.decodeMode = DecodeMode.DIRECT;
+      this.colDecoded = null;
+      this.primitiveColumns = other.primitiveColumns;
+      if (primitiveColumns.isEmpty()) {
+        this.primitiveData = NO_PRIMITIVE_DATA;
+        this.primitiveNulls = NO_PRIMITIVE_NULLS;
+      } else {
+        this.primitiveData = other.primitiveData.clone();
+        this.primitiveNulls = (BitSet) other.primitiveNulls.clone();
+      }
     }
 
     @Override
     public String toString() {
-      return this.rowData.toString();
+      ensureDecoded();
+      List<Object> values = new ArrayList<>(rowData.size());
+      for (int i = 0; i < rowData.size(); i++) {
+        values.add(primitiveColumns.get(i) ? getBoxedPrimitive(i) : rowData.get(i));
+      }
+      return values.toString();
+    }
+
+    private Object getBoxedPrimitive(int columnIndex) {
+      if (primitiveNulls.get(columnIndex)) {
+        return null;
+      }
+      switch (type.getStructFields().get(columnIndex).getType().getCode()) {
+        case BOOL:
+          return getBooleanInternal(columnIndex);
+        case INT64:
+          return getLongInternal(columnIndex);
+        default:
+          return getDoubleInternal(columnIndex);
+      }
     }
 
     boolean consumeRow(Iterator<com.google.protobuf.Value> iterator) {
       rowData.clear();
+      if (colDecoded != null) {
+        colDecoded.clear();
+      }
+      rowDecoded = false;
       if (!iterator.hasNext()) {
         return false;
       }
-      for (Type.StructField fieldType : getType().getStructFields()) {
+      List<Type.StructField> fields = getType().getStructFields();
+      for (int i = 0; i < fields.size(); i++) {
         if (!iterator.hasNext()) {
           throw newSpannerException(
               ErrorCode.INTERNAL,
               "Invalid value stream: end of stream reached before row is complete");
         }
         com.google.protobuf.Value value = iterator.next();
-        rowData.add(decodeValue(fieldType.getType(), value));
+        rowData.add(value);
+        if (decodeMode == DecodeMode.DIRECT) {
+          decodeColumn(i, value);
+        }
       }
       return true;
     }
 
-    private static Object decodeValue(Type fieldType, com.google.protobuf.Value proto) {
+    /**
+     * Decodes the given raw value of a column of the current row. The decoded value of a primitive
+     * column is stored in {@link #primitiveData}, other values replace the raw value in {@link
+     * #rowData}.
+     */
+    private void decodeColumn(int columnIndex, com.google.protobuf.Value proto) {
+      Type fieldType = type.getStructFields().get(columnIndex).getType();
+      if (primitiveColumns.get(columnIndex)) {
+        if (proto.getKindCase() == KindCase.NULL_VALUE) {
+          primitiveNulls.set(columnIndex);
+        } else {
+          primitiveNulls.clear(columnIndex);
+          primitiveData[columnIndex] = decodePrimitiveValue(fieldType, proto);
+        }
+        rowData.set(columnIndex, null);
+      } else {
+        rowData.set(columnIndex, decodeValue(fieldType, proto));
+      }
+    }
+
+    /** Decodes all columns of the current row that have not yet been decoded. */
+    private void ensureDecoded() {
+      switch (decodeMode) {
+        case LAZY_PER_ROW:
+          if (!rowDecoded) {
+            for (int i = 0; i < rowData.size(); i++) {
+              decodeColumn(i, (com.google.protobuf.Value) rowData.get(i));
+            }
+            rowDecoded = true;
+          }
+          break;
+        case LAZY_PER_COL:
+          for (int i = 0; i < rowData.size(); i++) {
+            ensureDecoded(i);
+          }
+          break;
+        default:
+          break;
+      }
+    }
+
+    /** Decodes the given column of the current row if it has not yet been decoded. */
+    private void ensureDecoded(int columnIndex) {
+      if (decodeMode == DecodeMode.LAZY_PER_COL) {
+        if (!colDecoded.get(columnIndex)) {
+          decodeColumn(columnIndex, (com.google.protobuf.Value) rowData.get(columnIndex));
+          colDecoded.set(columnIndex);
+        }
+      } else if (decodeMode == DecodeMode.LAZY_PER_ROW) {
+        ensureDecoded();
+      }
+    }
+
+    /** Returns the decoded value of the given non-primitive column of the current row. */
+    private Object getDecodedValue(int columnIndex) {
+      ensureDecoded(columnIndex);
+      return rowData.get(columnIndex);
+    }
+
+    /** Returns the decoded value of the given primitive column of the current row. */
+    private long getPrimitiveValue(int columnIndex) {
+      ensureDecoded(columnIndex);
+      return primitiveData[columnIndex];
+    }
+
+    /**
+     * Decodes a non-null BOOL, INT64 or FLOAT64 value into a long without boxing. See {@link
+     * #primitiveData}.
+     */
+    static long decodePrimitiveValue(Type fieldType, com.google.protobuf.Value proto) {
+      switch (fieldType.getCode()) {
+        case BOOL:
+          checkType(fieldType, proto, KindCase.BOOL_VALUE);
+          return proto.getBoolValue() ? 1L : 0L;
+        case INT64:
+          checkType(fieldType, proto, KindCase.STRING_VALUE);
+          return Long.parseLong(proto.getStringValue());
+        case FLOAT64:
+          return Double.doubleToRawLongBits(valueProtoToFloat64(proto));
+        default:
+          throw new AssertionError("Unhandled type code: " + fieldType.getCode());
+      }
+    }
+
+    static Object decodeValue(Type fieldType, com.google.protobuf.Value proto) {
       if (proto.getKindCase() == KindCase.NULL_VALUE) {
         return null;
       }
@@ -484,7 +737,7 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
           return proto.getStringValue();
         case BYTES:
           checkType(fieldType, proto, KindCase.STRING_VALUE);
-          return ByteArray.fromBase64(proto.getStringValue());
+          return valueProtoToBytes(proto);
         case TIMESTAMP:
           checkType(fieldType, proto, KindCase.STRING_VALUE);
           return Timestamp.parseTimestamp(proto.getStringValue());
@@ -509,24 +762,19 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
       checkArgument(
           structValue.getValuesCount() == fieldTypes.size(),
           "Size mismatch between type descriptor and actual values.");
-      List<Object> fields = new ArrayList<>(fieldTypes.size());
-      List<com.google.protobuf.Value> fieldValues = structValue.getValuesList();
-      for (int i = 0; i < fieldTypes.size(); ++i) {
-        fields.add(decodeValue(fieldTypes.get(i).getType(), fieldValues.get(i)));
-      }
-      return new GrpcStruct(structType, fields);
+      GrpcStruct struct =
+          new GrpcStruct(structType, new ArrayList<>(fieldTypes.size()), DecodeMode.DIRECT);
+      struct.consumeRow(structValue.getValuesList().iterator());
+      return struct;
     }
 
     static Object decodeArrayValue(Type elementType, ListValue listValue) {
       switch (elementType.getCode()) {
         case BOOL:
-          // Use a view: element conversion is virtually free.
-          return Lists.transform(
-              listValue.getValuesList(),
-              input -> input.getKindCase() == KindCase.NULL_VALUE ? null : input.getBoolValue());
-        case INT64:
-          // For int64/float64 types, use custom containers.  These avoid wrapper object
+          // For bool/int64/float64 types, use custom containers.  These avoid wrapper object
           // creation for non-null arrays.
+          return new BoolArray(listValue);
+        case INT64:
           return new Int64Array(listValue);
         case FLOAT64:
           return new Float64Array(listValue);
@@ -552,9 +800,7 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
             ArrayList<Object> list = new ArrayList<>(listValue.getValuesCount());
             for (com.google.protobuf.Value value : listValue.getValuesList()) {
               list.add(
-                  value.getKindCase() == KindCase.NULL_VALUE
-                      ? null
-                      : ByteArray.fromBase64(value.getStringValue()));
+                  value.getKindCase() == KindCase.NULL_VALUE ? null : valueProtoToBytes(value));
             }
             return list;
           }
@@ -601,8 +847,7 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
       }
     }
 
-    private static void checkType(
-        Type fieldType, com.google.protobuf.Value proto, KindCase expected) {
+    static void checkType(Type fieldType, com.google.protobuf.Value proto, KindCase expected) {
       if (proto.getKindCase() != expected) {
         throw newSpannerException(
             ErrorCode.INTERNAL,
@@ -616,7 +861,9 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
     }
 
     Struct immutableCopy() {
-      return new GrpcStruct(type, new ArrayList<>(rowData));
+      // Decode all values, as the copy can be shared between threads.
+      ensureDecoded();
+      return new GrpcStruct(this);
     }
 
     @Override
@@ -626,128 +873,138 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
 
     @Override
     public boolean isNull(int columnIndex) {
-      return rowData.get(columnIndex) == null;
+      Object value = rowData.get(columnIndex);
+      if (value instanceof com.google.protobuf.Value) {
+        // A value that has not yet been decoded. Decoding is not needed to determine whether it is
+        // null.
+        return ((com.google.protobuf.Value) value).getKindCase() == KindCase.NULL_VALUE;
+      }
+      if (primitiveColumns.get(columnIndex)) {
+        return primitiveNulls.get(columnIndex);
+      }
+      return value == null;
     }
 
     @Override
     protected boolean getBooleanInternal(int columnIndex) {
-      return (Boolean) rowData.get(columnIndex);
+      return getPrimitiveValue(columnIndex) != 0L;
     }
 
     @Override
     protected long getLongInternal(int columnIndex) {
-      return (Long) rowData.get(columnIndex);
+      return getPrimitiveValue(columnIndex);
     }
 
     @Override
     protected double getDoubleInternal(int columnIndex) {
-      return (Double) rowData.get(columnIndex);
+      return Double.longBitsToDouble(getPrimitiveValue(columnIndex));
     }
 
     @Override
     protected BigDecimal getBigDecimalInternal(int columnIndex) {
-      return (BigDecimal) rowData.get(columnIndex);
+      return (BigDecimal) getDecodedValue(columnIndex);
     }
 
     @Override
     protected String getStringInternal(int columnIndex) {
-      return (String) rowData.get(columnIndex);
+      return (String) getDecodedValue(columnIndex);
     }
 
     @Override
     protected ByteArray getBytesInternal(int columnIndex) {
-      return (ByteArray) rowData.get(columnIndex);
+      return (ByteArray) getDecodedValue(columnIndex);
     }
 
     @Override
     protected Timestamp getTimestampInternal(int columnIndex) {
-      return (Timestamp) rowData.get(columnIndex);
+      return (Timestamp) getDecodedValue(columnIndex);
     }
 
     @Override
     protected Date getDateInternal(int columnIndex) {
-      return (Date) rowData.get(columnIndex);
+      return (Date) getDecodedValue(columnIndex);
     }
 
     @Override
     protected Value getValueInternal(int columnIndex) {
-      final List<Type.StructField> structFields = getType().getStructFields();
-      final StructField structField = structFields.get(columnIndex);
-      final Type columnType = structField.getType();
-      final boolean isNull = rowData.get(columnIndex) == null;
+      final Type columnType = getType().getStructFields().get(columnIndex).getType();
+      final boolean isNull = isNull(columnIndex);
       switch (columnType.getCode()) {
         case BOOL:
           return Value.bool(isNull ? null : getBooleanInternal(columnIndex));
         case INT64:
           return Value.int64(isNull ? null : getLongInternal(columnIndex));
-        case NUMERIC:
-          return Value.numeric(isNull ? null : getBigDecimalInternal(columnIndex));
         case FLOAT64:
           return Value.float64(isNull ? null : getDoubleInternal(columnIndex));
+        default:
+          return toValue(columnType, getDecodedValue(columnIndex));
+      }
+    }
+
+    /** Converts a value that has been decoded by {@link #decodeValue} to a {@link Value}. */
+    @SuppressWarnings("unchecked")
+    static Value toValue(Type type, @Nullable Object value) {
+      switch (type.getCode()) {
+        case BOOL:
+          return Value.bool((Boolean) value);
+        case INT64:
+          return Value.int64((Long) value);
+        case NUMERIC:
+          return Value.numeric((BigDecimal) value);
+        case FLOAT64:
+          return Value.float64((Double) value);
         case STRING:
-          return Value.string(isNull ? null : getStringInternal(columnIndex));
+          return Value.string((String) value);
         case BYTES:
-          return Value.bytes(isNull ? null : getBytesInternal(columnIndex));
+          return Value.bytes((ByteArray) value);
         case TIMESTAMP:
-          return Value.timestamp(isNull ? null : getTimestampInternal(columnIndex));
+          return Value.timestamp((Timestamp) value);
         case DATE:
-          return Value.date(isNull ? null : getDateInternal(columnIndex));
+          return Value.date((Date) value);
         case STRUCT:
-          return Value.struct(isNull ? null : getStructInternal(columnIndex));
+          return Value.struct(type, (Struct) value);
         case ARRAY:
-          switch (columnType.getArrayElementType().getCode()) {
+          switch (type.getArrayElementType().getCode()) {
             case BOOL:
-              return Value.boolArray(isNull ? null : getBooleanListInternal(columnIndex));
+              return Value.boolArray((List<Boolean>) value);
             case INT64:
-              return Value.int64Array(isNull ? null : getLongListInternal(columnIndex));
+              return Value.int64Array((List<Long>) value);
             case NUMERIC:
-              return Value.numericArray(isNull ? null : getBigDecimalListInternal(columnIndex));
+              return Value.numericArray((List<BigDecimal>) value);
             case FLOAT64:
-              return Value.float64Array(isNull ? null : getDoubleListInternal(columnIndex));
+              return Value.float64Array((List<Double>) value);
             case STRING:
-              return Value.stringArray(isNull ? null : getStringListInternal(columnIndex));
+              return Value.stringArray((List<String>) value);
             case BYTES:
-              return Value.bytesArray(isNull ? null : getBytesListInternal(columnIndex));
+              return Value.bytesArray((List<ByteArray>) value);
             case TIMESTAMP:
-              return Value.timestampArray(isNull ? null : getTimestampListInternal(columnIndex));
+              return Value.timestampArray((List<Timestamp>) value);
             case DATE:
-              return Value.dateArray(isNull ? null : getDateListInternal(columnIndex));
+              return Value.dateArray((List<Date>) value);
             case STRUCT:
-              return Value.structArray(
-                  columnType.getArrayElementType(),
-                  isNull ? null : getStructListInternal(columnIndex));
+              return Value.structArray(type.getArrayElementType(), (List<Struct>) value);
             default:
               throw new IllegalArgumentException(
-                  "Invalid array value type " + this.type.getArrayElementType());
+                  "Invalid array value type " + type.getArrayElementType());
           }
         default:
-          throw new IllegalArgumentException("Invalid value type " + this.type);
+          throw new IllegalArgumentException("Invalid value type " + type);
       }
     }
 
     @Override
     protected Struct getStructInternal(int columnIndex) {
-      return (Struct) rowData.get(columnIndex);
+      return (Struct) getDecodedValue(columnIndex);
     }
 
     @Override
     protected boolean[] getBooleanArrayInternal(int columnIndex) {
-      @SuppressWarnings("unchecked") // We know ARRAY<BOOL> produces a List<Boolean>.
-      List<Boolean> values = (List<Boolean>) rowData.get(columnIndex);
-      boolean[] r = new boolean[values.size()];
-      for (int i = 0; i < values.size(); ++i) {
-        if (values.get(i) == null) {
-          throw throwNotNull(columnIndex);
-        }
-        r[i] = values.get(i);
-      }
-      return r;
+      return getBooleanListInternal(columnIndex).toPrimitiveArray(columnIndex);
     }
 
     @Override
-    @SuppressWarnings("unchecked") // We know ARRAY<BOOL> produces a List<Boolean>.
-    protected List<Boolean> getBooleanListInternal(int columnIndex) {
-      return Collections.unmodifiableList((List<Boolean>) rowData.get(columnIndex));
+    protected BoolArray getBooleanListInternal(int columnIndex) {
+      return (BoolArray) getDecodedValue(columnIndex);
     }
 
     @Override
@@ -757,7 +1014,7 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
 
     @Override
     protected Int64Array getLongListInternal(int columnIndex) {
-      return (Int64Array) rowData.get(columnIndex);
+      return (Int64Array) getDecodedValue(columnIndex);
     }
 
     @Override
@@ -767,43 +1024,43 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
 
     @Override
     protected Float64Array getDoubleListInternal(int columnIndex) {
-      return (Float64Array) rowData.get(columnIndex);
+      return (Float64Array) getDecodedValue(columnIndex);
     }
 
     @Override
     @SuppressWarnings("unchecked") // We know ARRAY<NUMERIC> produces a List<BigDecimal>.
     protected List<BigDecimal> getBigDecimalListInternal(int columnIndex) {
-      return (List<BigDecimal>) rowData.get(columnIndex);
+      return (List<BigDecimal>) getDecodedValue(columnIndex);
     }
 
     @Override
     @SuppressWarnings("unchecked") // We know ARRAY<STRING> produces a List<String>.
     protected List<String> getStringListInternal(int columnIndex) {
-      return Collections.unmodifiableList((List<String>) rowData.get(columnIndex));
+      return Collections.unmodifiableList((List<String>) getDecodedValue(columnIndex));
     }
 
     @Override
     @SuppressWarnings("unchecked") // We know ARRAY<BYTES> produces a List<ByteArray>.
     protected List<ByteArray> getBytesListInternal(int columnIndex) {
-      return Collections.unmodifiableList((List<ByteArray>) rowData.get(columnIndex));
+      return Collections.unmodifiableList((List<ByteArray>) getDecodedValue(columnIndex));
     }
 
     @Override
     @SuppressWarnings("unchecked") // We know ARRAY<TIMESTAMP> produces a List<Timestamp>.
     protected List<Timestamp> getTimestampListInternal(int columnIndex) {
-      return Collections.unmodifiableList((List<Timestamp>) rowData.get(columnIndex));
+      return Collections.unmodifiableList((List<Timestamp>) getDecodedValue(columnIndex));
     }
 
     @Override
     @SuppressWarnings("unchecked") // We know ARRAY<DATE> produces a List<Date>.
     protected List<Date> getDateListInternal(int columnIndex) {
-      return Collections.unmodifiableList((List<Date>) rowData.get(columnIndex));
+      return Collections.unmodifiableList((List<Date>) getDecodedValue(columnIndex));
     }
 
     @Override
     @SuppressWarnings("unchecked") // We know ARRAY<STRUCT<...>> produces a List<STRUCT>.
     protected List<Struct> getStructListInternal(int columnIndex) {
-      return Collections.unmodifiableList((List<Struct>) rowData.get(columnIndex));
+      return Collections.unmodifiableList((List<Struct>) getDecodedValue(columnIndex));
     }
   }
 
@@ -818,6 +1075,21 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
     void close(@Nullable String message);
 
     boolean isWithBeginTransaction();
+
+    /**
+     * Returns the number of messages that the iterator currently keeps requested from the server,
+     * or 0 if it does not read from a server stream. This method may be called from any thread.
+     */
+    default int getPrefetchChunks() {
+      return 0;
+    }
+
+    /**
+     * Cancels the RPC of the iterator. In contrast to {@link #close(String)}, this method may be
+     * called from any thread while another thread consumes the iterator. The consumer then
+     * receives a {@link ErrorCode#CANCELLED} error instead of the remaining messages.
+     */
+    default void cancel(@Nullable String message) {}
   }
 
   /** Adapts a streaming read/query call into an iterator over partial result sets. */
@@ -828,10 +1100,22 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
     private static final PartialResultSet END_OF_STREAM = PartialResultSet.newBuilder().build();
 
     private final ConsumerImpl consumer = new ConsumerImpl();
-    private final BlockingQueue<PartialResultSet> stream;
+    private final SpscRingBuffer<PartialResultSet> stream;
     private final Statement statement;
+    private final PrefetchWindow prefetchWindow;
+    @Nullable private final ResultMemoryGovernor governor;
+    @Nullable private final ResultMemoryGovernor.Reservation reservation;
+
+    /**
+     * The call of this stream. This is set to null by the thread that consumes the stream when the
+     * stream has ended, and may be read concurrently by {@link #cancel(String)}.
+     */
+    private volatile SpannerRpc.StreamingCall call;
+    /** The number of messages that have been requested from the server and not yet consumed. */
+    private int requestedMessages;
+
+    private boolean firstMessageConsumed;
 
-    private SpannerRpc.StreamingCall call;
     private volatile boolean withBeginTransaction;
     private SpannerException error;
 
@@ -842,9 +1126,33 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
 
     @VisibleForTesting
     GrpcStreamIterator(Statement statement, int prefetchChunks) {
+      this(statement, PrefetchWindow.fixed(prefetchChunks));
+    }
+
+    /**
+     * Creates a stream that keeps at most {@link PrefetchWindow#getSize()} messages requested from
+     * the server. The creator of the stream must request the initial {@link
+     * PrefetchWindow#getSize()} messages from the server.
+     */
+    GrpcStreamIterator(Statement statement, PrefetchWindow prefetchWindow) {
+      this(statement, prefetchWindow, null);
+    }
+
+    /**
+     * Creates a stream that records the size of the messages that it buffers in the given governor,
+     * and that requests at most one message at a time while the governor is exhausted.
+     */
+    GrpcStreamIterator(
+        Statement statement,
+        PrefetchWindow prefetchWindow,
+        @Nullable ResultMemoryGovernor governor) {
       this.statement = statement;
+      this.prefetchWindow = prefetchWindow;
+      this.governor = governor;
+      this.reservation = governor == null ? null : governor.newReservation();
       // One extra to allow for END_OF_STREAM message.
-      this.stream = new LinkedBlockingQueue<>(prefetchChunks + 1);
+      this.stream = new SpscRingBuffer<>(prefetchWindow.getMaxSize() + 1);
+      this.requestedMessages = prefetchWindow.getSize();
     }
 
     protected final SpannerRpc.ResultStreamConsumer consumer() {
@@ -858,9 +1166,13 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
 
     @Override
     public void close(@Nullable String message) {
+      SpannerRpc.StreamingCall call = this.call;
       if (call != null) {
         call.cancel(message);
       }
+      if (reservation != null) {
+        reservation.close();
+      }
     }
 
     @Override
@@ -868,9 +1180,24 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
       return withBeginTransaction;
     }
 
+    @Override
+    public void cancel(@Nullable String message) {
+      SpannerRpc.StreamingCall call = this.call;
+      if (call != null) {
+        call.cancel(message);
+      }
+    }
+
+    @Override
+    public int getPrefetchChunks() {
+      return prefetchWindow.getSize();
+    }
+
     @Override
     protected final PartialResultSet computeNext() {
       PartialResultSet next;
+      // The consumer has to wait for the network if there is nothing buffered.
+      boolean waited = stream.size() == 0;
       try {
         // TODO: Ideally honor io.grpc.Context while blocking here.  In practice,
         //       cancellation/deadline results in an error being delivered to "stream", which
@@ -882,12 +1209,22 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
         throw SpannerExceptionFactory.propagateInterrupt(e);
       }
       if (next != END_OF_STREAM) {
-        call.request(1);
+        if (reservation != null) {
+          reservation.remove(next.getSerializedSize());
+        }
+        requestedMessages--;
+        // Waiting for the first message says nothing about the throughput of the stream.
+        prefetchWindow.onMessageConsumed(waited && firstMessageConsumed, stream.size());
+        firstMessageConsumed = true;
+        requestMessages();
         return next;
       }
 
       // All done - close() no longer needs to cancel the call.
       call = null;
+      if (reservation != null) {
+        reservation.close();
+      }
 
       if (error != null) {
         throw SpannerExceptionFactory.newSpannerException(error);
@@ -897,14 +1234,32 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
       return null;
     }
 
+    /**
+     * Requests the messages that are missing from the prefetch window in one batch, once at least
+     * half of the window is missing, instead of requesting a new message each time a message is
+     * consumed. The window is reduced to a single message while the governor is exhausted, so the
+     * stream only requests a new message when it has consumed all the messages that it requested.
+     */
+    private void requestMessages() {
+      int window = governor != null && governor.isExhausted() ? 1 : prefetchWindow.getSize();
+      int missing = window - requestedMessages;
+      if (missing >= Math.max(1, window / 2)) {
+        call.request(missing);
+        requestedMessages = window;
+      }
+    }
+
     private void addToStream(PartialResultSet results) {
       // We assume that nothing from the user will interrupt gRPC event threads.
-      Uninterruptibles.putUninterruptibly(stream, results);
+      stream.putUninterruptibly(results);
     }
 
     private class ConsumerImpl implements SpannerRpc.ResultStreamConsumer {
       @Override
       public void onPartialResultSet(PartialResultSet results) {
+        if (reservation != null) {
+          reservation.add(results.getSerializedSize());
+        }
         addToStream(results);
       }
 
@@ -942,7 +1297,8 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
    * Wraps an iterator over partial result sets, supporting resuming RPCs on error. This class keeps
    * track of the most recent resume token seen, and will buffer partial result set chunks that do
    * not have a resume token until one is seen or buffer space is exceeded, which reduces the chance
-   * of yielding data to the caller that cannot be resumed.
+   * of yielding data to the caller that cannot be resumed. The buffer space is limited both by the
+   * number of chunks and by the total serialized size of the chunks.
    */
   @VisibleForTesting
   abstract static class ResumableStreamIterator extends AbstractIterator<PartialResultSet>
@@ -953,8 +1309,22 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
     private final BackOff backOff = newBackOff();
     private final LinkedList<PartialResultSet> buffer = new LinkedList<>();
     private final int maxBufferSize;
+    private final long maxBufferBytes;
+    private long bufferedBytes;
+    @Nullable private final ResultMemoryGovernor.Reservation reservation;
     private final Span span;
     private CloseableIterator<PartialResultSet> stream;
+    /**
+     * The most recently started stream. This is not cleared when the stream ends, so the prefetch
+     * window of the read or query can also be inspected between and after the streams.
+     */
+    private volatile CloseableIterator<PartialResultSet> lastStartedStream;
+    /**
+     * The message of the RPC status when the stream has been cancelled with {@link
+     * #cancel(String)}, which may be called from another thread. {@code null} until then.
+     */
+    private volatile String cancelMessage;
+
     private ByteString resumeToken;
     private boolean finished;
     /**
@@ -965,8 +1335,25 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
     private boolean safeToRetry = true;
 
     protected ResumableStreamIterator(int maxBufferSize, String streamName, Span parent) {
+      this(maxBufferSize, Long.MAX_VALUE, streamName, parent);
+    }
+
+    protected ResumableStreamIterator(
+        int maxBufferSize, long maxBufferBytes, String streamName, Span parent) {
+      this(maxBufferSize, maxBufferBytes, null, streamName, parent);
+    }
+
+    protected ResumableStreamIterator(
+        int maxBufferSize,
+        long maxBufferBytes,
+        @Nullable ResultMemoryGovernor governor,
+        String streamName,
+        Span parent) {
       checkArgument(maxBufferSize >= 0);
+      checkArgument(maxBufferBytes >= 0L);
       this.maxBufferSize = maxBufferSize;
+      this.maxBufferBytes = maxBufferBytes;
+      this.reservation = governor == null ? null : governor.newReservation();
       this.span = tracer.spanBuilderWithExplicitParent(streamName, parent).startSpan();
     }
 
@@ -1034,6 +1421,32 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
 
     abstract CloseableIterator<PartialResultSet> startStream(@Nullable ByteString resumeToken);
 
+    private void addToBuffer(PartialResultSet next) {
+      buffer.add(next);
+      bufferedBytes += next.getSerializedSize();
+      if (reservation != null) {
+        reservation.add(next.getSerializedSize());
+      }
+    }
+
+    private PartialResultSet popBuffer() {
+      return removedFromBuffer(buffer.pop());
+    }
+
+    private PartialResultSet removedFromBuffer(PartialResultSet removed) {
+      bufferedBytes -= removed.getSerializedSize();
+      if (reservation != null) {
+        reservation.remove(removed.getSerializedSize());
+      }
+      return removed;
+    }
+
+    /** Returns the total serialized size of the chunks that are currently buffered. */
+    @VisibleForTesting
+    long getBufferedBytes() {
+      return bufferedBytes;
+    }
+
     @Override
     public void close(@Nullable String message) {
       if (stream != null) {
@@ -1041,6 +1454,9 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
         span.end(TraceUtil.END_SPAN_OPTIONS);
         stream = null;
       }
+      if (reservation != null) {
+        reservation.close();
+      }
     }
 
     @Override
@@ -1048,12 +1464,35 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
       return stream != null && stream.isWithBeginTransaction();
     }
 
+    @Override
+    public int getPrefetchChunks() {
+      CloseableIterator<PartialResultSet> current = lastStartedStream;
+      return current == null ? 0 : current.getPrefetchChunks();
+    }
+
+    /**
+     * Cancels the current stream and prevents new streams from being started. A stream that is
+     * started concurrently with this method is cancelled by the consumer right after it has been
+     * started.
+     */
+    @Override
+    public void cancel(@Nullable String message) {
+      cancelMessage = message == null ? "Stream cancelled" : message;
+      CloseableIterator<PartialResultSet> current = lastStartedStream;
+      if (current != null) {
+        current.cancel(message);
+      }
+    }
+
     @Override
     protected PartialResultSet computeNext() {
       Context context = Context.current();
       while (true) {
         // Eagerly start stream before consuming any buffered items.
         if (stream == null) {
+          if (cancelMessage != null) {
+            throw newSpannerException(ErrorCode.CANCELLED, cancelMessage);
+          }
           span.addAnnotation(
               "Starting/Resuming stream",
               ImmutableMap.of(
@@ -1064,12 +1503,16 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
             // When start a new stream set the Span as current to make the gRPC Span a child of
             // this Span.
             stream = checkNotNull(startStream(resumeToken));
+            lastStartedStream = stream;
+          }
+          if (cancelMessage != null) {
+            stream.cancel(cancelMessage);
           }
         }
         // Buffer contains items up to a resume token or has reached capacity: flush.
         if (!buffer.isEmpty()
             && (finished || !safeToRetry || !buffer.getLast().getResumeToken().isEmpty())) {
-          return buffer.pop();
+          return popBuffer();
         }
         try {
           if (stream.hasNext()) {
@@ -1085,10 +1528,15 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
             if ((hasResumeToken || !safeToRetry) && buffer.isEmpty()) {
               return next;
             }
-            buffer.add(next);
-            if (buffer.size() > maxBufferSize && buffer.getLast().getResumeToken().isEmpty()) {
+            addToBuffer(next);
+            if ((buffer.size() > maxBufferSize || bufferedBytes > maxBufferBytes)
+                && buffer.getLast().getResumeToken().isEmpty()) {
               // We need to flush without a restart token.  Errors encountered until we see
               // such a token will fail the read.
+              span.addAnnotation(
+                  String.format(
+                      "Resume buffer full with %d chunks and %d bytes. Not safe to retry",
+                      buffer.size(), bufferedBytes));
               safeToRetry = false;
             }
           } else {
@@ -1105,7 +1553,7 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
             logger.log(Level.FINE, "Retryable exception, will sleep and retry", e);
             // Truncate any items in the buffer before the last retry token.
             while (!buffer.isEmpty() && buffer.getLast().getResumeToken().isEmpty()) {
-              buffer.removeLast();
+              removedFromBuffer(buffer.removeLast());
             }
             assert buffer.isEmpty() || buffer.getLast().getResumeToken().equals(resumeToken);
             stream = null;
@@ -1160,16 +1608,49 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
     return proto.getNumberValue();
   }
 
+  /**
+   * Decodes the base64 encoded {@code BYTES} value in the given proto. The encoded value is read
+   * from the UTF-8 bytes of the proto instead of through {@link
+   * com.google.protobuf.Value#getStringValue()}, so no intermediate {@link String} is created and
+   * cached in the proto. See {@link #decodeBase64(ByteString)}.
+   */
+  static ByteArray valueProtoToBytes(com.google.protobuf.Value proto) {
+    return ByteArray.copyFrom(decodeBase64(proto.getStringValueBytes()));
+  }
+
+  /**
+   * Decodes the given base64 encoded bytes into an array of the exact decoded length. The encoded
+   * bytes are streamed from the {@link ByteString} into the decoder and are not copied.
+   */
+  static byte[] decodeBase64(ByteString encoded) {
+    int length = encoded.size();
+    int padding = 0;
+    while (padding < 2 && length - padding > 0 && encoded.byteAt(length - padding - 1) == '=') {
+      padding++;
+    }
+    byte[] decoded = new byte[(int) ((length - padding) * 3L / 4L)];
+    try (InputStream input = Base64.getDecoder().wrap(encoded.newInput())) {
+      ByteStreams.readFully(input, decoded);
+      if (input.read() != -1) {
+        throw new IllegalArgumentException("Invalid base64 value: trailing data");
+      }
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Invalid base64 value: " + e.getMessage(), e);
+    }
+    return decoded;
+  }
+
   static NullPointerException throwNotNull(int columnIndex) {
     throw new NullPointerException(
         "Cannot call array getter for column " + columnIndex + " with null elements");
   }
 
   /**
-   * Memory-optimized base class for {@code ARRAY<INT64>} and {@code ARRAY<FLOAT64>} types. Both of
-   * these involve conversions from the type yielded by JSON parsing, which are {@code String} and
-   * {@code BigDecimal} respectively. Rather than construct new wrapper objects for each array
-   * element, we use primitive arrays and a {@code BitSet} to track nulls.
+   * Memory-optimized base class for {@code ARRAY<BOOL>}, {@code ARRAY<INT64>} and {@code
+   * ARRAY<FLOAT64>} types. The latter two involve conversions from the type yielded by JSON
+   * parsing, which are {@code String} and {@code BigDecimal} respectively. Rather than construct
+   * new wrapper objects for each array element, we use primitive arrays and a {@code BitSet} to
+   * track nulls.
    */
   abstract static class PrimitiveArray<T, A> extends AbstractList<T> {
     private final A data;
@@ -1226,6 +1707,31 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
     }
   }
 
+  static class BoolArray extends PrimitiveArray<Boolean, boolean[]> {
+    BoolArray(ListValue protoList) {
+      super(protoList);
+    }
+
+    BoolArray(boolean[] data, BitSet nulls) {
+      super(data, nulls, data.length);
+    }
+
+    @Override
+    boolean[] newArray(int size) {
+      return new boolean[size];
+    }
+
+    @Override
+    void setProto(boolean[] array, int i, com.google.protobuf.Value protoValue) {
+      array[i] = protoValue.getBoolValue();
+    }
+
+    @Override
+    Boolean get(boolean[] array, int i) {
+      return array[i];
+    }
+  }
+
   static class Int64Array extends PrimitiveArray<Long, long[]> {
     Int64Array(ListValue protoList) {
       super(protoList);
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import java.util.Objects;
+import javax.annotation.Nullable;
+import org.threeten.bp.Duration;
+import org.threeten.bp.Instant;
+
+/**
+ * {@link SessionPoolSizingPolicy} that forecasts the number of sessions that a pool will need in
+ * the near future and sizes the pool ahead of that demand.
+ *
+ * <p>The policy tracks both the maximum number of concurrently used sessions and the checkout rate
+ * of each maintenance cycle with double exponential smoothing (an exponentially weighted moving
+ * average of the level and of the trend). The forecast for the lookahead window is the highest of:
+ *
+ * <ul>
+ *   <li>the smoothed concurrency, extrapolated with its trend;
+ *   <li>the current concurrency, scaled by the extrapolated growth of the checkout rate;
+ *   <li>if a seasonal period has been set, the smoothed peak concurrency that was observed in the
+ *       same part of previous periods. This allows the pool to grow before a recurring peak, such
+ *       as a burst of traffic at the start of every hour.
+ * </ul>
+ *
+ * <p>The pool is sized at the forecast plus a configurable headroom. When the load decreases, the
+ * forecast and therefore the pool size decrease gradually at the rate of the smoothing factor.
+ */
+public final class AdaptiveSessionPoolSizingPolicy implements SessionPoolSizingPolicy {
+  private static final double DEFAULT_SMOOTHING_FACTOR = 0.3d;
+  private static final double DEFAULT_TREND_SMOOTHING_FACTOR = 0.3d;
+  private static final double DEFAULT_HEADROOM = 0.2d;
+  private static final double SEASONAL_SMOOTHING_FACTOR = 0.5d;
+  private static final Duration DEFAULT_LOOKAHEAD = Duration.ofSeconds(30L);
+  private static final Duration DEFAULT_SEASONAL_SLOT = Duration.ofMinutes(1L);
+
+  private final double smoothingFactor;
+  private final double trendSmoothingFactor;
+  private final double headroom;
+  private final Duration lookahead;
+  @Nullable private final Duration seasonalPeriod;
+  private final Duration seasonalSlot;
+
+  /** Builder for {@link AdaptiveSessionPoolSizingPolicy}. */
+  public static final class Builder {
+    private double smoothingFactor = DEFAULT_SMOOTHING_FACTOR;
+    private double trendSmoothingFactor = DEFAULT_TREND_SMOOTHING_FACTOR;
+    private double headroom = DEFAULT_HEADROOM;
+    private Duration lookahead = DEFAULT_LOOKAHEAD;
+    private Duration seasonalPeriod;
+    private Duration seasonalSlot = DEFAULT_SEASONAL_SLOT;
+
+    private Builder() {}
+
+    /**
+     * The weight (0, 1] of the most recent observation in the smoothed load. Higher values react
+     * faster to changes in load. Defaults to 0.3.
+     */
+    public Builder setSmoothingFactor(double smoothingFactor) {
+      Preconditions.checkArgument(
+          smoothingFactor > 0d && smoothingFactor <= 1d, "smoothingFactor must be in (0, 1]");
+      this.smoothingFactor = smoothingFactor;
+      return this;
+    }
+
+    /**
+     * The weight (0, 1] of the most recent observation in the smoothed trend of the load. Defaults
+     * to 0.3.
+     */
+    public Builder setTrendSmoothingFactor(double trendSmoothingFactor) {
+      Preconditions.checkArgument(
+          trendSmoothingFactor > 0d && trendSmoothingFactor <= 1d,
+          "trendSmoothingFactor must be in (0, 1]");
+      this.trendSmoothingFactor = trendSmoothingFactor;
+      return this;
+    }
+
+    /**
+     * The fraction of extra sessions that the pool should contain on top of the forecasted number
+     * of sessions in use. Defaults to 0.2.
+     */
+    public Builder setHeadroom(double headroom) {
+      Preconditions.checkArgument(headroom >= 0d, "headroom must be >= 0");
+      this.headroom = headroom;
+      return this;
+    }
+
+    /** How far ahead the load should be forecasted. Defaults to 30 seconds. */
+    public Builder setLookahead(Duration lookahead) {
+      Preconditions.checkNotNull(lookahead);
+      Preconditions.checkArgument(!lookahead.isNegative(), "lookahead must be >= 0");
+      this.lookahead = lookahead;
+      return this;
+    }
+
+    /**
+     * Sets the period of a recurring load pattern, for example one hour for traffic that peaks at
+     * the start of every hour. The policy will remember the peak load of each part of the period,
+     * and grow the pool ahead of a recurring peak. The period is divided in slots of one minute by
+     * default. No seasonal pattern is tracked by default.
+     */
+    public Builder setSeasonalPeriod(Duration seasonalPeriod) {
+      Preconditions.checkNotNull(seasonalPeriod);
+      Preconditions.checkArgument(
+          !seasonalPeriod.isNegative() && !seasonalPeriod.isZero(), "seasonalPeriod must be > 0");
+      this.seasonalPeriod = seasonalPeriod;
+      return this;
+    }
+
+    /**
+     * Sets the length of the slots that a seasonal period is divided into. The period must be a
+     * multiple of the slot length. Defaults to one minute.
+     */
+    public Builder setSeasonalSlot(Duration seasonalSlot) {
+      Preconditions.checkNotNull(seasonalSlot);
+      Preconditions.checkArgument(
+          !seasonalSlot.isNegative() && !seasonalSlot.isZero(), "seasonalSlot must be > 0");
+      this.seasonalSlot = seasonalSlot;
+      return this;
+    }
+
+    public AdaptiveSessionPoolSizingPolicy build() {
+      if (seasonalPeriod != null) {
+        Preconditions.checkArgument(
+            seasonalPeriod.toMillis() % seasonalSlot.toMillis() == 0L,
+            "seasonalPeriod must be a multiple of seasonalSlot");
+      }
+      return new AdaptiveSessionPoolSizingPolicy(this);
+    }
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  private AdaptiveSessionPoolSizingPolicy(Builder builder) {
+    this.smoothingFactor = builder.smoothingFactor;
+    this.trendSmoothingFactor = builder.trendSmoothingFactor;
+    this.headroom = builder.headroom;
+    this.lookahead = builder.lookahead;
+    this.seasonalPeriod = builder.seasonalPeriod;
+    this.seasonalSlot = builder.seasonalSlot;
+  }
+
+  @Override
+  public Estimator newEstimator() {
+    return new AdaptiveEstimator();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof AdaptiveSessionPoolSizingPolicy)) {
+      return false;
+    }
+    AdaptiveSessionPoolSizingPolicy other = (AdaptiveSessionPoolSizingPolicy) o;
+    return this.smoothingFactor == other.smoothingFactor
+        && this.trendSmoothingFactor == other.trendSmoothingFactor
+        && this.headroom == other.headroom
+        && Objects.equals(this.lookahead, other.lookahead)
+        && Objects.equals(this.seasonalPeriod, other.seasonalPeriod)
+        && Objects.equals(this.seasonalSlot, other.seasonalSlot);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(
+        smoothingFactor, trendSmoothingFactor, headroom, lookahead, seasonalPeriod, seasonalSlot);
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("smoothingFactor", smoothingFactor)
+        .add("trendSmoothingFactor", trendSmoothingFactor)
+        .add("headroom", headroom)
+        .add("lookahead", lookahead)
+        .add("seasonalPeriod", seasonalPeriod)
+        .add("seasonalSlot", seasonalSlot)
+        .toString();
+  }
+
+  /** Double exponential smoothing of a single signal. */
+  private final class Smoothed {
+    private boolean initialized;
+    private double level;
+    private double trend;
+
+    private void update(double value) {
+      if (!initialized) {
+        level = value;
+        trend = 0d;
+        initialized = true;
+      } else {
+        double previousLevel = level;
+        level = smoothingFactor * value + (1d - smoothingFactor) * (level + trend);
+        trend =
+            trendSmoothingFactor * (level - previousLevel) + (1d - trendSmoothingFactor) * trend;
+      }
+    }
+
+    private double forecast(double steps) {
+      return Math.max(0d, level + steps * trend);
+    }
+  }
+
+  private final class AdaptiveEstimator implements Estimator {
+    private final Smoothed concurrency = new Smoothed();
+    private final Smoothed checkoutRate = new Smoothed();
+    private final double[] seasonalPeaks;
+    private long currentSlot = -1L;
+    private int currentSlotPeak;
+    private Instant lastTime;
+
+    private AdaptiveEstimator() {
+      this.seasonalPeaks =
+          seasonalPeriod == null
+              ? new double[0]
+              : new double[(int) (seasonalPeriod.toMillis() / seasonalSlot.toMillis())];
+    }
+
+    @Override
+    public int estimateSessions(Instant currentTime, long numCheckouts, int maxSessionsInUse) {
+      long intervalMillis =
+          lastTime == null
+              ? 0L
+              : Math.max(0L, currentTime.toEpochMilli() - lastTime.toEpochMilli());
+      lastTime = currentTime;
+
+      concurrency.update(maxSessionsInUse);
+      double forecast = Math.max(maxSessionsInUse, concurrency.level);
+      if (intervalMillis > 0L) {
+        double steps = (double) lookahead.toMillis() / intervalMillis;
+        double rate = numCheckouts * 1000d / intervalMillis;
+        checkoutRate.update(rate);
+        forecast = Math.max(forecast, concurrency.forecast(steps));
+        if (rate > 0d) {
+          // Assume that the number of sessions in use grows proportionally with the checkout rate.
+          forecast = Math.max(forecast, maxSessionsInUse * checkoutRate.forecast(steps) / rate);
+        }
+      }
+      if (seasonalPeaks.length > 0) {
+        forecast = Math.max(forecast, updateAndForecastSeasonalPeak(currentTime, maxSessionsInUse));
+      }
+      return (int) Math.min(Integer.MAX_VALUE, Math.ceil(forecast * (1d + headroom)));
+    }
+
+    private double updateAndForecastSeasonalPeak(Instant currentTime, int maxSessionsInUse) {
+      long slotMillis = seasonalSlot.toMillis();
+      long slot = currentTime.toEpochMilli() / slotMillis;
+      if (slot != currentSlot) {
+        if (currentSlot >= 0L) {
+          // Fold the peak of the slot that just ended into the seasonal peaks. A higher peak
+          // replaces the previous value, a lower peak only gradually lowers it.
+          int index = (int) (currentSlot % seasonalPeaks.length);
+          seasonalPeaks[index] =
+              Math.max(
+                  currentSlotPeak,
+                  SEASONAL_SMOOTHING_FACTOR * currentSlotPeak
+                      + (1d - SEASONAL_SMOOTHING_FACTOR) * seasonalPeaks[index]);
+        }
+        currentSlot = slot;
+        currentSlotPeak = 0;
+      }
+      currentSlotPeak = Math.max(currentSlotPeak, maxSessionsInUse);
+      // Return the highest peak of the upcoming slots that fall within the lookahead window.
+      long lastSlot = (currentTime.toEpochMilli() + lookahead.toMillis()) / slotMillis;
+      double peak = 0d;
+      for (long next = slot + 1L; next <= lastSlot && next - slot <= seasonalPeaks.length; next++) {
+        peak = Math.max(peak, seasonalPeaks[(int) (next % seasonalPeaks.length)]);
+      }
+      return peak;
+    }
+  }
+}
@@ -27,9 +27,13 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningScheduledExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import com.google.spanner.v1.ResultSetStats;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
@@ -71,13 +75,15 @@ class AsyncResultSetImpl extends ForwardingStructReader implements ListenableAsy
   }
 
   static final int DEFAULT_BUFFER_SIZE = 10;
+  static final int DEFAULT_BATCH_SIZE = 1;
   private static final int MAX_WAIT_FOR_BUFFER_CONSUMPTION = 10;
   private static final SpannerException CANCELLED_EXCEPTION =
       SpannerExceptionFactory.newSpannerException(
           ErrorCode.CANCELLED, "This AsyncResultSet has been cancelled");
 
   private final Object monitor = new Object();
-  private boolean closed;
+  /** Only written while holding the monitor. Volatile so that row getters can read it lock-free. */
+  private volatile boolean closed;
 
   /**
    * {@link ExecutorProvider} provides executor services that are used to fetch data from the
@@ -87,7 +93,22 @@ class AsyncResultSetImpl extends ForwardingStructReader implements ListenableAsy
 
   private final ListeningScheduledExecutorService service;
 
-  private final BlockingDeque<Struct> buffer;
+  /** The number of rows that the producer collects before it hands them to the callback. */
+  private final int batchSize;
+
+  /**
+   * Batches of rows that have been produced but not yet taken by the callback. The capacity of the
+   * buffer is the given buffer size divided by the batch size, with a minimum of one batch.
+   */
+  private final BlockingDeque<List<Struct>> buffer;
+
+  /**
+   * The batch that is being consumed by the callback. The batch is only accessed by the callback,
+   * so rows are taken from the batch without any synchronization with the producer.
+   */
+  private List<Struct> currentBatch = ImmutableList.of();
+
+  private int currentBatchIndex;
   private Struct currentRow;
   /** Supplies the underlying synchronous {@link ResultSet} that will be producing the rows. */
   private final Supplier<ResultSet> delegateResultSet;
@@ -112,7 +133,11 @@ class AsyncResultSetImpl extends ForwardingStructReader implements ListenableAsy
    */
   private Collection<Runnable> listeners = new LinkedList<>();
 
-  private State state = State.INITIALIZED;
+  /**
+   * Only written while holding the monitor. Volatile so that {@link #tryNext()} and row getters can
+   * check it lock-free.
+   */
+  private volatile State state = State.INITIALIZED;
 
   /**
    * This variable indicates whether all the results from the underlying result set have been read.
@@ -144,16 +169,35 @@ class AsyncResultSetImpl extends ForwardingStructReader implements ListenableAsy
   private volatile CountDownLatch consumingLatch = new CountDownLatch(0);
 
   AsyncResultSetImpl(ExecutorProvider executorProvider, ResultSet delegate, int bufferSize) {
-    this(executorProvider, Suppliers.ofInstance(Preconditions.checkNotNull(delegate)), bufferSize);
+    this(executorProvider, delegate, bufferSize, DEFAULT_BATCH_SIZE);
+  }
+
+  AsyncResultSetImpl(
+      ExecutorProvider executorProvider, ResultSet delegate, int bufferSize, int batchSize) {
+    this(
+        executorProvider,
+        Suppliers.ofInstance(Preconditions.checkNotNull(delegate)),
+        bufferSize,
+        batchSize);
   }
 
   AsyncResultSetImpl(
       ExecutorProvider executorProvider, Supplier<ResultSet> delegate, int bufferSize) {
+    this(executorProvider, delegate, bufferSize, DEFAULT_BATCH_SIZE);
+  }
+
+  AsyncResultSetImpl(
+      ExecutorProvider executorProvider,
+      Supplier<ResultSet> delegate,
+      int bufferSize,
+      int batchSize) {
     super(delegate);
+    Preconditions.checkArgument(batchSize > 0, "batchSize must be > 0");
     this.executorProvider = Preconditions.checkNotNull(executorProvider);
     this.delegateResultSet = Preconditions.checkNotNull(delegate);
     this.service = MoreExecutors.listeningDecorator(executorProvider.getExecutor());
-    this.buffer = new LinkedBlockingDeque<>(bufferSize);
+    this.batchSize = batchSize;
+    this.buffer = new LinkedBlockingDeque<>(Math.max(1, bufferSize / batchSize));
   }
 
   /**
@@ -199,12 +243,17 @@ class AsyncResultSetImpl extends ForwardingStructReader implements ListenableAsy
    */
   @Override
   public CursorState tryNext() throws SpannerException {
+    if (state == State.CONSUMING && currentBatchIndex < currentBatch.size()) {
+      // The remaining rows of the current batch can be returned without synchronization.
+      replaceDelegate(currentRow = currentBatch.get(currentBatchIndex++));
+      return CursorState.OK;
+    }
     synchronized (monitor) {
       if (state == State.CANCELLED) {
         cursorReturnedDoneOrException = true;
         throw CANCELLED_EXCEPTION;
       }
-      if (buffer.isEmpty() && executionException != null) {
+      if (isBufferEmpty() && executionException != null) {
         cursorReturnedDoneOrException = true;
         throw executionException;
       }
@@ -215,14 +264,16 @@ class AsyncResultSetImpl extends ForwardingStructReader implements ListenableAsy
           "tryNext may only be called from a DataReady callback. Current state: "
               + this.state.name());
 
-      if (finished && buffer.isEmpty()) {
+      if (finished && isBufferEmpty()) {
         cursorReturnedDoneOrException = true;
         return CursorState.DONE;
       }
     }
     if (!buffer.isEmpty()) {
-      // Set the next row from the buffer as the current row of the StructReader.
-      replaceDelegate(currentRow = buffer.pop());
+      // Set the first row of the next batch from the buffer as the current row of the StructReader.
+      currentBatch = buffer.pop();
+      currentBatchIndex = 0;
+      replaceDelegate(currentRow = currentBatch.get(currentBatchIndex++));
       synchronized (monitor) {
         bufferConsumptionLatch.countDown();
       }
@@ -231,6 +282,14 @@ class AsyncResultSetImpl extends ForwardingStructReader implements ListenableAsy
     return CursorState.NOT_READY;
   }
 
+  /**
+   * Returns true if there are no rows left for the callback, neither in the current batch nor in
+   * the buffer. May only be called by the callback.
+   */
+  private boolean isBufferEmpty() {
+    return currentBatchIndex >= currentBatch.size() && buffer.isEmpty();
+  }
+
   private void closeDelegateResultSet() {
     try {
       delegateResultSet.get().close();
@@ -297,7 +356,7 @@ class AsyncResultSetImpl extends ForwardingStructReader implements ListenableAsy
                   pausedLatch = new CountDownLatch(1);
                   return;
                 case CONTINUE:
-                  if (buffer.isEmpty()) {
+                  if (isBufferEmpty()) {
                     // Call the callback once more if the entire result set has been processed but
                     // the callback has not yet received a CursorState.DONE or a CANCELLED error.
                     if (finished && !cursorReturnedDoneOrException) {
@@ -344,33 +403,16 @@ class AsyncResultSetImpl extends ForwardingStructReader implements ListenableAsy
         }
       }
       try {
+        List<Struct> batch = new ArrayList<>(batchSize);
         while (!stop && hasNext) {
           try {
-            synchronized (monitor) {
-              stop = state.shouldStop;
-            }
-            if (!stop) {
-              while (buffer.remainingCapacity() == 0 && !stop) {
-                waitIfPaused();
-                // The buffer is full and we should let the callback consume a number of rows before
-                // we proceed with producing any more rows to prevent us from potentially waiting on
-                // a full buffer repeatedly.
-                // Wait until at least half of the buffer is available, or if it's a bigger buffer,
-                // wait until at least 10 rows can be placed in it.
-                // TODO: Make this more dynamic / configurable?
-                startCallbackWithBufferLatchIfNecessary(
-                    Math.min(
-                        Math.min(buffer.size() / 2 + 1, buffer.size()),
-                        MAX_WAIT_FOR_BUFFER_CONSUMPTION));
-                bufferConsumptionLatch.await();
-                synchronized (monitor) {
-                  stop = state.shouldStop;
-                }
-              }
+            batch.add(delegateResultSet.get().getCurrentRowAsStruct());
+            if (batch.size() == batchSize) {
+              List<Struct> fullBatch = batch;
+              batch = new ArrayList<>(batchSize);
+              stop = !putInBuffer(fullBatch);
             }
             if (!stop) {
-              buffer.put(delegateResultSet.get().getCurrentRowAsStruct());
-              startCallbackIfNecessary();
               hasNext = delegateResultSet.get().next();
             }
           } catch (Throwable e) {
@@ -380,6 +422,19 @@ class AsyncResultSetImpl extends ForwardingStructReader implements ListenableAsy
             }
           }
         }
+        // Hand the last incomplete batch to the callback. This batch also contains the rows that
+        // were read before the underlying result set returned an error.
+        if (!batch.isEmpty()) {
+          try {
+            putInBuffer(batch);
+          } catch (Throwable e) {
+            synchronized (monitor) {
+              if (executionException == null) {
+                executionException = SpannerExceptionFactory.asSpannerException(e);
+              }
+            }
+          }
+        }
         // We don't need any more data from the underlying result set, so we close it as soon as
         // possible. Any error that might occur during this will be ignored.
         closeDelegateResultSet();
@@ -419,6 +474,40 @@ class AsyncResultSetImpl extends ForwardingStructReader implements ListenableAsy
       return null;
     }
 
+    /**
+     * Puts a batch of rows in the buffer, waiting for the callback to consume rows if the buffer is
+     * full. Returns false if the batch was not put in the buffer, because the result set should
+     * stop producing rows.
+     */
+    private boolean putInBuffer(List<Struct> batch) throws InterruptedException {
+      boolean stop;
+      synchronized (monitor) {
+        stop = state.shouldStop;
+      }
+      while (buffer.remainingCapacity() == 0 && !stop) {
+        waitIfPaused();
+        // The buffer is full and we should let the callback consume a number of batches before we
+        // proceed with producing any more rows to prevent us from potentially waiting on a full
+        // buffer repeatedly.
+        // Wait until at least half of the buffer is available, or if it's a bigger buffer, wait
+        // until at least 10 batches can be placed in it.
+        // TODO: Make this more dynamic / configurable?
+        startCallbackWithBufferLatchIfNecessary(
+            Math.min(
+                Math.min(buffer.size() / 2 + 1, buffer.size()), MAX_WAIT_FOR_BUFFER_CONSUMPTION));
+        bufferConsumptionLatch.await();
+        synchronized (monitor) {
+          stop = state.shouldStop;
+        }
+      }
+      if (stop) {
+        return false;
+      }
+      buffer.put(batch);
+      startCallbackIfNecessary();
+      return true;
+    }
+
     private void waitIfPaused() throws InterruptedException {
       CountDownLatch pause;
       synchronized (monitor) {
@@ -456,9 +545,26 @@ class AsyncResultSetImpl extends ForwardingStructReader implements ListenableAsy
       Preconditions.checkState(
           this.state == State.INITIALIZED, "callback may not be set multiple times");
 
-      // Start to fetch data and buffer these.
-      this.result =
-          new ListenableFutureToApiFuture<>(this.service.submit(new ProduceRowsCallable()));
+      // Start to fetch data and buffer these. The producer is only submitted to the executor once
+      // it can start without blocking, so that no executor thread is occupied while waiting for
+      // the underlying result set to become available.
+      ListenableFuture<?> producerReady = producerReady();
+      if (producerReady.isDone()) {
+        this.result =
+            new ListenableFutureToApiFuture<>(this.service.submit(new ProduceRowsCallable()));
+      } else {
+        final SettableFuture<Void> produceRows = SettableFuture.create();
+        producerReady.addListener(
+            () -> {
+              try {
+                produceRows.setFuture(service.submit(new ProduceRowsCallable()));
+              } catch (Throwable t) {
+                produceRows.setException(t);
+              }
+            },
+            MoreExecutors.directExecutor());
+        this.result = new ListenableFutureToApiFuture<>(produceRows);
+      }
       this.executor = MoreExecutors.newSequentialExecutor(Preconditions.checkNotNull(exec));
       this.callback = Preconditions.checkNotNull(cb);
       this.state = State.RUNNING;
@@ -467,6 +573,16 @@ class AsyncResultSetImpl extends ForwardingStructReader implements ListenableAsy
     }
   }
 
+  /**
+   * Returns a future that is done when the underlying {@link ResultSet} can be consumed without
+   * waiting for a resource, such as a session from the session pool. The producer of rows is not
+   * started until this future is done. The future may also fail, in which case the producer is
+   * started and will return the error of the underlying {@link ResultSet}.
+   */
+  ListenableFuture<?> producerReady() {
+    return Futures.immediateFuture(null);
+  }
+
   Future<Void> getResult() {
     return result;
   }
@@ -572,14 +688,22 @@ class AsyncResultSetImpl extends ForwardingStructReader implements ListenableAsy
     return delegateResultSet.get().getStats();
   }
 
+  @Override
+  public int getPrefetchChunks() {
+    return delegateResultSet.get().getPrefetchChunks();
+  }
+
   @Override
   protected void checkValidState() {
-    synchronized (monitor) {
-      Preconditions.checkState(
-          state == State.SYNC || state == State.CONSUMING || state == State.CANCELLED,
-          "only allowed after a next() call or from within a ReadyCallback#cursorReady callback");
-      Preconditions.checkState(state != State.SYNC || !closed, "ResultSet is closed");
-    }
+    // This method is called for every value that is read from a row, and reads the volatile state
+    // once instead of synchronizing on the monitor.
+    State currentState = state;
+    Preconditions.checkState(
+        currentState == State.SYNC
+            || currentState == State.CONSUMING
+            || currentState == State.CANCELLED,
+        "only allowed after a next() call or from within a ReadyCallback#cursorReady callback");
+    Preconditions.checkState(currentState != State.SYNC || !closed, "ResultSet is closed");
   }
 
   @Override
@@ -53,7 +53,9 @@ public class BatchClientImpl implements BatchClient {
             .setDefaultQueryOptions(
                 sessionClient.getSpanner().getDefaultQueryOptions(sessionClient.getDatabaseId()))
             .setExecutorProvider(sessionClient.getSpanner().getAsyncExecutorProvider())
-            .setDefaultPrefetchChunks(sessionClient.getSpanner().getDefaultPrefetchChunks()),
+            .setDefaultPrefetchChunks(sessionClient.getSpanner().getDefaultPrefetchChunks())
+            .setMaxResumeBufferBytes(sessionClient.getSpanner().getDefaultMaxResumeBufferBytes())
+            .setResultMemoryGovernor(sessionClient.getSpanner().getResultMemoryGovernor()),
         checkNotNull(bound));
   }
 
@@ -70,7 +72,9 @@ public class BatchClientImpl implements BatchClient {
             .setDefaultQueryOptions(
                 sessionClient.getSpanner().getDefaultQueryOptions(sessionClient.getDatabaseId()))
             .setExecutorProvider(sessionClient.getSpanner().getAsyncExecutorProvider())
-            .setDefaultPrefetchChunks(sessionClient.getSpanner().getDefaultPrefetchChunks()),
+            .setDefaultPrefetchChunks(sessionClient.getSpanner().getDefaultPrefetchChunks())
+            .setMaxResumeBufferBytes(sessionClient.getSpanner().getDefaultMaxResumeBufferBytes())
+            .setResultMemoryGovernor(sessionClient.getSpanner().getResultMemoryGovernor()),
         batchTransactionId);
   }
 
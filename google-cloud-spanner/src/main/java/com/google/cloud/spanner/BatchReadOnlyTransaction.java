@@ -189,6 +189,8 @@ public interface BatchReadOnlyTransaction extends ReadOnlyTransaction {
    * }</pre>
    *
    * <!--SNIPPET partition_query-->
+   *
+   * <p>Use {@link PartitionExecutor} to execute multiple partitions in parallel.
    */
   ResultSet execute(Partition partition) throws SpannerException;
 
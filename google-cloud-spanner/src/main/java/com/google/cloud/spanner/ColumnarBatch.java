@@ -0,0 +1,791 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import static com.google.cloud.spanner.SpannerExceptionFactory.newSpannerException;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.cloud.ByteArray;
+import com.google.cloud.Date;
+import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.AbstractResultSet.GrpcStruct;
+import com.google.cloud.spanner.Type.Code;
+import com.google.cloud.spanner.Type.StructField;
+import com.google.protobuf.Value.KindCase;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * A batch of rows of a {@link ResultSet} in columnar form. A batch is returned by {@link
+ * ResultSet#nextBatch(int)}, and is intended for consumers that process many rows per column, such
+ * as analytics and export tools.
+ *
+ * <p>The values of {@code BOOL}, {@code INT64}, {@code FLOAT64}, {@code DATE} and {@code
+ * TIMESTAMP} columns are stored in primitive arrays, and the values of {@code STRING} columns are
+ * stored as a dictionary of distinct strings with an index into the dictionary for each row. The
+ * values of {@code BYTES} and {@code NUMERIC} columns are stored in arrays of {@code byte[]} and
+ * {@link BigDecimal}. These values are decoded directly from the values in the result stream. The
+ * values of {@code ARRAY} and {@code STRUCT} columns are stored as {@link Value}s. Each column has
+ * a bitmap of the rows that are {@code NULL}.
+ *
+ * <p>The arrays that are returned by a batch are owned by the batch and are not copied. They must
+ * not be modified by the caller.
+ */
+public final class ColumnarBatch {
+  /** The initial number of rows that is allocated for each column of a batch. */
+  private static final int INITIAL_CAPACITY = 256;
+
+  private final Type type;
+  private final int rowCount;
+  private final Column[] columns;
+
+  private ColumnarBatch(Type type, int rowCount, Column[] columns) {
+    this.type = type;
+    this.rowCount = rowCount;
+    this.columns = columns;
+  }
+
+  /** Returns the type of the rows in this batch. */
+  public Type getType() {
+    return type;
+  }
+
+  /** Returns the number of rows in this batch. */
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  /** Returns the number of columns in this batch. */
+  public int getColumnCount() {
+    return columns.length;
+  }
+
+  /** Returns true if the value of the given column in the given row is {@code NULL}. */
+  public boolean isNull(int columnIndex, int rowIndex) {
+    checkRowIndex(rowIndex);
+    return columns[columnIndex].nulls.get(rowIndex);
+  }
+
+  /** Returns a copy of the bitmap of the rows in which the given column is {@code NULL}. */
+  public BitSet getNulls(int columnIndex) {
+    return (BitSet) columns[columnIndex].nulls.clone();
+  }
+
+  /**
+   * Returns the values of the given {@code BOOL} column. The array contains {@code false} for the
+   * rows in which the column is {@code NULL}.
+   */
+  public boolean[] getBooleanColumn(int columnIndex) {
+    return ((BoolColumn) checkColumnType(columnIndex, Code.BOOL)).values;
+  }
+
+  /**
+   * Returns the values of the given {@code INT64} column. The array contains {@code 0} for the rows
+   * in which the column is {@code NULL}.
+   */
+  public long[] getLongColumn(int columnIndex) {
+    return ((Int64Column) checkColumnType(columnIndex, Code.INT64)).values;
+  }
+
+  /**
+   * Returns the values of the given {@code FLOAT64} column. The array contains {@code 0.0} for the
+   * rows in which the column is {@code NULL}.
+   */
+  public double[] getDoubleColumn(int columnIndex) {
+    return ((Float64Column) checkColumnType(columnIndex, Code.FLOAT64)).values;
+  }
+
+  /**
+   * Returns the distinct values of the given {@code STRING} column in the order in which they were
+   * first encountered in the batch.
+   *
+   * @see #getStringIndices(int)
+   */
+  public List<String> getStringDictionary(int columnIndex) {
+    return Collections.unmodifiableList(
+        ((StringColumn) checkColumnType(columnIndex, Code.STRING)).dictionary);
+  }
+
+  /**
+   * Returns for each row the index of the value of the given {@code STRING} column in {@link
+   * #getStringDictionary(int)}. The array contains {@code -1} for the rows in which the column is
+   * {@code NULL}.
+   */
+  public int[] getStringIndices(int columnIndex) {
+    return ((StringColumn) checkColumnType(columnIndex, Code.STRING)).indices;
+  }
+
+  /**
+   * Returns the decoded values of the given {@code BYTES} column. The array contains {@code null}
+   * for the rows in which the column is {@code NULL}.
+   */
+  public byte[][] getBytesColumn(int columnIndex) {
+    return ((BytesColumn) checkColumnType(columnIndex, Code.BYTES)).values;
+  }
+
+  /**
+   * Returns the values of the given {@code NUMERIC} column. The array contains {@code null} for the
+   * rows in which the column is {@code NULL}.
+   */
+  public BigDecimal[] getNumericColumn(int columnIndex) {
+    return ((NumericColumn) checkColumnType(columnIndex, Code.NUMERIC)).values;
+  }
+
+  /**
+   * Returns the values of the given {@code DATE} column as the number of days since 1970-01-01. The
+   * array contains {@code 0} for the rows in which the column is {@code NULL}.
+   */
+  public int[] getDateColumn(int columnIndex) {
+    return ((DateColumn) checkColumnType(columnIndex, Code.DATE)).values;
+  }
+
+  /**
+   * Returns the seconds since the epoch of the values of the given {@code TIMESTAMP} column. The
+   * array contains {@code 0} for the rows in which the column is {@code NULL}.
+   *
+   * @see #getTimestampNanosColumn(int)
+   */
+  public long[] getTimestampSecondsColumn(int columnIndex) {
+    return ((TimestampColumn) checkColumnType(columnIndex, Code.TIMESTAMP)).seconds;
+  }
+
+  /**
+   * Returns the fractions of a second in nanoseconds of the values of the given {@code TIMESTAMP}
+   * column. The array contains {@code 0} for the rows in which the column is {@code NULL}.
+   *
+   * @see #getTimestampSecondsColumn(int)
+   */
+  public int[] getTimestampNanosColumn(int columnIndex) {
+    return ((TimestampColumn) checkColumnType(columnIndex, Code.TIMESTAMP)).nanos;
+  }
+
+  /**
+   * Returns the value of the given {@code STRING} column in the given row, or {@code null} if the
+   * value is {@code NULL}.
+   */
+  @Nullable
+  public String getString(int columnIndex, int rowIndex) {
+    checkRowIndex(rowIndex);
+    StringColumn column = (StringColumn) checkColumnType(columnIndex, Code.STRING);
+    int index = column.indices[rowIndex];
+    return index < 0 ? null : column.dictionary.get(index);
+  }
+
+  /**
+   * Returns the value of the given column in the given row as a {@link Value}. This method can be
+   * used for columns of any type, but will box the values of primitive columns.
+   */
+  public Value getValue(int columnIndex, int rowIndex) {
+    checkRowIndex(rowIndex);
+    return columns[columnIndex].getValue(rowIndex);
+  }
+
+  @Override
+  public String toString() {
+    return "ColumnarBatch{type=" + type + ", rowCount=" + rowCount + "}";
+  }
+
+  private void checkRowIndex(int rowIndex) {
+    if (rowIndex < 0 || rowIndex >= rowCount) {
+      throw new IndexOutOfBoundsException("Row index " + rowIndex + ", row count " + rowCount);
+    }
+  }
+
+  private Column checkColumnType(int columnIndex, Code code) {
+    Type columnType = type.getStructFields().get(columnIndex).getType();
+    checkState(
+        columnType.getCode() == code,
+        "Column %s is not of type %s, but of type %s",
+        columnIndex,
+        code,
+        columnType);
+    return columns[columnIndex];
+  }
+
+  /**
+   * Reads at most {@code maxRows} rows from the given {@link ResultSet} into a batch by iterating
+   * over the rows of the result set. This is the implementation of {@link ResultSet#nextBatch(int)}
+   * for result sets that do not have direct access to the encoded values of the rows.
+   */
+  static ColumnarBatch readFrom(ResultSet resultSet, int maxRows) {
+    checkArgument(maxRows > 0, "maxRows must be > 0");
+    if (!resultSet.next()) {
+      return new Builder(resultSet.getType(), 0).build();
+    }
+    Builder builder = new Builder(resultSet.getType(), maxRows);
+    do {
+      builder.appendRow(resultSet);
+    } while (builder.getRowCount() < maxRows && resultSet.next());
+    return builder.build();
+  }
+
+  /** Builder for a {@link ColumnarBatch} that appends one row at a time. */
+  static final class Builder {
+    private final Type type;
+    private final Column[] columns;
+    private int rowCount;
+
+    Builder(Type type, int maxRows) {
+      this.type = type;
+      List<StructField> fields = type.getStructFields();
+      int capacity = Math.min(maxRows, INITIAL_CAPACITY);
+      this.columns = new Column[fields.size()];
+      for (int i = 0; i < columns.length; i++) {
+        columns[i] = newColumn(fields.get(i).getType(), capacity);
+      }
+    }
+
+    int getRowCount() {
+      return rowCount;
+    }
+
+    /**
+     * Decodes the next row from the given stream of values and appends it to the batch. Returns
+     * false if the stream contains no more rows.
+     */
+    boolean appendRow(Iterator<com.google.protobuf.Value> values) {
+      if (!values.hasNext()) {
+        return false;
+      }
+      for (Column column : columns) {
+        if (!values.hasNext()) {
+          throw newSpannerException(
+              ErrorCode.INTERNAL,
+              "Invalid value stream: end of stream reached before row is complete");
+        }
+        com.google.protobuf.Value value = values.next();
+        if (value.getKindCase() == KindCase.NULL_VALUE) {
+          column.appendNull(rowCount);
+        } else {
+          column.appendValue(rowCount, value);
+        }
+      }
+      rowCount++;
+      return true;
+    }
+
+    /** Appends the row that the given {@link StructReader} is positioned on to the batch. */
+    void appendRow(StructReader row) {
+      for (int i = 0; i < columns.length; i++) {
+        if (row.isNull(i)) {
+          columns[i].appendNull(rowCount);
+        } else {
+          columns[i].appendValue(rowCount, row, i);
+        }
+      }
+      rowCount++;
+    }
+
+    ColumnarBatch build() {
+      for (Column column : columns) {
+        column.trim(rowCount);
+      }
+      return new ColumnarBatch(type, rowCount, columns);
+    }
+  }
+
+  private static Column newColumn(Type type, int capacity) {
+    switch (type.getCode()) {
+      case BOOL:
+        return new BoolColumn(type, capacity);
+      case INT64:
+        return new Int64Column(type, capacity);
+      case FLOAT64:
+        return new Float64Column(type, capacity);
+      case STRING:
+        return new StringColumn(type, capacity);
+      case BYTES:
+        return new BytesColumn(type, capacity);
+      case NUMERIC:
+        return new NumericColumn(type, capacity);
+      case DATE:
+        return new DateColumn(type, capacity);
+      case TIMESTAMP:
+        return new TimestampColumn(type, capacity);
+      default:
+        return new ValueColumn(type, capacity);
+    }
+  }
+
+  /** The values of one column of a batch. */
+  private abstract static class Column {
+    final Type type;
+    final BitSet nulls = new BitSet();
+    int capacity;
+
+    Column(Type type, int capacity) {
+      this.type = type;
+      this.capacity = capacity;
+    }
+
+    final void appendNull(int rowIndex) {
+      ensureCapacity(rowIndex);
+      nulls.set(rowIndex);
+      setNull(rowIndex);
+    }
+
+    final void appendValue(int rowIndex, com.google.protobuf.Value proto) {
+      ensureCapacity(rowIndex);
+      set(rowIndex, proto);
+    }
+
+    final void appendValue(int rowIndex, StructReader row, int columnIndex) {
+      ensureCapacity(rowIndex);
+      set(rowIndex, row, columnIndex);
+    }
+
+    private void ensureCapacity(int rowIndex) {
+      if (rowIndex >= capacity) {
+        capacity = Math.max(capacity * 2, rowIndex + 1);
+        resize(capacity);
+      }
+    }
+
+    final void trim(int rowCount) {
+      if (rowCount != capacity) {
+        capacity = rowCount;
+        resize(rowCount);
+      }
+    }
+
+    /** Resizes the value array of the column to the given number of rows. */
+    abstract void resize(int size);
+
+    /** Sets the value of the given row to the default value of the column. */
+    void setNull(int rowIndex) {}
+
+    /** Decodes the given non-null value and sets it as the value of the given row. */
+    abstract void set(int rowIndex, com.google.protobuf.Value proto);
+
+    /** Sets the non-null value of the given column of a row as the value of the given row. */
+    abstract void set(int rowIndex, StructReader row, int columnIndex);
+
+    abstract Value getValue(int rowIndex);
+  }
+
+  private static final class BoolColumn extends Column {
+    boolean[] values;
+
+    BoolColumn(Type type, int capacity) {
+      super(type, capacity);
+      this.values = new boolean[capacity];
+    }
+
+    @Override
+    void resize(int size) {
+      values = Arrays.copyOf(values, size);
+    }
+
+    @Override
+    void set(int rowIndex, com.google.protobuf.Value proto) {
+      values[rowIndex] = GrpcStruct.decodePrimitiveValue(type, proto) != 0L;
+    }
+
+    @Override
+    void set(int rowIndex, StructReader row, int columnIndex) {
+      values[rowIndex] = row.getBoolean(columnIndex);
+    }
+
+    @Override
+    Value getValue(int rowIndex) {
+      return Value.bool(nulls.get(rowIndex) ? null : values[rowIndex]);
+    }
+  }
+
+  private static final class Int64Column extends Column {
+    long[] values;
+
+    Int64Column(Type type, int capacity) {
+      super(type, capacity);
+      this.values = new long[capacity];
+    }
+
+    @Override
+    void resize(int size) {
+      values = Arrays.copyOf(values, size);
+    }
+
+    @Override
+    void set(int rowIndex, com.google.protobuf.Value proto) {
+      values[rowIndex] = GrpcStruct.decodePrimitiveValue(type, proto);
+    }
+
+    @Override
+    void set(int rowIndex, StructReader row, int columnIndex) {
+      values[rowIndex] = row.getLong(columnIndex);
+    }
+
+    @Override
+    Value getValue(int rowIndex) {
+      return Value.int64(nulls.get(rowIndex) ? null : values[rowIndex]);
+    }
+  }
+
+  private static final class Float64Column extends Column {
+    double[] values;
+
+    Float64Column(Type type, int capacity) {
+      super(type, capacity);
+      this.values = new double[capacity];
+    }
+
+    @Override
+    void resize(int size) {
+      values = Arrays.copyOf(values, size);
+    }
+
+    @Override
+    void set(int rowIndex, com.google.protobuf.Value proto) {
+      values[rowIndex] = Double.longBitsToDouble(GrpcStruct.decodePrimitiveValue(type, proto));
+    }
+
+    @Override
+    void set(int rowIndex, StructReader row, int columnIndex) {
+      values[rowIndex] = row.getDouble(columnIndex);
+    }
+
+    @Override
+    Value getValue(int rowIndex) {
+      return Value.float64(nulls.get(rowIndex) ? null : values[rowIndex]);
+    }
+  }
+
+  /**
+   * {@code STRING} column that stores each distinct value only once. The strings are taken as-is
+   * from the protobuf values and are not copied.
+   */
+  private static final class StringColumn extends Column {
+    int[] indices;
+    final List<String> dictionary = new ArrayList<>();
+    final Map<String, Integer> dictionaryIndices = new HashMap<>();
+
+    StringColumn(Type type, int capacity) {
+      super(type, capacity);
+      this.indices = new int[capacity];
+    }
+
+    @Override
+    void resize(int size) {
+      indices = Arrays.copyOf(indices, size);
+    }
+
+    @Override
+    void setNull(int rowIndex) {
+      indices[rowIndex] = -1;
+    }
+
+    @Override
+    void set(int rowIndex, com.google.protobuf.Value proto) {
+      set(rowIndex, (String) GrpcStruct.decodeValue(type, proto));
+    }
+
+    @Override
+    void set(int rowIndex, StructReader row, int columnIndex) {
+      set(rowIndex, row.getString(columnIndex));
+    }
+
+    private void set(int rowIndex, String value) {
+      Integer index = dictionaryIndices.get(value);
+      if (index == null) {
+        index = dictionary.size();
+        dictionary.add(value);
+        dictionaryIndices.put(value, index);
+      }
+      indices[rowIndex] = index;
+    }
+
+    @Override
+    Value getValue(int rowIndex) {
+      int index = indices[rowIndex];
+      return Value.string(index < 0 ? null : dictionary.get(index));
+    }
+  }
+
+  /** {@code BYTES} column that decodes the base64 encoded values directly from the protobuf. */
+  private static final class BytesColumn extends Column {
+    byte[][] values;
+
+    BytesColumn(Type type, int capacity) {
+      super(type, capacity);
+      this.values = new byte[capacity][];
+    }
+
+    @Override
+    void resize(int size) {
+      values = Arrays.copyOf(values, size);
+    }
+
+    @Override
+    void set(int rowIndex, com.google.protobuf.Value proto) {
+      GrpcStruct.checkType(type, proto, KindCase.STRING_VALUE);
+      values[rowIndex] = AbstractResultSet.decodeBase64(proto.getStringValueBytes());
+    }
+
+    @Override
+    void set(int rowIndex, StructReader row, int columnIndex) {
+      values[rowIndex] = row.getBytes(columnIndex).toByteArray();
+    }
+
+    @Override
+    Value getValue(int rowIndex) {
+      byte[] value = values[rowIndex];
+      return Value.bytes(value == null ? null : ByteArray.copyFrom(value));
+    }
+  }
+
+  private static final class NumericColumn extends Column {
+    BigDecimal[] values;
+
+    NumericColumn(Type type, int capacity) {
+      super(type, capacity);
+      this.values = new BigDecimal[capacity];
+    }
+
+    @Override
+    void resize(int size) {
+      values = Arrays.copyOf(values, size);
+    }
+
+    @Override
+    void set(int rowIndex, com.google.protobuf.Value proto) {
+      GrpcStruct.checkType(type, proto, KindCase.STRING_VALUE);
+      values[rowIndex] = new BigDecimal(proto.getStringValue());
+    }
+
+    @Override
+    void set(int rowIndex, StructReader row, int columnIndex) {
+      values[rowIndex] = row.getBigDecimal(columnIndex);
+    }
+
+    @Override
+    Value getValue(int rowIndex) {
+      return Value.numeric(values[rowIndex]);
+    }
+  }
+
+  /** {@code DATE} column that parses the values directly into the number of days since epoch. */
+  private static final class DateColumn extends Column {
+    int[] values;
+
+    DateColumn(Type type, int capacity) {
+      super(type, capacity);
+      this.values = new int[capacity];
+    }
+
+    @Override
+    void resize(int size) {
+      values = Arrays.copyOf(values, size);
+    }
+
+    @Override
+    void set(int rowIndex, com.google.protobuf.Value proto) {
+      GrpcStruct.checkType(type, proto, KindCase.STRING_VALUE);
+      String value = proto.getStringValue();
+      values[rowIndex] = isDate(value, 0) ? epochDay(value, 0) : toEpochDay(Date.parseDate(value));
+    }
+
+    @Override
+    void set(int rowIndex, StructReader row, int columnIndex) {
+      values[rowIndex] = toEpochDay(row.getDate(columnIndex));
+    }
+
+    @Override
+    Value getValue(int rowIndex) {
+      if (nulls.get(rowIndex)) {
+        return Value.date(null);
+      }
+      LocalDate date = LocalDate.ofEpochDay(values[rowIndex]);
+      return Value.date(
+          Date.fromYearMonthDay(date.getYear(), date.getMonthValue(), date.getDayOfMonth()));
+    }
+  }
+
+  /**
+   * {@code TIMESTAMP} column that parses the values directly into seconds and nanos. Values that
+   * are not in the {@code yyyy-MM-ddTHH:mm:ss[.fffffffff]Z} format that Cloud Spanner returns are
+   * parsed with {@link Timestamp#parseTimestamp(String)}.
+   */
+  private static final class TimestampColumn extends Column {
+    long[] seconds;
+    int[] nanos;
+
+    TimestampColumn(Type type, int capacity) {
+      super(type, capacity);
+      this.seconds = new long[capacity];
+      this.nanos = new int[capacity];
+    }
+
+    @Override
+    void resize(int size) {
+      seconds = Arrays.copyOf(seconds, size);
+      nanos = Arrays.copyOf(nanos, size);
+    }
+
+    @Override
+    void set(int rowIndex, com.google.protobuf.Value proto) {
+      GrpcStruct.checkType(type, proto, KindCase.STRING_VALUE);
+      String value = proto.getStringValue();
+      if (!parseTimestamp(rowIndex, value)) {
+        set(rowIndex, Timestamp.parseTimestamp(value));
+      }
+    }
+
+    @Override
+    void set(int rowIndex, StructReader row, int columnIndex) {
+      set(rowIndex, row.getTimestamp(columnIndex));
+    }
+
+    private void set(int rowIndex, Timestamp timestamp) {
+      seconds[rowIndex] = timestamp.getSeconds();
+      nanos[rowIndex] = timestamp.getNanos();
+    }
+
+    /** Parses a timestamp in the format that Cloud Spanner returns. Returns false otherwise. */
+    private boolean parseTimestamp(int rowIndex, String value) {
+      int length = value.length();
+      if (length < 20
+          || !isDate(value, 0)
+          || value.charAt(10) != 'T'
+          || value.charAt(13) != ':'
+          || value.charAt(16) != ':'
+          || value.charAt(length - 1) != 'Z'
+          || !isDigits(value, 11, 13)
+          || !isDigits(value, 14, 16)
+          || !isDigits(value, 17, 19)) {
+        return false;
+      }
+      int fraction = 0;
+      if (length > 20) {
+        int digits = length - 21;
+        if (value.charAt(19) != '.'
+            || digits < 1
+            || digits > 9
+            || !isDigits(value, 20, 20 + digits)) {
+          return false;
+        }
+        fraction = parseDigits(value, 20, 20 + digits);
+        for (int i = digits; i < 9; i++) {
+          fraction *= 10;
+        }
+      }
+      int hour = parseDigits(value, 11, 13);
+      int minute = parseDigits(value, 14, 16);
+      int second = parseDigits(value, 17, 19);
+      if (hour > 23 || minute > 59 || second > 59) {
+        return false;
+      }
+      seconds[rowIndex] = epochDay(value, 0) * 86_400L + hour * 3_600L + minute * 60L + second;
+      nanos[rowIndex] = fraction;
+      return true;
+    }
+
+    @Override
+    Value getValue(int rowIndex) {
+      return Value.timestamp(
+          nulls.get(rowIndex)
+              ? null
+              : Timestamp.ofTimeSecondsAndNanos(seconds[rowIndex], nanos[rowIndex]));
+    }
+  }
+
+  /** Returns true if the value contains a date in the format {@code yyyy-MM-dd} at the offset. */
+  private static boolean isDate(String value, int offset) {
+    return value.length() >= offset + 10
+        && value.charAt(offset + 4) == '-'
+        && value.charAt(offset + 7) == '-'
+        && isDigits(value, offset, offset + 4)
+        && isDigits(value, offset + 5, offset + 7)
+        && isDigits(value, offset + 8, offset + 10);
+  }
+
+  /** Returns the epoch day of the date in the format {@code yyyy-MM-dd} at the given offset. */
+  private static int epochDay(String value, int offset) {
+    return (int)
+        LocalDate.of(
+                parseDigits(value, offset, offset + 4),
+                parseDigits(value, offset + 5, offset + 7),
+                parseDigits(value, offset + 8, offset + 10))
+            .toEpochDay();
+  }
+
+  private static int toEpochDay(Date date) {
+    return (int) LocalDate.of(date.getYear(), date.getMonth(), date.getDayOfMonth()).toEpochDay();
+  }
+
+  private static boolean isDigits(String value, int start, int end) {
+    for (int i = start; i < end; i++) {
+      char c = value.charAt(i);
+      if (c < '0' || c > '9') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int parseDigits(String value, int start, int end) {
+    int result = 0;
+    for (int i = start; i < end; i++) {
+      result = result * 10 + (value.charAt(i) - '0');
+    }
+    return result;
+  }
+
+  /** Column of any other type that stores the values as {@link Value}s. */
+  private static final class ValueColumn extends Column {
+    Value[] values;
+
+    ValueColumn(Type type, int capacity) {
+      super(type, capacity);
+      this.values = new Value[capacity];
+    }
+
+    @Override
+    void resize(int size) {
+      values = Arrays.copyOf(values, size);
+    }
+
+    @Override
+    void setNull(int rowIndex) {
+      values[rowIndex] = GrpcStruct.toValue(type, null);
+    }
+
+    @Override
+    void set(int rowIndex, com.google.protobuf.Value proto) {
+      values[rowIndex] = GrpcStruct.toValue(type, GrpcStruct.decodeValue(type, proto));
+    }
+
+    @Override
+    void set(int rowIndex, StructReader row, int columnIndex) {
+      values[rowIndex] = row.getValue(columnIndex);
+    }
+
+    @Override
+    Value getValue(int rowIndex) {
+      return values[rowIndex];
+    }
+  }
+}
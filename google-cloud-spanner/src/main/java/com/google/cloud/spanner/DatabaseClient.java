@@ -16,6 +16,7 @@
 
 package com.google.cloud.spanner;
 
+import com.google.api.core.ApiFuture;
 import com.google.cloud.Timestamp;
 import com.google.cloud.spanner.Options.RpcPriority;
 import com.google.cloud.spanner.Options.TransactionOption;
@@ -528,4 +529,37 @@ public interface DatabaseClient {
    * idempotent, such as deleting old rows from a very large table.
    */
   long executePartitionedUpdate(Statement stmt, UpdateOption... options);
+
+  /**
+   * Returns a future that is done when the session pool of this client has been warmed up. The pool
+   * is warm when it contains at least {@link SessionPoolOptions#getMinSessions()} sessions and at
+   * least one session has been created on each gRPC channel of the client. Sessions that are still
+   * missing are created in parallel on all channels. The future fails if the sessions cannot be
+   * created, for example because the database does not exist.
+   *
+   * <p>The pool is initialized in the background when a {@link DatabaseClient} is created. This
+   * method can be used to prevent an application from accepting traffic before the pool is ready,
+   * for example in a readiness check:
+   *
+   * <pre>{@code
+   * DatabaseClient client = spanner.getDatabaseClient(DatabaseId.of("my_project", "my_instance", "my_database"));
+   * client.warmUpAsync().get(60L, TimeUnit.SECONDS);
+   * }</pre>
+   */
+  default ApiFuture<Void> warmUpAsync() {
+    throw new UnsupportedOperationException("Unimplemented");
+  }
+
+  /**
+   * Returns a future that is done when the session pool of this client contains at least the given
+   * number of sessions and at least one session has been created on each gRPC channel of the
+   * client. The number of sessions is capped by {@link SessionPoolOptions#getMaxSessions()}. The
+   * pool creates any missing sessions in parallel on all channels. These sessions are kept in the
+   * pool even if the number is larger than {@link SessionPoolOptions#getMinSessions()}.
+   *
+   * @see #warmUpAsync()
+   */
+  default ApiFuture<Void> warmUpAsync(int numSessions) {
+    throw new UnsupportedOperationException("Unimplemented");
+  }
 }
@@ -16,6 +16,7 @@
 
 package com.google.cloud.spanner;
 
+import com.google.api.core.ApiFuture;
 import com.google.cloud.Timestamp;
 import com.google.cloud.spanner.Options.TransactionOption;
 import com.google.cloud.spanner.Options.UpdateOption;
@@ -53,6 +54,10 @@ class DatabaseClientImpl implements DatabaseClient {
     return pool.getSession();
   }
 
+  private PooledSessionFuture getSession(Options options) {
+    return pool.getSession(options.rpcPriority());
+  }
+
   @Override
   public Timestamp write(final Iterable<Mutation> mutations) throws SpannerException {
     return writeWithOptions(mutations).getCommitTimestamp();
@@ -64,7 +69,9 @@ class DatabaseClientImpl implements DatabaseClient {
       throws SpannerException {
     Span span = tracer.spanBuilder(READ_WRITE_TRANSACTION).startSpan();
     try (Scope s = tracer.withSpan(span)) {
-      return runWithSessionRetry(session -> session.writeWithOptions(mutations, options));
+      return runWithSessionRetry(
+          Options.fromTransactionOptions(options),
+          session -> session.writeWithOptions(mutations, options));
     } catch (RuntimeException e) {
       TraceUtil.setWithFailure(span, e);
       throw e;
@@ -85,6 +92,7 @@ class DatabaseClientImpl implements DatabaseClient {
     Span span = tracer.spanBuilder(READ_WRITE_TRANSACTION).startSpan();
     try (Scope s = tracer.withSpan(span)) {
       return runWithSessionRetry(
+          Options.fromTransactionOptions(options),
           session -> session.writeAtLeastOnceWithOptions(mutations, options));
     } catch (RuntimeException e) {
       TraceUtil.setWithFailure(span, e);
@@ -164,7 +172,7 @@ class DatabaseClientImpl implements DatabaseClient {
   public TransactionRunner readWriteTransaction(TransactionOption... options) {
     Span span = tracer.spanBuilder(READ_WRITE_TRANSACTION).startSpan();
     try (Scope s = tracer.withSpan(span)) {
-      return getSession().readWriteTransaction(options);
+      return getSession(Options.fromTransactionOptions(options)).readWriteTransaction(options);
     } catch (RuntimeException e) {
       TraceUtil.endSpanWithFailure(span, e);
       throw e;
@@ -177,7 +185,7 @@ class DatabaseClientImpl implements DatabaseClient {
   public TransactionManager transactionManager(TransactionOption... options) {
     Span span = tracer.spanBuilder(READ_WRITE_TRANSACTION).startSpan();
     try (Scope s = tracer.withSpan(span)) {
-      return getSession().transactionManager(options);
+      return getSession(Options.fromTransactionOptions(options)).transactionManager(options);
     } catch (RuntimeException e) {
       TraceUtil.endSpanWithFailure(span, e);
       throw e;
@@ -188,7 +196,7 @@ class DatabaseClientImpl implements DatabaseClient {
   public AsyncRunner runAsync(TransactionOption... options) {
     Span span = tracer.spanBuilder(READ_WRITE_TRANSACTION).startSpan();
     try (Scope s = tracer.withSpan(span)) {
-      return getSession().runAsync(options);
+      return getSession(Options.fromTransactionOptions(options)).runAsync(options);
     } catch (RuntimeException e) {
       TraceUtil.endSpanWithFailure(span, e);
       throw e;
@@ -199,7 +207,7 @@ class DatabaseClientImpl implements DatabaseClient {
   public AsyncTransactionManager transactionManagerAsync(TransactionOption... options) {
     Span span = tracer.spanBuilder(READ_WRITE_TRANSACTION).startSpan();
     try (Scope s = tracer.withSpan(span)) {
-      return getSession().transactionManagerAsync(options);
+      return getSession(Options.fromTransactionOptions(options)).transactionManagerAsync(options);
     } catch (RuntimeException e) {
       TraceUtil.endSpanWithFailure(span, e);
       throw e;
@@ -210,15 +218,27 @@ class DatabaseClientImpl implements DatabaseClient {
   public long executePartitionedUpdate(final Statement stmt, final UpdateOption... options) {
     Span span = tracer.spanBuilder(PARTITION_DML_TRANSACTION).startSpan();
     try (Scope s = tracer.withSpan(span)) {
-      return runWithSessionRetry(session -> session.executePartitionedUpdate(stmt, options));
+      return runWithSessionRetry(
+          Options.fromUpdateOptions(options),
+          session -> session.executePartitionedUpdate(stmt, options));
     } catch (RuntimeException e) {
       TraceUtil.endSpanWithFailure(span, e);
       throw e;
     }
   }
 
-  private <T> T runWithSessionRetry(Function<Session, T> callable) {
-    PooledSessionFuture session = getSession();
+  @Override
+  public ApiFuture<Void> warmUpAsync() {
+    return pool.warmUpAsync(pool.getOptions().getMinSessions());
+  }
+
+  @Override
+  public ApiFuture<Void> warmUpAsync(int numSessions) {
+    return pool.warmUpAsync(numSessions);
+  }
+
+  private <T> T runWithSessionRetry(Options options, Function<Session, T> callable) {
+    PooledSessionFuture session = getSession(options);
     while (true) {
       try {
         return callable.apply(session);
@@ -54,6 +54,11 @@ public class ForwardingResultSet extends ForwardingStructReader implements Resul
     return delegate.get().next();
   }
 
+  @Override
+  public ColumnarBatch nextBatch(int maxRows) throws SpannerException {
+    return delegate.get().nextBatch(maxRows);
+  }
+
   @Override
   public Struct getCurrentRowAsStruct() {
     return delegate.get().getCurrentRowAsStruct();
@@ -72,6 +77,11 @@ public class ForwardingResultSet extends ForwardingStructReader implements Resul
     rs.close();
   }
 
+  @Override
+  public int getPrefetchChunks() {
+    return delegate.get().getPrefetchChunks();
+  }
+
   @Override
   public ResultSetStats getStats() {
     return delegate.get().getStats();
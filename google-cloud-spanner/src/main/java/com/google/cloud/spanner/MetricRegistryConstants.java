@@ -31,6 +31,8 @@ class MetricRegistryConstants {
   private static final LabelKey LIBRARY_VERSION =
       LabelKey.create("library_version", "Library version");
   private static final LabelKey SESSION_TYPE = LabelKey.create("Type", "Type of the Sessions");
+  private static final LabelKey CHANNEL_ID = LabelKey.create("channel_id", "Index of the channel");
+  private static final LabelKey PRIORITY = LabelKey.create("priority", "Priority of the request");
 
   /** The label value is used to represent missing value. */
   private static final LabelValue UNSET_LABEL = LabelValue.create(null);
@@ -47,6 +49,15 @@ class MetricRegistryConstants {
 
   static final LabelValue NUM_READ_SESSIONS = LabelValue.create("num_read_sessions");
 
+  static final LabelValue MEDIAN_SESSION_LATENCY = LabelValue.create("median_session_latency");
+  static final LabelValue MAX_SESSION_LATENCY = LabelValue.create("max_session_latency");
+
+  static final LabelValue TOTAL_ALLOCATED_SESSIONS = LabelValue.create("total_allocated_sessions");
+  static final LabelValue TOTAL_MAX_SESSIONS = LabelValue.create("total_max_sessions");
+
+  static final LabelValue TOTAL_BUFFERED_BYTES = LabelValue.create("total_buffered_bytes");
+  static final LabelValue MAX_BUFFERED_BYTES = LabelValue.create("max_buffered_bytes");
+
   /**
    * The session pool no longer prepares a fraction of the sessions with a read/write transaction.
    * This metric will therefore always be zero and may be removed in the future.
@@ -58,6 +69,10 @@ class MetricRegistryConstants {
       ImmutableList.of(CLIENT_ID, DATABASE, INSTANCE_ID, LIBRARY_VERSION);
   static final ImmutableList<LabelKey> SPANNER_LABEL_KEYS_WITH_TYPE =
       ImmutableList.of(CLIENT_ID, DATABASE, INSTANCE_ID, LIBRARY_VERSION, SESSION_TYPE);
+  static final ImmutableList<LabelKey> SPANNER_LABEL_KEYS_WITH_CHANNEL =
+      ImmutableList.of(CLIENT_ID, DATABASE, INSTANCE_ID, LIBRARY_VERSION, CHANNEL_ID);
+  static final ImmutableList<LabelKey> SPANNER_LABEL_KEYS_WITH_PRIORITY =
+      ImmutableList.of(CLIENT_ID, DATABASE, INSTANCE_ID, LIBRARY_VERSION, PRIORITY);
 
   static final ImmutableList<LabelValue> SPANNER_DEFAULT_LABEL_VALUES =
       ImmutableList.of(UNSET_LABEL, UNSET_LABEL, UNSET_LABEL, UNSET_LABEL);
@@ -65,6 +80,15 @@ class MetricRegistryConstants {
   /** Unit to represent counts. */
   static final String COUNT = "1";
 
+  /** Unit to represent milliseconds. */
+  static final String MILLISECOND = "ms";
+
+  /** Unit to represent microseconds. */
+  static final String MICROSECOND = "us";
+
+  /** Unit to represent bytes. */
+  static final String BYTE = "By";
+
   // The Metric name and description
   static final String MAX_IN_USE_SESSIONS = "cloud.google.com/java/spanner/max_in_use_sessions";
   static final String MAX_ALLOWED_SESSIONS = "cloud.google.com/java/spanner/max_allowed_sessions";
@@ -72,6 +96,26 @@ class MetricRegistryConstants {
   static final String NUM_ACQUIRED_SESSIONS = "cloud.google.com/java/spanner/num_acquired_sessions";
   static final String NUM_RELEASED_SESSIONS = "cloud.google.com/java/spanner/num_released_sessions";
   static final String NUM_SESSIONS_IN_POOL = "cloud.google.com/java/spanner/num_sessions_in_pool";
+  static final String NUM_IN_USE_SESSIONS_PER_CHANNEL =
+      "cloud.google.com/java/spanner/num_in_use_sessions_per_channel";
+  static final String NUM_WAITS_FOR_SESSION = "cloud.google.com/java/spanner/num_waits_for_session";
+  static final String WAIT_FOR_SESSION_TIME = "cloud.google.com/java/spanner/wait_for_session_time";
+  static final String NUM_KEEP_ALIVE_PINGS = "cloud.google.com/java/spanner/num_keep_alive_pings";
+  static final String NUM_FAILED_KEEP_ALIVE_PINGS =
+      "cloud.google.com/java/spanner/num_failed_keep_alive_pings";
+  static final String KEEP_ALIVE_PING_TIME = "cloud.google.com/java/spanner/keep_alive_ping_time";
+  static final String SESSION_LATENCY = "cloud.google.com/java/spanner/session_latency";
+  static final String NUM_UNHEALTHY_SESSIONS =
+      "cloud.google.com/java/spanner/num_unhealthy_sessions";
+  static final String NUM_UNHEALTHY_SESSIONS_RETIRED =
+      "cloud.google.com/java/spanner/num_unhealthy_sessions_retired";
+  static final String SESSION_BUDGET_SESSIONS =
+      "cloud.google.com/java/spanner/session_budget_sessions";
+  static final String NUM_BUDGET_ALLOCATED_SESSIONS =
+      "cloud.google.com/java/spanner/num_budget_allocated_sessions";
+  static final String NUM_SESSIONS_SHED_FOR_BUDGET =
+      "cloud.google.com/java/spanner/num_sessions_shed_for_budget";
+  static final String BUFFERED_RESULT_BYTES = "cloud.google.com/java/spanner/buffered_result_bytes";
 
   static final String MAX_IN_USE_SESSIONS_DESCRIPTION =
       "The maximum number of sessions in use during the last 10 minute interval.";
@@ -84,4 +128,30 @@ class MetricRegistryConstants {
   static final String NUM_RELEASED_SESSIONS_DESCRIPTION =
       "The number of sessions released by the user and pool maintainer.";
   static final String NUM_SESSIONS_IN_POOL_DESCRIPTION = "The number of sessions in the pool.";
+  static final String NUM_IN_USE_SESSIONS_PER_CHANNEL_DESCRIPTION =
+      "The number of sessions in use per gRPC channel.";
+  static final String NUM_WAITS_FOR_SESSION_DESCRIPTION =
+      "The number of requests that had to wait for a session to become available, per priority.";
+  static final String WAIT_FOR_SESSION_TIME_DESCRIPTION =
+      "The total time that requests have waited for a session to become available, per priority.";
+  static final String NUM_KEEP_ALIVE_PINGS_DESCRIPTION =
+      "The number of keep-alive pings that have been sent for idle sessions.";
+  static final String NUM_FAILED_KEEP_ALIVE_PINGS_DESCRIPTION =
+      "The number of keep-alive pings for idle sessions that failed.";
+  static final String KEEP_ALIVE_PING_TIME_DESCRIPTION =
+      "The total time that keep-alive pings for idle sessions have taken.";
+  static final String SESSION_LATENCY_DESCRIPTION =
+      "The median and maximum of the average keep-alive latency of the sessions in the pool.";
+  static final String NUM_UNHEALTHY_SESSIONS_DESCRIPTION =
+      "The number of sessions that are slower or fail more often than other sessions in the pool.";
+  static final String NUM_UNHEALTHY_SESSIONS_RETIRED_DESCRIPTION =
+      "The number of unhealthy sessions that have been retired and replaced by the pool.";
+  static final String SESSION_BUDGET_SESSIONS_DESCRIPTION =
+      "The number of sessions allocated from and the size of the shared session budget.";
+  static final String NUM_BUDGET_ALLOCATED_SESSIONS_DESCRIPTION =
+      "The number of sessions of the shared session budget that are allocated to the database.";
+  static final String NUM_SESSIONS_SHED_FOR_BUDGET_DESCRIPTION =
+      "The number of idle sessions deleted to make room for sessions of other databases.";
+  static final String BUFFERED_RESULT_BYTES_DESCRIPTION =
+      "The number of bytes of query results buffered by all streams and the limit of the governor.";
 }
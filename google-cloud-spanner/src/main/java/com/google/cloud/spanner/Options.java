@@ -41,6 +41,25 @@ public final class Options implements Serializable {
     }
   }
 
+  /**
+   * Specifies when the values of a row in a {@link ResultSet} are decoded from the wire format to
+   * Java objects. The default is {@link #DIRECT}. The lazy modes reduce CPU usage and garbage for
+   * queries and reads that return more columns than the application actually reads, such as for
+   * example {@code SELECT *} queries on wide tables. Invalid values in a lazily decoded column are
+   * reported when the column is accessed, instead of when {@link ResultSet#next()} is called.
+   */
+  public enum DecodeMode {
+    /** All columns of a row are decoded when the row is read from the stream. */
+    DIRECT,
+    /** All columns of a row are decoded the first time that any column of the row is accessed. */
+    LAZY_PER_ROW,
+    /**
+     * Each column of a row is decoded the first time that the column is accessed. The decoded value
+     * is kept, so accessing the same column again does not decode it again.
+     */
+    LAZY_PER_COL
+  }
+
   /** Marker interface to mark options applicable to both Read and Query operations */
   public interface ReadAndQueryOption extends ReadOption, QueryOption {}
 
@@ -91,11 +110,71 @@ public final class Options implements Serializable {
     return new FlowControlOption(prefetchChunks);
   }
 
+  /**
+   * Specifying this will let the client adapt the number of {@code PartialResultSet} chunks that it
+   * prefetches for a read or query to the speed of the consumer, within the given bounds. The
+   * client prefetches more chunks when the consumer has to wait for chunks to arrive from the
+   * network, and fewer chunks when the consumer does not keep up with the network. The client
+   * starts with the value of {@link #prefetchChunks(int)}, or the default number of prefetch chunks
+   * if that option is not set, limited to the given bounds.
+   */
+  public static ReadAndQueryOption adaptivePrefetchChunks(
+      int minPrefetchChunks, int maxPrefetchChunks) {
+    Preconditions.checkArgument(
+        minPrefetchChunks > 0, "minPrefetchChunks should be greater than 0");
+    Preconditions.checkArgument(
+        maxPrefetchChunks >= minPrefetchChunks,
+        "maxPrefetchChunks should be greater than or equal to minPrefetchChunks");
+    return new AdaptiveFlowControlOption(minPrefetchChunks, maxPrefetchChunks);
+  }
+
   public static ReadAndQueryOption bufferRows(int bufferRows) {
     Preconditions.checkArgument(bufferRows > 0, "bufferRows should be greater than 0");
     return new BufferRowsOption(bufferRows);
   }
 
+  /**
+   * Specifying this will cause an {@link AsyncResultSet} to hand rows to its callback in batches of
+   * {@code batchRows} rows, instead of one row at a time. The rows of a batch are returned by
+   * consecutive calls to {@link AsyncResultSet#tryNext()} without any synchronization with the
+   * background task that reads the rows, which increases the throughput of callbacks that process
+   * many rows. A row is only handed to the callback when its batch is complete or when all rows
+   * have been read, so this option should not be used for streams where each row must be processed
+   * as soon as it is received. The buffer of the {@link AsyncResultSet}, see {@link
+   * #bufferRows(int)}, holds at least one batch.
+   */
+  public static ReadAndQueryOption batchRows(int batchRows) {
+    Preconditions.checkArgument(batchRows > 0, "batchRows should be greater than 0");
+    return new BatchRowsOption(batchRows);
+  }
+
+  /**
+   * Specifying this will cause the values of the rows in the {@link ResultSet} to be decoded
+   * according to the given {@link DecodeMode}.
+   */
+  public static ReadAndQueryOption decodeMode(DecodeMode decodeMode) {
+    return new DecodeModeOption(Preconditions.checkNotNull(decodeMode));
+  }
+
+  /**
+   * Specifying this will cause the rows of the {@link ResultSet} to be read from the stream and
+   * decoded by a background task, instead of by the thread that calls {@link ResultSet#next()}. The
+   * background task decodes at most {@code maxBufferedRows} rows ahead of the consumer. This allows
+   * a single consumer thread to receive rows while the next rows are being decoded, at the cost of
+   * keeping up to {@code maxBufferedRows} decoded rows in memory. The rows are always decoded
+   * directly, and any {@link #decodeMode(DecodeMode)} option is ignored.
+   *
+   * <p>The background task occupies a thread of a shared pool until the {@link ResultSet} has been
+   * consumed or closed. The pool has at most four threads per available processor. A result set
+   * that is created while all of them are in use is decoded by the thread that calls {@link
+   * ResultSet#next()}. Closing the result set before all
+   * rows have been consumed cancels the query or read.
+   */
+  public static ReadAndQueryOption pipelinedDecoding(int maxBufferedRows) {
+    Preconditions.checkArgument(maxBufferedRows > 0, "maxBufferedRows should be greater than 0");
+    return new PipelinedDecodingOption(maxBufferedRows);
+  }
+
   /** Specifies the priority to use for the RPC. */
   public static ReadQueryUpdateTransactionOption priority(RpcPriority priority) {
     return new PriorityOption(priority);
@@ -175,6 +254,24 @@ public final class Options implements Serializable {
     }
   }
 
+  /** Option pertaining to adaptive flow control. */
+  static final class AdaptiveFlowControlOption extends InternalOption
+      implements ReadAndQueryOption {
+    final int minPrefetchChunks;
+    final int maxPrefetchChunks;
+
+    AdaptiveFlowControlOption(int minPrefetchChunks, int maxPrefetchChunks) {
+      this.minPrefetchChunks = minPrefetchChunks;
+      this.maxPrefetchChunks = maxPrefetchChunks;
+    }
+
+    @Override
+    void appendToOptions(Options options) {
+      options.minPrefetchChunks = minPrefetchChunks;
+      options.maxPrefetchChunks = maxPrefetchChunks;
+    }
+  }
+
   static final class BufferRowsOption extends InternalOption implements ReadAndQueryOption {
     final int bufferRows;
 
@@ -188,6 +285,45 @@ public final class Options implements Serializable {
     }
   }
 
+  static final class BatchRowsOption extends InternalOption implements ReadAndQueryOption {
+    private final int batchRows;
+
+    BatchRowsOption(int batchRows) {
+      this.batchRows = batchRows;
+    }
+
+    @Override
+    void appendToOptions(Options options) {
+      options.batchRows = batchRows;
+    }
+  }
+
+  static final class DecodeModeOption extends InternalOption implements ReadAndQueryOption {
+    private final DecodeMode decodeMode;
+
+    DecodeModeOption(DecodeMode decodeMode) {
+      this.decodeMode = decodeMode;
+    }
+
+    @Override
+    void appendToOptions(Options options) {
+      options.decodeMode = decodeMode;
+    }
+  }
+
+  static final class PipelinedDecodingOption extends InternalOption implements ReadAndQueryOption {
+    private final int maxBufferedRows;
+
+    PipelinedDecodingOption(int maxBufferedRows) {
+      this.maxBufferedRows = maxBufferedRows;
+    }
+
+    @Override
+    void appendToOptions(Options options) {
+      options.pipelinedDecodingRows = maxBufferedRows;
+    }
+  }
+
   static final class PriorityOption extends InternalOption
       implements ReadQueryUpdateTransactionOption {
     private final RpcPriority priority;
@@ -218,7 +354,12 @@ public final class Options implements Serializable {
   private boolean withCommitStats;
   private Long limit;
   private Integer prefetchChunks;
+  private Integer minPrefetchChunks;
+  private Integer maxPrefetchChunks;
   private Integer bufferRows;
+  private Integer batchRows;
+  private DecodeMode decodeMode;
+  private Integer pipelinedDecodingRows;
   private Integer pageSize;
   private String pageToken;
   private String filter;
@@ -248,6 +389,18 @@ public final class Options implements Serializable {
     return prefetchChunks;
   }
 
+  boolean hasAdaptivePrefetchChunks() {
+    return minPrefetchChunks != null;
+  }
+
+  int minPrefetchChunks() {
+    return minPrefetchChunks;
+  }
+
+  int maxPrefetchChunks() {
+    return maxPrefetchChunks;
+  }
+
   boolean hasBufferRows() {
     return bufferRows != null;
   }
@@ -256,6 +409,30 @@ public final class Options implements Serializable {
     return bufferRows;
   }
 
+  boolean hasBatchRows() {
+    return batchRows != null;
+  }
+
+  int batchRows() {
+    return batchRows;
+  }
+
+  boolean hasDecodeMode() {
+    return decodeMode != null;
+  }
+
+  DecodeMode decodeMode() {
+    return decodeMode;
+  }
+
+  boolean hasPipelinedDecoding() {
+    return pipelinedDecodingRows != null;
+  }
+
+  int pipelinedDecodingRows() {
+    return pipelinedDecodingRows;
+  }
+
   boolean hasPageSize() {
     return pageSize != null;
   }
@@ -288,6 +465,10 @@ public final class Options implements Serializable {
     return priority == null ? null : priority.proto;
   }
 
+  RpcPriority rpcPriority() {
+    return priority;
+  }
+
   boolean hasTag() {
     return tag != null;
   }
@@ -308,6 +489,19 @@ public final class Options implements Serializable {
     if (prefetchChunks != null) {
       b.append("prefetchChunks: ").append(prefetchChunks).append(' ');
     }
+    if (minPrefetchChunks != null) {
+      b.append("minPrefetchChunks: ").append(minPrefetchChunks).append(' ');
+      b.append("maxPrefetchChunks: ").append(maxPrefetchChunks).append(' ');
+    }
+    if (batchRows != null) {
+      b.append("batchRows: ").append(batchRows).append(' ');
+    }
+    if (decodeMode != null) {
+      b.append("decodeMode: ").append(decodeMode).append(' ');
+    }
+    if (pipelinedDecodingRows != null) {
+      b.append("pipelinedDecodingRows: ").append(pipelinedDecodingRows).append(' ');
+    }
     if (pageSize != null) {
       b.append("pageSize: ").append(pageSize).append(' ');
     }
@@ -345,10 +539,15 @@ public final class Options implements Serializable {
             || hasPrefetchChunks()
                 && that.hasPrefetchChunks()
                 && Objects.equals(prefetchChunks(), that.prefetchChunks()))
+        && Objects.equals(minPrefetchChunks, that.minPrefetchChunks)
+        && Objects.equals(maxPrefetchChunks, that.maxPrefetchChunks)
         && (!hasBufferRows() && !that.hasBufferRows()
             || hasBufferRows()
                 && that.hasBufferRows()
                 && Objects.equals(bufferRows(), that.bufferRows()))
+        && Objects.equals(batchRows, that.batchRows)
+        && Objects.equals(decodeMode(), that.decodeMode())
+        && Objects.equals(pipelinedDecodingRows, that.pipelinedDecodingRows)
         && (!hasPageSize() && !that.hasPageSize()
             || hasPageSize() && that.hasPageSize() && Objects.equals(pageSize(), that.pageSize()))
         && Objects.equals(pageToken(), that.pageToken())
@@ -369,9 +568,22 @@ public final class Options implements Serializable {
     if (prefetchChunks != null) {
       result = 31 * result + prefetchChunks.hashCode();
     }
+    if (minPrefetchChunks != null) {
+      result = 31 * result + minPrefetchChunks.hashCode();
+      result = 31 * result + maxPrefetchChunks.hashCode();
+    }
     if (bufferRows != null) {
       result = 31 * result + bufferRows.hashCode();
     }
+    if (batchRows != null) {
+      result = 31 * result + batchRows.hashCode();
+    }
+    if (decodeMode != null) {
+      result = 31 * result + decodeMode.hashCode();
+    }
+    if (pipelinedDecodingRows != null) {
+      result = 31 * result + pipelinedDecodingRows.hashCode();
+    }
     if (pageSize != null) {
       result = 31 * result + pageSize.hashCode();
     }
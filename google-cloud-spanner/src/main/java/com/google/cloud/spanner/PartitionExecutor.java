@@ -0,0 +1,677 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.SettableApiFuture;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.spanner.v1.ResultSetStats;
+import io.grpc.Context;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.threeten.bp.Duration;
+
+/**
+ * Executes the {@link Partition}s of a {@link BatchReadOnlyTransaction} in parallel. The rows of
+ * all partitions are returned either as one merged {@link ResultSet}, or to a {@link RowCallback}.
+ *
+ * <p>Example usage:
+ *
+ * <pre>{@code
+ * try (BatchReadOnlyTransaction transaction =
+ *     batchClient.batchReadOnlyTransaction(TimestampBound.strong())) {
+ *   List<Partition> partitions =
+ *       transaction.partitionQuery(
+ *           PartitionOptions.getDefaultInstance(), Statement.of("SELECT * FROM Singers"));
+ *   PartitionExecutor executor =
+ *       PartitionExecutor.newBuilder(transaction).setParallelism(8).build();
+ *   try (ResultSet resultSet = executor.executeMerged(partitions)) {
+ *     while (resultSet.next()) {
+ *       // Process the row.
+ *     }
+ *   }
+ * }
+ * }</pre>
+ *
+ * <p>All partitions are executed on the session of the transaction. The rows of a partition are
+ * returned in the order in which Cloud Spanner returns them, but the rows of different partitions
+ * are interleaved. A partition that fails with a retryable error before it has returned any rows is
+ * executed again. A partition that fails after it has returned rows fails the entire execution, as
+ * executing it again would return the same rows twice. Transient errors in the middle of a stream
+ * are already retried by resuming the stream.
+ *
+ * <p>A {@link PartitionExecutor} executes one list of partitions. Create a new executor for each
+ * list.
+ */
+public final class PartitionExecutor {
+  private static final Logger logger = Logger.getLogger(PartitionExecutor.class.getName());
+
+  /** Marks the end of the rows in the buffer of a merged {@link ResultSet}. */
+  private static final Struct END_OF_ROWS = Struct.newBuilder().build();
+
+  /** How long a partition waits for space in a full buffer before it checks for cancellation. */
+  private static final long BUFFER_OFFER_TIMEOUT_MILLIS = 100L;
+
+  /**
+   * Receives the rows of the partitions that are executed by {@link
+   * PartitionExecutor#execute(List, RowCallback)}.
+   */
+  public interface RowCallback {
+    /**
+     * Called for each row of each partition. The rows of one partition are delivered in order by a
+     * single thread at a time, but the rows of different partitions are delivered concurrently by
+     * different threads. The callback blocks the execution of the partition until it returns.
+     */
+    void onRow(Partition partition, Struct row);
+  }
+
+  /** The state of the execution of one partition. */
+  public enum PartitionState {
+    /** The partition has not been started. */
+    PENDING,
+    /** The partition is being executed. */
+    RUNNING,
+    /** The partition has returned all its rows. */
+    COMPLETED,
+    /** The partition failed, after any retries. */
+    FAILED,
+    /** The partition was cancelled before it had returned all its rows. */
+    CANCELLED,
+  }
+
+  /** A snapshot of the progress of one partition of a {@link PartitionExecutor}. */
+  public static final class PartitionProgress {
+    private final Partition partition;
+    private final PartitionState state;
+    private final int attempts;
+    private final long rows;
+
+    private PartitionProgress(Partition partition, PartitionState state, int attempts, long rows) {
+      this.partition = partition;
+      this.state = state;
+      this.attempts = attempts;
+      this.rows = rows;
+    }
+
+    public Partition getPartition() {
+      return partition;
+    }
+
+    public PartitionState getState() {
+      return state;
+    }
+
+    /** Returns the number of times that the partition has been executed, including retries. */
+    public int getAttempts() {
+      return attempts;
+    }
+
+    /** Returns the number of rows that the partition has returned. */
+    public long getRows() {
+      return rows;
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("state", state)
+          .add("attempts", attempts)
+          .add("rows", rows)
+          .toString();
+    }
+  }
+
+  /** A snapshot of the progress of a {@link PartitionExecutor}. */
+  public static final class Progress {
+    private final int totalPartitions;
+    private final int completedPartitions;
+    private final int failedPartitions;
+    private final long retries;
+    private final long rows;
+    private final ImmutableList<PartitionProgress> partitionProgress;
+
+    private Progress(
+        int totalPartitions,
+        int completedPartitions,
+        int failedPartitions,
+        long retries,
+        long rows,
+        ImmutableList<PartitionProgress> partitionProgress) {
+      this.totalPartitions = totalPartitions;
+      this.completedPartitions = completedPartitions;
+      this.failedPartitions = failedPartitions;
+      this.retries = retries;
+      this.rows = rows;
+      this.partitionProgress = partitionProgress;
+    }
+
+    /** Returns the number of partitions that are being executed. */
+    public int getTotalPartitions() {
+      return totalPartitions;
+    }
+
+    /** Returns the number of partitions that have returned all their rows. */
+    public int getCompletedPartitions() {
+      return completedPartitions;
+    }
+
+    /** Returns the number of partitions that failed, after any retries. */
+    public int getFailedPartitions() {
+      return failedPartitions;
+    }
+
+    /** Returns the number of times that a partition has been executed again after an error. */
+    public long getRetries() {
+      return retries;
+    }
+
+    /** Returns the number of rows that have been returned by all partitions. */
+    public long getRows() {
+      return rows;
+    }
+
+    /** Returns the progress of each partition, in the order in which they were passed in. */
+    public List<PartitionProgress> getPartitionProgress() {
+      return partitionProgress;
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("totalPartitions", totalPartitions)
+          .add("completedPartitions", completedPartitions)
+          .add("failedPartitions", failedPartitions)
+          .add("retries", retries)
+          .add("rows", rows)
+          .toString();
+    }
+  }
+
+  /** Builder for {@link PartitionExecutor}. */
+  public static final class Builder {
+    private final BatchReadOnlyTransaction transaction;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private int bufferRows = DEFAULT_BUFFER_ROWS;
+    private int maxAttemptsPerPartition = DEFAULT_MAX_ATTEMPTS_PER_PARTITION;
+    private Duration retryDelay = DEFAULT_RETRY_DELAY;
+    private Executor executor;
+
+    private Builder(BatchReadOnlyTransaction transaction) {
+      this.transaction = Preconditions.checkNotNull(transaction);
+    }
+
+    /** Sets the maximum number of partitions that are executed at the same time. Default is 4. */
+    public Builder setParallelism(int parallelism) {
+      Preconditions.checkArgument(parallelism > 0, "parallelism must be > 0");
+      this.parallelism = parallelism;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of rows that are buffered by a merged {@link ResultSet} before the
+     * partitions are paused. Default is 1000.
+     */
+    public Builder setBufferRows(int bufferRows) {
+      Preconditions.checkArgument(bufferRows > 0, "bufferRows must be > 0");
+      this.bufferRows = bufferRows;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of times that a partition is executed if it fails with a retryable
+     * error before it has returned any rows. Default is 3.
+     */
+    public Builder setMaxAttemptsPerPartition(int maxAttemptsPerPartition) {
+      Preconditions.checkArgument(
+          maxAttemptsPerPartition > 0, "maxAttemptsPerPartition must be > 0");
+      this.maxAttemptsPerPartition = maxAttemptsPerPartition;
+      return this;
+    }
+
+    /**
+     * Sets the delay before the first retry of a partition. The delay is doubled for each following
+     * retry of the same partition, unless Cloud Spanner returns a retry delay. Default is 100ms.
+     */
+    public Builder setRetryDelay(Duration retryDelay) {
+      Preconditions.checkArgument(!retryDelay.isNegative(), "retryDelay must be >= 0");
+      this.retryDelay = retryDelay;
+      return this;
+    }
+
+    /**
+     * Sets the {@link Executor} that executes the partitions. The executor should be able to run
+     * {@link #setParallelism(int)} tasks at the same time, as each task blocks while it executes a
+     * partition. By default, the {@link PartitionExecutor} creates a thread pool for each execution
+     * and shuts it down when all partitions have finished.
+     */
+    public Builder setExecutor(Executor executor) {
+      this.executor = Preconditions.checkNotNull(executor);
+      return this;
+    }
+
+    public PartitionExecutor build() {
+      return new PartitionExecutor(this);
+    }
+  }
+
+  @VisibleForTesting static final int DEFAULT_PARALLELISM = 4;
+  @VisibleForTesting static final int DEFAULT_BUFFER_ROWS = 1000;
+  @VisibleForTesting static final int DEFAULT_MAX_ATTEMPTS_PER_PARTITION = 3;
+  @VisibleForTesting static final Duration DEFAULT_RETRY_DELAY = Duration.ofMillis(100L);
+
+  public static Builder newBuilder(BatchReadOnlyTransaction transaction) {
+    return new Builder(transaction);
+  }
+
+  /** Receives the rows of a partition. */
+  private interface RowSink {
+    /** Returns false if the execution has been stopped and no more rows should be delivered. */
+    boolean accept(Partition partition, Struct row) throws InterruptedException;
+  }
+
+  /** Tracks the progress of one partition. Only the worker that executes it updates it. */
+  private static final class PartitionTracker {
+    private final Partition partition;
+    private volatile PartitionState state = PartitionState.PENDING;
+    private final AtomicInteger attempts = new AtomicInteger();
+    private final AtomicLong rows = new AtomicLong();
+
+    private PartitionTracker(Partition partition) {
+      this.partition = partition;
+    }
+
+    private PartitionProgress snapshot() {
+      return new PartitionProgress(partition, state, attempts.get(), rows.get());
+    }
+  }
+
+  private final BatchReadOnlyTransaction transaction;
+  private final int parallelism;
+  private final int bufferRows;
+  private final int maxAttemptsPerPartition;
+  private final Duration retryDelay;
+  private final Executor executor;
+
+  private final AtomicBoolean started = new AtomicBoolean();
+  private volatile boolean stopped;
+  private final AtomicReference<Throwable> error = new AtomicReference<>();
+  /**
+   * The context that the workers execute the partitions in. Cancelling it cancels the streams of
+   * the partitions, and the workers then close their own result sets.
+   */
+  private volatile Context.CancellableContext cancellation;
+  /** The type of the rows, from the metadata of the first partition that returned it. */
+  private final AtomicReference<Type> type = new AtomicReference<>();
+
+  private volatile List<PartitionTracker> partitions = ImmutableList.of();
+  private final AtomicInteger nextPartition = new AtomicInteger();
+  private final AtomicInteger completedPartitions = new AtomicInteger();
+  private final AtomicInteger failedPartitions = new AtomicInteger();
+  private final AtomicLong retries = new AtomicLong();
+  private final AtomicLong rows = new AtomicLong();
+
+  private PartitionExecutor(Builder builder) {
+    this.transaction = builder.transaction;
+    this.parallelism = builder.parallelism;
+    this.bufferRows = builder.bufferRows;
+    this.maxAttemptsPerPartition = builder.maxAttemptsPerPartition;
+    this.retryDelay = builder.retryDelay;
+    this.executor = builder.executor;
+  }
+
+  /** Returns the progress of the execution of the partitions. */
+  public Progress getProgress() {
+    List<PartitionTracker> trackers = partitions;
+    ImmutableList.Builder<PartitionProgress> partitionProgress = ImmutableList.builder();
+    for (PartitionTracker tracker : trackers) {
+      partitionProgress.add(tracker.snapshot());
+    }
+    return new Progress(
+        trackers.size(),
+        completedPartitions.get(),
+        failedPartitions.get(),
+        retries.get(),
+        rows.get(),
+        partitionProgress.build());
+  }
+
+  /**
+   * Executes the given partitions in parallel and returns all their rows as one {@link ResultSet}.
+   * The partitions are paused when the {@link ResultSet} has buffered {@link
+   * Builder#setBufferRows(int)} rows that have not yet been consumed. If a partition fails, the
+   * other partitions are cancelled and {@link ResultSet#next()} throws the error of the failed
+   * partition. Closing the {@link ResultSet} cancels all partitions that are still executing.
+   *
+   * <p>{@link ResultSet#getStats()} of the returned {@link ResultSet} always returns null.
+   */
+  public ResultSet executeMerged(List<Partition> partitions) {
+    MergedResultSet resultSet = new MergedResultSet(new ArrayBlockingQueue<>(bufferRows));
+    start(partitions, resultSet::offer, resultSet::finish);
+    return resultSet;
+  }
+
+  /**
+   * Executes the given partitions in parallel and delivers their rows to the given {@link
+   * RowCallback}. The returned {@link ApiFuture} is done when all partitions have returned all
+   * their rows, or fails with the error of the first partition that failed. The other partitions
+   * are cancelled if a partition fails, or if the returned {@link ApiFuture} is cancelled.
+   */
+  public ApiFuture<Void> execute(List<Partition> partitions, RowCallback callback) {
+    Preconditions.checkNotNull(callback);
+    final SettableApiFuture<Void> result = SettableApiFuture.create();
+    result.addListener(
+        () -> {
+          if (result.isCancelled()) {
+            stop();
+          }
+        },
+        MoreExecutors.directExecutor());
+    start(
+        partitions,
+        (partition, row) -> {
+          callback.onRow(partition, row);
+          return !stopped;
+        },
+        () -> {
+          Throwable t = error.get();
+          if (t == null) {
+            result.set(null);
+          } else {
+            result.setException(t);
+          }
+        });
+    return result;
+  }
+
+  private void start(List<Partition> partitions, RowSink sink, Runnable onFinished) {
+    Preconditions.checkNotNull(partitions);
+    Preconditions.checkState(
+        started.compareAndSet(false, true), "This PartitionExecutor has already been started");
+    ImmutableList.Builder<PartitionTracker> trackers = ImmutableList.builder();
+    for (Partition partition : partitions) {
+      trackers.add(new PartitionTracker(Preconditions.checkNotNull(partition)));
+    }
+    List<PartitionTracker> toExecute = trackers.build();
+    this.partitions = toExecute;
+    Context.CancellableContext context = Context.current().withCancellation();
+    this.cancellation = context;
+    int workers = Math.max(1, Math.min(parallelism, toExecute.size()));
+    ExecutorService ownedExecutor =
+        executor == null
+            ? Executors.newFixedThreadPool(
+                workers,
+                new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("spanner-partition-executor-%d")
+                    .build())
+            : null;
+    Executor workerExecutor = executor == null ? ownedExecutor : executor;
+    AtomicInteger activeWorkers = new AtomicInteger(workers);
+    for (int i = 0; i < workers; i++) {
+      workerExecutor.execute(
+          context.wrap(
+              () -> {
+                try {
+                  int index;
+                  while (!stopped
+                      && (index = nextPartition.getAndIncrement()) < toExecute.size()) {
+                    executePartition(toExecute.get(index), sink);
+                  }
+                } catch (Throwable t) {
+                  fail(t);
+                } finally {
+                  if (activeWorkers.decrementAndGet() == 0) {
+                    // A cancellable context must always be cancelled to release its listeners.
+                    context.cancel(null);
+                    if (ownedExecutor != null) {
+                      ownedExecutor.shutdown();
+                    }
+                    onFinished.run();
+                  }
+                }
+              }));
+    }
+  }
+
+  /**
+   * Executes one partition and delivers its rows to the sink. The partition is executed again if
+   * it fails with a retryable error before it has returned any rows. The result set of the
+   * partition is only used and closed by the calling worker, also when the execution is stopped.
+   */
+  private void executePartition(PartitionTracker tracker, RowSink sink)
+      throws InterruptedException {
+    Partition partition = tracker.partition;
+    long delayMillis = retryDelay.toMillis();
+    int attempt = 0;
+    tracker.state = PartitionState.RUNNING;
+    while (true) {
+      if (stopped) {
+        tracker.state = PartitionState.CANCELLED;
+        return;
+      }
+      attempt++;
+      tracker.attempts.incrementAndGet();
+      boolean returnedRows = false;
+      ResultSet resultSet = null;
+      try {
+        resultSet = transaction.execute(partition);
+        boolean hasRow = resultSet.next();
+        if (type.get() == null) {
+          type.compareAndSet(null, resultSet.getType());
+        }
+        while (hasRow) {
+          returnedRows = true;
+          rows.incrementAndGet();
+          tracker.rows.incrementAndGet();
+          if (!sink.accept(partition, resultSet.getCurrentRowAsStruct())) {
+            tracker.state = PartitionState.CANCELLED;
+            return;
+          }
+          hasRow = resultSet.next();
+        }
+        completedPartitions.incrementAndGet();
+        tracker.state = PartitionState.COMPLETED;
+        return;
+      } catch (RuntimeException e) {
+        if (stopped) {
+          tracker.state = PartitionState.CANCELLED;
+          return;
+        }
+        if (!(e instanceof SpannerException)
+            || !((SpannerException) e).isRetryable()
+            || returnedRows
+            || attempt >= maxAttemptsPerPartition) {
+          failedPartitions.incrementAndGet();
+          tracker.state = PartitionState.FAILED;
+          throw e;
+        }
+        logger.log(
+            Level.FINE,
+            String.format("Retrying partition after attempt %d failed", attempt),
+            e);
+        retries.incrementAndGet();
+        long serverDelay = ((SpannerException) e).getRetryDelayInMillis();
+        Thread.sleep(serverDelay > 0L ? serverDelay : delayMillis);
+        delayMillis *= 2;
+      } finally {
+        if (resultSet != null) {
+          resultSet.close();
+        }
+      }
+    }
+  }
+
+  /** Records the first error and stops all partitions. */
+  private void fail(Throwable t) {
+    if (error.compareAndSet(null, t)) {
+      stop();
+    }
+  }
+
+  /**
+   * Stops the execution. The streams of the partitions that are executing are cancelled, and their
+   * workers then close the result sets of the partitions. The result sets are not closed here, as
+   * they are not safe to use from another thread than the worker that is reading them.
+   */
+  private void stop() {
+    stopped = true;
+    Context.CancellableContext context = cancellation;
+    if (context != null) {
+      context.cancel(null);
+    }
+  }
+
+  /** {@link ResultSet} that returns the rows that the partitions put in a bounded buffer. */
+  private final class MergedResultSet extends ForwardingStructReader implements ResultSet {
+    private final BlockingQueue<Struct> buffer;
+    private volatile boolean finished;
+    private boolean done;
+    private boolean closed;
+    private Struct currentRow;
+
+    private MergedResultSet(BlockingQueue<Struct> buffer) {
+      super(
+          () -> {
+            throw new IllegalStateException(
+                "next() must be called before the rows of a result set can be read");
+          });
+      this.buffer = buffer;
+    }
+
+    /**
+     * Puts a row in the buffer. Waits while the buffer is full, and returns false if the execution
+     * has been stopped while waiting.
+     */
+    private boolean offer(Partition partition, Struct row) throws InterruptedException {
+      while (!buffer.offer(row, BUFFER_OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+        if (stopped) {
+          return false;
+        }
+      }
+      return !stopped;
+    }
+
+    /** Called when all partitions have finished. */
+    private void finish() {
+      finished = true;
+      // Wake up a consumer that is waiting for a row. If the buffer is full, the consumer is not
+      // waiting and will see that the execution has finished once the buffer is empty.
+      buffer.offer(END_OF_ROWS);
+    }
+
+    @Override
+    protected void checkValidState() {
+      Preconditions.checkState(!closed, "ResultSet is closed");
+      Preconditions.checkState(currentRow != null, "next() has not returned a row");
+    }
+
+    @Override
+    public boolean next() throws SpannerException {
+      Preconditions.checkState(!closed, "ResultSet is closed");
+      if (done) {
+        return false;
+      }
+      try {
+        while (true) {
+          throwIfFailed();
+          Struct row = buffer.poll();
+          if (row == null) {
+            if (finished) {
+              // Check for any row that was put in the buffer before the execution finished.
+              row = buffer.poll();
+              if (row == null) {
+                row = END_OF_ROWS;
+              }
+            } else {
+              row = buffer.take();
+            }
+          }
+          if (row != END_OF_ROWS) {
+            throwIfFailed();
+            currentRow = row;
+            replaceDelegate(row);
+            return true;
+          }
+          if (finished && buffer.isEmpty()) {
+            throwIfFailed();
+            done = true;
+            currentRow = null;
+            return false;
+          }
+        }
+      } catch (InterruptedException e) {
+        throw SpannerExceptionFactory.propagateInterrupt(e);
+      }
+    }
+
+    private void throwIfFailed() {
+      Throwable t = error.get();
+      if (t != null) {
+        done = true;
+        currentRow = null;
+        throw SpannerExceptionFactory.asSpannerException(t);
+      }
+    }
+
+    @Override
+    public Struct getCurrentRowAsStruct() {
+      checkValidState();
+      return currentRow;
+    }
+
+    /**
+     * Returns the type of the rows from the metadata of the partitions. This is also known after
+     * {@link #next()} has returned false if none of the partitions returned any rows.
+     */
+    @Override
+    public Type getType() {
+      Preconditions.checkState(!closed, "ResultSet is closed");
+      Type rowType = type.get();
+      return rowType == null ? super.getType() : rowType;
+    }
+
+    @Override
+    public ResultSetStats getStats() {
+      return null;
+    }
+
+    @Override
+    public void close() {
+      if (!closed) {
+        closed = true;
+        stop();
+        buffer.clear();
+      }
+    }
+  }
+}
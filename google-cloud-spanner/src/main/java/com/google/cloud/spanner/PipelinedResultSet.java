@@ -0,0 +1,255 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.spanner.v1.ResultSetStats;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * {@link ResultSet} that reads and decodes the rows of a delegate {@link ResultSet} in a background
+ * task, so the thread that consumes the rows does not have to wait for values to be merged and
+ * decoded. See {@link Options#pipelinedDecoding(int)}.
+ *
+ * <p>The background task runs on a thread of a pool that is reserved for pipelined decoding. The
+ * task blocks while it waits for data from the network and for space in the buffer, and it would
+ * otherwise occupy a thread of a shared executor for as long as the result set is open. The pool
+ * has at most {@link #MAX_DECODING_THREADS} threads. When all of them are in use, {@link
+ * #create(ResultSet, Runnable, int)} returns the delegate, and the consumer decodes the rows.
+ *
+ * <p>The background task is the only user of the delegate, and hands immutable copies of the rows
+ * to the consumer through a {@link SpscRingBuffer}. The size of the buffer is the row budget of the
+ * result set, and the background task waits for the consumer when the buffer is full. The consumer
+ * of a {@link ResultSet} must be a single thread at a time, which makes this a single-producer,
+ * single-consumer queue.
+ */
+final class PipelinedResultSet extends ForwardingStructReader implements ResultSet {
+  /** The last element that the background task adds to the buffer, unless the delegate failed. */
+  private static final class EndOfStream {
+    private final Type type;
+    @Nullable private final ResultSetStats stats;
+
+    private EndOfStream(Type type, @Nullable ResultSetStats stats) {
+      this.type = type;
+      this.stats = stats;
+    }
+  }
+
+  /** Supplies the current row to the getters of {@link ForwardingStructReader}. */
+  private static final class CurrentRow implements Supplier<Struct> {
+    private Struct row;
+
+    @Override
+    public Struct get() {
+      return row;
+    }
+  }
+
+  private static final ThreadFactory THREAD_FACTORY =
+      new ThreadFactoryBuilder()
+          .setDaemon(true)
+          .setNameFormat("spanner-pipelined-decoding-%d")
+          .build();
+
+  /**
+   * The maximum number of result sets that are decoded in the background at the same time. Each of
+   * them occupies a thread until it has been consumed or closed.
+   */
+  static final int MAX_DECODING_THREADS = 4 * Runtime.getRuntime().availableProcessors();
+
+  /**
+   * Runs each background task on an idle thread or on a new thread, up to {@link
+   * #MAX_DECODING_THREADS} threads. Tasks are not queued, as a queued task would keep its consumer
+   * waiting until another result set is closed. Idle threads are stopped after one minute.
+   */
+  private static final ThreadPoolExecutor DECODING_EXECUTOR =
+      new ThreadPoolExecutor(
+          0,
+          MAX_DECODING_THREADS,
+          60L,
+          TimeUnit.SECONDS,
+          new SynchronousQueue<>(),
+          THREAD_FACTORY);
+
+  /**
+   * Returns a result set that reads the rows of the delegate in the background, or the delegate
+   * itself if all {@link #MAX_DECODING_THREADS} decoding threads are in use.
+   *
+   * @param delegate the result set to read the rows from. Only the background task uses it.
+   * @param cancelDelegate cancels the stream of the delegate. This is called by the thread that
+   *     closes the result set while the background task may be waiting for data from the stream.
+   * @param maxBufferedRows the maximum number of rows that are decoded ahead of the consumer
+   */
+  static ResultSet create(ResultSet delegate, Runnable cancelDelegate, int maxBufferedRows) {
+    return create(DECODING_EXECUTOR, delegate, cancelDelegate, maxBufferedRows);
+  }
+
+  @VisibleForTesting
+  static ResultSet create(
+      Executor executor, ResultSet delegate, Runnable cancelDelegate, int maxBufferedRows) {
+    try {
+      return new PipelinedResultSet(executor, delegate, cancelDelegate, maxBufferedRows);
+    } catch (RejectedExecutionException e) {
+      return delegate;
+    }
+  }
+
+  private final ResultSet delegate;
+  private final Runnable cancelDelegate;
+  private final CurrentRow currentRow;
+  private final SpscRingBuffer<Object> buffer;
+
+  /** Set by the consumer to stop the background task. */
+  private volatile boolean closed;
+
+  private EndOfStream endOfStream;
+
+  @VisibleForTesting
+  PipelinedResultSet(
+      Executor executor, ResultSet delegate, Runnable cancelDelegate, int maxBufferedRows) {
+    this(executor, delegate, cancelDelegate, maxBufferedRows, new CurrentRow());
+  }
+
+  private PipelinedResultSet(
+      Executor executor,
+      ResultSet delegate,
+      Runnable cancelDelegate,
+      int maxBufferedRows,
+      CurrentRow currentRow) {
+    super(currentRow);
+    Preconditions.checkArgument(maxBufferedRows > 0, "maxBufferedRows must be > 0");
+    this.delegate = Preconditions.checkNotNull(delegate);
+    this.cancelDelegate = Preconditions.checkNotNull(cancelDelegate);
+    this.currentRow = currentRow;
+    this.buffer = new SpscRingBuffer<>(maxBufferedRows);
+    executor.execute(this::produceRows);
+  }
+
+  /**
+   * Reads all rows from the delegate into the buffer. The task checks whether the result set has
+   * been closed before each element that it adds to the buffer. After the consumer has closed the
+   * result set and emptied the buffer, the task can therefore add at most one more element to the
+   * buffer, and will never wait forever for space in the buffer.
+   */
+  private void produceRows() {
+    try {
+      while (!closed && delegate.next()) {
+        buffer.putUninterruptibly(delegate.getCurrentRowAsStruct());
+      }
+      if (!closed) {
+        buffer.putUninterruptibly(new EndOfStream(delegate.getType(), delegate.getStats()));
+      }
+    } catch (Throwable t) {
+      if (!closed) {
+        buffer.putUninterruptibly(SpannerExceptionFactory.asSpannerException(t));
+      }
+    } finally {
+      delegate.close();
+    }
+  }
+
+  @Override
+  protected void checkValidState() {
+    Preconditions.checkState(!closed, "ResultSet is closed");
+    Preconditions.checkState(currentRow.row != null, "next() call required");
+  }
+
+  @Override
+  public boolean next() throws SpannerException {
+    Preconditions.checkState(!closed, "ResultSet is closed");
+    if (endOfStream != null) {
+      return false;
+    }
+    Object next;
+    try {
+      next = buffer.take();
+    } catch (InterruptedException e) {
+      throw SpannerExceptionFactory.propagateInterrupt(e);
+    }
+    if (next instanceof Struct) {
+      currentRow.row = (Struct) next;
+      return true;
+    }
+    if (next instanceof SpannerException) {
+      // Re-throw the error with the stack trace of the consumer.
+      SpannerException error = (SpannerException) next;
+      endOfStream = new EndOfStream(null, null);
+      throw SpannerExceptionFactory.newSpannerException(error);
+    }
+    endOfStream = (EndOfStream) next;
+    return false;
+  }
+
+  @Override
+  public Type getType() {
+    if (currentRow.row == null && endOfStream != null && endOfStream.type != null) {
+      // The result set did not return any rows.
+      return endOfStream.type;
+    }
+    return super.getType();
+  }
+
+  @Override
+  public Struct getCurrentRowAsStruct() {
+    checkValidState();
+    return currentRow.row;
+  }
+
+  @Override
+  public int getPrefetchChunks() {
+    return delegate.getPrefetchChunks();
+  }
+
+  @Override
+  public ResultSetStats getStats() {
+    return endOfStream == null ? null : endOfStream.stats;
+  }
+
+  /**
+   * Stops the background task. The stream of the delegate is cancelled, so a background task that
+   * is waiting for data from the network fails instead of waiting for the next message. Buffered
+   * rows are discarded, so a background task that is waiting for space in the buffer can see that
+   * the result set was closed. The background task then closes the delegate.
+   */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    currentRow.row = null;
+    cancelDelegate.run();
+    while (buffer.size() > 0) {
+      try {
+        buffer.take();
+      } catch (InterruptedException e) {
+        // Cannot happen, as the buffer is not empty.
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import com.google.common.base.Preconditions;
+import io.opencensus.trace.Span;
+import javax.annotation.Nullable;
+
+/**
+ * The number of {@code PartialResultSet}s that a stream may have requested from the server but not
+ * yet handed to the consumer of the stream. A fixed window always has the size that was set with
+ * {@link Options#prefetchChunks(int)}. An adaptive window, see {@link
+ * Options#adaptivePrefetchChunks(int, int)}, is resized after each round of consumed messages,
+ * where a round has as many messages as the current size of the window:
+ *
+ * <ul>
+ *   <li>If the consumer had to wait for a message from the network during the round, the consumer
+ *       is faster than the network and the window is doubled.
+ *   <li>If the consumer never drained the buffered messages below half of the window during the
+ *       round, the network is faster than the consumer and the window is shrunk by a quarter.
+ * </ul>
+ *
+ * The window is shared by all the streams of one query or read, so a stream that is resumed
+ * continues with the window of the stream that it replaces. The window is only resized by the
+ * thread that consumes the stream.
+ */
+final class PrefetchWindow {
+  private final int minSize;
+  private final int maxSize;
+  private final boolean adaptive;
+  @Nullable private final Span span;
+
+  /** The current size. This is volatile, as it may be read by other threads for diagnostics. */
+  private volatile int size;
+
+  private int consumedInRound;
+  private boolean waitedInRound;
+  private int minBufferedInRound = Integer.MAX_VALUE;
+
+  private PrefetchWindow(
+      int initialSize, int minSize, int maxSize, boolean adaptive, @Nullable Span span) {
+    this.size = initialSize;
+    this.minSize = minSize;
+    this.maxSize = maxSize;
+    this.adaptive = adaptive;
+    this.span = span;
+  }
+
+  /** Creates a window that always has the given size. */
+  static PrefetchWindow fixed(int size) {
+    Preconditions.checkArgument(size > 0, "size must be > 0");
+    return new PrefetchWindow(size, size, size, false, null);
+  }
+
+  /**
+   * Creates a window that starts with the given size, clamped to the given bounds, and adapts its
+   * size to the speed of the consumer. Resizes are recorded as annotations on the given span.
+   */
+  static PrefetchWindow adaptive(int initialSize, int minSize, int maxSize, @Nullable Span span) {
+    Preconditions.checkArgument(minSize > 0, "minSize must be > 0");
+    Preconditions.checkArgument(maxSize >= minSize, "maxSize must be >= minSize");
+    return new PrefetchWindow(
+        Math.max(minSize, Math.min(maxSize, initialSize)), minSize, maxSize, true, span);
+  }
+
+  /** Returns the current size of the window. */
+  int getSize() {
+    return size;
+  }
+
+  /** Returns the largest size that the window can have. */
+  int getMaxSize() {
+    return maxSize;
+  }
+
+  boolean isAdaptive() {
+    return adaptive;
+  }
+
+  /**
+   * Records that the consumer took a message from a stream.
+   *
+   * @param waited whether the consumer had to wait for the message to arrive from the network
+   * @param buffered the number of messages that were still buffered after the message was taken
+   */
+  void onMessageConsumed(boolean waited, int buffered) {
+    if (!adaptive) {
+      return;
+    }
+    waitedInRound |= waited;
+    minBufferedInRound = Math.min(minBufferedInRound, buffered);
+    if (++consumedInRound < size) {
+      return;
+    }
+    int currentSize = size;
+    int newSize = currentSize;
+    if (waitedInRound) {
+      newSize = Math.min(maxSize, currentSize * 2);
+    } else if (minBufferedInRound >= currentSize / 2) {
+      newSize = Math.max(minSize, currentSize - Math.max(1, currentSize / 4));
+    }
+    consumedInRound = 0;
+    waitedInRound = false;
+    minBufferedInRound = Integer.MAX_VALUE;
+    if (newSize != currentSize) {
+      size = newSize;
+      if (span != null) {
+        span.addAnnotation(
+            String.format("Resized prefetch window from %d to %d", currentSize, newSize));
+      }
+    }
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import static com.google.cloud.spanner.MetricRegistryConstants.BUFFERED_RESULT_BYTES;
+import static com.google.cloud.spanner.MetricRegistryConstants.BUFFERED_RESULT_BYTES_DESCRIPTION;
+import static com.google.cloud.spanner.MetricRegistryConstants.BYTE;
+import static com.google.cloud.spanner.MetricRegistryConstants.MAX_BUFFERED_BYTES;
+import static com.google.cloud.spanner.MetricRegistryConstants.SPANNER_LABEL_KEYS_WITH_TYPE;
+import static com.google.cloud.spanner.MetricRegistryConstants.TOTAL_BUFFERED_BYTES;
+
+import com.google.common.base.Preconditions;
+import io.opencensus.metrics.DerivedLongGauge;
+import io.opencensus.metrics.LabelValue;
+import io.opencensus.metrics.MetricOptions;
+import io.opencensus.metrics.MetricRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Limits the total size of the query and read results that have been received from Cloud Spanner
+ * but not yet consumed by the application. The limit applies to all streams of all {@link Spanner}
+ * instances that use the same governor, so a single governor that is set on the {@link
+ * SpannerOptions} of every {@link Spanner} instance bounds the memory that is used for buffered
+ * results in the entire JVM.
+ *
+ * <p>The governor does not reject any data. When the limit has been reached, each stream stops
+ * requesting new data from the server until it has consumed all the data that it has buffered, and
+ * then requests one message at a time until the total buffered size drops below the limit again.
+ * The total buffered size can therefore exceed the limit by at most one message per open stream.
+ *
+ * <p>The current usage is available from {@link #getBufferedBytes()} and is also exported as the
+ * metric {@code cloud.google.com/java/spanner/buffered_result_bytes}.
+ */
+public final class ResultMemoryGovernor {
+  /**
+   * The bytes that one stream has buffered. All bytes of the reservation are released when it is
+   * closed, and bytes that are added to a closed reservation are ignored. This makes it safe for
+   * the thread that receives data from the network to keep adding bytes after the stream was
+   * closed.
+   */
+  final class Reservation {
+    @GuardedBy("this")
+    private long bytes;
+
+    @GuardedBy("this")
+    private boolean closed;
+
+    private Reservation() {}
+
+    synchronized void add(long size) {
+      if (!closed) {
+        bytes += size;
+        bufferedBytes.addAndGet(size);
+      }
+    }
+
+    synchronized void remove(long size) {
+      if (!closed) {
+        bytes -= size;
+        bufferedBytes.addAndGet(-size);
+      }
+    }
+
+    synchronized void close() {
+      if (!closed) {
+        closed = true;
+        bufferedBytes.addAndGet(-bytes);
+        bytes = 0L;
+      }
+    }
+
+    synchronized long getBytes() {
+      return bytes;
+    }
+  }
+
+  private final long maxBufferedBytes;
+  private final AtomicLong bufferedBytes = new AtomicLong();
+
+  private ResultMemoryGovernor(long maxBufferedBytes) {
+    this.maxBufferedBytes = maxBufferedBytes;
+  }
+
+  /**
+   * Creates a governor that throttles all streams that use it when they together have buffered more
+   * than the given number of bytes.
+   */
+  public static ResultMemoryGovernor create(long maxBufferedBytes) {
+    Preconditions.checkArgument(maxBufferedBytes > 0L, "maxBufferedBytes must be > 0");
+    return new ResultMemoryGovernor(maxBufferedBytes);
+  }
+
+  /** Returns the number of bytes above which streams are throttled. */
+  public long getMaxBufferedBytes() {
+    return maxBufferedBytes;
+  }
+
+  /** Returns the number of bytes that are currently buffered by all streams together. */
+  public long getBufferedBytes() {
+    return bufferedBytes.get();
+  }
+
+  /** Returns true if streams should stop requesting data from the server. */
+  boolean isExhausted() {
+    return bufferedBytes.get() >= maxBufferedBytes;
+  }
+
+  /** Creates a reservation for the bytes that will be buffered by one stream. */
+  Reservation newReservation() {
+    return new Reservation();
+  }
+
+  void initMetricsCollection(MetricRegistry metricRegistry, List<LabelValue> labelValues) {
+    DerivedLongGauge bufferedBytesMetric =
+        metricRegistry.addDerivedLongGauge(
+            BUFFERED_RESULT_BYTES,
+            MetricOptions.builder()
+                .setDescription(BUFFERED_RESULT_BYTES_DESCRIPTION)
+                .setUnit(BYTE)
+                .setLabelKeys(SPANNER_LABEL_KEYS_WITH_TYPE)
+                .build());
+    List<LabelValue> labelValuesWithBufferedType = new ArrayList<>(labelValues);
+    labelValuesWithBufferedType.add(TOTAL_BUFFERED_BYTES);
+    bufferedBytesMetric.removeTimeSeries(labelValuesWithBufferedType);
+    bufferedBytesMetric.createTimeSeries(
+        labelValuesWithBufferedType, this, ResultMemoryGovernor::getBufferedBytes);
+    List<LabelValue> labelValuesWithMaxType = new ArrayList<>(labelValues);
+    labelValuesWithMaxType.add(MAX_BUFFERED_BYTES);
+    bufferedBytesMetric.removeTimeSeries(labelValuesWithMaxType);
+    bufferedBytesMetric.createTimeSeries(
+        labelValuesWithMaxType, this, ResultMemoryGovernor::getMaxBufferedBytes);
+  }
+}
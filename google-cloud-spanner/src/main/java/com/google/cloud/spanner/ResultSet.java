@@ -51,6 +51,37 @@ public interface ResultSet extends AutoCloseable, StructReader {
    */
   Struct getCurrentRowAsStruct();
 
+  /**
+   * Reads at most {@code maxRows} rows from the result set into a {@link ColumnarBatch}, and
+   * advances the result set past these rows. Returns a batch with zero rows when all rows have been
+   * seen. This method may block.
+   *
+   * <p>Reading the rows of a result set in batches is more efficient than processing the rows one
+   * by one for consumers that process the data per column, as the values of primitive and {@code
+   * STRING} columns are stored in arrays without creating an object per value. Calls to this method
+   * may be mixed with calls to {@link #next()}, but the result set is not positioned over a row
+   * after this method returns, so {@link #next()} must be called before a row can be inspected
+   * again.
+   *
+   * @param maxRows the maximum number of rows in the batch, must be greater than zero
+   */
+  default ColumnarBatch nextBatch(int maxRows) throws SpannerException {
+    return ColumnarBatch.readFrom(this, maxRows);
+  }
+
+  /**
+   * Returns the number of {@code PartialResultSet}s that this result set currently keeps requested
+   * from Cloud Spanner. This is the value of {@link Options#prefetchChunks(int)} for a fixed
+   * prefetch window, and the current size of the window for a read or query that uses {@link
+   * Options#adaptivePrefetchChunks(int, int)}. Returns 0 if the stream has not yet been started,
+   * and for result sets that are not streamed from Cloud Spanner.
+   *
+   * <p>This method is intended for diagnostics and may be called from any thread.
+   */
+  default int getPrefetchChunks() {
+    return 0;
+  }
+
   /**
    * Explicitly close the result set, releasing any associated resources. This must always be called
    * when disposing of a {@code ResultSet} before {@link #next()} has returned {@code false} or
@@ -74,7 +74,11 @@ public final class ResultSets {
         readOptions.hasBufferRows()
             ? readOptions.bufferRows()
             : AsyncResultSetImpl.DEFAULT_BUFFER_SIZE;
-    return new AsyncResultSetImpl(executorProvider, delegate, bufferRows);
+    final int batchRows =
+        readOptions.hasBatchRows()
+            ? readOptions.batchRows()
+            : AsyncResultSetImpl.DEFAULT_BATCH_SIZE;
+    return new AsyncResultSetImpl(executorProvider, delegate, bufferRows, batchRows);
   }
 
   /**
@@ -88,8 +92,12 @@ public final class ResultSets {
         readOptions.hasBufferRows()
             ? readOptions.bufferRows()
             : AsyncResultSetImpl.DEFAULT_BUFFER_SIZE;
+    final int batchRows =
+        readOptions.hasBatchRows()
+            ? readOptions.batchRows()
+            : AsyncResultSetImpl.DEFAULT_BATCH_SIZE;
     return new AsyncResultSetImpl(
-        executorProvider, new FutureResultSetSupplier(delegate), bufferRows);
+        executorProvider, new FutureResultSetSupplier(delegate), bufferRows, batchRows);
   }
 
   private static class FutureResultSetSupplier implements Supplier<ResultSet> {
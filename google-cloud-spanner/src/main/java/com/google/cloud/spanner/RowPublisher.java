@@ -0,0 +1,329 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import com.google.cloud.spanner.AsyncResultSet.CallbackResponse;
+import com.google.cloud.spanner.AsyncResultSet.ReadyCallback;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the rows of an {@link AsyncResultSet} to a {@link Subscriber} with demand driven
+ * backpressure. The {@link Subscriber} and {@link Subscription} interfaces have the same methods
+ * and semantics as those of Reactive Streams and {@code java.util.concurrent.Flow}, so a {@link
+ * RowPublisher} can be adapted to those APIs by forwarding each method call.
+ *
+ * <p>The demand of the subscriber is applied directly to the {@link AsyncResultSet}: When all
+ * requested rows have been delivered, the publisher reads one element ahead and pauses the result
+ * set, and it resumes the result set when more rows are requested. Reading ahead means that the
+ * end of the result set and errors are signalled without waiting for more demand. A paused result
+ * set stops reading from the stream once its buffer is full, which in turn stops requesting new
+ * data from Cloud Spanner. The number of rows that are buffered while the subscriber does not
+ * request any rows is therefore bounded by {@link Options#bufferRows(int)}, the element that is
+ * read ahead and the prefetch window of the query.
+ *
+ * <p>Example usage:
+ *
+ * <pre>{@code
+ * try (AsyncResultSet resultSet =
+ *     client.singleUse().executeQueryAsync(Statement.of("SELECT * FROM Singers"))) {
+ *   RowPublisher.forRows(resultSet, executor).subscribe(subscriber);
+ * }
+ * }</pre>
+ *
+ * <p>A {@link RowPublisher} can only be subscribed to once, as the underlying {@link
+ * AsyncResultSet} can only be consumed once.
+ */
+public final class RowPublisher<T> {
+
+  /** Receives the rows of a {@link RowPublisher}. */
+  public interface Subscriber<T> {
+    /**
+     * Called once before any other method with the {@link Subscription} that controls the flow of
+     * rows to this subscriber. No rows are delivered until {@link Subscription#request(long)} is
+     * called.
+     */
+    void onSubscribe(Subscription subscription);
+
+    /** Called for each element that has been requested. */
+    void onNext(T item);
+
+    /** Called once if the query or read failed. No other methods are called after this. */
+    void onError(Throwable throwable);
+
+    /** Called once after all rows have been delivered. No other methods are called after this. */
+    void onComplete();
+  }
+
+  /** Controls the flow of rows from a {@link RowPublisher} to a {@link Subscriber}. */
+  public interface Subscription {
+    /**
+     * Requests {@code n} more elements. Requests are cumulative, and a total demand of {@link
+     * Long#MAX_VALUE} or more means that all remaining elements are requested.
+     */
+    void request(long n);
+
+    /** Stops the delivery of elements and cancels the underlying result set. */
+    void cancel();
+  }
+
+  /**
+   * Returns a {@link RowPublisher} that delivers each row of the given {@link AsyncResultSet} as a
+   * {@link Struct}.
+   *
+   * @param resultSet the result set to publish. The result set must not have been consumed.
+   * @param executor the executor that calls the {@link Subscriber}
+   */
+  public static RowPublisher<Struct> forRows(AsyncResultSet resultSet, Executor executor) {
+    return new RowPublisher<>(resultSet, executor, 1, false);
+  }
+
+  /**
+   * Returns a {@link RowPublisher} that delivers the rows of the given {@link AsyncResultSet} in
+   * lists of at most {@code maxBatchSize} rows. Each list counts as one element for the demand of
+   * the subscriber. A list that is not full is delivered when no more rows are available without
+   * waiting for Cloud Spanner, so rows are not held back to fill a batch.
+   *
+   * @param resultSet the result set to publish. The result set must not have been consumed.
+   * @param executor the executor that calls the {@link Subscriber}
+   * @param maxBatchSize the maximum number of rows in each list
+   */
+  public static RowPublisher<List<Struct>> forBatches(
+      AsyncResultSet resultSet, Executor executor, int maxBatchSize) {
+    Preconditions.checkArgument(maxBatchSize > 0, "maxBatchSize must be > 0");
+    return new RowPublisher<>(resultSet, executor, maxBatchSize, true);
+  }
+
+  private final AsyncResultSet resultSet;
+  private final Executor executor;
+  private final int maxBatchSize;
+  private final boolean batches;
+  private final AtomicBoolean subscribed = new AtomicBoolean();
+
+  private RowPublisher(
+      AsyncResultSet resultSet, Executor executor, int maxBatchSize, boolean batches) {
+    this.resultSet = Preconditions.checkNotNull(resultSet);
+    // The callbacks of the result set and the calls to resume() run on the same sequential
+    // executor. A resume() therefore always runs after the callback that is running has returned,
+    // and cannot be lost because the callback has not yet been paused.
+    this.executor = MoreExecutors.newSequentialExecutor(Preconditions.checkNotNull(executor));
+    this.maxBatchSize = maxBatchSize;
+    this.batches = batches;
+  }
+
+  /**
+   * Subscribes the given {@link Subscriber} to the rows of this publisher. A second subscriber
+   * receives an {@link IllegalStateException} through {@link Subscriber#onError(Throwable)}.
+   */
+  public void subscribe(Subscriber<? super T> subscriber) {
+    Preconditions.checkNotNull(subscriber);
+    if (!subscribed.compareAndSet(false, true)) {
+      subscriber.onSubscribe(CANCELLED_SUBSCRIPTION);
+      subscriber.onError(new IllegalStateException("RowPublisher allows only one subscriber"));
+      return;
+    }
+    RowSubscription subscription = new RowSubscription(subscriber);
+    // The callback is registered before the subscriber is notified, so that the subscriber may
+    // request and cancel from within onSubscribe. The callback does not read any rows until the
+    // subscriber has requested them.
+    try {
+      resultSet.setCallback(executor, subscription);
+    } catch (Throwable t) {
+      subscriber.onSubscribe(CANCELLED_SUBSCRIPTION);
+      subscriber.onError(t);
+      return;
+    }
+    subscriber.onSubscribe(subscription);
+  }
+
+  private static final Subscription CANCELLED_SUBSCRIPTION =
+      new Subscription() {
+        @Override
+        public void request(long n) {}
+
+        @Override
+        public void cancel() {}
+      };
+
+  /**
+   * {@link RowSubscription} is both the {@link Subscription} of the subscriber and the {@link
+   * ReadyCallback} of the result set. All calls to the subscriber are made on the sequential
+   * executor, either by the callback or, for the error that is caused by an invalid request, by a
+   * task that is submitted to the same executor. The subscriber is therefore never called
+   * concurrently, and never from within {@link Subscription#request(long)}.
+   */
+  private final class RowSubscription implements Subscription, ReadyCallback {
+    private final Subscriber<? super T> subscriber;
+    private final AtomicLong demand = new AtomicLong();
+    /** Set when the subscriber has received a terminal signal or has cancelled. */
+    private final AtomicBoolean terminated = new AtomicBoolean();
+    /**
+     * Set by the first request. No rows are read before that, as the subscriber may not have
+     * received the subscription yet.
+     */
+    private volatile boolean requested;
+    /** Set while a call to resume() has been submitted to the executor and not yet run. */
+    private final AtomicBoolean resumePending = new AtomicBoolean();
+    /** The rows of the batch that is being collected. Only accessed by the callback. */
+    private List<Struct> batch;
+    /** The row that has been read ahead and not yet delivered. Only accessed by the callback. */
+    private Struct heldRow;
+
+    private RowSubscription(Subscriber<? super T> subscriber) {
+      this.subscriber = subscriber;
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0L) {
+        if (terminated.compareAndSet(false, true)) {
+          executor.execute(this::onInvalidRequest);
+        }
+        return;
+      }
+      long current;
+      long next;
+      do {
+        current = demand.get();
+        if (current == Long.MAX_VALUE) {
+          return;
+        }
+        next = current + n < 0L ? Long.MAX_VALUE : current + n;
+      } while (!demand.compareAndSet(current, next));
+      requested = true;
+      if (!terminated.get() && resumePending.compareAndSet(false, true)) {
+        executor.execute(this::resume);
+      }
+    }
+
+    /**
+     * Cancels the result set and signals the error of an invalid request to the subscriber. This
+     * runs on the sequential executor, so it cannot overlap with a running callback.
+     */
+    private void onInvalidRequest() {
+      resultSet.cancel();
+      subscriber.onError(
+          new IllegalArgumentException("The number of requested elements must be > 0"));
+    }
+
+    private void resume() {
+      resumePending.set(false);
+      if (!terminated.get()) {
+        resultSet.resume();
+      }
+    }
+
+    @Override
+    public void cancel() {
+      if (terminated.compareAndSet(false, true)) {
+        resultSet.cancel();
+      }
+    }
+
+    @Override
+    public CallbackResponse cursorReady(AsyncResultSet resultSet) {
+      if (terminated.get()) {
+        return CallbackResponse.DONE;
+      }
+      if (!requested) {
+        return CallbackResponse.PAUSE;
+      }
+      try {
+        while (true) {
+          if (hasHeldElement()) {
+            if (demand.get() == 0L) {
+              return CallbackResponse.PAUSE;
+            }
+            if (batches) {
+              emitBatch();
+            } else {
+              Struct row = heldRow;
+              heldRow = null;
+              emit(row);
+            }
+          } else if (demand.get() == 0L && batches && batch != null) {
+            // A partial batch is held until there is demand for it.
+            return CallbackResponse.PAUSE;
+          }
+          if (terminated.get()) {
+            return CallbackResponse.DONE;
+          }
+          // Rows are also read when there is no demand, so that the end of the result set and
+          // errors are signalled without waiting for more demand. At most one element is read
+          // ahead, and the result set is paused while it is held.
+          switch (resultSet.tryNext()) {
+            case OK:
+              Struct row = resultSet.getCurrentRowAsStruct();
+              if (batches) {
+                if (batch == null) {
+                  batch = new ArrayList<>(maxBatchSize);
+                }
+                batch.add(row);
+              } else {
+                heldRow = row;
+              }
+              break;
+            case NOT_READY:
+              if (demand.get() > 0L) {
+                emitBatch();
+              }
+              return CallbackResponse.CONTINUE;
+            case DONE:
+              emitBatch();
+              if (terminated.compareAndSet(false, true)) {
+                subscriber.onComplete();
+              }
+              return CallbackResponse.DONE;
+          }
+        }
+      } catch (Throwable t) {
+        if (terminated.compareAndSet(false, true)) {
+          subscriber.onError(t);
+        }
+        return CallbackResponse.DONE;
+      }
+    }
+
+    /** Returns true if a complete element has been read and not yet delivered. */
+    private boolean hasHeldElement() {
+      return batches ? batch != null && batch.size() == maxBatchSize : heldRow != null;
+    }
+
+    /** Delivers the batch that is being collected, if there is one. */
+    @SuppressWarnings("unchecked")
+    private void emitBatch() {
+      if (batches && batch != null && !batch.isEmpty()) {
+        List<Struct> rows = batch;
+        batch = null;
+        emit((T) rows);
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void emit(Object item) {
+      if (demand.get() != Long.MAX_VALUE) {
+        demand.decrementAndGet();
+      }
+      subscriber.onNext((T) item);
+    }
+  }
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Session budget that is shared by all session pools of one {@link Spanner} instance. Each pool
+ * registers itself with the budget and acquires budget before it creates new sessions. The budget
+ * guarantees each pool its minimum number of sessions. A pool that needs more sessions when the
+ * budget is exhausted records its demand, and the budget will then free up budget by asking the
+ * pools that have idle sessions above their minimum to delete their least recently used idle
+ * session. Rebalancing is executed on a separate executor and without holding any locks, as the
+ * pools call into the budget while holding their own lock.
+ */
+final class SessionBudget {
+  /** The side of a session pool that is called by the budget. */
+  interface Member {
+    /** Returns the number of idle sessions of the member. */
+    int getNumberOfIdleSessions();
+
+    /**
+     * Deletes the least recently used idle session of the member to make room for a session of
+     * another member. Returns true if a session was deleted. The member must release the budget of
+     * the session before this method returns.
+     */
+    boolean shedIdleSession();
+
+    /**
+     * Called when budget has become available for a member that previously could not acquire all
+     * the budget that it needed. The member should try to acquire the budget again.
+     */
+    void onBudgetAvailable();
+  }
+
+  /** The share of the budget that has been allocated to one session pool. */
+  final class Allocation {
+    private final Member member;
+    private final int minSessions;
+    private final int maxSessions;
+    private final AtomicLong numSessionsShed = new AtomicLong();
+
+    @GuardedBy("SessionBudget.this")
+    private int allocated;
+
+    @GuardedBy("SessionBudget.this")
+    private int demand;
+
+    @GuardedBy("SessionBudget.this")
+    private boolean closed;
+
+    private Allocation(Member member, int minSessions, int maxSessions) {
+      this.member = member;
+      this.minSessions = minSessions;
+      this.maxSessions = maxSessions;
+    }
+
+    /**
+     * Acquires budget for at most the given number of new sessions and returns the number of
+     * sessions that may be created. If less than the wanted number of sessions may be created, the
+     * remaining demand is recorded, and the member will be notified when budget becomes available.
+     */
+    int acquire(int wanted) {
+      synchronized (SessionBudget.this) {
+        if (closed || wanted <= 0) {
+          return Math.max(0, wanted);
+        }
+        int granted =
+            Math.max(0, Math.min(Math.min(wanted, maxSessions - allocated), available(this)));
+        setAllocated(this, allocated + granted);
+        int remaining = Math.min(wanted - granted, maxSessions - allocated);
+        if (remaining > 0) {
+          demand = remaining;
+          scheduleRebalance();
+        }
+        return granted;
+      }
+    }
+
+    /** Releases the budget of the given number of sessions. */
+    void release(int numSessions) {
+      synchronized (SessionBudget.this) {
+        if (closed || numSessions <= 0) {
+          return;
+        }
+        setAllocated(this, Math.max(0, allocated - numSessions));
+        if (hasDemand()) {
+          scheduleRebalance();
+        }
+      }
+    }
+
+    /** Removes this allocation from the budget and releases all its budget. */
+    void close() {
+      synchronized (SessionBudget.this) {
+        if (closed) {
+          return;
+        }
+        setAllocated(this, 0);
+        totalUnfulfilledMinSessions -= minSessions;
+        allocations.remove(this);
+        closed = true;
+        if (hasDemand()) {
+          scheduleRebalance();
+        }
+      }
+    }
+
+    int getAllocated() {
+      synchronized (SessionBudget.this) {
+        return allocated;
+      }
+    }
+
+    /** Returns the number of sessions that this member deleted to make room for other members. */
+    long getNumSessionsShed() {
+      return numSessionsShed.get();
+    }
+
+    /** Returns the budget that this allocation belongs to. */
+    SessionBudget getBudget() {
+      return SessionBudget.this;
+    }
+  }
+
+  private final int maxTotalSessions;
+  private final Executor executor;
+
+  @GuardedBy("this")
+  private final List<Allocation> allocations = new ArrayList<>();
+
+  @GuardedBy("this")
+  private int totalAllocated;
+
+  /** The number of sessions that is still needed to give all members their minimum. */
+  @GuardedBy("this")
+  private int totalUnfulfilledMinSessions;
+
+  @GuardedBy("this")
+  private boolean rebalanceScheduled;
+
+  SessionBudget(SessionBudgetOptions options, Executor executor) {
+    this.maxTotalSessions = options.getMaxTotalSessions();
+    this.executor = Preconditions.checkNotNull(executor);
+  }
+
+  /** Registers a session pool with the given minimum and maximum number of sessions. */
+  synchronized Allocation register(Member member, int minSessions, int maxSessions) {
+    Allocation allocation = new Allocation(member, minSessions, maxSessions);
+    allocations.add(allocation);
+    totalUnfulfilledMinSessions += minSessions;
+    return allocation;
+  }
+
+  synchronized int getTotalAllocated() {
+    return totalAllocated;
+  }
+
+  int getMaxTotalSessions() {
+    return maxTotalSessions;
+  }
+
+  @GuardedBy("this")
+  private void setAllocated(Allocation allocation, int allocated) {
+    totalUnfulfilledMinSessions -= Math.max(0, allocation.minSessions - allocation.allocated);
+    totalAllocated += allocated - allocation.allocated;
+    allocation.allocated = allocated;
+    totalUnfulfilledMinSessions += Math.max(0, allocation.minSessions - allocation.allocated);
+  }
+
+  /**
+   * Returns the budget that is available to the given allocation without touching the minimum
+   * number of sessions of the other allocations.
+   */
+  @GuardedBy("this")
+  private int available(Allocation allocation) {
+    int reservedForOthers =
+        totalUnfulfilledMinSessions - Math.max(0, allocation.minSessions - allocation.allocated);
+    return Math.max(0, maxTotalSessions - totalAllocated - reservedForOthers);
+  }
+
+  @GuardedBy("this")
+  private boolean hasDemand() {
+    for (Allocation allocation : allocations) {
+      if (allocation.demand > 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @GuardedBy("this")
+  private void scheduleRebalance() {
+    if (!rebalanceScheduled) {
+      rebalanceScheduled = true;
+      try {
+        executor.execute(this::rebalance);
+      } catch (RejectedExecutionException e) {
+        // The Spanner instance is being closed.
+        rebalanceScheduled = false;
+      }
+    }
+  }
+
+  /**
+   * Tries to free up budget for the allocations that have unfulfilled demand by shedding idle
+   * sessions of other allocations, and notifies the allocations for which budget is available.
+   */
+  @VisibleForTesting
+  void rebalance() {
+    List<Allocation> starved = new ArrayList<>();
+    synchronized (this) {
+      rebalanceScheduled = false;
+      for (Allocation allocation : allocations) {
+        if (allocation.demand > 0) {
+          starved.add(allocation);
+        }
+      }
+    }
+    for (Allocation allocation : starved) {
+      int numToShed;
+      synchronized (this) {
+        if (allocation.closed) {
+          continue;
+        }
+        numToShed = allocation.demand - available(allocation);
+      }
+      for (int i = 0; i < numToShed; i++) {
+        if (!shedIdleSession(allocation)) {
+          break;
+        }
+      }
+      boolean notify;
+      synchronized (this) {
+        notify = !allocation.closed && available(allocation) > 0;
+        if (notify) {
+          allocation.demand = 0;
+        }
+      }
+      // The demand stays recorded if no budget could be freed. The allocation is then notified
+      // when another allocation releases budget.
+      if (notify) {
+        allocation.member.onBudgetAvailable();
+      }
+    }
+  }
+
+  /**
+   * Sheds the least recently used idle session of the allocation with the most idle sessions above
+   * its minimum, other than the given allocation.
+   */
+  private boolean shedIdleSession(Allocation starved) {
+    List<Allocation> candidates = new ArrayList<>();
+    synchronized (this) {
+      for (Allocation allocation : allocations) {
+        if (allocation != starved && allocation.allocated > allocation.minSessions) {
+          candidates.add(allocation);
+        }
+      }
+    }
+    Allocation victim = null;
+    int maxIdle = 0;
+    for (Allocation candidate : candidates) {
+      int idle = candidate.member.getNumberOfIdleSessions();
+      if (idle > maxIdle) {
+        victim = candidate;
+        maxIdle = idle;
+      }
+    }
+    if (victim != null && victim.member.shedIdleSession()) {
+      victim.numSessionsShed.incrementAndGet();
+      return true;
+    }
+    return false;
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Options for a session budget that is shared by all session pools of one {@link Spanner} instance.
+ * The total number of sessions of all {@link DatabaseClient}s of the {@link Spanner} instance will
+ * not exceed {@link #getMaxTotalSessions()}. Each session pool is guaranteed its minimum number of
+ * sessions, and can grow up to its maximum number of sessions as long as the shared budget allows
+ * it. A pool that needs more sessions when the budget has been exhausted will take over the budget
+ * of idle sessions of pools that have more than their minimum number of sessions. Those idle
+ * sessions are deleted to make room for the new sessions.
+ *
+ * <p>The minimum and maximum number of sessions of a database are by default the values in {@link
+ * SessionPoolOptions}, and can be overridden per database with {@link
+ * Builder#setDatabaseSessionLimits(DatabaseId, int, int)}. The sum of the minimum number of
+ * sessions that are set for specific databases must not exceed the total number of sessions.
+ */
+public class SessionBudgetOptions {
+  private final int maxTotalSessions;
+  private final ImmutableMap<DatabaseId, Integer> minSessions;
+  private final ImmutableMap<DatabaseId, Integer> maxSessions;
+
+  private SessionBudgetOptions(Builder builder) {
+    this.maxTotalSessions = builder.maxTotalSessions;
+    this.minSessions = ImmutableMap.copyOf(builder.minSessions);
+    this.maxSessions = ImmutableMap.copyOf(builder.maxSessions);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof SessionBudgetOptions)) {
+      return false;
+    }
+    SessionBudgetOptions other = (SessionBudgetOptions) o;
+    return this.maxTotalSessions == other.maxTotalSessions
+        && Objects.equals(this.minSessions, other.minSessions)
+        && Objects.equals(this.maxSessions, other.maxSessions);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(this.maxTotalSessions, this.minSessions, this.maxSessions);
+  }
+
+  public Builder toBuilder() {
+    return new Builder(this);
+  }
+
+  /** Returns the maximum number of sessions of all session pools together. */
+  public int getMaxTotalSessions() {
+    return maxTotalSessions;
+  }
+
+  /**
+   * Returns the minimum number of sessions that is guaranteed to the given database, or the minimum
+   * number of sessions in the given {@link SessionPoolOptions} if no specific limit has been set
+   * for the database.
+   */
+  public int getMinSessions(DatabaseId db, SessionPoolOptions defaultOptions) {
+    Integer min = minSessions.get(Preconditions.checkNotNull(db));
+    return min == null ? defaultOptions.getMinSessions() : min;
+  }
+
+  /**
+   * Returns the maximum number of sessions of the given database, or the maximum number of sessions
+   * in the given {@link SessionPoolOptions} if no specific limit has been set for the database.
+   */
+  public int getMaxSessions(DatabaseId db, SessionPoolOptions defaultOptions) {
+    Integer max = maxSessions.get(Preconditions.checkNotNull(db));
+    return max == null ? defaultOptions.getMaxSessions() : max;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /** Builder for creating {@link SessionBudgetOptions}. */
+  public static class Builder {
+    private int maxTotalSessions;
+    private final Map<DatabaseId, Integer> minSessions = new HashMap<>();
+    private final Map<DatabaseId, Integer> maxSessions = new HashMap<>();
+
+    public Builder() {}
+
+    private Builder(SessionBudgetOptions options) {
+      this.maxTotalSessions = options.maxTotalSessions;
+      this.minSessions.putAll(options.minSessions);
+      this.maxSessions.putAll(options.maxSessions);
+    }
+
+    /**
+     * Sets the maximum number of sessions of all session pools of the {@link Spanner} instance
+     * together. This value is required and must be greater than zero.
+     */
+    public Builder setMaxTotalSessions(int maxTotalSessions) {
+      Preconditions.checkArgument(maxTotalSessions > 0, "maxTotalSessions must be > 0");
+      this.maxTotalSessions = maxTotalSessions;
+      return this;
+    }
+
+    /**
+     * Sets the minimum and maximum number of sessions of the given database. The minimum number of
+     * sessions is never given to other databases, and the database will never use more than the
+     * maximum number of sessions. These values override the values in {@link SessionPoolOptions}
+     * for this database.
+     */
+    public Builder setDatabaseSessionLimits(DatabaseId db, int minSessions, int maxSessions) {
+      Preconditions.checkNotNull(db);
+      Preconditions.checkArgument(minSessions >= 0, "minSessions must be >= 0");
+      Preconditions.checkArgument(maxSessions > 0, "maxSessions must be > 0");
+      Preconditions.checkArgument(minSessions <= maxSessions, "minSessions must be <= maxSessions");
+      this.minSessions.put(db, minSessions);
+      this.maxSessions.put(db, maxSessions);
+      return this;
+    }
+
+    /**
+     * Builds a {@link SessionBudgetOptions} object. The minimum number of sessions of the databases
+     * that have specific limits must together not exceed the maximum total number of sessions, as
+     * the budget could otherwise not guarantee each of them its minimum.
+     */
+    public SessionBudgetOptions build() {
+      Preconditions.checkState(maxTotalSessions > 0, "maxTotalSessions must be set");
+      long totalMinSessions = 0L;
+      for (int min : minSessions.values()) {
+        totalMinSessions += min;
+      }
+      Preconditions.checkState(
+          totalMinSessions <= maxTotalSessions,
+          "The sum of the minSessions of all databases (%s) must be <= maxTotalSessions (%s)",
+          totalMinSessions,
+          maxTotalSessions);
+      return new SessionBudgetOptions(this);
+    }
+  }
+}
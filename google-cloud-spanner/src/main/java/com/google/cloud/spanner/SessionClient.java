@@ -22,6 +22,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import com.google.api.pathtemplate.PathTemplate;
 import com.google.cloud.grpc.GrpcTransportOptions.ExecutorFactory;
 import com.google.cloud.spanner.spi.v1.SpannerRpc;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
@@ -167,6 +168,9 @@ class SessionClient implements AutoCloseable {
     void onSessionCreateFailure(Throwable t, int createFailureForSessionCount);
   }
 
+  /** The maximum number of sessions that is returned by one BatchCreateSessions call. */
+  @VisibleForTesting static final int MAX_SESSIONS_PER_BATCH = 100;
+
   private final SpannerImpl spanner;
   private final ExecutorFactory<ScheduledExecutorService> executorFactory;
   private final ScheduledExecutorService executor;
@@ -198,6 +202,11 @@ class SessionClient implements AutoCloseable {
     return db;
   }
 
+  /** Returns the number of gRPC channels that the sessions of this client are spread over. */
+  int getNumChannels() {
+    return spanner.getOptions().getNumChannels();
+  }
+
   /** Create a single session. */
   SessionImpl createSession() {
     // The sessionChannelCounter could overflow, but that will just flip it to Integer.MIN_VALUE,
@@ -263,13 +272,20 @@ class SessionClient implements AutoCloseable {
           createCountForChannel = sessionCountPerChannel + remainder;
         }
         if (createCountForChannel > 0 && numBeingCreated < sessionCount) {
-          try {
-            executor.submit(
-                new BatchCreateSessionsRunnable(
-                    createCountForChannel, sessionChannelCounter++, consumer));
-            numBeingCreated += createCountForChannel;
-          } catch (Throwable t) {
-            consumer.onSessionCreateFailure(t, sessionCount - numBeingCreated);
+          long channelHint = sessionChannelCounter++;
+          // BatchCreateSessions returns at most MAX_SESSIONS_PER_BATCH sessions per call. Larger
+          // batches for a single channel are therefore split into multiple calls that are executed
+          // in parallel instead of sequentially.
+          while (createCountForChannel > 0) {
+            int createCount = Math.min(createCountForChannel, MAX_SESSIONS_PER_BATCH);
+            try {
+              executor.submit(new BatchCreateSessionsRunnable(createCount, channelHint, consumer));
+            } catch (Throwable t) {
+              consumer.onSessionCreateFailure(t, sessionCount - numBeingCreated);
+              return;
+            }
+            numBeingCreated += createCount;
+            createCountForChannel -= createCount;
           }
         } else {
           break;
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Lightweight health score of a session. The score consists of an exponentially weighted moving
+ * average of the latency of each {@link RpcType} that is executed on the session, and an
+ * exponentially weighted moving average of the fraction of those RPCs that failed with a transient
+ * error. The latencies are kept per RPC type, as the latency of for example a commit depends on the
+ * work of the transaction, and can only be compared with the commits on other sessions. The {@link
+ * SessionPool} uses the score to retire sessions that are consistently slower or less reliable than
+ * the other sessions in the pool.
+ */
+final class SessionHealth {
+  /** The RPCs that contribute to the health score of a session. */
+  enum RpcType {
+    BEGIN_TRANSACTION,
+    COMMIT,
+    KEEP_ALIVE,
+  }
+
+  static final RpcType[] RPC_TYPES = RpcType.values();
+
+  /** The weight of a new sample in the moving averages. */
+  private static final double ALPHA = 0.1d;
+
+  /** Errors that indicate that the session could be unhealthy. */
+  private static final ImmutableSet<ErrorCode> TRANSIENT_ERROR_CODES =
+      ImmutableSet.of(ErrorCode.UNAVAILABLE, ErrorCode.DEADLINE_EXCEEDED, ErrorCode.INTERNAL);
+
+  @GuardedBy("this")
+  private long numRpcs;
+
+  @GuardedBy("this")
+  private final long[] numSuccessfulRpcs = new long[RPC_TYPES.length];
+
+  @GuardedBy("this")
+  private final double[] latencyMicros = new double[RPC_TYPES.length];
+
+  @GuardedBy("this")
+  private double errorRate;
+
+  /** Records a successful RPC that was started at the given {@link System#nanoTime()}. */
+  void recordSuccess(RpcType type, long startNanos) {
+    recordLatency(type, (System.nanoTime() - startNanos) / 1000L);
+  }
+
+  @VisibleForTesting
+  synchronized void recordLatency(RpcType type, long micros) {
+    int index = type.ordinal();
+    latencyMicros[index] =
+        numSuccessfulRpcs[index] == 0L
+            ? micros
+            : (1 - ALPHA) * latencyMicros[index] + ALPHA * micros;
+    errorRate = (1 - ALPHA) * errorRate;
+    numSuccessfulRpcs[index]++;
+    numRpcs++;
+  }
+
+  /**
+   * Records a failed RPC. Only transient errors affect the score, as other errors, such as for
+   * example an invalid query, are not caused by the session.
+   */
+  void recordFailure(Throwable t) {
+    if (t instanceof SpannerException
+        && TRANSIENT_ERROR_CODES.contains(((SpannerException) t).getErrorCode())) {
+      recordTransientError();
+    }
+  }
+
+  @VisibleForTesting
+  synchronized void recordTransientError() {
+    errorRate = (1 - ALPHA) * errorRate + ALPHA;
+    numRpcs++;
+  }
+
+  /** Returns the number of RPCs of all types that contributed to the score of this session. */
+  synchronized long getNumRpcs() {
+    return numRpcs;
+  }
+
+  /** Returns the number of successful RPCs of the given type on this session. */
+  synchronized long getNumSuccessfulRpcs(RpcType type) {
+    return numSuccessfulRpcs[type.ordinal()];
+  }
+
+  /**
+   * Returns the moving average of the latency of successful RPCs of the given type in
+   * microseconds.
+   */
+  synchronized long getLatencyMicros(RpcType type) {
+    return (long) latencyMicros[type.ordinal()];
+  }
+
+  /** Returns the moving average of the fraction of RPCs that failed with a transient error. */
+  synchronized double getErrorRate() {
+    return errorRate;
+  }
+}
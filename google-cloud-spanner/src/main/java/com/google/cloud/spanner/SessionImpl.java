@@ -27,6 +27,7 @@ import com.google.cloud.spanner.AbstractReadContext.SingleReadContext;
 import com.google.cloud.spanner.AbstractReadContext.SingleUseReadOnlyTransaction;
 import com.google.cloud.spanner.Options.TransactionOption;
 import com.google.cloud.spanner.Options.UpdateOption;
+import com.google.cloud.spanner.SessionHealth.RpcType;
 import com.google.cloud.spanner.SessionClient.SessionId;
 import com.google.cloud.spanner.TransactionRunnerImpl.TransactionContextImpl;
 import com.google.cloud.spanner.spi.v1.SpannerRpc;
@@ -37,9 +38,11 @@ import com.google.protobuf.ByteString;
 import com.google.protobuf.Empty;
 import com.google.spanner.v1.BeginTransactionRequest;
 import com.google.spanner.v1.CommitRequest;
+import com.google.spanner.v1.ExecuteSqlRequest;
 import com.google.spanner.v1.RequestOptions;
 import com.google.spanner.v1.Transaction;
 import com.google.spanner.v1.TransactionOptions;
+import com.google.spanner.v1.TransactionSelector;
 import io.opencensus.common.Scope;
 import io.opencensus.trace.Span;
 import io.opencensus.trace.Tracer;
@@ -49,6 +52,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
 /**
@@ -57,6 +61,9 @@ import javax.annotation.Nullable;
  */
 class SessionImpl implements Session {
   private static final Tracer tracer = Tracing.getTracer();
+  private static final String KEEP_ALIVE_SQL = "SELECT 1";
+  private static final TimestampBound KEEP_ALIVE_TIMESTAMP_BOUND =
+      TimestampBound.ofMaxStaleness(60, TimeUnit.SECONDS);
 
   /** Keep track of running transactions on this session per thread. */
   static final ThreadLocal<Boolean> hasPendingTransaction = ThreadLocal.withInitial(() -> false);
@@ -86,6 +93,7 @@ class SessionImpl implements Session {
   private SessionTransaction activeTransaction;
   ByteString readyTransactionId;
   private final Map<SpannerRpc.Option, ?> options;
+  private final SessionHealth health = new SessionHealth();
   private Span currentSpan;
 
   SessionImpl(SpannerImpl spanner, String name, Map<SpannerRpc.Option, ?> options) {
@@ -104,6 +112,20 @@ class SessionImpl implements Session {
     return options;
   }
 
+  SessionHealth getHealth() {
+    return health;
+  }
+
+  /** Records an RPC on this session that succeeded and was started at the given nano time. */
+  void recordRpcSuccess(RpcType type, long startNanos) {
+    health.recordSuccess(type, startNanos);
+  }
+
+  /** Records an RPC on this session that failed. */
+  void recordRpcFailure(Throwable t) {
+    health.recordFailure(t);
+  }
+
   void setCurrentSpan(Span span) {
     currentSpan = span;
   }
@@ -175,11 +197,14 @@ class SessionImpl implements Session {
       requestBuilder.setRequestOptions(requestOptionsBuilder.build());
     }
     Span span = tracer.spanBuilder(SpannerImpl.COMMIT).startSpan();
+    long startNanos = System.nanoTime();
     try (Scope s = tracer.withSpan(span)) {
       com.google.spanner.v1.CommitResponse response =
           spanner.getRpc().commit(requestBuilder.build(), this.options);
+      recordRpcSuccess(RpcType.COMMIT, startNanos);
       return new CommitResponse(response);
     } catch (RuntimeException e) {
+      recordRpcFailure(e);
       TraceUtil.setWithFailure(span, e);
       throw e;
     } finally {
@@ -201,6 +226,8 @@ class SessionImpl implements Session {
             .setRpc(spanner.getRpc())
             .setDefaultQueryOptions(spanner.getDefaultQueryOptions(databaseId))
             .setDefaultPrefetchChunks(spanner.getDefaultPrefetchChunks())
+            .setMaxResumeBufferBytes(spanner.getDefaultMaxResumeBufferBytes())
+            .setResultMemoryGovernor(spanner.getResultMemoryGovernor())
             .setSpan(currentSpan)
             .setExecutorProvider(spanner.getAsyncExecutorProvider())
             .build());
@@ -220,6 +247,8 @@ class SessionImpl implements Session {
             .setRpc(spanner.getRpc())
             .setDefaultQueryOptions(spanner.getDefaultQueryOptions(databaseId))
             .setDefaultPrefetchChunks(spanner.getDefaultPrefetchChunks())
+            .setMaxResumeBufferBytes(spanner.getDefaultMaxResumeBufferBytes())
+            .setResultMemoryGovernor(spanner.getResultMemoryGovernor())
             .setSpan(currentSpan)
             .setExecutorProvider(spanner.getAsyncExecutorProvider())
             .buildSingleUseReadOnlyTransaction());
@@ -239,6 +268,8 @@ class SessionImpl implements Session {
             .setRpc(spanner.getRpc())
             .setDefaultQueryOptions(spanner.getDefaultQueryOptions(databaseId))
             .setDefaultPrefetchChunks(spanner.getDefaultPrefetchChunks())
+            .setMaxResumeBufferBytes(spanner.getDefaultMaxResumeBufferBytes())
+            .setResultMemoryGovernor(spanner.getResultMemoryGovernor())
             .setSpan(currentSpan)
             .setExecutorProvider(spanner.getAsyncExecutorProvider())
             .build());
@@ -308,6 +339,7 @@ class SessionImpl implements Session {
                 TransactionOptions.newBuilder()
                     .setReadWrite(TransactionOptions.ReadWrite.getDefaultInstance()))
             .build();
+    final long startNanos = System.nanoTime();
     final ApiFuture<Transaction> requestFuture =
         spanner.getRpc().beginTransactionAsync(request, options);
     requestFuture.addListener(
@@ -316,6 +348,7 @@ class SessionImpl implements Session {
             () -> {
               try {
                 Transaction txn = requestFuture.get();
+                recordRpcSuccess(RpcType.BEGIN_TRANSACTION, startNanos);
                 if (txn.getId().isEmpty()) {
                   throw newSpannerException(
                       ErrorCode.INTERNAL, "Missing id in transaction\n" + getName());
@@ -324,9 +357,11 @@ class SessionImpl implements Session {
                 res.set(txn.getId());
               } catch (ExecutionException e) {
                 TraceUtil.endSpanWithFailure(span, e);
-                res.setException(
+                SpannerException error =
                     SpannerExceptionFactory.newSpannerException(
-                        e.getCause() == null ? e : e.getCause()));
+                        e.getCause() == null ? e : e.getCause());
+                recordRpcFailure(error);
+                res.setException(error);
               } catch (InterruptedException e) {
                 TraceUtil.endSpanWithFailure(span, e);
                 res.setException(SpannerExceptionFactory.propagateInterrupt(e));
@@ -339,6 +374,48 @@ class SessionImpl implements Session {
     return res;
   }
 
+  /**
+   * Sends a unary single-use read-only query to Spanner to prevent the session from being garbage
+   * collected by the backend. The query does not require a thread to wait for the result. The
+   * returned future fails with a {@link SpannerException} if the query fails.
+   */
+  ApiFuture<Void> keepAliveAsync() {
+    final SettableApiFuture<Void> res = SettableApiFuture.create();
+    final ExecuteSqlRequest request =
+        ExecuteSqlRequest.newBuilder()
+            .setSession(name)
+            .setSql(KEEP_ALIVE_SQL)
+            .setTransaction(
+                TransactionSelector.newBuilder()
+                    .setSingleUse(
+                        TransactionOptions.newBuilder()
+                            .setReadOnly(KEEP_ALIVE_TIMESTAMP_BOUND.toProto())))
+            .build();
+    final long startNanos = System.nanoTime();
+    final ApiFuture<com.google.spanner.v1.ResultSet> requestFuture =
+        spanner.getRpc().executeQueryAsync(request, options);
+    requestFuture.addListener(
+        () -> {
+          try {
+            requestFuture.get();
+            recordRpcSuccess(RpcType.KEEP_ALIVE, startNanos);
+            res.set(null);
+          } catch (ExecutionException e) {
+            SpannerException error =
+                SpannerExceptionFactory.newSpannerException(
+                    e.getCause() == null ? e : e.getCause());
+            recordRpcFailure(error);
+            res.setException(error);
+          } catch (InterruptedException e) {
+            res.setException(SpannerExceptionFactory.propagateInterrupt(e));
+          } catch (Exception e) {
+            res.setException(SpannerExceptionFactory.newSpannerException(e));
+          }
+        },
+        MoreExecutors.directExecutor());
+    return res;
+  }
+
   TransactionContextImpl newTransaction(Options options) {
     return TransactionContextImpl.newBuilder()
         .setSession(this)
@@ -349,6 +426,7 @@ class SessionImpl implements Session {
         .setRpc(spanner.getRpc())
         .setDefaultQueryOptions(spanner.getDefaultQueryOptions(databaseId))
         .setDefaultPrefetchChunks(spanner.getDefaultPrefetchChunks())
+        .setMaxResumeBufferBytes(spanner.getDefaultMaxResumeBufferBytes())
         .setSpan(currentSpan)
         .setExecutorProvider(spanner.getAsyncExecutorProvider())
         .build();
@@ -18,28 +18,61 @@ package com.google.cloud.spanner;
 
 import static com.google.cloud.spanner.MetricRegistryConstants.COUNT;
 import static com.google.cloud.spanner.MetricRegistryConstants.GET_SESSION_TIMEOUTS;
+import static com.google.cloud.spanner.MetricRegistryConstants.KEEP_ALIVE_PING_TIME;
+import static com.google.cloud.spanner.MetricRegistryConstants.KEEP_ALIVE_PING_TIME_DESCRIPTION;
 import static com.google.cloud.spanner.MetricRegistryConstants.MAX_ALLOWED_SESSIONS;
 import static com.google.cloud.spanner.MetricRegistryConstants.MAX_ALLOWED_SESSIONS_DESCRIPTION;
 import static com.google.cloud.spanner.MetricRegistryConstants.MAX_IN_USE_SESSIONS;
 import static com.google.cloud.spanner.MetricRegistryConstants.MAX_IN_USE_SESSIONS_DESCRIPTION;
+import static com.google.cloud.spanner.MetricRegistryConstants.MAX_SESSION_LATENCY;
+import static com.google.cloud.spanner.MetricRegistryConstants.MEDIAN_SESSION_LATENCY;
+import static com.google.cloud.spanner.MetricRegistryConstants.MICROSECOND;
+import static com.google.cloud.spanner.MetricRegistryConstants.MILLISECOND;
 import static com.google.cloud.spanner.MetricRegistryConstants.NUM_ACQUIRED_SESSIONS;
 import static com.google.cloud.spanner.MetricRegistryConstants.NUM_ACQUIRED_SESSIONS_DESCRIPTION;
+import static com.google.cloud.spanner.MetricRegistryConstants.NUM_BUDGET_ALLOCATED_SESSIONS;
+import static com.google.cloud.spanner.MetricRegistryConstants.NUM_BUDGET_ALLOCATED_SESSIONS_DESCRIPTION;
+import static com.google.cloud.spanner.MetricRegistryConstants.NUM_FAILED_KEEP_ALIVE_PINGS;
+import static com.google.cloud.spanner.MetricRegistryConstants.NUM_FAILED_KEEP_ALIVE_PINGS_DESCRIPTION;
 import static com.google.cloud.spanner.MetricRegistryConstants.NUM_IN_USE_SESSIONS;
+import static com.google.cloud.spanner.MetricRegistryConstants.NUM_IN_USE_SESSIONS_PER_CHANNEL;
+import static com.google.cloud.spanner.MetricRegistryConstants.NUM_IN_USE_SESSIONS_PER_CHANNEL_DESCRIPTION;
+import static com.google.cloud.spanner.MetricRegistryConstants.NUM_KEEP_ALIVE_PINGS;
+import static com.google.cloud.spanner.MetricRegistryConstants.NUM_KEEP_ALIVE_PINGS_DESCRIPTION;
 import static com.google.cloud.spanner.MetricRegistryConstants.NUM_READ_SESSIONS;
 import static com.google.cloud.spanner.MetricRegistryConstants.NUM_RELEASED_SESSIONS;
 import static com.google.cloud.spanner.MetricRegistryConstants.NUM_RELEASED_SESSIONS_DESCRIPTION;
 import static com.google.cloud.spanner.MetricRegistryConstants.NUM_SESSIONS_BEING_PREPARED;
 import static com.google.cloud.spanner.MetricRegistryConstants.NUM_SESSIONS_IN_POOL;
 import static com.google.cloud.spanner.MetricRegistryConstants.NUM_SESSIONS_IN_POOL_DESCRIPTION;
+import static com.google.cloud.spanner.MetricRegistryConstants.NUM_SESSIONS_SHED_FOR_BUDGET;
+import static com.google.cloud.spanner.MetricRegistryConstants.NUM_SESSIONS_SHED_FOR_BUDGET_DESCRIPTION;
+import static com.google.cloud.spanner.MetricRegistryConstants.NUM_UNHEALTHY_SESSIONS;
+import static com.google.cloud.spanner.MetricRegistryConstants.NUM_UNHEALTHY_SESSIONS_DESCRIPTION;
+import static com.google.cloud.spanner.MetricRegistryConstants.NUM_UNHEALTHY_SESSIONS_RETIRED;
+import static com.google.cloud.spanner.MetricRegistryConstants.NUM_UNHEALTHY_SESSIONS_RETIRED_DESCRIPTION;
+import static com.google.cloud.spanner.MetricRegistryConstants.NUM_WAITS_FOR_SESSION;
+import static com.google.cloud.spanner.MetricRegistryConstants.NUM_WAITS_FOR_SESSION_DESCRIPTION;
 import static com.google.cloud.spanner.MetricRegistryConstants.NUM_WRITE_SESSIONS;
 import static com.google.cloud.spanner.MetricRegistryConstants.SESSIONS_TIMEOUTS_DESCRIPTION;
+import static com.google.cloud.spanner.MetricRegistryConstants.SESSION_BUDGET_SESSIONS;
+import static com.google.cloud.spanner.MetricRegistryConstants.SESSION_BUDGET_SESSIONS_DESCRIPTION;
+import static com.google.cloud.spanner.MetricRegistryConstants.SESSION_LATENCY;
+import static com.google.cloud.spanner.MetricRegistryConstants.SESSION_LATENCY_DESCRIPTION;
 import static com.google.cloud.spanner.MetricRegistryConstants.SPANNER_DEFAULT_LABEL_VALUES;
 import static com.google.cloud.spanner.MetricRegistryConstants.SPANNER_LABEL_KEYS;
+import static com.google.cloud.spanner.MetricRegistryConstants.SPANNER_LABEL_KEYS_WITH_CHANNEL;
+import static com.google.cloud.spanner.MetricRegistryConstants.SPANNER_LABEL_KEYS_WITH_PRIORITY;
 import static com.google.cloud.spanner.MetricRegistryConstants.SPANNER_LABEL_KEYS_WITH_TYPE;
+import static com.google.cloud.spanner.MetricRegistryConstants.TOTAL_ALLOCATED_SESSIONS;
+import static com.google.cloud.spanner.MetricRegistryConstants.TOTAL_MAX_SESSIONS;
+import static com.google.cloud.spanner.MetricRegistryConstants.WAIT_FOR_SESSION_TIME;
+import static com.google.cloud.spanner.MetricRegistryConstants.WAIT_FOR_SESSION_TIME_DESCRIPTION;
 import static com.google.cloud.spanner.SpannerExceptionFactory.newSpannerException;
 import static com.google.common.base.Preconditions.checkState;
 
 import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
 import com.google.api.core.ApiFutures;
 import com.google.api.core.SettableApiFuture;
 import com.google.api.gax.core.ExecutorProvider;
@@ -48,11 +81,14 @@ import com.google.cloud.grpc.GrpcTransportOptions;
 import com.google.cloud.grpc.GrpcTransportOptions.ExecutorFactory;
 import com.google.cloud.spanner.Options.QueryOption;
 import com.google.cloud.spanner.Options.ReadOption;
+import com.google.cloud.spanner.Options.RpcPriority;
 import com.google.cloud.spanner.Options.TransactionOption;
 import com.google.cloud.spanner.Options.UpdateOption;
 import com.google.cloud.spanner.SessionClient.SessionConsumer;
+import com.google.cloud.spanner.SessionHealth.RpcType;
 import com.google.cloud.spanner.SpannerException.ResourceNotFoundException;
 import com.google.cloud.spanner.SpannerImpl.ClosedException;
+import com.google.cloud.spanner.spi.v1.SpannerRpc;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.MoreObjects;
@@ -61,13 +97,15 @@ import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterators;
 import com.google.common.util.concurrent.ForwardingListenableFuture;
 import com.google.common.util.concurrent.ForwardingListenableFuture.SimpleForwardingListenableFuture;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.protobuf.Empty;
-import io.opencensus.common.Scope;
 import io.opencensus.metrics.DerivedLongCumulative;
 import io.opencensus.metrics.DerivedLongGauge;
 import io.opencensus.metrics.LabelValue;
@@ -76,31 +114,41 @@ import io.opencensus.metrics.MetricRegistry;
 import io.opencensus.metrics.Metrics;
 import io.opencensus.trace.Annotation;
 import io.opencensus.trace.AttributeValue;
-import io.opencensus.trace.BlankSpan;
 import io.opencensus.trace.Span;
-import io.opencensus.trace.Status;
 import io.opencensus.trace.Tracer;
 import io.opencensus.trace.Tracing;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
+import java.util.ListIterator;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 import org.threeten.bp.Duration;
@@ -114,6 +162,56 @@ class SessionPool {
 
   private static final Logger logger = Logger.getLogger(SessionPool.class.getName());
   private static final Tracer tracer = Tracing.getTracer();
+  /**
+   * The maximum fraction of the surplus of sessions that is removed in one maintenance cycle when
+   * the pool has a {@link SessionPoolSizingPolicy} that estimates that fewer sessions are needed.
+   */
+  private static final double MAX_SHRINK_FRACTION_PER_CYCLE = 0.1d;
+  /**
+   * The priority of requests that do not specify a priority. This is also the default of Spanner.
+   */
+  private static final RpcPriority DEFAULT_PRIORITY = RpcPriority.HIGH;
+
+  private static final RpcPriority[] PRIORITIES = RpcPriority.values();
+
+  private static final int NUM_PRIORITIES = PRIORITIES.length;
+
+  /**
+   * The maximum number of keep-alive pings that may be scheduled or in flight at the same time for
+   * one pool. Sessions that need a ping when this limit has been reached are pinged in a later
+   * maintenance cycle.
+   */
+  @VisibleForTesting static final int MAX_CONCURRENT_KEEP_ALIVE_PINGS = 100;
+
+  /** The minimum number of RPCs that must have been executed on a session to score its health. */
+  @VisibleForTesting static final long MIN_RPCS_FOR_SESSION_HEALTH = 10L;
+
+  /**
+   * A session is considered unhealthy if its average latency is more than this factor times the
+   * median latency of the sessions in the pool.
+   */
+  private static final double UNHEALTHY_SESSION_LATENCY_FACTOR = 3.0d;
+
+  /**
+   * The minimum difference between the average latency of a session and the median latency of the
+   * pool for the session to be considered unhealthy. This prevents sessions from being retired
+   * because of random variations in the latency of very fast RPCs.
+   */
+  private static final long MIN_UNHEALTHY_SESSION_LATENCY_DIFFERENCE_MICROS = 10_000L;
+
+  /** The minimum number of scored sessions that is needed to compare the latency of sessions. */
+  private static final int MIN_SESSIONS_FOR_LATENCY_COMPARISON = 3;
+
+  /** A session is considered unhealthy if more than this fraction of its RPCs fail. */
+  private static final double UNHEALTHY_SESSION_ERROR_RATE = 0.5d;
+
+  /**
+   * The maximum fraction of the scored sessions that is retired as unhealthy in one maintenance
+   * cycle. This limits the number of sessions that must be replaced at the same time if many
+   * sessions are slow, for example because of a problem that is not specific to the sessions.
+   */
+  private static final double MAX_RETIRE_FRACTION_PER_CYCLE = 0.1d;
+
   static final String WAIT_FOR_SESSION = "SessionPool.WaitForSession";
   static final ImmutableSet<ErrorCode> SHOULD_STOP_PREPARE_SESSIONS_ERROR_CODES =
       ImmutableSet.of(
@@ -167,8 +265,16 @@ class SessionPool {
      */
     private class AutoClosingReadContextAsyncResultSetImpl extends AsyncResultSetImpl {
       private AutoClosingReadContextAsyncResultSetImpl(
-          ExecutorProvider executorProvider, ResultSet delegate, int bufferRows) {
-        super(executorProvider, delegate, bufferRows);
+          ExecutorProvider executorProvider, ResultSet delegate, int bufferRows, int batchRows) {
+        super(executorProvider, delegate, bufferRows, batchRows);
+      }
+
+      @Override
+      ListenableFuture<?> producerReady() {
+        synchronized (lock) {
+          // Wait for the pool to hand out a session before starting to produce rows.
+          return session;
+        }
       }
 
       @Override
@@ -247,9 +353,19 @@ class SessionPool {
 
         @Override
         public boolean next() throws SpannerException {
+          return retryOnSessionNotFound(() -> internalRead(super::next, hasNext -> hasNext));
+        }
+
+        @Override
+        public ColumnarBatch nextBatch(int maxRows) throws SpannerException {
+          return retryOnSessionNotFound(
+              () -> internalRead(() -> super.nextBatch(maxRows), batch -> batch.getRowCount() > 0));
+        }
+
+        private <T> T retryOnSessionNotFound(Supplier<T> read) {
           while (true) {
             try {
-              return internalNext();
+              return read.get();
             } catch (SessionNotFoundException e) {
               while (true) {
                 // Keep the replace-if-possible outside the try-block to let the exception bubble up
@@ -267,9 +383,13 @@ class SessionPool {
           }
         }
 
-        private boolean internalNext() {
+        /**
+         * Executes a read on the result set. The predicate must return false if the result of the
+         * read indicates that all rows have been returned.
+         */
+        private <T> T internalRead(Supplier<T> read, Predicate<T> hasRows) {
           try {
-            boolean ret = super.next();
+            T ret = read.get();
             if (beforeFirst) {
               synchronized (lock) {
                 session.get().markUsed();
@@ -277,7 +397,7 @@ class SessionPool {
                 sessionUsedForQuery = true;
               }
             }
-            if (!ret && isSingleUse) {
+            if (!hasRows.test(ret) && isSingleUse) {
               close();
             }
             return ret;
@@ -307,6 +427,18 @@ class SessionPool {
       };
     }
 
+    /**
+     * Applies the priority of a statement to the request for a session of this read context, if the
+     * pool has not yet handed out a session.
+     */
+    private void setSessionPriority(Options options) {
+      if (options.hasPriority()) {
+        synchronized (lock) {
+          session.setPriority(options.rpcPriority());
+        }
+      }
+    }
+
     private void replaceSessionIfPossible(SessionNotFoundException notFound) {
       synchronized (lock) {
         if (isSingleUse || !sessionUsedForQuery) {
@@ -326,6 +458,7 @@ class SessionPool {
         final KeySet keys,
         final Iterable<String> columns,
         final ReadOption... options) {
+      setSessionPriority(Options.fromReadOptions(options));
       return wrap(
           new CachedResultSetSupplier() {
             @Override
@@ -342,10 +475,15 @@ class SessionPool {
         final Iterable<String> columns,
         final ReadOption... options) {
       Options readOptions = Options.fromReadOptions(options);
+      setSessionPriority(readOptions);
       final int bufferRows =
           readOptions.hasBufferRows()
               ? readOptions.bufferRows()
               : AsyncResultSetImpl.DEFAULT_BUFFER_SIZE;
+      final int batchRows =
+          readOptions.hasBatchRows()
+              ? readOptions.batchRows()
+              : AsyncResultSetImpl.DEFAULT_BATCH_SIZE;
       return new AutoClosingReadContextAsyncResultSetImpl(
           sessionPool.sessionClient.getSpanner().getAsyncExecutorProvider(),
           wrap(
@@ -355,7 +493,8 @@ class SessionPool {
                   return getReadContextDelegate().read(table, keys, columns, options);
                 }
               }),
-          bufferRows);
+          bufferRows,
+          batchRows);
     }
 
     @Override
@@ -365,6 +504,7 @@ class SessionPool {
         final KeySet keys,
         final Iterable<String> columns,
         final ReadOption... options) {
+      setSessionPriority(Options.fromReadOptions(options));
       return wrap(
           new CachedResultSetSupplier() {
             @Override
@@ -382,10 +522,15 @@ class SessionPool {
         final Iterable<String> columns,
         final ReadOption... options) {
       Options readOptions = Options.fromReadOptions(options);
+      setSessionPriority(readOptions);
       final int bufferRows =
           readOptions.hasBufferRows()
               ? readOptions.bufferRows()
               : AsyncResultSetImpl.DEFAULT_BUFFER_SIZE;
+      final int batchRows =
+          readOptions.hasBatchRows()
+              ? readOptions.batchRows()
+              : AsyncResultSetImpl.DEFAULT_BATCH_SIZE;
       return new AutoClosingReadContextAsyncResultSetImpl(
           sessionPool.sessionClient.getSpanner().getAsyncExecutorProvider(),
           wrap(
@@ -396,7 +541,8 @@ class SessionPool {
                       .readUsingIndex(table, index, keys, columns, options);
                 }
               }),
-          bufferRows);
+          bufferRows,
+          batchRows);
     }
 
     @Override
@@ -464,6 +610,7 @@ class SessionPool {
 
     @Override
     public ResultSet executeQuery(final Statement statement, final QueryOption... options) {
+      setSessionPriority(Options.fromQueryOptions(options));
       return wrap(
           new CachedResultSetSupplier() {
             @Override
@@ -477,10 +624,15 @@ class SessionPool {
     public AsyncResultSet executeQueryAsync(
         final Statement statement, final QueryOption... options) {
       Options queryOptions = Options.fromQueryOptions(options);
+      setSessionPriority(queryOptions);
       final int bufferRows =
           queryOptions.hasBufferRows()
               ? queryOptions.bufferRows()
               : AsyncResultSetImpl.DEFAULT_BUFFER_SIZE;
+      final int batchRows =
+          queryOptions.hasBatchRows()
+              ? queryOptions.batchRows()
+              : AsyncResultSetImpl.DEFAULT_BATCH_SIZE;
       return new AutoClosingReadContextAsyncResultSetImpl(
           sessionPool.sessionClient.getSpanner().getAsyncExecutorProvider(),
           wrap(
@@ -490,7 +642,8 @@ class SessionPool {
                   return getReadContextDelegate().executeQuery(statement, options);
                 }
               }),
-          bufferRows);
+          bufferRows,
+          batchRows);
     }
 
     @Override
@@ -563,6 +716,15 @@ class SessionPool {
         throw handler.handleSessionNotFound(e);
       }
     }
+
+    @Override
+    public ColumnarBatch nextBatch(int maxRows) {
+      try {
+        return super.nextBatch(maxRows);
+      } catch (SessionNotFoundException e) {
+        throw handler.handleSessionNotFound(e);
+      }
+    }
   }
 
   static class AsyncSessionPoolResultSet extends ForwardingAsyncResultSet {
@@ -595,6 +757,15 @@ class SessionPool {
       }
     }
 
+    @Override
+    public ColumnarBatch nextBatch(int maxRows) {
+      try {
+        return super.nextBatch(maxRows);
+      } catch (SessionNotFoundException e) {
+        throw handler.handleSessionNotFound(e);
+      }
+    }
+
     @Override
     public CursorState tryNext() {
       try {
@@ -982,50 +1153,97 @@ class SessionPool {
     public <R> ApiFuture<R> runAsync(final AsyncWork<R> work, Executor executor) {
       commitResponse = SettableApiFuture.create();
       final SettableApiFuture<R> res = SettableApiFuture.create();
-      executor.execute(
+      runAsyncWhenSessionAvailable(work, executor, res);
+      return res;
+    }
+
+    /**
+     * Runs the given work once the session of this runner is available. No thread is blocked while
+     * waiting for the session, and the work is only submitted to the executor once the session has
+     * been checked out.
+     */
+    private <R> void runAsyncWhenSessionAvailable(
+        final AsyncWork<R> work, final Executor executor, final SettableApiFuture<R> res) {
+      final PooledSessionFuture currentSession = session;
+      currentSession.addListener(
           () -> {
-            SpannerException exception = null;
-            R r = null;
-            AsyncRunner runner = null;
-            while (true) {
-              SpannerException se = null;
-              try {
-                runner = session.get().runAsync(options);
-                r = runner.runAsync(work, MoreExecutors.directExecutor()).get();
-                break;
-              } catch (ExecutionException e) {
-                se = SpannerExceptionFactory.asSpannerException(e.getCause());
-              } catch (InterruptedException e) {
-                se = SpannerExceptionFactory.propagateInterrupt(e);
-              } catch (Throwable t) {
-                se = SpannerExceptionFactory.newSpannerException(t);
-              } finally {
-                if (se instanceof SessionNotFoundException) {
-                  try {
-                    // The replaceSession method will re-throw the SessionNotFoundException if the
-                    // session cannot be replaced with a new one.
-                    session = sessionPool.replaceSession((SessionNotFoundException) se, session);
-                    se = null;
-                  } catch (SessionNotFoundException e) {
-                    exception = e;
-                    break;
-                  }
-                } else {
-                  exception = se;
-                  break;
-                }
-              }
-            }
-            session.get().markUsed();
-            session.close();
-            setCommitResponse(runner);
-            if (exception != null) {
-              res.setException(exception);
-            } else {
-              res.set(r);
+            final AsyncRunner runner;
+            ApiFuture<R> result;
+            try {
+              runner = currentSession.get().runAsync(options);
+              result = runner.runAsync(work, executor);
+            } catch (Throwable t) {
+              finish(null, res, null, SpannerExceptionFactory.asSpannerException(t));
+              return;
             }
-          });
-      return res;
+            ApiFutures.addCallback(
+                result,
+                new ApiFutureCallback<R>() {
+                  @Override
+                  public void onFailure(Throwable t) {
+                    SpannerException se = SpannerExceptionFactory.asSpannerException(t);
+                    if (se instanceof SessionNotFoundException) {
+                      try {
+                        // The replaceSession method will re-throw the SessionNotFoundException if
+                        // the session cannot be replaced with a new one.
+                        session =
+                            sessionPool.replaceSession((SessionNotFoundException) se, session);
+                      } catch (SessionNotFoundException e) {
+                        finish(runner, res, null, e);
+                        return;
+                      }
+                      runAsyncWhenSessionAvailable(work, executor, res);
+                    } else {
+                      finish(runner, res, null, se);
+                    }
+                  }
+
+                  @Override
+                  public void onSuccess(R result) {
+                    finish(runner, res, result, null);
+                  }
+                },
+                MoreExecutors.directExecutor());
+          },
+          // Use the executor of the caller, as the session could be handed out by a thread that
+          // holds the lock of the pool.
+          executor);
+    }
+
+    private <R> void finish(
+        @Nullable AsyncRunner runner,
+        SettableApiFuture<R> res,
+        @Nullable R result,
+        @Nullable SpannerException exception) {
+      try {
+        session.get().markUsed();
+      } catch (SpannerException e) {
+        // The session could not be checked out. The error is returned to the caller below.
+      }
+      session.close();
+      if (runner == null) {
+        commitResponse.setException(exception);
+        setResult(res, result, exception);
+      } else {
+        // The commit response of the delegate runner is set after its result.
+        runner
+            .getCommitResponse()
+            .addListener(
+                () -> {
+                  setCommitResponse(runner);
+                  setResult(res, result, exception);
+                },
+                MoreExecutors.directExecutor());
+      }
+    }
+
+    private static <R> void setResult(
+        SettableApiFuture<R> res, @Nullable R result, @Nullable SpannerException exception) {
+      if (exception != null) {
+        res.setException(exception);
+      } else {
+        res.set(result);
+      }
     }
 
     private void setCommitResponse(AsyncRunner delegate) {
@@ -1051,12 +1269,97 @@ class SessionPool {
   }
 
   // Exception class used just to track the stack trace at the point when a session was handed out
-  // from the pool.
+  // from the pool. Only a sample of the checkouts capture a stack trace, see
+  // SessionPoolOptions#getLeakStackTraceSampleRate(). The other checkouts only record the time of
+  // the checkout and the class that checked out the session.
   final class LeakedSessionException extends RuntimeException {
     private static final long serialVersionUID = 1451131180314064914L;
+    private final Instant checkoutTime;
+    @Nullable private final String callerClassName;
+
+    private LeakedSessionException(boolean captureStackTrace) {
+      super(null, null, false, captureStackTrace);
+      this.checkoutTime = clock.instant();
+      this.callerClassName = captureStackTrace ? null : CallerClassResolver.getCallerClassName();
+    }
+
+    @Override
+    public String getMessage() {
+      return callerClassName == null
+          ? "Session was checked out from the pool at " + checkoutTime
+          : String.format(
+              "Session was checked out from the pool at %s by %s", checkoutTime, callerClassName);
+    }
+  }
+
+  /**
+   * Resolves the class that called the client library with a {@code StackWalker}. This is a lot
+   * cheaper than creating a stack trace, as the walk stops at the first frame outside the client
+   * library and does not create any stack trace elements. {@code StackWalker} is only available on
+   * Java 9 and higher and is therefore accessed through reflection. The caller is not resolved on
+   * Java 8.
+   */
+  private static final class CallerClassResolver {
+    @Nullable private static final Object WALKER;
+    @Nullable private static final Method WALK;
+    @Nullable private static final Method GET_CLASS_NAME;
+
+    static {
+      Object walker = null;
+      Method walk = null;
+      Method getClassName = null;
+      try {
+        Class<?> walkerClass = Class.forName("java.lang.StackWalker");
+        walker = walkerClass.getMethod("getInstance").invoke(null);
+        walk = walkerClass.getMethod("walk", java.util.function.Function.class);
+        getClassName = Class.forName("java.lang.StackWalker$StackFrame").getMethod("getClassName");
+      } catch (ReflectiveOperationException | SecurityException e) {
+        // StackWalker is not available on this version of Java.
+        walker = null;
+      }
+      WALKER = walker;
+      WALK = walk;
+      GET_CLASS_NAME = getClassName;
+    }
+
+    @Nullable
+    private static String getCallerClassName() {
+      if (WALKER == null) {
+        return null;
+      }
+      try {
+        return (String)
+            WALK.invoke(
+                WALKER,
+                (java.util.function.Function<Stream<?>, String>) CallerClassResolver::findCaller);
+      } catch (ReflectiveOperationException | RuntimeException e) {
+        return null;
+      }
+    }
+
+    @Nullable
+    private static String findCaller(Stream<?> frames) {
+      Iterator<?> iterator = frames.iterator();
+      while (iterator.hasNext()) {
+        String name;
+        try {
+          name = (String) GET_CLASS_NAME.invoke(iterator.next());
+        } catch (ReflectiveOperationException e) {
+          return null;
+        }
+        if (!isInternalClass(name)) {
+          return name;
+        }
+      }
+      return null;
+    }
 
-    private LeakedSessionException() {
-      super("Session was checked out from the pool at " + clock.instant());
+    private static boolean isInternalClass(String name) {
+      return name.startsWith("com.google.cloud.spanner.")
+          || name.startsWith("com.google.common.")
+          || name.startsWith("java.")
+          || name.startsWith("sun.")
+          || name.startsWith("jdk.");
     }
   }
 
@@ -1090,7 +1393,22 @@ class SessionPool {
     }
 
     private void markCheckedOut() {
-      this.leakedException = new LeakedSessionException();
+      int sampleRate = options.getLeakStackTraceSampleRate();
+      this.leakedException =
+          new LeakedSessionException(
+              sampleRate == 1
+                  || (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) == 0));
+    }
+
+    /**
+     * Changes the priority of the request for this session if the session is still waiting for the
+     * pool to hand out a session.
+     */
+    void setPriority(RpcPriority priority) {
+      ListenableFuture<PooledSession> delegate = delegate();
+      if (delegate instanceof WaiterFuture && !delegate.isDone()) {
+        ((WaiterFuture) delegate).setPriority(priority);
+      }
     }
 
     @Override
@@ -1250,10 +1568,8 @@ class SessionPool {
 
     @Override
     public void close() {
-      synchronized (lock) {
-        leakedException = null;
-        checkedOutSessions.remove(this);
-      }
+      leakedException = null;
+      checkedOutSessions.remove(this);
       PooledSession delegate = getOrNull();
       if (delegate != null) {
         delegate.close();
@@ -1262,10 +1578,8 @@ class SessionPool {
 
     @Override
     public ApiFuture<Empty> asyncClose() {
-      synchronized (lock) {
-        leakedException = null;
-        checkedOutSessions.remove(this);
-      }
+      leakedException = null;
+      checkedOutSessions.remove(this);
       PooledSession delegate = getOrNull();
       if (delegate != null) {
         return delegate.asyncClose();
@@ -1293,10 +1607,8 @@ class SessionPool {
         if (res != null) {
           res.markBusy(span);
           span.addAnnotation(sessionAnnotation(res));
-          synchronized (lock) {
-            incrementNumSessionsInUse();
-            checkedOutSessions.add(this);
-          }
+          incrementNumSessionsInUse(res);
+          checkedOutSessions.add(this);
         }
         initialized.countDown();
       }
@@ -1313,6 +1625,14 @@ class SessionPool {
 
   final class PooledSession implements Session {
     @VisibleForTesting SessionImpl delegate;
+    private final int channel;
+
+    /**
+     * The health score of the delegate. This is kept here so the pool maintainer does not need to
+     * call into the delegate for each session in each cycle.
+     */
+    @Nullable private final SessionHealth health;
+
     private volatile Instant lastUseTime;
     private volatile SpannerException lastException;
     private volatile boolean allowReplacing = true;
@@ -1320,8 +1640,21 @@ class SessionPool {
     @GuardedBy("lock")
     private SessionState state;
 
+    /** Set while a keep-alive ping for this session has been scheduled or is in flight. */
+    @GuardedBy("lock")
+    private boolean keepAlivePending;
+
+    /**
+     * Set when the share of the session budget of this session has been released before the session
+     * was removed from the pool.
+     */
+    @GuardedBy("lock")
+    private boolean budgetReleased;
+
     private PooledSession(SessionImpl delegate) {
       this.delegate = delegate;
+      this.channel = channelOf(delegate);
+      this.health = delegate.getHealth();
       this.state = SessionState.AVAILABLE;
       this.lastUseTime = clock.instant();
     }
@@ -1432,10 +1765,8 @@ class SessionPool {
 
     @Override
     public void close() {
-      synchronized (lock) {
-        numSessionsInUse--;
-        numSessionsReleased++;
-      }
+      decrementNumSessionsInUse(this);
+      numSessionsReleased.incrementAndGet();
       if (lastException != null && isSessionNotFound(lastException)) {
         invalidateSession(this);
       } else {
@@ -1468,17 +1799,16 @@ class SessionPool {
       delegate.prepareReadWriteTransaction();
     }
 
-    private void keepAlive() {
+    /**
+     * Sends a keep-alive ping for this session without checking it out of the pool. The session
+     * remains available to other requests while the ping is in flight.
+     */
+    private ApiFuture<Void> keepAliveAsync() {
       markUsed();
-      final Span previousSpan = delegate.getCurrentSpan();
-      delegate.setCurrentSpan(BlankSpan.INSTANCE);
-      try (ResultSet resultSet =
-          delegate
-              .singleUse(TimestampBound.ofMaxStaleness(60, TimeUnit.SECONDS))
-              .executeQuery(Statement.newBuilder("SELECT 1").build())) {
-        resultSet.next();
-      } finally {
-        delegate.setCurrentSpan(previousSpan);
+      try {
+        return delegate.keepAliveAsync();
+      } catch (SpannerException e) {
+        return ApiFutures.immediateFailedFuture(e);
       }
     }
 
@@ -1501,9 +1831,33 @@ class SessionPool {
     }
   }
 
+  /**
+   * Future for a session that is returned by the pool when no session is immediately available.
+   * Waiting for a session does not require a thread: the future is completed by the thread that
+   * releases or creates a session. Timeouts are only used to report that a request has been waiting
+   * for a long time, and are scheduled on the executor of the pool instead of blocking the waiting
+   * thread.
+   */
   private final class WaiterFuture extends ForwardingListenableFuture<PooledSession> {
     private static final long MAX_SESSION_WAIT_TIMEOUT = 240_000L;
     private final SettableFuture<PooledSession> waiter = SettableFuture.create();
+    private final Span span = tracer.spanBuilder(WAIT_FOR_SESSION).startSpan();
+    private final long waitStartMillis = clock.instant().toEpochMilli();
+
+    @GuardedBy("lock")
+    private RpcPriority priority;
+
+    @GuardedBy("this")
+    private long currentTimeout = options.getInitialWaitForSessionTimeoutMillis();
+
+    @GuardedBy("this")
+    private ScheduledFuture<?> timeoutFuture;
+
+    private WaiterFuture(RpcPriority priority) {
+      this.priority = priority;
+      scheduleTimeout();
+      waiter.addListener(this::onDone, MoreExecutors.directExecutor());
+    }
 
     @Override
     protected ListenableFuture<? extends PooledSession> delegate() {
@@ -1511,56 +1865,183 @@ class SessionPool {
     }
 
     private void put(PooledSession session) {
+      recordWaitTime();
       waiter.set(session);
     }
 
+    @GuardedBy("lock")
+    private void recordWaitTime() {
+      int index = priority.ordinal();
+      numWaitsForSession.incrementAndGet(index);
+      waitForSessionMillis.addAndGet(
+          index, Math.max(0L, clock.instant().toEpochMilli() - waitStartMillis));
+    }
+
+    /**
+     * Changes the priority of this waiter if it is still waiting for a session. The waiter keeps
+     * its original position in time, so that the time that it has already waited still counts for
+     * aging.
+     */
+    private void setPriority(RpcPriority priority) {
+      synchronized (lock) {
+        if (this.priority != priority && waiters.remove(this)) {
+          this.priority = priority;
+          waiters.add(this);
+        }
+      }
+    }
+
     private void put(SpannerException e) {
       waiter.setException(e);
     }
 
+    private synchronized void scheduleTimeout() {
+      if (waiter.isDone()) {
+        return;
+      }
+      try {
+        timeoutFuture = executor.schedule(this::onTimeout, currentTimeout, TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+        // The pool is closing and the executor has been shut down. The waiter will be completed
+        // by the pool.
+      }
+    }
+
+    private void onTimeout() {
+      synchronized (this) {
+        if (waiter.isDone()) {
+          return;
+        }
+        numWaiterTimeouts.incrementAndGet();
+        span.addAnnotation(
+            String.format("No session available after waiting %d milliseconds", currentTimeout));
+        currentTimeout = Math.min(currentTimeout * 2, MAX_SESSION_WAIT_TIMEOUT);
+      }
+      scheduleTimeout();
+    }
+
+    private void onDone() {
+      synchronized (this) {
+        if (timeoutFuture != null) {
+          timeoutFuture.cancel(false);
+        }
+      }
+      try {
+        Futures.getDone(waiter);
+        span.end(TraceUtil.END_SPAN_OPTIONS);
+      } catch (ExecutionException e) {
+        TraceUtil.endSpanWithFailure(span, e.getCause());
+      } catch (Throwable t) {
+        TraceUtil.endSpanWithFailure(span, t);
+      }
+    }
+
     @Override
     public PooledSession get() {
-      long currentTimeout = options.getInitialWaitForSessionTimeoutMillis();
-      while (true) {
-        Span span = tracer.spanBuilder(WAIT_FOR_SESSION).startSpan();
-        try (Scope waitScope = tracer.withSpan(span)) {
-          PooledSession s = pollUninterruptiblyWithTimeout(currentTimeout);
-          if (s == null) {
-            // Set the status to DEADLINE_EXCEEDED and retry.
-            numWaiterTimeouts.incrementAndGet();
-            tracer.getCurrentSpan().setStatus(Status.DEADLINE_EXCEEDED);
-            currentTimeout = Math.min(currentTimeout * 2, MAX_SESSION_WAIT_TIMEOUT);
-          } else {
-            return s;
-          }
-        } catch (Exception e) {
-          TraceUtil.setWithFailure(span, e);
-          throw e;
-        } finally {
-          span.end(TraceUtil.END_SPAN_OPTIONS);
+      try {
+        return Uninterruptibles.getUninterruptibly(waiter);
+      } catch (ExecutionException e) {
+        throw SpannerExceptionFactory.newSpannerException(e.getCause());
+      }
+    }
+  }
+
+  /**
+   * Queue of requests that are waiting for a session. Waiters are served in order of their {@link
+   * RpcPriority}, and in FIFO order within the same priority. The priority of a waiter is raised by
+   * one level for each {@link SessionPoolOptions#getPriorityAgingInterval()} that it has waited, so
+   * that waiters with a low priority are not starved by a constant stream of higher priority
+   * requests.
+   */
+  private final class WaiterQueue {
+    private final List<LinkedList<WaiterFuture>> queues = new ArrayList<>(NUM_PRIORITIES);
+    private int size;
+
+    private WaiterQueue() {
+      for (int i = 0; i < NUM_PRIORITIES; i++) {
+        queues.add(new LinkedList<>());
+      }
+    }
+
+    @GuardedBy("lock")
+    private void add(WaiterFuture waiter) {
+      // Keep each queue ordered by the time that the waiters started waiting. This is normally the
+      // same as appending the waiter at the end, except when the priority of a waiter is changed.
+      LinkedList<WaiterFuture> queue = queues.get(waiter.priority.ordinal());
+      ListIterator<WaiterFuture> iterator = queue.listIterator(queue.size());
+      while (iterator.hasPrevious()) {
+        if (iterator.previous().waitStartMillis <= waiter.waitStartMillis) {
+          iterator.next();
+          break;
         }
       }
+      iterator.add(waiter);
+      size++;
     }
 
-    private PooledSession pollUninterruptiblyWithTimeout(long timeoutMillis) {
-      boolean interrupted = false;
-      try {
-        while (true) {
-          try {
-            return waiter.get(timeoutMillis, TimeUnit.MILLISECONDS);
-          } catch (InterruptedException e) {
-            interrupted = true;
-          } catch (TimeoutException e) {
-            return null;
-          } catch (ExecutionException e) {
-            throw SpannerExceptionFactory.newSpannerException(e.getCause());
-          }
+    @GuardedBy("lock")
+    private boolean remove(WaiterFuture waiter) {
+      if (queues.get(waiter.priority.ordinal()).remove(waiter)) {
+        size--;
+        return true;
+      }
+      return false;
+    }
+
+    @GuardedBy("lock")
+    private int size() {
+      return size;
+    }
+
+    @GuardedBy("lock")
+    private boolean isEmpty() {
+      return size == 0;
+    }
+
+    /**
+     * Removes and returns the waiter that should be served first of all waiters that may use one of
+     * the given number of available sessions, or <code>null</code> if there is no such waiter.
+     */
+    @GuardedBy("lock")
+    @Nullable
+    private WaiterFuture poll(int numAvailableSessions) {
+      if (size == 0) {
+        return null;
+      }
+      long now = clock.instant().toEpochMilli();
+      long agingMillis = options.getPriorityAgingInterval().toMillis();
+      LinkedList<WaiterFuture> selected = null;
+      long selectedRank = Long.MIN_VALUE;
+      // Iterate from the highest to the lowest priority, so that the highest priority wins when two
+      // waiters have the same effective priority.
+      for (int index = NUM_PRIORITIES - 1; index >= 0; index--) {
+        LinkedList<WaiterFuture> queue = queues.get(index);
+        if (queue.isEmpty() || !canUseSession(PRIORITIES[index], numAvailableSessions)) {
+          continue;
         }
-      } finally {
-        if (interrupted) {
-          Thread.currentThread().interrupt();
+        // The head of a queue has waited the longest of all waiters in the queue.
+        long rank = index + Math.max(0L, now - queue.getFirst().waitStartMillis) / agingMillis;
+        if (rank > selectedRank) {
+          selected = queue;
+          selectedRank = rank;
         }
       }
+      if (selected == null) {
+        return null;
+      }
+      size--;
+      return selected.removeFirst();
+    }
+  }
+
+  /** A request to be notified when the pool has been warmed up. */
+  private static final class WarmUp {
+    private final int numSessions;
+    private final SettableApiFuture<Void> future = SettableApiFuture.create();
+    private SpannerException lastCreateSessionsError;
+
+    private WarmUp(int numSessions) {
+      this.numSessions = numSessions;
     }
   }
 
@@ -1589,6 +2070,11 @@ class SessionPool {
     // Number of loop iterations in which we need to keep alive all the sessions
     @VisibleForTesting final long numKeepAliveCycles = keepAliveMillis.toMillis() / loopFrequency;
 
+    // Estimator of the number of sessions that the pool needs, if a sizing policy has been set.
+    private final SessionPoolSizingPolicy.Estimator sizingEstimator =
+        options.getSizingPolicy() == null ? null : options.getSizingPolicy().newEstimator();
+    private long lastNumSessionsAcquired;
+
     Instant lastResetTime = Instant.ofEpochMilli(0);
     int numSessionsToClose = 0;
     int sessionsToClosePerLoop = 0;
@@ -1639,7 +2125,11 @@ class SessionPool {
       removeIdleSessions(currTime);
       // Now go over all the remaining sessions and see if they need to be kept alive explicitly.
       keepAliveSessions(currTime);
+      scoreSessionHealth();
       replenishPool();
+      if (sizingEstimator != null) {
+        adaptPoolSize(currTime);
+      }
       synchronized (lock) {
         running = false;
         if (SessionPool.this.isClosed()) {
@@ -1654,80 +2144,565 @@ class SessionPool {
         // all sessions that have a lastUseTime before that time, unless it would cause us to go
         // below MinSessions.
         Instant minLastUseTime = currTime.minus(options.getRemoveInactiveSessionAfter());
+        List<PooledSession> sessionsToRemove = new ArrayList<>();
         Iterator<PooledSession> iterator = sessions.descendingIterator();
         while (iterator.hasNext()) {
           PooledSession session = iterator.next();
           if (session.lastUseTime.isBefore(minLastUseTime)) {
             if (session.state != SessionState.CLOSING) {
-              removeFromPool(session);
-              iterator.remove();
+              sessionsToRemove.add(session);
             }
           }
         }
+        for (PooledSession session : sessionsToRemove) {
+          // The session could have been checked out concurrently if the pool uses lock-free
+          // checkout.
+          if (sessions.remove(session)) {
+            removeFromPool(session);
+          }
+        }
       }
     }
 
+    /**
+     * Sends keep-alive pings for the idle sessions that have not been used for the keep-alive
+     * interval. The pings are asynchronous and are spread over the channels of the pool and over
+     * the time until the next maintenance cycle. The sessions stay in the pool while a ping is in
+     * flight.
+     */
     private void keepAliveSessions(Instant currTime) {
-      long numSessionsToKeepAlive = 0;
+      final Instant keepAliveThreshold = currTime.minus(keepAliveMillis);
+      List<PooledSession> sessionsToKeepAlive = new ArrayList<>();
       synchronized (lock) {
-        if (numSessionsInUse >= (options.getMinSessions() + options.getMaxIdleSessions())) {
+        int numSessionsToKeep =
+            options.getMinSessions() + options.getMaxIdleSessions() - numSessionsInUse.get();
+        if (numSessionsToKeep <= 0) {
           // At least MinSessions are in use, so we don't have to ping any sessions.
           return;
         }
         // In each cycle only keep alive a subset of sessions to prevent burst of traffic.
-        numSessionsToKeepAlive =
-            (long)
-                Math.ceil(
-                    (double)
-                            ((options.getMinSessions() + options.getMaxIdleSessions())
-                                - numSessionsInUse)
-                        / numKeepAliveCycles);
-      }
-      // Now go over all the remaining sessions and see if they need to be kept alive explicitly.
-      Instant keepAliveThreshold = currTime.minus(keepAliveMillis);
-
-      // Keep chugging till there is no session that needs to be kept alive.
-      while (numSessionsToKeepAlive > 0) {
-        PooledSession sessionToKeepAlive = null;
-        synchronized (lock) {
-          sessionToKeepAlive = findSessionToKeepAlive(sessions, keepAliveThreshold, 0);
-        }
-        if (sessionToKeepAlive == null) {
-          break;
+        long numSessionsToKeepAlive =
+            Math.min(
+                (long) Math.ceil((double) numSessionsToKeep / numKeepAliveCycles),
+                MAX_CONCURRENT_KEEP_ALIVE_PINGS - numKeepAlivePingsInFlight.get());
+        // Only the sessions at the front of the pool need to be kept alive, as the other sessions
+        // will eventually be removed from the pool.
+        int numChecked = 0;
+        Iterator<PooledSession> iterator = sessions.iterator();
+        while (iterator.hasNext()
+            && numChecked < numSessionsToKeep
+            && sessionsToKeepAlive.size() < numSessionsToKeepAlive) {
+          PooledSession session = iterator.next();
+          if (!session.keepAlivePending && session.lastUseTime.isBefore(keepAliveThreshold)) {
+            session.keepAlivePending = true;
+            numKeepAlivePingsInFlight.incrementAndGet();
+            sessionsToKeepAlive.add(session);
+          }
+          numChecked++;
         }
+      }
+      if (sessionsToKeepAlive.isEmpty()) {
+        return;
+      }
+      sessionsToKeepAlive = interleaveChannels(sessionsToKeepAlive);
+      long delay = loopFrequency / sessionsToKeepAlive.size();
+      keepAlive(sessionsToKeepAlive.get(0), keepAliveThreshold);
+      for (int i = 1; i < sessionsToKeepAlive.size(); i++) {
+        final PooledSession session = sessionsToKeepAlive.get(i);
         try {
-          logger.log(Level.FINE, "Keeping alive session " + sessionToKeepAlive.getName());
-          numSessionsToKeepAlive--;
-          sessionToKeepAlive.keepAlive();
-          releaseSession(sessionToKeepAlive, Position.FIRST);
-        } catch (SpannerException e) {
-          handleException(e, sessionToKeepAlive);
+          executor.schedule(
+              () -> keepAlive(session, keepAliveThreshold), i * delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+          // The pool is being closed.
+          keepAliveDone(session);
         }
       }
     }
 
-    private void replenishPool() {
-      synchronized (lock) {
-        // If we have gone below min pool size, create that many sessions.
-        int sessionCount = options.getMinSessions() - (totalSessions() + numSessionsBeingCreated);
-        if (sessionCount > 0) {
-          createSessions(getAllowedCreateSessions(sessionCount), false);
+    /**
+     * Orders the given sessions so that consecutive sessions use different channels where possible.
+     */
+    private List<PooledSession> interleaveChannels(List<PooledSession> sessions) {
+      if (numChannels <= 1 || sessions.size() <= 1) {
+        return sessions;
+      }
+      int[] numSessionsPerChannel = new int[numChannels];
+      List<List<PooledSession>> rounds = new ArrayList<>();
+      for (PooledSession session : sessions) {
+        int round = numSessionsPerChannel[session.channel]++;
+        if (round == rounds.size()) {
+          rounds.add(new ArrayList<>());
         }
+        rounds.get(round).add(session);
+      }
+      List<PooledSession> result = new ArrayList<>(sessions.size());
+      for (List<PooledSession> round : rounds) {
+        result.addAll(round);
       }
+      return result;
     }
-  }
-
-  private enum Position {
-    FIRST,
-    RANDOM
-  }
-
-  private final SessionPoolOptions options;
-  private final SessionClient sessionClient;
-  private final ScheduledExecutorService executor;
-  private final ExecutorFactory<ScheduledExecutorService> executorFactory;
 
-  final PoolMaintainer poolMaintainer;
+    private void keepAlive(final PooledSession session, Instant keepAliveThreshold) {
+      synchronized (lock) {
+        // Skip the ping if the session has been used or removed from the pool in the meantime.
+        if (SessionPool.this.isClosed()
+            || session.state != SessionState.AVAILABLE
+            || !session.lastUseTime.isBefore(keepAliveThreshold)) {
+          keepAliveDone(session);
+          return;
+        }
+      }
+      logger.log(Level.FINE, "Keeping alive session " + session.getName());
+      final long startMillis = clock.instant().toEpochMilli();
+      final ApiFuture<Void> ping = session.keepAliveAsync();
+      ping.addListener(
+          () -> {
+            numKeepAlivePings.incrementAndGet();
+            keepAlivePingMillis.addAndGet(clock.instant().toEpochMilli() - startMillis);
+            SpannerException error = null;
+            try {
+              ping.get();
+            } catch (ExecutionException e) {
+              error = SpannerExceptionFactory.asSpannerException(e.getCause());
+            } catch (InterruptedException e) {
+              error = SpannerExceptionFactory.propagateInterrupt(e);
+            }
+            if (error != null) {
+              numFailedKeepAlivePings.incrementAndGet();
+            }
+            synchronized (lock) {
+              keepAliveDone(session);
+              // Only touch the session if it is still idle, as it could have been checked out
+              // while the ping was in flight.
+              if (!SessionPool.this.isClosed() && sessions.remove(session)) {
+                if (error != null && isSessionNotFound(error)) {
+                  invalidateSession(session);
+                } else {
+                  addIdleSession(session, Position.FIRST);
+                }
+              }
+            }
+          },
+          MoreExecutors.directExecutor());
+    }
+
+    private void keepAliveDone(PooledSession session) {
+      synchronized (lock) {
+        session.keepAlivePending = false;
+      }
+      numKeepAlivePingsInFlight.decrementAndGet();
+    }
+
+    /**
+     * Compares the health scores of the sessions in the pool, and retires a limited number of idle
+     * sessions that are slower or fail more often than the other sessions if {@link
+     * SessionPoolOptions#isRetireUnhealthySessions()} is enabled.
+     */
+    private void scoreSessionHealth() {
+      synchronized (lock) {
+        List<PooledSession> scoredSessions = new ArrayList<>(allSessions.size());
+        for (PooledSession session : allSessions) {
+          if (session.health != null
+              && session.state != SessionState.CLOSING
+              && session.health.getNumRpcs() >= MIN_RPCS_FOR_SESSION_HEALTH) {
+            scoredSessions.add(session);
+          }
+        }
+        // The latency of an RPC type is only compared with the latency of the same RPC type on the
+        // other sessions, as for example the latency of a commit depends on the transaction.
+        long[] medianLatencies = new long[SessionHealth.RPC_TYPES.length];
+        long[] latencies = new long[scoredSessions.size()];
+        for (RpcType type : SessionHealth.RPC_TYPES) {
+          int numLatencies = 0;
+          for (PooledSession session : scoredSessions) {
+            if (session.health.getNumSuccessfulRpcs(type) >= MIN_RPCS_FOR_SESSION_HEALTH) {
+              latencies[numLatencies++] = session.health.getLatencyMicros(type);
+            }
+          }
+          Arrays.sort(latencies, 0, numLatencies);
+          long median = numLatencies == 0 ? 0L : latencies[numLatencies / 2];
+          medianLatencies[type.ordinal()] =
+              numLatencies >= MIN_SESSIONS_FOR_LATENCY_COMPARISON ? median : -1L;
+          // The keep-alive ping is the same query on every session, and is therefore exported as
+          // the latency of the sessions.
+          if (type == RpcType.KEEP_ALIVE) {
+            medianSessionLatencyMicros = median;
+            maxSessionLatencyMicros = numLatencies == 0 ? 0L : latencies[numLatencies - 1];
+          }
+        }
+
+        List<PooledSession> unhealthySessions = new ArrayList<>();
+        for (PooledSession session : scoredSessions) {
+          if (isUnhealthy(session.health, medianLatencies)) {
+            unhealthySessions.add(session);
+          }
+        }
+        numUnhealthySessions = unhealthySessions.size();
+        if (!options.isRetireUnhealthySessions()) {
+          return;
+        }
+        int maxSessionsToRetire =
+            (int) Math.ceil(scoredSessions.size() * MAX_RETIRE_FRACTION_PER_CYCLE);
+        int numRetired = 0;
+        for (PooledSession session : unhealthySessions) {
+          if (numRetired == maxSessionsToRetire) {
+            break;
+          }
+          // Only idle sessions are retired. Sessions that are in use are retired in a later cycle.
+          if (sessions.remove(session)) {
+            logger.log(Level.FINE, "Retiring unhealthy session " + session.getName());
+            session.markClosing();
+            closeSessionAsync(session);
+            numUnhealthySessionsRetired.incrementAndGet();
+            numRetired++;
+          }
+        }
+        if (numRetired > 0) {
+          createSessions(getAllowedCreateSessions(numRetired), false);
+        }
+      }
+    }
+
+    /**
+     * Returns true if the session fails too often, or if the latency of any RPC type is an outlier
+     * compared to the median latency of that RPC type. A median of -1 means that too few sessions
+     * executed the RPC type to compare them.
+     */
+    private boolean isUnhealthy(SessionHealth health, long[] medianLatencies) {
+      if (health.getErrorRate() > UNHEALTHY_SESSION_ERROR_RATE) {
+        return true;
+      }
+      for (RpcType type : SessionHealth.RPC_TYPES) {
+        long median = medianLatencies[type.ordinal()];
+        if (median < 0L || health.getNumSuccessfulRpcs(type) < MIN_RPCS_FOR_SESSION_HEALTH) {
+          continue;
+        }
+        long latency = health.getLatencyMicros(type);
+        if (latency > UNHEALTHY_SESSION_LATENCY_FACTOR * median
+            && latency - median >= MIN_UNHEALTHY_SESSION_LATENCY_DIFFERENCE_MICROS) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private void replenishPool() {
+      synchronized (lock) {
+        // If we have gone below min pool size, create that many sessions.
+        int sessionCount = options.getMinSessions() - (totalSessions() + numSessionsBeingCreated);
+        if (sessionCount > 0) {
+          createSessions(getAllowedCreateSessions(sessionCount), false);
+        }
+      }
+    }
+
+    /**
+     * Grows or shrinks the pool towards the number of sessions that is estimated by the sizing
+     * policy. The pool is grown at once, but is only shrunk gradually by removing a fraction of the
+     * surplus of least recently used idle sessions in each cycle.
+     */
+    private void adaptPoolSize(Instant currTime) {
+      long numAcquired = numSessionsAcquired.get();
+      long numCheckouts = numAcquired - lastNumSessionsAcquired;
+      lastNumSessionsAcquired = numAcquired;
+      int maxInUse = maxSessionsInUseInCycle.getAndSet(numSessionsInUse.get());
+      int target = sizingEstimator.estimateSessions(currTime, numCheckouts, maxInUse);
+      target = Math.max(options.getMinSessions(), Math.min(options.getMaxSessions(), target));
+      synchronized (lock) {
+        int currentSize = totalSessions() + numSessionsBeingCreated;
+        if (target > currentSize) {
+          int sessionCount = getAllowedCreateSessions(target - currentSize);
+          if (sessionCount > 0) {
+            createSessions(sessionCount, true);
+          }
+        } else if (target < currentSize) {
+          int numSessionsToRemove =
+              (int) Math.ceil((currentSize - target) * MAX_SHRINK_FRACTION_PER_CYCLE);
+          List<PooledSession> sessionsToRemove = new ArrayList<>(numSessionsToRemove);
+          Iterator<PooledSession> iterator = sessions.descendingIterator();
+          while (iterator.hasNext() && sessionsToRemove.size() < numSessionsToRemove) {
+            PooledSession session = iterator.next();
+            if (session.state != SessionState.CLOSING) {
+              sessionsToRemove.add(session);
+            }
+          }
+          for (PooledSession session : sessionsToRemove) {
+            if (sessions.remove(session)) {
+              logger.log(Level.FINE, "Removing surplus session " + session.getName());
+              session.markClosing();
+              closeSessionAsync(session);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private enum Position {
+    FIRST,
+    RANDOM
+  }
+
+  /** The sessions that are currently idle in the pool. */
+  private interface IdleSessions extends Iterable<PooledSession> {
+    /** Removes and returns the most recently used idle session, or null if there is none. */
+    PooledSession poll();
+
+    /** Adds a session as the most recently used session. */
+    void addFirst(PooledSession session);
+
+    /** Adds a session at a random position. */
+    void addRandom(PooledSession session);
+
+    /**
+     * Removes the given session. Returns false if the session was not (or no longer) idle in the
+     * pool.
+     */
+    boolean remove(PooledSession session);
+
+    /** Returns an iterator starting at the least recently used idle session. */
+    Iterator<PooledSession> descendingIterator();
+
+    int size();
+
+    void clear();
+  }
+
+  /**
+   * Default {@link IdleSessions} implementation. All access to an instance of this class must be
+   * guarded by the pool lock.
+   */
+  private final class LinkedListIdleSessions implements IdleSessions {
+    private final LinkedList<PooledSession> sessions = new LinkedList<>();
+
+    @Override
+    public PooledSession poll() {
+      return sessions.poll();
+    }
+
+    @Override
+    public void addFirst(PooledSession session) {
+      sessions.addFirst(session);
+    }
+
+    @Override
+    public void addRandom(PooledSession session) {
+      if (sessions.isEmpty()) {
+        sessions.addFirst(session);
+      } else {
+        sessions.add(random.nextInt(sessions.size() + 1), session);
+      }
+    }
+
+    @Override
+    public boolean remove(PooledSession session) {
+      return sessions.remove(session);
+    }
+
+    @Override
+    public Iterator<PooledSession> iterator() {
+      return sessions.iterator();
+    }
+
+    @Override
+    public Iterator<PooledSession> descendingIterator() {
+      return sessions.descendingIterator();
+    }
+
+    @Override
+    public int size() {
+      return sessions.size();
+    }
+
+    @Override
+    public void clear() {
+      sessions.clear();
+    }
+  }
+
+  /**
+   * {@link IdleSessions} implementation that is used when {@link
+   * SessionPoolOptions#isChannelAwareCheckout()} is enabled. Idle sessions are grouped by the gRPC
+   * channel that they use, and {@link #poll()} returns the most recently used idle session of the
+   * channel with the lowest number of sessions in use. Ties are broken round-robin. All access to
+   * an instance of this class must be guarded by the pool lock.
+   */
+  private final class ChannelAwareIdleSessions implements IdleSessions {
+    private final ImmutableList<LinkedList<PooledSession>> sessionsPerChannel;
+    private int size;
+    private int nextChannel;
+
+    private ChannelAwareIdleSessions() {
+      ImmutableList.Builder<LinkedList<PooledSession>> builder = ImmutableList.builder();
+      for (int i = 0; i < numChannels; i++) {
+        builder.add(new LinkedList<>());
+      }
+      this.sessionsPerChannel = builder.build();
+    }
+
+    @Override
+    public PooledSession poll() {
+      int selectedChannel = -1;
+      int minInUse = Integer.MAX_VALUE;
+      for (int i = 0; i < numChannels; i++) {
+        int channel = (nextChannel + i) % numChannels;
+        if (!sessionsPerChannel.get(channel).isEmpty()) {
+          int inUse = numSessionsInUsePerChannel.get(channel);
+          if (inUse < minInUse) {
+            selectedChannel = channel;
+            minInUse = inUse;
+          }
+        }
+      }
+      if (selectedChannel == -1) {
+        return null;
+      }
+      nextChannel = (selectedChannel + 1) % numChannels;
+      size--;
+      return sessionsPerChannel.get(selectedChannel).pollFirst();
+    }
+
+    @Override
+    public void addFirst(PooledSession session) {
+      sessionsPerChannel.get(session.channel).addFirst(session);
+      size++;
+    }
+
+    @Override
+    public void addRandom(PooledSession session) {
+      // Sessions are already grouped by channel, so there is no need to randomize the position.
+      addFirst(session);
+    }
+
+    @Override
+    public boolean remove(PooledSession session) {
+      if (sessionsPerChannel.get(session.channel).remove(session)) {
+        size--;
+        return true;
+      }
+      return false;
+    }
+
+    @Override
+    public Iterator<PooledSession> iterator() {
+      return Iterators.unmodifiableIterator(
+          Iterators.concat(Iterators.transform(sessionsPerChannel.iterator(), Deque::iterator)));
+    }
+
+    @Override
+    public Iterator<PooledSession> descendingIterator() {
+      return Iterators.unmodifiableIterator(
+          Iterators.concat(
+              Iterators.transform(sessionsPerChannel.iterator(), Deque::descendingIterator)));
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public void clear() {
+      for (LinkedList<PooledSession> sessions : sessionsPerChannel) {
+        sessions.clear();
+      }
+      size = 0;
+    }
+  }
+
+  /**
+   * Thread-safe {@link IdleSessions} implementation that is used when {@link
+   * SessionPoolOptions#isLockFreeCheckout()} is enabled. Idle sessions are kept in a number of
+   * lock-free stacks. A thread adds and polls sessions from its own home stripe first and steals
+   * sessions from the other stripes if its home stripe is empty. The iterators of this class do not
+   * support {@link Iterator#remove()}; use {@link #remove(PooledSession)} instead.
+   */
+  private static final class StripedIdleSessions implements IdleSessions {
+    private final ImmutableList<ConcurrentLinkedDeque<PooledSession>> stripes;
+    private final AtomicInteger size = new AtomicInteger();
+
+    private StripedIdleSessions(int numStripes) {
+      Preconditions.checkArgument(numStripes > 0, "numStripes must be > 0");
+      ImmutableList.Builder<ConcurrentLinkedDeque<PooledSession>> builder = ImmutableList.builder();
+      for (int i = 0; i < numStripes; i++) {
+        builder.add(new ConcurrentLinkedDeque<>());
+      }
+      this.stripes = builder.build();
+    }
+
+    private int homeStripe() {
+      return (int) (Thread.currentThread().getId() % stripes.size());
+    }
+
+    @Override
+    public PooledSession poll() {
+      int home = homeStripe();
+      for (int i = 0; i < stripes.size(); i++) {
+        PooledSession session = stripes.get((home + i) % stripes.size()).pollFirst();
+        if (session != null) {
+          size.decrementAndGet();
+          return session;
+        }
+      }
+      return null;
+    }
+
+    @Override
+    public void addFirst(PooledSession session) {
+      stripes.get(homeStripe()).addFirst(session);
+      size.incrementAndGet();
+    }
+
+    @Override
+    public void addRandom(PooledSession session) {
+      stripes.get(ThreadLocalRandom.current().nextInt(stripes.size())).addFirst(session);
+      size.incrementAndGet();
+    }
+
+    @Override
+    public boolean remove(PooledSession session) {
+      for (ConcurrentLinkedDeque<PooledSession> stripe : stripes) {
+        if (stripe.removeFirstOccurrence(session)) {
+          size.decrementAndGet();
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public Iterator<PooledSession> iterator() {
+      return Iterators.unmodifiableIterator(
+          Iterators.concat(Iterators.transform(stripes.iterator(), Deque::iterator)));
+    }
+
+    @Override
+    public Iterator<PooledSession> descendingIterator() {
+      return Iterators.unmodifiableIterator(
+          Iterators.concat(Iterators.transform(stripes.iterator(), Deque::descendingIterator)));
+    }
+
+    @Override
+    public int size() {
+      return Math.max(0, size.get());
+    }
+
+    @Override
+    public void clear() {
+      for (ConcurrentLinkedDeque<PooledSession> stripe : stripes) {
+        while (stripe.pollFirst() != null) {
+          size.decrementAndGet();
+        }
+      }
+    }
+  }
+
+  private final SessionPoolOptions options;
+  private final SessionClient sessionClient;
+  private final ScheduledExecutorService executor;
+  private final ExecutorFactory<ScheduledExecutorService> executorFactory;
+
+  final PoolMaintainer poolMaintainer;
   private final Clock clock;
   private final Object lock = new Object();
   private final Random random = new Random();
@@ -1735,49 +2710,112 @@ class SessionPool {
   @GuardedBy("lock")
   private int pendingClosure;
 
+  /**
+   * Set when the pool is closed. This field is volatile as it is read without holding the lock when
+   * the pool uses lock-free checkout.
+   */
   @GuardedBy("lock")
-  private SettableFuture<Void> closureFuture;
+  private volatile SettableFuture<Void> closureFuture;
 
   @GuardedBy("lock")
   private ClosedException closedException;
 
   @GuardedBy("lock")
-  private ResourceNotFoundException resourceNotFoundException;
+  private volatile ResourceNotFoundException resourceNotFoundException;
 
   @GuardedBy("lock")
   private boolean stopAutomaticPrepare;
 
-  @GuardedBy("lock")
-  private final LinkedList<PooledSession> sessions = new LinkedList<>();
+  private final IdleSessions sessions;
 
   @GuardedBy("lock")
-  private final Queue<WaiterFuture> waiters = new LinkedList<>();
+  private final WaiterQueue waiters = new WaiterQueue();
+
+  /**
+   * The number of sessions that are reserved for requests with a higher priority than the priority
+   * with the ordinal of the index in this array.
+   */
+  private final int[] reservedForHigherPriorities = new int[NUM_PRIORITIES];
+
+  /**
+   * Mirrors whether {@link #waiters} is non-empty, so that a session can be released without
+   * acquiring the lock when the pool uses lock-free checkout.
+   */
+  private volatile boolean hasWaiters;
 
   @GuardedBy("lock")
   private int numSessionsBeingCreated = 0;
 
-  @GuardedBy("lock")
-  private int numSessionsInUse = 0;
+  private final AtomicInteger numSessionsInUse = new AtomicInteger();
 
-  @GuardedBy("lock")
-  private int maxSessionsInUse = 0;
+  private final AtomicInteger maxSessionsInUse = new AtomicInteger();
 
-  @GuardedBy("lock")
-  private long numSessionsAcquired = 0;
+  /**
+   * The maximum number of sessions in use since the last maintenance cycle. Only used when the pool
+   * has a {@link SessionPoolSizingPolicy}.
+   */
+  private final AtomicInteger maxSessionsInUseInCycle = new AtomicInteger();
 
-  @GuardedBy("lock")
-  private long numSessionsReleased = 0;
+  private final AtomicLong numSessionsAcquired = new AtomicLong();
+
+  private final AtomicLong numSessionsReleased = new AtomicLong();
+
+  /** The number of gRPC channels that the sessions of this pool are spread over. */
+  private final int numChannels;
+
+  private final AtomicIntegerArray numSessionsInUsePerChannel;
 
   @GuardedBy("lock")
   private long numIdleSessionsRemoved = 0;
 
   private AtomicLong numWaiterTimeouts = new AtomicLong();
 
+  /** The number of requests that have waited for a session, per {@link RpcPriority}. */
+  private final AtomicLongArray numWaitsForSession = new AtomicLongArray(NUM_PRIORITIES);
+
+  /** The total time that requests have waited for a session, per {@link RpcPriority}. */
+  private final AtomicLongArray waitForSessionMillis = new AtomicLongArray(NUM_PRIORITIES);
+
+  /** The number of keep-alive pings that have been scheduled or are in flight. */
+  private final AtomicInteger numKeepAlivePingsInFlight = new AtomicInteger();
+
+  private final AtomicLong numKeepAlivePings = new AtomicLong();
+
+  private final AtomicLong numFailedKeepAlivePings = new AtomicLong();
+
+  /** The total time that completed keep-alive pings have taken. */
+  private final AtomicLong keepAlivePingMillis = new AtomicLong();
+
+  /**
+   * The median and maximum average RPC latency of the sessions in the pool, as computed by the last
+   * maintenance cycle.
+   */
+  private volatile long medianSessionLatencyMicros;
+
+  private volatile long maxSessionLatencyMicros;
+
+  /** The number of unhealthy sessions that were found by the last maintenance cycle. */
+  private volatile int numUnhealthySessions;
+
+  private final AtomicLong numUnhealthySessionsRetired = new AtomicLong();
+
   @GuardedBy("lock")
   private final Set<PooledSession> allSessions = new HashSet<>();
 
+  /**
+   * The share of the session budget of the {@link Spanner} instance that is allocated to this pool,
+   * or null if the {@link Spanner} instance does not use a shared session budget.
+   */
+  @Nullable private final SessionBudget.Allocation sessionBudget;
+
+  /** The channels on which at least one session has been created. */
   @GuardedBy("lock")
-  private final Set<PooledSessionFuture> checkedOutSessions = new HashSet<>();
+  private final BitSet channelsWithSessions = new BitSet();
+
+  @GuardedBy("lock")
+  private final List<WarmUp> warmUps = new ArrayList<>();
+
+  private final Set<PooledSessionFuture> checkedOutSessions = ConcurrentHashMap.newKeySet();
 
   private final SessionConsumer sessionConsumer = new SessionConsumerImpl();
 
@@ -1792,12 +2830,27 @@ class SessionPool {
   static SessionPool createPool(
       SpannerOptions spannerOptions, SessionClient sessionClient, List<LabelValue> labelValues) {
     return createPool(
-        spannerOptions.getSessionPoolOptions(),
+        spannerOptions, spannerOptions.getSessionPoolOptions(), null, sessionClient, labelValues);
+  }
+
+  /**
+   * Create a session pool with the given options that acquires its sessions from the given shared
+   * {@link SessionBudget}.
+   */
+  static SessionPool createPool(
+      SpannerOptions spannerOptions,
+      SessionPoolOptions poolOptions,
+      @Nullable SessionBudget sessionBudget,
+      SessionClient sessionClient,
+      List<LabelValue> labelValues) {
+    return createPool(
+        poolOptions,
         ((GrpcTransportOptions) spannerOptions.getTransportOptions()).getExecutorFactory(),
         sessionClient,
         new Clock(),
         Metrics.getMetricRegistry(),
-        labelValues);
+        labelValues,
+        sessionBudget);
   }
 
   static SessionPool createPool(
@@ -1828,6 +2881,18 @@ class SessionPool {
       Clock clock,
       MetricRegistry metricRegistry,
       List<LabelValue> labelValues) {
+    return createPool(
+        poolOptions, executorFactory, sessionClient, clock, metricRegistry, labelValues, null);
+  }
+
+  static SessionPool createPool(
+      SessionPoolOptions poolOptions,
+      ExecutorFactory<ScheduledExecutorService> executorFactory,
+      SessionClient sessionClient,
+      Clock clock,
+      MetricRegistry metricRegistry,
+      List<LabelValue> labelValues,
+      @Nullable SessionBudget sessionBudget) {
     SessionPool pool =
         new SessionPool(
             poolOptions,
@@ -1836,7 +2901,8 @@ class SessionPool {
             sessionClient,
             clock,
             metricRegistry,
-            labelValues);
+            labelValues,
+            sessionBudget);
     pool.initPool();
     return pool;
   }
@@ -1848,21 +2914,99 @@ class SessionPool {
       SessionClient sessionClient,
       Clock clock,
       MetricRegistry metricRegistry,
-      List<LabelValue> labelValues) {
+      List<LabelValue> labelValues,
+      @Nullable SessionBudget sessionBudget) {
     this.options = options;
     this.executorFactory = executorFactory;
     this.executor = executor;
     this.sessionClient = sessionClient;
     this.clock = clock;
+    this.numChannels = Math.max(1, sessionClient.getNumChannels());
+    this.numSessionsInUsePerChannel = new AtomicIntegerArray(numChannels);
+    if (options.isLockFreeCheckout()) {
+      this.sessions = new StripedIdleSessions(Runtime.getRuntime().availableProcessors());
+    } else if (options.isChannelAwareCheckout() && numChannels > 1) {
+      this.sessions = new ChannelAwareIdleSessions();
+    } else {
+      this.sessions = new LinkedListIdleSessions();
+    }
+    for (RpcPriority priority : RpcPriority.values()) {
+      for (RpcPriority higher : RpcPriority.values()) {
+        if (higher.ordinal() > priority.ordinal()) {
+          reservedForHigherPriorities[priority.ordinal()] += options.getReservedSessions(higher);
+        }
+      }
+    }
     this.poolMaintainer = new PoolMaintainer();
+    this.sessionBudget =
+        sessionBudget == null
+            ? null
+            : sessionBudget.register(
+                new BudgetMember(), options.getMinSessions(), options.getMaxSessions());
     this.initMetricsCollection(metricRegistry, labelValues);
   }
 
+  /** Connects this pool to the {@link SessionBudget} that is shared with other pools. */
+  private final class BudgetMember implements SessionBudget.Member {
+    @Override
+    public int getNumberOfIdleSessions() {
+      return getNumberOfSessionsInPool();
+    }
+
+    @Override
+    public boolean shedIdleSession() {
+      synchronized (lock) {
+        if (isClosed() || totalSessions() <= options.getMinSessions()) {
+          return false;
+        }
+        Iterator<PooledSession> iterator = sessions.descendingIterator();
+        while (iterator.hasNext()) {
+          PooledSession session = iterator.next();
+          if (session.state != SessionState.CLOSING && sessions.remove(session)) {
+            logger.log(
+                Level.FINE, "Deleting idle session " + session.getName() + " for session budget");
+            session.markClosing();
+            session.budgetReleased = true;
+            releaseSessionBudget(1);
+            closeSessionAsync(session);
+            return true;
+          }
+        }
+        return false;
+      }
+    }
+
+    @Override
+    public void onBudgetAvailable() {
+      synchronized (lock) {
+        if (isClosed()) {
+          return;
+        }
+        int currentSize = totalSessions() + numSessionsBeingCreated;
+        int wanted =
+            Math.max(
+                numWaiters() - numSessionsBeingCreated, options.getMinSessions() - currentSize);
+        for (WarmUp warmUp : warmUps) {
+          wanted = Math.max(wanted, warmUp.numSessions - currentSize);
+        }
+        if (wanted > 0) {
+          int sessionCount = getAllowedCreateSessions(wanted);
+          if (sessionCount > 0) {
+            createSessions(sessionCount, false);
+          }
+        }
+      }
+    }
+  }
+
   @VisibleForTesting
   int getNumberOfSessionsInUse() {
-    synchronized (lock) {
-      return numSessionsInUse;
-    }
+    return numSessionsInUse.get();
+  }
+
+  @VisibleForTesting
+  int getNumberOfSessionsInUse(int channel) {
+    return numSessionsInUsePerChannel.get(channel);
   }
 
   void removeFromPool(PooledSession session) {
@@ -1872,7 +3016,7 @@ class SessionPool {
         return;
       }
       session.markClosing();
-      allSessions.remove(session);
+      removeFromAllSessions(session);
       numIdleSessionsRemoved++;
     }
     if (idleSessionRemovedListener != null) {
@@ -1909,7 +3053,7 @@ class SessionPool {
     synchronized (lock) {
       poolMaintainer.init();
       if (options.getMinSessions() > 0) {
-        createSessions(options.getMinSessions(), true);
+        createSessions(getAllowedCreateSessions(options.getMinSessions()), true);
       }
     }
   }
@@ -1920,11 +3064,63 @@ class SessionPool {
     }
   }
 
-  private void handleException(SpannerException e, PooledSession session) {
-    if (isSessionNotFound(e)) {
-      invalidateSession(session);
-    } else {
-      releaseSession(session, Position.FIRST);
+  SessionPoolOptions getOptions() {
+    return options;
+  }
+
+  /**
+   * Returns a future that is done when this pool contains at least the given number of sessions
+   * (capped by {@link SessionPoolOptions#getMaxSessions()}), and at least one session has been
+   * created on each gRPC channel. Any sessions that are missing are created in parallel on all
+   * channels.
+   */
+  ApiFuture<Void> warmUpAsync(int numSessions) {
+    Preconditions.checkArgument(numSessions >= 0, "numSessions must be >= 0");
+    synchronized (lock) {
+      if (closureFuture != null) {
+        return ApiFutures.immediateFailedFuture(
+            new IllegalStateException("Pool has been closed", closedException));
+      }
+      if (resourceNotFoundException != null) {
+        return ApiFutures.immediateFailedFuture(resourceNotFoundException);
+      }
+      WarmUp warmUp = new WarmUp(Math.min(numSessions, options.getMaxSessions()));
+      warmUps.add(warmUp);
+      int sessionCount = warmUp.numSessions - (totalSessions() + numSessionsBeingCreated);
+      if (sessionCount > 0) {
+        createSessions(getAllowedCreateSessions(sessionCount), true);
+      }
+      completeWarmUps(null);
+      return warmUp.future;
+    }
+  }
+
+  /**
+   * Completes all pending warm-ups that have reached their number of sessions, and fails the ones
+   * that can no longer be reached because session creation failed.
+   */
+  private void completeWarmUps(@Nullable SpannerException createSessionsError) {
+    synchronized (lock) {
+      Iterator<WarmUp> iterator = warmUps.iterator();
+      while (iterator.hasNext()) {
+        WarmUp warmUp = iterator.next();
+        if (createSessionsError != null) {
+          warmUp.lastCreateSessionsError = createSessionsError;
+        }
+        // A channel may not get any sessions if the pool was initialized with fewer sessions than
+        // channels. The pool is also considered warm if it contains enough sessions and there is no
+        // more session creation in progress.
+        boolean allChannelsUsed =
+            channelsWithSessions.cardinality() >= Math.min(numChannels, warmUp.numSessions);
+        if (totalSessions() >= warmUp.numSessions
+            && (allChannelsUsed || numSessionsBeingCreated == 0)) {
+          warmUp.future.set(null);
+          iterator.remove();
+        } else if (numSessionsBeingCreated == 0 && warmUp.lastCreateSessionsError != null) {
+          warmUp.future.setException(warmUp.lastCreateSessionsError);
+          iterator.remove();
+        }
+      }
     }
   }
 
@@ -1942,29 +3138,12 @@ class SessionPool {
         decrementPendingClosures(1);
         return;
       }
-      allSessions.remove(session);
+      removeFromAllSessions(session);
       // replenish the pool.
       createSessions(getAllowedCreateSessions(1), false);
     }
   }
 
-  private PooledSession findSessionToKeepAlive(
-      Queue<PooledSession> queue, Instant keepAliveThreshold, int numAlreadyChecked) {
-    int numChecked = 0;
-    Iterator<PooledSession> iterator = queue.iterator();
-    while (iterator.hasNext()
-        && (numChecked + numAlreadyChecked)
-            < (options.getMinSessions() + options.getMaxIdleSessions() - numSessionsInUse)) {
-      PooledSession session = iterator.next();
-      if (session.lastUseTime.isBefore(keepAliveThreshold)) {
-        iterator.remove();
-        return session;
-      }
-      numChecked++;
-    }
-    return null;
-  }
-
   /** @return true if this {@link SessionPool} is still valid. */
   boolean isValid() {
     synchronized (lock) {
@@ -1981,17 +3160,40 @@ class SessionPool {
    * <p>Implementation strategy:
    *
    * <ol>
-   *   <li>If a read session is available, return that.
+   *   <li>If a read session is available and the request may use it, return that. A request may not
+   *       use one of the last sessions that are reserved for higher priorities.
    *   <li>Otherwise if a session can be created, fire a creation request.
    *   <li>Wait for a session to become available. Note that this can be unblocked either by a
-   *       session being returned to the pool or a new session being created.
+   *       session being returned to the pool or a new session being created. Waiting requests are
+   *       served in order of priority.
    * </ol>
    */
   PooledSessionFuture getSession() throws SpannerException {
+    return getSession(null);
+  }
+
+  /**
+   * Returns a session for a request with the given priority. The default priority {@link
+   * RpcPriority#HIGH} is used if <code>priority</code> is <code>null</code>.
+   *
+   * @see #getSession()
+   */
+  PooledSessionFuture getSession(@Nullable RpcPriority priority) throws SpannerException {
     Span span = Tracing.getTracer().getCurrentSpan();
     span.addAnnotation("Acquiring session");
     WaiterFuture waiter = null;
     PooledSession sess = null;
+    RpcPriority requestPriority = MoreObjects.firstNonNull(priority, DEFAULT_PRIORITY);
+    if (options.isLockFreeCheckout()
+        && reservedForHigherPriorities[requestPriority.ordinal()] == 0
+        && closureFuture == null
+        && resourceNotFoundException == null) {
+      sess = sessions.poll();
+      if (sess != null) {
+        span.addAnnotation("Acquired session");
+        return checkoutSession(span, sess, null);
+      }
+    }
     synchronized (lock) {
       if (closureFuture != null) {
         span.addAnnotation("Pool has been closed");
@@ -2006,12 +3208,21 @@ class SessionPool {
                 resourceNotFoundException.getMessage()),
             resourceNotFoundException);
       }
-      sess = sessions.poll();
+      if (canUseSession(requestPriority, numAvailableSessions())) {
+        sess = sessions.poll();
+      } else if (options.isFailIfPoolExhausted()) {
+        span.addAnnotation("Pool exhausted for priority " + requestPriority + ". Failing");
+        throw newPoolExhaustedException();
+      }
       if (sess == null) {
         span.addAnnotation("No session available");
         maybeCreateSession();
-        waiter = new WaiterFuture();
-        waiters.add(waiter);
+        waiter = new WaiterFuture(requestPriority);
+        addWaiter(waiter);
+        if (options.isLockFreeCheckout()) {
+          // A session could have been released without the lock after we polled the idle sessions.
+          handOutIdleSessionsToWaiters();
+        }
       } else {
         span.addAnnotation("Acquired session");
       }
@@ -2040,11 +3251,9 @@ class SessionPool {
 
   PooledSessionFuture replaceSession(SessionNotFoundException e, PooledSessionFuture session) {
     if (!options.isFailIfSessionNotFound() && session.get().allowReplacing) {
-      synchronized (lock) {
-        numSessionsInUse--;
-        numSessionsReleased++;
-        checkedOutSessions.remove(session);
-      }
+      decrementNumSessionsInUse(session.get());
+      numSessionsReleased.incrementAndGet();
+      checkedOutSessions.remove(session);
       session.leakedException = null;
       invalidateSession(session.get());
       return getSession();
@@ -2059,70 +3268,174 @@ class SessionPool {
         "Using Session", ImmutableMap.of("sessionId", sessionId));
   }
 
-  private void incrementNumSessionsInUse() {
-    synchronized (lock) {
-      if (maxSessionsInUse < ++numSessionsInUse) {
-        maxSessionsInUse = numSessionsInUse;
-      }
-      numSessionsAcquired++;
-    }
+  private void incrementNumSessionsInUse(PooledSession session) {
+    int inUse = numSessionsInUse.incrementAndGet();
+    maxSessionsInUse.accumulateAndGet(inUse, Math::max);
+    maxSessionsInUseInCycle.accumulateAndGet(inUse, Math::max);
+    numSessionsAcquired.incrementAndGet();
+    numSessionsInUsePerChannel.incrementAndGet(session.channel);
+  }
+
+  private void decrementNumSessionsInUse(PooledSession session) {
+    numSessionsInUse.decrementAndGet();
+    numSessionsInUsePerChannel.decrementAndGet(session.channel);
+  }
+
+  /**
+   * Returns the index of the gRPC channel that the given session uses. This uses the same
+   * calculation as the channel pool of gax for selecting a channel based on the channel hint of the
+   * session.
+   */
+  private int channelOf(SessionImpl session) {
+    Map<SpannerRpc.Option, ?> sessionOptions = session.getOptions();
+    Object channelHint =
+        sessionOptions == null ? null : sessionOptions.get(SpannerRpc.Option.CHANNEL_HINT);
+    if (numChannels <= 1 || !(channelHint instanceof Long)) {
+      return 0;
+    }
+    return Math.abs(((Long) channelHint).intValue() % numChannels);
   }
 
   private void maybeCreateSession() {
     Span span = Tracing.getTracer().getCurrentSpan();
     synchronized (lock) {
       if (numWaiters() >= numSessionsBeingCreated) {
-        if (canCreateSession()) {
+        // The pool could be allowed to create sessions, while the shared session budget is
+        // exhausted.
+        int sessionCount = canCreateSession() ? getAllowedCreateSessions(options.getIncStep()) : 0;
+        if (sessionCount > 0) {
           span.addAnnotation("Creating sessions");
-          createSessions(getAllowedCreateSessions(options.getIncStep()), false);
+          createSessions(sessionCount, false);
         } else if (options.isFailIfPoolExhausted()) {
           span.addAnnotation("Pool exhausted. Failing");
           // throw specific exception
-          throw newSpannerException(
-              ErrorCode.RESOURCE_EXHAUSTED,
-              "No session available in the pool. Maximum number of sessions in the pool can be"
-                  + " overridden by invoking SessionPoolOptions#Builder#setMaxSessions. Client can be made to block"
-                  + " rather than fail by setting SessionPoolOptions#Builder#setBlockIfPoolExhausted.");
+          throw newPoolExhaustedException();
         }
       }
     }
   }
+
+  private static SpannerException newPoolExhaustedException() {
+    return newSpannerException(
+        ErrorCode.RESOURCE_EXHAUSTED,
+        "No session available in the pool. Maximum number of sessions in the pool can be"
+            + " overridden by invoking SessionPoolOptions#Builder#setMaxSessions. Client can be made to block"
+            + " rather than fail by setting SessionPoolOptions#Builder#setBlockIfPoolExhausted.");
+  }
+
+  /**
+   * Returns the number of sessions that are available for new requests. This is the number of idle
+   * sessions plus the number of sessions that can still be created.
+   */
+  @GuardedBy("lock")
+  private int numAvailableSessions() {
+    return sessions.size()
+        + Math.max(0, options.getMaxSessions() - allSessions.size() - numSessionsBeingCreated);
+  }
+
+  /**
+   * Returns true if a request with the given priority may use one of the given number of available
+   * sessions without using a session that is reserved for a higher priority.
+   */
+  private boolean canUseSession(RpcPriority priority, int numAvailableSessions) {
+    int reserved = reservedForHigherPriorities[priority.ordinal()];
+    return reserved == 0 || numAvailableSessions > reserved;
+  }
   /** Releases a session back to the pool. This might cause one of the waiters to be unblocked. */
   private void releaseSession(PooledSession session, Position position) {
     Preconditions.checkNotNull(session);
+    if (options.isLockFreeCheckout() && closureFuture == null && !hasWaiters) {
+      addIdleSession(session, position);
+      // A waiter could have been added after we checked for waiters. That waiter will also check
+      // the idle sessions after it has been added, but we hand out the session here as well in case
+      // the waiter checked before the session was added.
+      if (hasWaiters) {
+        synchronized (lock) {
+          handOutIdleSessionsToWaiters();
+        }
+      }
+      return;
+    }
     synchronized (lock) {
       if (closureFuture != null) {
         return;
       }
-      if (waiters.size() == 0) {
-        // No pending waiters
-        switch (position) {
-          case RANDOM:
-            if (!sessions.isEmpty()) {
-              int pos = random.nextInt(sessions.size() + 1);
-              sessions.add(pos, session);
-              break;
-            }
-            // fallthrough
-          case FIRST:
-          default:
-            sessions.addFirst(session);
-        }
+      // The session that is being released is also available.
+      WaiterFuture waiter = pollWaiter(numAvailableSessions() + 1);
+      if (waiter == null) {
+        // No pending waiters that may use the session.
+        addIdleSession(session, position);
       } else {
-        waiters.poll().put(session);
+        waiter.put(session);
       }
     }
   }
 
+  private void addIdleSession(PooledSession session, Position position) {
+    switch (position) {
+      case RANDOM:
+        sessions.addRandom(session);
+        break;
+      case FIRST:
+      default:
+        sessions.addFirst(session);
+    }
+  }
+
+  @GuardedBy("lock")
+  private void addWaiter(WaiterFuture waiter) {
+    waiters.add(waiter);
+    hasWaiters = true;
+  }
+
+  /** Removes and returns the waiter that should be served first, regardless of its priority. */
+  @GuardedBy("lock")
+  private WaiterFuture pollWaiter() {
+    return pollWaiter(Integer.MAX_VALUE);
+  }
+
+  /**
+   * Removes and returns the waiter that should be served first of the waiters that may use one of
+   * the given number of available sessions.
+   */
+  @GuardedBy("lock")
+  @Nullable
+  private WaiterFuture pollWaiter(int numAvailableSessions) {
+    WaiterFuture waiter = waiters.poll(numAvailableSessions);
+    hasWaiters = !waiters.isEmpty();
+    return waiter;
+  }
+
+  /**
+   * Hands out idle sessions to waiters as long as there are both idle sessions and waiters that may
+   * use these.
+   */
+  @GuardedBy("lock")
+  private void handOutIdleSessionsToWaiters() {
+    while (!waiters.isEmpty()) {
+      PooledSession session = sessions.poll();
+      if (session == null) {
+        break;
+      }
+      WaiterFuture waiter = pollWaiter(numAvailableSessions() + 1);
+      if (waiter == null) {
+        addIdleSession(session, Position.FIRST);
+        break;
+      }
+      waiter.put(session);
+    }
+  }
+
   private void handleCreateSessionsFailure(SpannerException e, int count) {
     synchronized (lock) {
       for (int i = 0; i < count; i++) {
         if (waiters.size() > 0) {
-          waiters.poll().put(e);
+          pollWaiter().put(e);
         } else {
           break;
         }
       }
+      completeWarmUps(e);
       if (isDatabaseOrInstanceNotFound(e)) {
         setResourceNotFoundException((ResourceNotFoundException) e);
         poolMaintainer.close();
@@ -2154,13 +3467,21 @@ class SessionPool {
       }
       this.closedException = closedException;
       // Fail all pending waiters.
-      WaiterFuture waiter = waiters.poll();
+      WaiterFuture waiter = pollWaiter();
       while (waiter != null) {
         waiter.put(newSpannerException(ErrorCode.INTERNAL, "Client has been closed"));
-        waiter = waiters.poll();
+        waiter = pollWaiter();
       }
+      for (WarmUp warmUp : warmUps) {
+        warmUp.future.setException(
+            new IllegalStateException("Pool has been closed", closedException));
+      }
+      warmUps.clear();
       closureFuture = SettableFuture.create();
       retFuture = closureFuture;
+      if (sessionBudget != null) {
+        sessionBudget.close();
+      }
 
       pendingClosure = totalSessions() + numSessionsBeingCreated;
 
@@ -2213,7 +3534,7 @@ class SessionPool {
     res.addListener(
         () -> {
           synchronized (lock) {
-            allSessions.remove(sess);
+            removeFromAllSessions(sess);
             if (isClosed()) {
               decrementPendingClosures(1);
               return;
@@ -2235,8 +3556,31 @@ class SessionPool {
    */
   private int getAllowedCreateSessions(int wantedSessions) {
     synchronized (lock) {
-      return Math.min(
-          wantedSessions, options.getMaxSessions() - (totalSessions() + numSessionsBeingCreated));
+      int allowed =
+          Math.min(
+              wantedSessions,
+              options.getMaxSessions() - (totalSessions() + numSessionsBeingCreated));
+      if (sessionBudget != null && allowed > 0) {
+        allowed = sessionBudget.acquire(allowed);
+      }
+      return allowed;
+    }
+  }
+
+  /**
+   * Removes the given session from the sessions of this pool and releases its share of the session
+   * budget.
+   */
+  @GuardedBy("lock")
+  private void removeFromAllSessions(PooledSession session) {
+    if (allSessions.remove(session) && !session.budgetReleased) {
+      releaseSessionBudget(1);
+    }
+  }
+
+  private void releaseSessionBudget(int numSessions) {
+    if (sessionBudget != null) {
+      sessionBudget.release(numSessions);
     }
   }
 
@@ -2260,6 +3604,7 @@ class SessionPool {
       } catch (Throwable t) {
         // Expose this to customer via a metric.
         numSessionsBeingCreated -= sessionCount;
+        releaseSessionBudget(sessionCount);
         if (isClosed()) {
           decrementPendingClosures(sessionCount);
         }
@@ -2284,13 +3629,16 @@ class SessionPool {
         numSessionsBeingCreated--;
         if (closureFuture != null) {
           closeSession = true;
+          releaseSessionBudget(1);
         } else {
           Preconditions.checkState(totalSessions() <= options.getMaxSessions() - 1);
           allSessions.add(pooledSession);
+          channelsWithSessions.set(pooledSession.channel);
           // Release the session to a random position in the pool to prevent the case that a batch
           // of sessions that are affiliated with the same channel are all placed sequentially in
           // the pool.
           releaseSession(pooledSession, Position.RANDOM);
+          completeWarmUps(null);
         }
       }
       if (closeSession) {
@@ -2306,6 +3654,7 @@ class SessionPool {
     public void onSessionCreateFailure(Throwable t, int createFailureForSessionCount) {
       synchronized (lock) {
         numSessionsBeingCreated -= createFailureForSessionCount;
+        releaseSessionBudget(createFailureForSessionCount);
         if (isClosed()) {
           decrementPendingClosures(createFailureForSessionCount);
         }
@@ -2377,7 +3726,7 @@ class SessionPool {
     // invoked whenever metrics are collected.
     maxInUseSessionsMetric.removeTimeSeries(labelValues);
     maxInUseSessionsMetric.createTimeSeries(
-        labelValues, this, sessionPool -> sessionPool.maxSessionsInUse);
+        labelValues, this, sessionPool -> sessionPool.maxSessionsInUse.get());
 
     // The value of a maxSessions is observed from a callback function. This function is invoked
     // whenever metrics are collected.
@@ -2392,11 +3741,11 @@ class SessionPool {
 
     numAcquiredSessionsMetric.removeTimeSeries(labelValues);
     numAcquiredSessionsMetric.createTimeSeries(
-        labelValues, this, sessionPool -> sessionPool.numSessionsAcquired);
+        labelValues, this, sessionPool -> sessionPool.numSessionsAcquired.get());
 
     numReleasedSessionsMetric.removeTimeSeries(labelValues);
     numReleasedSessionsMetric.createTimeSeries(
-        labelValues, this, sessionPool -> sessionPool.numSessionsReleased);
+        labelValues, this, sessionPool -> sessionPool.numSessionsReleased.get());
 
     List<LabelValue> labelValuesWithBeingPreparedType = new ArrayList<>(labelValues);
     labelValuesWithBeingPreparedType.add(NUM_SESSIONS_BEING_PREPARED);
@@ -2411,7 +3760,7 @@ class SessionPool {
     labelValuesWithInUseType.add(NUM_IN_USE_SESSIONS);
     numSessionsInPoolMetric.removeTimeSeries(labelValuesWithInUseType);
     numSessionsInPoolMetric.createTimeSeries(
-        labelValuesWithInUseType, this, sessionPool -> sessionPool.numSessionsInUse);
+        labelValuesWithInUseType, this, sessionPool -> sessionPool.numSessionsInUse.get());
 
     List<LabelValue> labelValuesWithReadType = new ArrayList<>(labelValues);
     labelValuesWithReadType.add(NUM_READ_SESSIONS);
@@ -2427,5 +3776,179 @@ class SessionPool {
         this,
         // TODO: Remove metric.
         ignored -> 0L);
+
+    DerivedLongCumulative numWaitsForSessionMetric =
+        metricRegistry.addDerivedLongCumulative(
+            NUM_WAITS_FOR_SESSION,
+            MetricOptions.builder()
+                .setDescription(NUM_WAITS_FOR_SESSION_DESCRIPTION)
+                .setUnit(COUNT)
+                .setLabelKeys(SPANNER_LABEL_KEYS_WITH_PRIORITY)
+                .build());
+    DerivedLongCumulative waitForSessionTimeMetric =
+        metricRegistry.addDerivedLongCumulative(
+            WAIT_FOR_SESSION_TIME,
+            MetricOptions.builder()
+                .setDescription(WAIT_FOR_SESSION_TIME_DESCRIPTION)
+                .setUnit(MILLISECOND)
+                .setLabelKeys(SPANNER_LABEL_KEYS_WITH_PRIORITY)
+                .build());
+    for (RpcPriority priority : RpcPriority.values()) {
+      final int index = priority.ordinal();
+      List<LabelValue> labelValuesWithPriority = new ArrayList<>(labelValues);
+      labelValuesWithPriority.add(LabelValue.create(priority.name()));
+      numWaitsForSessionMetric.removeTimeSeries(labelValuesWithPriority);
+      numWaitsForSessionMetric.createTimeSeries(
+          labelValuesWithPriority, this, sessionPool -> sessionPool.numWaitsForSession.get(index));
+      waitForSessionTimeMetric.removeTimeSeries(labelValuesWithPriority);
+      waitForSessionTimeMetric.createTimeSeries(
+          labelValuesWithPriority,
+          this,
+          sessionPool -> sessionPool.waitForSessionMillis.get(index));
+    }
+
+    DerivedLongCumulative numKeepAlivePingsMetric =
+        metricRegistry.addDerivedLongCumulative(
+            NUM_KEEP_ALIVE_PINGS,
+            MetricOptions.builder()
+                .setDescription(NUM_KEEP_ALIVE_PINGS_DESCRIPTION)
+                .setUnit(COUNT)
+                .setLabelKeys(SPANNER_LABEL_KEYS)
+                .build());
+    DerivedLongCumulative numFailedKeepAlivePingsMetric =
+        metricRegistry.addDerivedLongCumulative(
+            NUM_FAILED_KEEP_ALIVE_PINGS,
+            MetricOptions.builder()
+                .setDescription(NUM_FAILED_KEEP_ALIVE_PINGS_DESCRIPTION)
+                .setUnit(COUNT)
+                .setLabelKeys(SPANNER_LABEL_KEYS)
+                .build());
+    DerivedLongCumulative keepAlivePingTimeMetric =
+        metricRegistry.addDerivedLongCumulative(
+            KEEP_ALIVE_PING_TIME,
+            MetricOptions.builder()
+                .setDescription(KEEP_ALIVE_PING_TIME_DESCRIPTION)
+                .setUnit(MILLISECOND)
+                .setLabelKeys(SPANNER_LABEL_KEYS)
+                .build());
+    numKeepAlivePingsMetric.removeTimeSeries(labelValues);
+    numKeepAlivePingsMetric.createTimeSeries(
+        labelValues, this, sessionPool -> sessionPool.numKeepAlivePings.get());
+    numFailedKeepAlivePingsMetric.removeTimeSeries(labelValues);
+    numFailedKeepAlivePingsMetric.createTimeSeries(
+        labelValues, this, sessionPool -> sessionPool.numFailedKeepAlivePings.get());
+    keepAlivePingTimeMetric.removeTimeSeries(labelValues);
+    keepAlivePingTimeMetric.createTimeSeries(
+        labelValues, this, sessionPool -> sessionPool.keepAlivePingMillis.get());
+
+    DerivedLongGauge sessionLatencyMetric =
+        metricRegistry.addDerivedLongGauge(
+            SESSION_LATENCY,
+            MetricOptions.builder()
+                .setDescription(SESSION_LATENCY_DESCRIPTION)
+                .setUnit(MICROSECOND)
+                .setLabelKeys(SPANNER_LABEL_KEYS_WITH_TYPE)
+                .build());
+    DerivedLongGauge numUnhealthySessionsMetric =
+        metricRegistry.addDerivedLongGauge(
+            NUM_UNHEALTHY_SESSIONS,
+            MetricOptions.builder()
+                .setDescription(NUM_UNHEALTHY_SESSIONS_DESCRIPTION)
+                .setUnit(COUNT)
+                .setLabelKeys(SPANNER_LABEL_KEYS)
+                .build());
+    DerivedLongCumulative numUnhealthySessionsRetiredMetric =
+        metricRegistry.addDerivedLongCumulative(
+            NUM_UNHEALTHY_SESSIONS_RETIRED,
+            MetricOptions.builder()
+                .setDescription(NUM_UNHEALTHY_SESSIONS_RETIRED_DESCRIPTION)
+                .setUnit(COUNT)
+                .setLabelKeys(SPANNER_LABEL_KEYS)
+                .build());
+    List<LabelValue> labelValuesWithMedianType = new ArrayList<>(labelValues);
+    labelValuesWithMedianType.add(MEDIAN_SESSION_LATENCY);
+    sessionLatencyMetric.removeTimeSeries(labelValuesWithMedianType);
+    sessionLatencyMetric.createTimeSeries(
+        labelValuesWithMedianType, this, sessionPool -> sessionPool.medianSessionLatencyMicros);
+    List<LabelValue> labelValuesWithMaxType = new ArrayList<>(labelValues);
+    labelValuesWithMaxType.add(MAX_SESSION_LATENCY);
+    sessionLatencyMetric.removeTimeSeries(labelValuesWithMaxType);
+    sessionLatencyMetric.createTimeSeries(
+        labelValuesWithMaxType, this, sessionPool -> sessionPool.maxSessionLatencyMicros);
+    numUnhealthySessionsMetric.removeTimeSeries(labelValues);
+    numUnhealthySessionsMetric.createTimeSeries(
+        labelValues, this, sessionPool -> sessionPool.numUnhealthySessions);
+    numUnhealthySessionsRetiredMetric.removeTimeSeries(labelValues);
+    numUnhealthySessionsRetiredMetric.createTimeSeries(
+        labelValues, this, sessionPool -> sessionPool.numUnhealthySessionsRetired.get());
+
+    if (sessionBudget != null) {
+      DerivedLongGauge numBudgetAllocatedSessionsMetric =
+          metricRegistry.addDerivedLongGauge(
+              NUM_BUDGET_ALLOCATED_SESSIONS,
+              MetricOptions.builder()
+                  .setDescription(NUM_BUDGET_ALLOCATED_SESSIONS_DESCRIPTION)
+                  .setUnit(COUNT)
+                  .setLabelKeys(SPANNER_LABEL_KEYS)
+                  .build());
+      DerivedLongCumulative numSessionsShedMetric =
+          metricRegistry.addDerivedLongCumulative(
+              NUM_SESSIONS_SHED_FOR_BUDGET,
+              MetricOptions.builder()
+                  .setDescription(NUM_SESSIONS_SHED_FOR_BUDGET_DESCRIPTION)
+                  .setUnit(COUNT)
+                  .setLabelKeys(SPANNER_LABEL_KEYS)
+                  .build());
+      numBudgetAllocatedSessionsMetric.removeTimeSeries(labelValues);
+      numBudgetAllocatedSessionsMetric.createTimeSeries(
+          labelValues, this, sessionPool -> sessionPool.sessionBudget.getAllocated());
+      numSessionsShedMetric.removeTimeSeries(labelValues);
+      numSessionsShedMetric.createTimeSeries(
+          labelValues, this, sessionPool -> sessionPool.sessionBudget.getNumSessionsShed());
+
+      // The budget is shared by all pools of the Spanner instance. Each pool reports the totals of
+      // the budget with its own labels, like the other metrics of the pool, so that the time
+      // series of different clients and databases do not overwrite each other.
+      DerivedLongGauge budgetSessionsMetric =
+          metricRegistry.addDerivedLongGauge(
+              SESSION_BUDGET_SESSIONS,
+              MetricOptions.builder()
+                  .setDescription(SESSION_BUDGET_SESSIONS_DESCRIPTION)
+                  .setUnit(COUNT)
+                  .setLabelKeys(SPANNER_LABEL_KEYS_WITH_TYPE)
+                  .build());
+      SessionBudget budget = sessionBudget.getBudget();
+      List<LabelValue> labelValuesWithTotalAllocatedType = new ArrayList<>(labelValues);
+      labelValuesWithTotalAllocatedType.add(TOTAL_ALLOCATED_SESSIONS);
+      budgetSessionsMetric.removeTimeSeries(labelValuesWithTotalAllocatedType);
+      budgetSessionsMetric.createTimeSeries(
+          labelValuesWithTotalAllocatedType, budget, SessionBudget::getTotalAllocated);
+      List<LabelValue> labelValuesWithTotalMaxType = new ArrayList<>(labelValues);
+      labelValuesWithTotalMaxType.add(TOTAL_MAX_SESSIONS);
+      budgetSessionsMetric.removeTimeSeries(labelValuesWithTotalMaxType);
+      budgetSessionsMetric.createTimeSeries(
+          labelValuesWithTotalMaxType, budget, SessionBudget::getMaxTotalSessions);
+    }
+
+    if (options.isChannelAwareCheckout()) {
+      DerivedLongGauge numInUseSessionsPerChannelMetric =
+          metricRegistry.addDerivedLongGauge(
+              NUM_IN_USE_SESSIONS_PER_CHANNEL,
+              MetricOptions.builder()
+                  .setDescription(NUM_IN_USE_SESSIONS_PER_CHANNEL_DESCRIPTION)
+                  .setUnit(COUNT)
+                  .setLabelKeys(SPANNER_LABEL_KEYS_WITH_CHANNEL)
+                  .build());
+      for (int channel = 0; channel < numChannels; channel++) {
+        final int channelIndex = channel;
+        List<LabelValue> labelValuesWithChannel = new ArrayList<>(labelValues);
+        labelValuesWithChannel.add(LabelValue.create(String.valueOf(channel)));
+        numInUseSessionsPerChannelMetric.removeTimeSeries(labelValuesWithChannel);
+        numInUseSessionsPerChannelMetric.createTimeSeries(
+            labelValuesWithChannel,
+            this,
+            sessionPool -> sessionPool.numSessionsInUsePerChannel.get(channelIndex));
+      }
+    }
   }
 }
@@ -16,9 +16,15 @@
 
 package com.google.cloud.spanner;
 
+import com.google.cloud.spanner.Options.RpcPriority;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.Objects;
+import javax.annotation.Nullable;
 import org.threeten.bp.Duration;
 
 /** Options for the session pool used by {@code DatabaseClient}. */
@@ -50,6 +56,13 @@ public class SessionPoolOptions {
   private final ActionOnSessionNotFound actionOnSessionNotFound;
   private final ActionOnSessionLeak actionOnSessionLeak;
   private final long initialWaitForSessionTimeoutMillis;
+  private final boolean lockFreeCheckout;
+  private final boolean channelAwareCheckout;
+  @Nullable private final SessionPoolSizingPolicy sizingPolicy;
+  private final Duration priorityAgingInterval;
+  private final ImmutableMap<RpcPriority, Integer> reservedSessions;
+  private final int leakStackTraceSampleRate;
+  private final boolean retireUnhealthySessions;
 
   private SessionPoolOptions(Builder builder) {
     // minSessions > maxSessions is only possible if the user has only set a value for maxSessions.
@@ -67,6 +80,13 @@ public class SessionPoolOptions {
     this.loopFrequency = builder.loopFrequency;
     this.keepAliveIntervalMinutes = builder.keepAliveIntervalMinutes;
     this.removeInactiveSessionAfter = builder.removeInactiveSessionAfter;
+    this.lockFreeCheckout = builder.lockFreeCheckout;
+    this.channelAwareCheckout = builder.channelAwareCheckout;
+    this.sizingPolicy = builder.sizingPolicy;
+    this.priorityAgingInterval = builder.priorityAgingInterval;
+    this.reservedSessions = Maps.immutableEnumMap(builder.reservedSessions);
+    this.leakStackTraceSampleRate = builder.leakStackTraceSampleRate;
+    this.retireUnhealthySessions = builder.retireUnhealthySessions;
   }
 
   @Override
@@ -87,7 +107,14 @@ public class SessionPoolOptions {
             this.initialWaitForSessionTimeoutMillis, other.initialWaitForSessionTimeoutMillis)
         && Objects.equals(this.loopFrequency, other.loopFrequency)
         && Objects.equals(this.keepAliveIntervalMinutes, other.keepAliveIntervalMinutes)
-        && Objects.equals(this.removeInactiveSessionAfter, other.removeInactiveSessionAfter);
+        && Objects.equals(this.removeInactiveSessionAfter, other.removeInactiveSessionAfter)
+        && Objects.equals(this.lockFreeCheckout, other.lockFreeCheckout)
+        && Objects.equals(this.channelAwareCheckout, other.channelAwareCheckout)
+        && Objects.equals(this.sizingPolicy, other.sizingPolicy)
+        && Objects.equals(this.priorityAgingInterval, other.priorityAgingInterval)
+        && Objects.equals(this.reservedSessions, other.reservedSessions)
+        && Objects.equals(this.leakStackTraceSampleRate, other.leakStackTraceSampleRate)
+        && Objects.equals(this.retireUnhealthySessions, other.retireUnhealthySessions);
   }
 
   @Override
@@ -104,7 +131,14 @@ public class SessionPoolOptions {
         this.initialWaitForSessionTimeoutMillis,
         this.loopFrequency,
         this.keepAliveIntervalMinutes,
-        this.removeInactiveSessionAfter);
+        this.removeInactiveSessionAfter,
+        this.lockFreeCheckout,
+        this.channelAwareCheckout,
+        this.sizingPolicy,
+        this.priorityAgingInterval,
+        this.reservedSessions,
+        this.leakStackTraceSampleRate,
+        this.retireUnhealthySessions);
   }
 
   public Builder toBuilder() {
@@ -163,6 +197,65 @@ public class SessionPoolOptions {
     return actionOnExhaustion == ActionOnExhaustion.BLOCK;
   }
 
+  /**
+   * Returns true if idle sessions are kept in striped lock-free stacks, so that sessions can be
+   * checked out of and released to the pool without acquiring the pool lock.
+   */
+  public boolean isLockFreeCheckout() {
+    return lockFreeCheckout;
+  }
+
+  /**
+   * Returns true if the pool hands out idle sessions from the gRPC channel that currently has the
+   * lowest number of sessions in use.
+   */
+  public boolean isChannelAwareCheckout() {
+    return channelAwareCheckout;
+  }
+
+  /**
+   * Returns the policy that is used to grow and shrink the pool based on the observed load, or
+   * <code>null</code> if the pool only creates sessions when it is exhausted.
+   */
+  @Nullable
+  public SessionPoolSizingPolicy getSizingPolicy() {
+    return sizingPolicy;
+  }
+
+  /**
+   * Returns the interval after which the priority of a request that is waiting for a session is
+   * raised by one level.
+   */
+  public Duration getPriorityAgingInterval() {
+    return priorityAgingInterval;
+  }
+
+  /**
+   * Returns the number of sessions in the pool that are reserved for requests with the given
+   * priority. These sessions cannot be used by requests with a lower priority.
+   */
+  public int getReservedSessions(RpcPriority priority) {
+    Integer reserved = reservedSessions.get(Preconditions.checkNotNull(priority));
+    return reserved == null ? 0 : reserved;
+  }
+
+  /**
+   * Returns the rate at which the pool captures a stack trace when a session is checked out. A
+   * stack trace is captured for 1 in every N checkouts, where 1 means every checkout and 0 means
+   * never.
+   */
+  public int getLeakStackTraceSampleRate() {
+    return leakStackTraceSampleRate;
+  }
+
+  /**
+   * Returns true if the pool retires and replaces idle sessions that are consistently slower or
+   * fail more often than the other sessions in the pool.
+   */
+  public boolean isRetireUnhealthySessions() {
+    return retireUnhealthySessions;
+  }
+
   @VisibleForTesting
   long getInitialWaitForSessionTimeoutMillis() {
     return initialWaitForSessionTimeoutMillis;
@@ -220,6 +313,13 @@ public class SessionPoolOptions {
     private long loopFrequency = 10 * 1000L;
     private int keepAliveIntervalMinutes = 30;
     private Duration removeInactiveSessionAfter = Duration.ofMinutes(55L);
+    private boolean lockFreeCheckout = false;
+    private boolean channelAwareCheckout = false;
+    private SessionPoolSizingPolicy sizingPolicy;
+    private Duration priorityAgingInterval = Duration.ofSeconds(1L);
+    private final Map<RpcPriority, Integer> reservedSessions = new EnumMap<>(RpcPriority.class);
+    private int leakStackTraceSampleRate = 1;
+    private boolean retireUnhealthySessions = false;
 
     public Builder() {}
 
@@ -237,6 +337,13 @@ public class SessionPoolOptions {
       this.loopFrequency = options.loopFrequency;
       this.keepAliveIntervalMinutes = options.keepAliveIntervalMinutes;
       this.removeInactiveSessionAfter = options.removeInactiveSessionAfter;
+      this.lockFreeCheckout = options.lockFreeCheckout;
+      this.channelAwareCheckout = options.channelAwareCheckout;
+      this.sizingPolicy = options.sizingPolicy;
+      this.priorityAgingInterval = options.priorityAgingInterval;
+      this.reservedSessions.putAll(options.reservedSessions);
+      this.leakStackTraceSampleRate = options.leakStackTraceSampleRate;
+      this.retireUnhealthySessions = options.retireUnhealthySessions;
     }
 
     /**
@@ -327,6 +434,115 @@ public class SessionPoolOptions {
       return this;
     }
 
+    /**
+     * Keep the idle sessions of the pool in a number of striped lock-free stacks (one per available
+     * processor) instead of in a single list that is guarded by the pool lock. Checking out a
+     * session while an idle session is available, and releasing a session while no request is
+     * waiting for one, will then not acquire the pool lock. This reduces lock contention for
+     * clients that are used by a large number of threads concurrently. Idle sessions are not
+     * strictly reused in LIFO order when this option is enabled. Defaults to false.
+     */
+    public Builder setLockFreeCheckout(boolean lockFreeCheckout) {
+      this.lockFreeCheckout = lockFreeCheckout;
+      return this;
+    }
+
+    /**
+     * Every session is affiliated with one of the gRPC channels of the client. By default, the pool
+     * hands out the most recently used idle session, regardless of the channel that it uses. This
+     * can cause some channels to reach their limit of concurrent streams while other channels are
+     * idle. Enabling this option makes the pool keep track of the number of sessions that are in
+     * use per channel, and hand out an idle session from the least loaded channel. The number of
+     * sessions in use per channel is also exported as a metric. This option only has effect if the
+     * client uses more than one channel, and it cannot be combined with {@link
+     * #setLockFreeCheckout(boolean)}. Defaults to false.
+     */
+    public Builder setChannelAwareCheckout(boolean channelAwareCheckout) {
+      this.channelAwareCheckout = channelAwareCheckout;
+      return this;
+    }
+
+    /**
+     * Sets a policy that grows and shrinks the pool based on the load that it observes. By default,
+     * the pool creates a batch of new sessions when it is exhausted, and only removes sessions that
+     * have been idle for a long time. A sizing policy is invoked by the pool maintainer, and allows
+     * the pool to create sessions before they are needed, for example when the load is increasing,
+     * and to release sessions when the load decreases. The size of the pool will always stay within
+     * {@link #setMinSessions(int)} and {@link #setMaxSessions(int)}. Defaults to <code>null</code>.
+     *
+     * @see AdaptiveSessionPoolSizingPolicy
+     */
+    public Builder setSizingPolicy(@Nullable SessionPoolSizingPolicy sizingPolicy) {
+      this.sizingPolicy = sizingPolicy;
+      return this;
+    }
+
+    /**
+     * Requests that are waiting for a session are served in order of the {@link RpcPriority} of the
+     * transaction or statement that requested the session, and in FIFO order within the same
+     * priority. The priority of a waiting request is raised by one level each time it has waited
+     * for this interval, so that requests with a low priority are never starved by a constant
+     * stream of requests with a higher priority. The interval must be at least 1 millisecond.
+     * Defaults to 1 second.
+     */
+    public Builder setPriorityAgingInterval(Duration priorityAgingInterval) {
+      Preconditions.checkNotNull(priorityAgingInterval);
+      // The session pool ages waiting requests in whole milliseconds.
+      Preconditions.checkArgument(
+          priorityAgingInterval.toMillis() >= 1L, "priorityAgingInterval must be >= 1ms");
+      this.priorityAgingInterval = priorityAgingInterval;
+      return this;
+    }
+
+    /**
+     * Reserves a number of the sessions in the pool for requests with the given priority or higher.
+     * A request with a lower priority will wait for a session instead of taking one of the last
+     * reserved sessions that are available in the pool. This prevents for example a large number of
+     * batch jobs with {@link RpcPriority#LOW} from using all sessions of a client that also serves
+     * latency sensitive requests. Sessions can only be reserved for {@link RpcPriority#MEDIUM} and
+     * {@link RpcPriority#HIGH}, and the total number of reserved sessions must be less than the
+     * maximum number of sessions. Defaults to 0.
+     */
+    public Builder setReservedSessions(RpcPriority priority, int numSessions) {
+      Preconditions.checkNotNull(priority);
+      Preconditions.checkArgument(
+          priority != RpcPriority.LOW, "Sessions cannot be reserved for the lowest priority");
+      Preconditions.checkArgument(numSessions >= 0, "numSessions must be >= 0");
+      this.reservedSessions.put(priority, numSessions);
+      return this;
+    }
+
+    /**
+     * The pool records where each session is checked out, so that sessions that are never returned
+     * to the pool can be reported when the client is closed. By default, the pool captures a full
+     * stack trace for every checkout. Capturing a stack trace can take a significant amount of CPU
+     * time for applications that check out a large number of sessions. Setting a sample rate of N
+     * makes the pool capture a stack trace for on average 1 in N checkouts. A sample rate of 0
+     * disables stack traces completely. Checkouts without a stack trace only record the time of the
+     * checkout and the class that checked out the session, which is included in the report of a
+     * leaked session. Defaults to 1.
+     */
+    public Builder setLeakStackTraceSampleRate(int sampleRate) {
+      Preconditions.checkArgument(sampleRate >= 0, "sampleRate must be >= 0");
+      this.leakStackTraceSampleRate = sampleRate;
+      return this;
+    }
+
+    /**
+     * The pool keeps a health score for each session, consisting of the average latency of each
+     * type of RPC on the session and the fraction of those RPCs that failed with a transient error.
+     * The latency of an RPC type is only compared with the same RPC type on other sessions.
+     * Enabling this option makes the pool maintainer retire idle sessions that are significantly
+     * slower or fail more often than the other sessions in the pool, and replace them with new
+     * sessions. At most a small fraction of the pool is retired in each maintenance cycle. The
+     * keep-alive latency of the sessions in the pool is always exported as a metric. Defaults to
+     * false.
+     */
+    public Builder setRetireUnhealthySessions(boolean retireUnhealthySessions) {
+      this.retireUnhealthySessions = retireUnhealthySessions;
+      return this;
+    }
+
     /**
      * The initial number of milliseconds to wait for a session to become available when one is
      * requested. The session pool will keep retrying to get a session, and the timeout will be
@@ -382,6 +598,18 @@ public class SessionPoolOptions {
       }
       Preconditions.checkArgument(
           keepAliveIntervalMinutes < 60, "Keep alive interval should be less than" + "60 minutes");
+      Preconditions.checkArgument(
+          !(lockFreeCheckout && channelAwareCheckout),
+          "Lock-free checkout cannot be combined with channel-aware checkout");
+      int totalReservedSessions = 0;
+      for (int numSessions : reservedSessions.values()) {
+        totalReservedSessions += numSessions;
+      }
+      Preconditions.checkArgument(
+          totalReservedSessions < maxSessions,
+          "Reserved sessions(%s) must be < max sessions(%s)",
+          totalReservedSessions,
+          maxSessions);
     }
   }
 }
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import org.threeten.bp.Instant;
+
+/**
+ * Policy that determines how many sessions a session pool should contain based on the load that the
+ * pool has observed. A policy can be set with {@link
+ * SessionPoolOptions.Builder#setSizingPolicy(SessionPoolSizingPolicy)}.
+ *
+ * <p>The same {@link SessionPoolOptions}, and therefore the same policy, is used for the session
+ * pools of all databases of a {@link Spanner} instance. A policy should therefore not keep any
+ * state itself, but create a new {@link Estimator} for each pool.
+ *
+ * @see AdaptiveSessionPoolSizingPolicy
+ */
+public interface SessionPoolSizingPolicy {
+
+  /** Creates a new {@link Estimator} for a single session pool. */
+  Estimator newEstimator();
+
+  /**
+   * Estimates the number of sessions that a single session pool needs. The estimator is invoked by
+   * the maintainer of the pool once for each maintenance cycle, and is never invoked concurrently.
+   */
+  interface Estimator {
+
+    /**
+     * Records the load of the pool during the last maintenance cycle and returns the number of
+     * sessions that the pool should contain. The session pool creates new sessions if the returned
+     * value is larger than the current number of sessions in the pool, and gradually removes idle
+     * sessions if it is smaller. The returned value is always capped by {@link
+     * SessionPoolOptions#getMinSessions()} and {@link SessionPoolOptions#getMaxSessions()}.
+     *
+     * @param currentTime the time of the current maintenance cycle
+     * @param numCheckouts the number of sessions that were checked out of the pool since the
+     *     previous maintenance cycle
+     * @param maxSessionsInUse the maximum number of sessions that were in use concurrently since
+     *     the previous maintenance cycle
+     * @return the number of sessions that the pool should contain
+     */
+    int estimateSessions(Instant currentTime, long numCheckouts, int maxSessionsInUse);
+  }
+}
@@ -37,6 +37,7 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.spanner.v1.ExecuteSqlRequest.QueryOptions;
 import io.opencensus.metrics.LabelValue;
+import io.opencensus.metrics.Metrics;
 import io.opencensus.trace.Tracer;
 import io.opencensus.trace.Tracing;
 import java.util.ArrayList;
@@ -98,6 +99,9 @@ class SpannerImpl extends BaseService<SpannerOptions> implements Spanner {
   private final DatabaseAdminClient dbAdminClient;
   private final InstanceAdminClient instanceClient;
 
+  /** The session budget that is shared by all session pools, or null if there is none. */
+  @Nullable private final SessionBudget sessionBudget;
+
   /**
    * Exception class used to track the stack trace at the point when a Spanner instance is closed.
    * This exception will be thrown if a user tries to use any resources that were returned by this
@@ -126,6 +130,22 @@ class SpannerImpl extends BaseService<SpannerOptions> implements Spanner {
     this.dbAdminClient = new DatabaseAdminClientImpl(options.getProjectId(), gapicRpc);
     this.instanceClient =
         new InstanceAdminClientImpl(options.getProjectId(), gapicRpc, dbAdminClient);
+    this.sessionBudget =
+        options.getSessionBudgetOptions() == null
+            ? null
+            : new SessionBudget(
+                options.getSessionBudgetOptions(), asyncExecutorProvider.getExecutor());
+    if (options.getResultMemoryGovernor() != null) {
+      options
+          .getResultMemoryGovernor()
+          .initMetricsCollection(
+              Metrics.getMetricRegistry(),
+              ImmutableList.of(
+                  LabelValue.create(null),
+                  LabelValue.create(null),
+                  LabelValue.create(null),
+                  LabelValue.create(GaxProperties.getLibraryVersion(options.getClass()))));
+    }
   }
 
   SpannerImpl(SpannerOptions options) {
@@ -142,6 +162,17 @@ class SpannerImpl extends BaseService<SpannerOptions> implements Spanner {
     return getOptions().getPrefetchChunks();
   }
 
+  /** Returns the default setting for maxResumeBufferBytes of this {@link SpannerImpl} instance. */
+  long getDefaultMaxResumeBufferBytes() {
+    return getOptions().getMaxResumeBufferBytes();
+  }
+
+  /** Returns the {@link ResultMemoryGovernor} of this {@link SpannerImpl} instance, if any. */
+  @Nullable
+  ResultMemoryGovernor getResultMemoryGovernor() {
+    return getOptions().getResultMemoryGovernor();
+  }
+
   /** Returns the default query options that should be used for the specified database. */
   QueryOptions getDefaultQueryOptions(DatabaseId databaseId) {
     return getOptions().getDefaultQueryOptions(databaseId);
@@ -218,9 +249,23 @@ class SpannerImpl extends BaseService<SpannerOptions> implements Spanner {
                 LabelValue.create(db.getDatabase()),
                 LabelValue.create(db.getInstanceId().getName()),
                 LabelValue.create(GaxProperties.getLibraryVersion(getOptions().getClass())));
+        SessionPoolOptions poolOptions = getOptions().getSessionPoolOptions();
+        if (sessionBudget != null) {
+          SessionBudgetOptions budgetOptions = getOptions().getSessionBudgetOptions();
+          poolOptions =
+              poolOptions
+                  .toBuilder()
+                  .setMinSessions(budgetOptions.getMinSessions(db, poolOptions))
+                  .setMaxSessions(budgetOptions.getMaxSessions(db, poolOptions))
+                  .build();
+        }
         SessionPool pool =
             SessionPool.createPool(
-                getOptions(), SpannerImpl.this.getSessionClient(db), labelValues);
+                getOptions(),
+                poolOptions,
+                sessionBudget,
+                SpannerImpl.this.getSessionClient(db),
+                labelValues);
         DatabaseClientImpl dbClient = createDatabaseClient(clientId, pool);
         dbClients.put(db, dbClient);
         return dbClient;
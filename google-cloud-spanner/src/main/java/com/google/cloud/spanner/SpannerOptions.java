@@ -96,7 +96,10 @@ public class SpannerOptions extends ServiceOptions<Spanner, SpannerOptions> {
 
   private final GrpcInterceptorProvider interceptorProvider;
   private final SessionPoolOptions sessionPoolOptions;
+  @Nullable private final SessionBudgetOptions sessionBudgetOptions;
   private final int prefetchChunks;
+  private final long maxResumeBufferBytes;
+  @Nullable private final ResultMemoryGovernor resultMemoryGovernor;
   private final int numChannels;
   private final ImmutableMap<String, String> sessionLabels;
   private final SpannerStubSettings spannerStubSettings;
@@ -544,7 +547,10 @@ public class SpannerOptions extends ServiceOptions<Spanner, SpannerOptions> {
         builder.sessionPoolOptions != null
             ? builder.sessionPoolOptions
             : SessionPoolOptions.newBuilder().build();
+    sessionBudgetOptions = builder.sessionBudgetOptions;
     prefetchChunks = builder.prefetchChunks;
+    maxResumeBufferBytes = builder.maxResumeBufferBytes;
+    resultMemoryGovernor = builder.resultMemoryGovernor;
     sessionLabels = builder.sessionLabels;
     try {
       spannerStubSettings = builder.spannerStubSettingsBuilder.build();
@@ -624,6 +630,7 @@ public class SpannerOptions extends ServiceOptions<Spanner, SpannerOptions> {
   public static class Builder
       extends ServiceOptions.Builder<Spanner, SpannerOptions, SpannerOptions.Builder> {
     static final int DEFAULT_PREFETCH_CHUNKS = 4;
+    static final long DEFAULT_MAX_RESUME_BUFFER_BYTES = 64L << 20;
     static final QueryOptions DEFAULT_QUERY_OPTIONS = QueryOptions.getDefaultInstance();
     static final RetrySettings DEFAULT_ADMIN_REQUESTS_LIMIT_EXCEEDED_RETRY_SETTINGS =
         RetrySettings.newBuilder()
@@ -649,7 +656,10 @@ public class SpannerOptions extends ServiceOptions<Spanner, SpannerOptions> {
     private int numChannels = 4;
 
     private int prefetchChunks = DEFAULT_PREFETCH_CHUNKS;
+    private long maxResumeBufferBytes = DEFAULT_MAX_RESUME_BUFFER_BYTES;
+    private ResultMemoryGovernor resultMemoryGovernor;
     private SessionPoolOptions sessionPoolOptions;
+    private SessionBudgetOptions sessionBudgetOptions;
     private ImmutableMap<String, String> sessionLabels;
     private SpannerStubSettings.Builder spannerStubSettingsBuilder =
         SpannerStubSettings.newBuilder();
@@ -701,7 +711,10 @@ public class SpannerOptions extends ServiceOptions<Spanner, SpannerOptions> {
       }
       this.numChannels = options.numChannels;
       this.sessionPoolOptions = options.sessionPoolOptions;
+      this.sessionBudgetOptions = options.sessionBudgetOptions;
       this.prefetchChunks = options.prefetchChunks;
+      this.maxResumeBufferBytes = options.maxResumeBufferBytes;
+      this.resultMemoryGovernor = options.resultMemoryGovernor;
       this.sessionLabels = options.sessionLabels;
       this.spannerStubSettingsBuilder = options.spannerStubSettings.toBuilder();
       this.instanceAdminStubSettingsBuilder = options.instanceAdminStubSettings.toBuilder();
@@ -780,6 +793,16 @@ public class SpannerOptions extends ServiceOptions<Spanner, SpannerOptions> {
       return this;
     }
 
+    /**
+     * Sets a session budget that is shared by the session pools of all {@link DatabaseClient}s that
+     * are created by the {@link Spanner} instance. By default, each session pool has its own
+     * maximum number of sessions. See {@link SessionBudgetOptions} for more information.
+     */
+    public Builder setSessionBudgetOptions(SessionBudgetOptions sessionBudgetOptions) {
+      this.sessionBudgetOptions = sessionBudgetOptions;
+      return this;
+    }
+
     /**
      * Sets the labels to add to all Sessions created in this client.
      *
@@ -1027,6 +1050,34 @@ public class SpannerOptions extends ServiceOptions<Spanner, SpannerOptions> {
       return this;
     }
 
+    /**
+     * Sets the maximum number of bytes of {@code PartialResultSet} chunks that the client will
+     * buffer for each read and query while it waits for a resume token from the server. Buffered
+     * chunks are not returned to the application until a chunk with a resume token has been
+     * received, so that the read or query can be resumed without returning duplicate data if the
+     * stream is broken. If the limit is exceeded, the buffered chunks are returned to the
+     * application and the read or query will fail instead of being resumed if the stream breaks
+     * before the next resume token. This also happens if a single chunk is larger than the limit.
+     * If unspecified, we will use a default value (currently 64 MiB).
+     */
+    public Builder setMaxResumeBufferBytes(long maxResumeBufferBytes) {
+      Preconditions.checkArgument(maxResumeBufferBytes >= 0L, "maxResumeBufferBytes must be >= 0");
+      this.maxResumeBufferBytes = maxResumeBufferBytes;
+      return this;
+    }
+
+    /**
+     * Sets a {@link ResultMemoryGovernor} that limits the total size of the results that are
+     * buffered by all reads and queries of the {@link Spanner} instance. The same governor can be
+     * set on multiple {@link SpannerOptions} to share the limit between {@link Spanner} instances.
+     * By default, the buffered results of each read and query are only limited by the prefetch
+     * settings of that read or query.
+     */
+    public Builder setResultMemoryGovernor(ResultMemoryGovernor resultMemoryGovernor) {
+      this.resultMemoryGovernor = resultMemoryGovernor;
+      return this;
+    }
+
     @Override
     public Builder setHost(String host) {
       super.setHost(host);
@@ -1108,6 +1159,15 @@ public class SpannerOptions extends ServiceOptions<Spanner, SpannerOptions> {
     return sessionPoolOptions;
   }
 
+  /**
+   * Returns the options of the session budget that is shared by all session pools, or null if each
+   * session pool has its own maximum number of sessions.
+   */
+  @Nullable
+  public SessionBudgetOptions getSessionBudgetOptions() {
+    return sessionBudgetOptions;
+  }
+
   public Map<String, String> getSessionLabels() {
     return sessionLabels;
   }
@@ -1169,6 +1229,15 @@ public class SpannerOptions extends ServiceOptions<Spanner, SpannerOptions> {
     return prefetchChunks;
   }
 
+  public long getMaxResumeBufferBytes() {
+    return maxResumeBufferBytes;
+  }
+
+  @Nullable
+  public ResultMemoryGovernor getResultMemoryGovernor() {
+    return resultMemoryGovernor;
+  }
+
   public static GrpcTransportOptions getDefaultGrpcTransportOptions() {
     return GrpcTransportOptions.newBuilder().build();
   }
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import com.google.common.base.Preconditions;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded queue for exactly one producer thread and one consumer thread. Elements are stored in a
+ * fixed array, so adding an element does not allocate, and the producer and consumer only
+ * synchronize through the volatile head and tail indices of the queue. A thread that has to wait,
+ * because the queue is full or empty, parks itself and is unparked by the other thread.
+ *
+ * <p>The queue is used to hand {@code PartialResultSet}s from the gRPC thread that receives them to
+ * the thread that consumes the result set. gRPC delivers the messages of one stream serially, and a
+ * result set may only be consumed by one thread at a time.
+ */
+final class SpscRingBuffer<E> {
+  private final Object[] elements;
+
+  /** The index of the next element to take. Only written by the consumer. */
+  private volatile long head;
+
+  /** The index of the next element to put. Only written by the producer. */
+  private volatile long tail;
+
+  private volatile Thread waitingConsumer;
+  private volatile Thread waitingProducer;
+
+  SpscRingBuffer(int capacity) {
+    Preconditions.checkArgument(capacity > 0, "capacity must be > 0");
+    this.elements = new Object[capacity];
+  }
+
+  int capacity() {
+    return elements.length;
+  }
+
+  /** Returns the number of elements in the queue. */
+  int size() {
+    // Read head first, so the result is never negative.
+    long currentHead = head;
+    return (int) (tail - currentHead);
+  }
+
+  /**
+   * Adds an element to the queue, waiting for space to become available if the queue is full. This
+   * method may only be called by the producer thread. Interrupts are ignored while waiting, and the
+   * interrupt status of the thread is restored when the method returns.
+   */
+  void putUninterruptibly(E element) {
+    Preconditions.checkNotNull(element);
+    long currentTail = tail;
+    if (currentTail - head == elements.length) {
+      boolean interrupted = false;
+      try {
+        waitingProducer = Thread.currentThread();
+        while (currentTail - head == elements.length) {
+          LockSupport.park(this);
+          if (Thread.interrupted()) {
+            interrupted = true;
+          }
+        }
+      } finally {
+        waitingProducer = null;
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+    elements[(int) (currentTail % elements.length)] = element;
+    // The volatile write publishes the element to the consumer.
+    tail = currentTail + 1;
+    Thread consumer = waitingConsumer;
+    if (consumer != null) {
+      LockSupport.unpark(consumer);
+    }
+  }
+
+  /**
+   * Removes and returns the next element of the queue, waiting for an element to become available
+   * if the queue is empty. This method may only be called by the consumer thread.
+   */
+  @SuppressWarnings("unchecked")
+  E take() throws InterruptedException {
+    long currentHead = head;
+    if (currentHead == tail) {
+      try {
+        waitingConsumer = Thread.currentThread();
+        while (currentHead == tail) {
+          LockSupport.park(this);
+          if (Thread.interrupted()) {
+            throw new InterruptedException();
+          }
+        }
+      } finally {
+        waitingConsumer = null;
+      }
+    }
+    int index = (int) (currentHead % elements.length);
+    E element = (E) elements[index];
+    elements[index] = null;
+    // The volatile write hands the slot back to the producer.
+    head = currentHead + 1;
+    Thread producer = waitingProducer;
+    if (producer != null) {
+      LockSupport.unpark(producer);
+    }
+    return element;
+  }
+}
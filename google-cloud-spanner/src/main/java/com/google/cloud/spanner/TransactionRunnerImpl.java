@@ -29,6 +29,7 @@ import com.google.cloud.spanner.Options.QueryOption;
 import com.google.cloud.spanner.Options.ReadOption;
 import com.google.cloud.spanner.Options.TransactionOption;
 import com.google.cloud.spanner.Options.UpdateOption;
+import com.google.cloud.spanner.SessionHealth.RpcType;
 import com.google.cloud.spanner.SessionImpl.SessionTransaction;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
@@ -366,6 +367,7 @@ class TransactionRunnerImpl implements SessionTransaction, TransactionRunner {
           span.addAnnotation("Starting Commit");
           final Span opSpan =
               tracer.spanBuilderWithExplicitParent(SpannerImpl.COMMIT, span).startSpan();
+          final long startNanos = System.nanoTime();
           final ApiFuture<com.google.spanner.v1.CommitResponse> commitFuture =
               rpc.commitAsync(commitRequest, session.getOptions());
           commitFuture.addListener(
@@ -374,6 +376,7 @@ class TransactionRunnerImpl implements SessionTransaction, TransactionRunner {
                   () -> {
                     try {
                       com.google.spanner.v1.CommitResponse proto = commitFuture.get();
+                      session.recordRpcSuccess(RpcType.COMMIT, startNanos);
                       if (!proto.hasCommitTimestamp()) {
                         throw newSpannerException(
                             ErrorCode.INTERNAL, "Missing commitTimestamp:\n" + session.getName());
@@ -391,6 +394,7 @@ class TransactionRunnerImpl implements SessionTransaction, TransactionRunner {
                       } else {
                         e = SpannerExceptionFactory.newSpannerException(e);
                       }
+                      session.recordRpcFailure(e);
                       span.addAnnotation("Commit Failed", TraceUtil.getExceptionAnnotations(e));
                       TraceUtil.endSpanWithFailure(opSpan, e);
                       res.setException(onError((SpannerException) e, false));
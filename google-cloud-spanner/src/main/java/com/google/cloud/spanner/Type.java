@@ -20,11 +20,14 @@ import static com.google.common.base.Preconditions.checkArgument;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.spanner.v1.TypeCode;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -156,6 +159,17 @@ public final class Type implements Serializable {
     return new Type(Code.STRUCT, null, ImmutableList.copyOf(fields));
   }
 
+  /** The maximum number of row types in {@link #ROW_TYPE_CACHE}. */
+  private static final int ROW_TYPE_CACHE_SIZE = 1000;
+
+  /**
+   * Cache of the {@code STRUCT} types of the rows of result sets. Queries and reads that are
+   * executed repeatedly return the same row type each time, and the cache saves building the type
+   * and its index of field names for each result set.
+   */
+  private static final Cache<com.google.spanner.v1.StructType, Type> ROW_TYPE_CACHE =
+      CacheBuilder.newBuilder().maximumSize(ROW_TYPE_CACHE_SIZE).build();
+
   private final Code code;
   private final Type arrayElementType;
   private final ImmutableList<StructField> structFields;
@@ -166,6 +180,12 @@ public final class Type implements Serializable {
    */
   private Map<String, Integer> fieldsByName;
 
+  /**
+   * The indices of the BOOL, INT64 and FLOAT64 fields of a STRUCT type. Result sets store the values
+   * of these fields as primitives. The set is lazily initialized and must not be modified.
+   */
+  private volatile BitSet primitiveFields;
+
   private Type(
       Code code,
       @Nullable Type arrayElementType,
@@ -293,6 +313,17 @@ public final class Type implements Serializable {
   public int getFieldIndex(String fieldName) {
     Preconditions.checkState(code == Code.STRUCT, "Illegal call for non-STRUCT type");
 
+    Integer index = getFieldsByName().get(fieldName);
+    if (index == null) {
+      throw new IllegalArgumentException("Field not found: " + fieldName);
+    }
+    if (index == AMBIGUOUS_FIELD) {
+      throw new IllegalArgumentException("Ambiguous field name: " + fieldName);
+    }
+    return index;
+  }
+
+  private Map<String, Integer> getFieldsByName() {
     if (fieldsByName == null) {
       Map<String, Integer> tmp = new TreeMap<>();
       for (int i = 0; i < getStructFields().size(); ++i) {
@@ -309,15 +340,32 @@ public final class Type implements Serializable {
       // inconsistency.
       fieldsByName = ImmutableMap.copyOf(tmp);
     }
+    return fieldsByName;
+  }
 
-    Integer index = fieldsByName.get(fieldName);
-    if (index == null) {
-      throw new IllegalArgumentException("Field not found: " + fieldName);
-    }
-    if (index == AMBIGUOUS_FIELD) {
-      throw new IllegalArgumentException("Ambiguous field name: " + fieldName);
+  /**
+   * Returns the indices of the BOOL, INT64 and FLOAT64 fields of this STRUCT type. The returned set
+   * is shared by all callers and must not be modified.
+   */
+  BitSet getPrimitiveFields() {
+    Preconditions.checkState(code == Code.STRUCT, "Illegal call for non-STRUCT type");
+    BitSet result = primitiveFields;
+    if (result == null) {
+      result = new BitSet(structFields.size());
+      for (int i = 0; i < structFields.size(); i++) {
+        switch (structFields.get(i).getType().getCode()) {
+          case BOOL:
+          case INT64:
+          case FLOAT64:
+            result.set(i);
+            break;
+          default:
+            break;
+        }
+      }
+      primitiveFields = result;
     }
-    return index;
+    return result;
   }
 
   void toString(StringBuilder b) {
@@ -381,6 +429,26 @@ public final class Type implements Serializable {
     return proto.build();
   }
 
+  /**
+   * Returns the {@code STRUCT} type for the given row type of a result set. The type is taken from
+   * a cache of recently used row types if possible. The index of field names of a cached type is
+   * built before the type is added to the cache.
+   */
+  static Type fromRowTypeProto(com.google.spanner.v1.StructType rowType) {
+    Type type = ROW_TYPE_CACHE.getIfPresent(rowType);
+    if (type == null) {
+      type =
+          fromProto(
+              com.google.spanner.v1.Type.newBuilder()
+                  .setCode(TypeCode.STRUCT)
+                  .setStructType(rowType)
+                  .build());
+      type.getFieldsByName();
+      ROW_TYPE_CACHE.put(rowType, type);
+    }
+    return type;
+  }
+
   static Type fromProto(com.google.spanner.v1.Type proto) {
     Code type = Code.fromProtoCode(proto.getCode());
     switch (type) {
@@ -86,6 +86,11 @@ class DirectExecuteResultSet implements ResultSet {
     delegate.close();
   }
 
+  @Override
+  public int getPrefetchChunks() {
+    return delegate.getPrefetchChunks();
+  }
+
   @Override
   public ResultSetStats getStats() {
     if (nextHasReturnedFalse) {
@@ -88,6 +88,11 @@ class ReplaceableForwardingResultSet implements ResultSet {
     closed = true;
   }
 
+  @Override
+  public int getPrefetchChunks() {
+    return delegate.getPrefetchChunks();
+  }
+
   @Override
   public ResultSetStats getStats() {
     checkClosed();
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.cloud.spanner.SessionPoolSizingPolicy.Estimator;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.threeten.bp.Duration;
+import org.threeten.bp.Instant;
+
+@RunWith(JUnit4.class)
+public class AdaptiveSessionPoolSizingPolicyTest {
+  private static final long CYCLE_MILLIS = 10_000L;
+
+  private long currentTimeMillis;
+
+  private int estimate(Estimator estimator, int sessionsInUse) {
+    currentTimeMillis += CYCLE_MILLIS;
+    return estimate(estimator, currentTimeMillis, sessionsInUse);
+  }
+
+  private static int estimate(Estimator estimator, long timeMillis, int sessionsInUse) {
+    // Assume that each session is checked out twice per cycle.
+    return estimator.estimateSessions(
+        Instant.ofEpochMilli(timeMillis), 2L * sessionsInUse, sessionsInUse);
+  }
+
+  @Test
+  public void testSteadyLoad() {
+    Estimator estimator = AdaptiveSessionPoolSizingPolicy.newBuilder().build().newEstimator();
+    int estimate = 0;
+    for (int i = 0; i < 20; i++) {
+      estimate = estimate(estimator, 50);
+    }
+    // 50 sessions in use + 20% headroom.
+    assertThat(estimate).isEqualTo(60);
+  }
+
+  @Test
+  public void testIncreasingLoadIsAnticipated() {
+    Estimator estimator = AdaptiveSessionPoolSizingPolicy.newBuilder().build().newEstimator();
+    int estimate = 0;
+    for (int inUse = 10; inUse <= 100; inUse += 10) {
+      estimate = estimate(estimator, inUse);
+    }
+    // The pool should be sized for more than the current load + headroom, as the load is expected
+    // to increase further during the lookahead window.
+    assertThat(estimate).isGreaterThan(120);
+  }
+
+  @Test
+  public void testDecreasingLoadShrinksGradually() {
+    Estimator estimator = AdaptiveSessionPoolSizingPolicy.newBuilder().build().newEstimator();
+    for (int i = 0; i < 20; i++) {
+      estimate(estimator, 100);
+    }
+    int previous = estimate(estimator, 10);
+    assertThat(previous).isGreaterThan(50);
+    for (int i = 0; i < 3; i++) {
+      int estimate = estimate(estimator, 10);
+      assertThat(estimate).isLessThan(previous);
+      previous = estimate;
+    }
+    int estimate = 0;
+    for (int i = 0; i < 50; i++) {
+      estimate = estimate(estimator, 10);
+    }
+    assertThat(estimate).isEqualTo(12);
+  }
+
+  @Test
+  public void testSeasonalPeakIsAnticipated() {
+    Estimator seasonal =
+        AdaptiveSessionPoolSizingPolicy.newBuilder()
+            .setLookahead(Duration.ofMinutes(2L))
+            .setSeasonalPeriod(Duration.ofMinutes(10L))
+            .build()
+            .newEstimator();
+    Estimator nonSeasonal =
+        AdaptiveSessionPoolSizingPolicy.newBuilder()
+            .setLookahead(Duration.ofMinutes(2L))
+            .build()
+            .newEstimator();
+    // Simulate two periods with a peak during the sixth minute of each period, and continue until
+    // three and a half minutes into the third period.
+    long endMillis = Duration.ofMinutes(23L).plusSeconds(30L).toMillis();
+    int seasonalEstimate = 0;
+    int nonSeasonalEstimate = 0;
+    for (long time = CYCLE_MILLIS; time <= endMillis; time += CYCLE_MILLIS) {
+      int inUse = (time / 60_000L) % 10L == 5L ? 100 : 10;
+      seasonalEstimate = estimate(seasonal, time, inUse);
+      nonSeasonalEstimate = estimate(nonSeasonal, time, inUse);
+      if (time == Duration.ofMinutes(22L).toMillis()) {
+        // The peak is not yet within the lookahead window.
+        assertThat(seasonalEstimate).isLessThan(20);
+      }
+    }
+    assertThat(seasonalEstimate).isAtLeast(120);
+    assertThat(nonSeasonalEstimate).isLessThan(20);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSeasonalPeriodMustBeMultipleOfSlot() {
+    AdaptiveSessionPoolSizingPolicy.newBuilder()
+        .setSeasonalPeriod(Duration.ofSeconds(90L))
+        .setSeasonalSlot(Duration.ofMinutes(1L))
+        .build();
+  }
+
+  @Test
+  public void testEquals() {
+    assertThat(AdaptiveSessionPoolSizingPolicy.newBuilder().setHeadroom(0.5d).build())
+        .isEqualTo(AdaptiveSessionPoolSizingPolicy.newBuilder().setHeadroom(0.5d).build());
+    assertThat(AdaptiveSessionPoolSizingPolicy.newBuilder().setHeadroom(0.5d).build())
+        .isNotEqualTo(AdaptiveSessionPoolSizingPolicy.newBuilder().build());
+  }
+}
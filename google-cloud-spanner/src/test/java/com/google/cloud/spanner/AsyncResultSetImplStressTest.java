@@ -61,11 +61,16 @@ public class AsyncResultSetImplStressTest {
   @Parameter(0)
   public int resultSetSize;
 
-  @Parameters(name = "rows = {0}")
+  @Parameter(1)
+  public int batchSize;
+
+  @Parameters(name = "rows = {0}, batchSize = {1}")
   public static Collection<Object[]> data() {
     List<Object[]> params = new ArrayList<>();
     for (int rows : new int[] {0, 1, 5, 10}) {
-      params.add(new Object[] {rows});
+      for (int batchSize : new int[] {1, 3}) {
+        params.add(new Object[] {rows, batchSize});
+      }
     }
     return params;
   }
@@ -173,7 +178,7 @@ public class AsyncResultSetImplStressTest {
     for (int bufferSize = 1; bufferSize < resultSetSize * 2; bufferSize *= 2) {
       for (int i = 0; i < TEST_RUNS; i++) {
         try (AsyncResultSetImpl impl =
-            new AsyncResultSetImpl(executorProvider, createResultSet(), bufferSize)) {
+            new AsyncResultSetImpl(executorProvider, createResultSet(), bufferSize, batchSize)) {
           List<Row> list = impl.toList(Row::create);
           assertThat(list).containsExactlyElementsIn(createExpectedRows());
         }
@@ -188,7 +193,10 @@ public class AsyncResultSetImplStressTest {
       for (int i = 0; i < TEST_RUNS; i++) {
         try (AsyncResultSetImpl impl =
             new AsyncResultSetImpl(
-                executorProvider, createResultSetWithErrors(1.0 / resultSetSize), bufferSize)) {
+                executorProvider,
+                createResultSetWithErrors(1.0 / resultSetSize),
+                bufferSize,
+                batchSize)) {
           List<Row> list = impl.toList(Row::create);
           assertThat(list).containsExactlyElementsIn(createExpectedRows());
         } catch (SpannerException e) {
@@ -207,7 +215,7 @@ public class AsyncResultSetImplStressTest {
       ExecutorService executor = createExecService(32);
       for (int i = 0; i < TEST_RUNS; i++) {
         try (AsyncResultSet impl =
-            new AsyncResultSetImpl(executorProvider, createResultSet(), bufferSize)) {
+            new AsyncResultSetImpl(executorProvider, createResultSet(), bufferSize, batchSize)) {
           futures.add(impl.toListAsync(Row::create, executor));
         }
       }
@@ -231,7 +239,7 @@ public class AsyncResultSetImplStressTest {
         for (int i = 0; i < TEST_RUNS; i++) {
           final SettableApiFuture<ImmutableList<Row>> future = SettableApiFuture.create();
           try (AsyncResultSetImpl impl =
-              new AsyncResultSetImpl(executorProvider, createResultSet(), bufferSize)) {
+              new AsyncResultSetImpl(executorProvider, createResultSet(), bufferSize, batchSize)) {
             final ImmutableList.Builder<Row> builder = ImmutableList.builder();
             impl.setCallback(
                 executor,
@@ -268,7 +276,7 @@ public class AsyncResultSetImplStressTest {
       for (int bufferSize = 1; bufferSize < resultSetSize * 2; bufferSize *= 2) {
         for (int i = 0; i < TEST_RUNS; i++) {
           try (AsyncResultSetImpl impl =
-              new AsyncResultSetImpl(executorProvider, createResultSet(), bufferSize)) {
+              new AsyncResultSetImpl(executorProvider, createResultSet(), bufferSize, batchSize)) {
             ApiFuture<Void> res =
                 impl.setCallback(
                     executor,
@@ -310,7 +318,7 @@ public class AsyncResultSetImplStressTest {
           final SettableApiFuture<ImmutableList<Row>> future = SettableApiFuture.create();
           futures.add(future);
           try (AsyncResultSetImpl impl =
-              new AsyncResultSetImpl(executorProvider, createResultSet(), bufferSize)) {
+              new AsyncResultSetImpl(executorProvider, createResultSet(), bufferSize, batchSize)) {
             resultSets.add(impl);
             final ImmutableList.Builder<Row> builder = ImmutableList.builder();
             impl.setCallback(
@@ -369,7 +377,7 @@ public class AsyncResultSetImplStressTest {
           final SettableApiFuture<ImmutableList<Row>> future = SettableApiFuture.create();
           futures.add(future);
           try (AsyncResultSetImpl impl =
-              new AsyncResultSetImpl(executorProvider, createResultSet(), bufferSize)) {
+              new AsyncResultSetImpl(executorProvider, createResultSet(), bufferSize, batchSize)) {
             resultSets.add(impl);
             final ImmutableList.Builder<Row> builder = ImmutableList.builder();
             impl.setCallback(
@@ -23,6 +23,8 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThrows;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.api.core.ApiFuture;
@@ -32,6 +34,10 @@ import com.google.cloud.spanner.AsyncResultSet.CursorState;
 import com.google.cloud.spanner.AsyncResultSet.ReadyCallback;
 import com.google.common.base.Function;
 import com.google.common.collect.Range;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.BlockingDeque;
 import java.util.concurrent.CountDownLatch;
@@ -115,6 +121,31 @@ public class AsyncResultSetImplTest {
     }
   }
 
+  @Test
+  public void producerWaitsUntilReady() throws Exception {
+    ResultSet delegate = mock(ResultSet.class);
+    when(delegate.next()).thenReturn(true, true, true, false);
+    when(delegate.getCurrentRowAsStruct()).thenReturn(mock(Struct.class));
+    final SettableFuture<Void> ready = SettableFuture.create();
+    try (AsyncResultSetImpl rs =
+        new AsyncResultSetImpl(simpleProvider, delegate, AsyncResultSetImpl.DEFAULT_BUFFER_SIZE) {
+          @Override
+          ListenableFuture<?> producerReady() {
+            return ready;
+          }
+        }) {
+      ApiFuture<List<Object>> list =
+          rs.toListAsync(ignored -> new Object(), MoreExecutors.directExecutor());
+      // The executor should not be used until the producer is ready.
+      simpleProvider.getExecutor().submit(() -> null).get(10L, TimeUnit.SECONDS);
+      verify(delegate, never()).next();
+      assertThat(list.isDone()).isFalse();
+
+      ready.set(null);
+      assertThat(list.get(10L, TimeUnit.SECONDS)).hasSize(3);
+    }
+  }
+
   @Test
   public void toListPropagatesError() {
     ResultSet delegate = mock(ResultSet.class);
@@ -265,6 +296,73 @@ public class AsyncResultSetImplTest {
     assertThat(rowCount.get()).isEqualTo(1);
   }
 
+  @Test
+  public void withCallbackInBatches() throws InterruptedException {
+    Executor executor = Executors.newSingleThreadExecutor();
+    ResultSet delegate = mock(ResultSet.class);
+    when(delegate.next()).thenReturn(true, true, true, true, true, true, true, false);
+    Struct[] rows = new Struct[7];
+    for (int i = 0; i < rows.length; i++) {
+      rows[i] = Struct.newBuilder().set("id").to(i).build();
+    }
+    when(delegate.getCurrentRowAsStruct())
+        .thenReturn(rows[0], rows[1], rows[2], rows[3], rows[4], rows[5], rows[6]);
+    final List<Long> received = new ArrayList<>();
+    final CountDownLatch finishedLatch = new CountDownLatch(1);
+    try (AsyncResultSetImpl rs = new AsyncResultSetImpl(simpleProvider, delegate, 6, 3)) {
+      rs.setCallback(
+          executor,
+          resultSet -> {
+            CursorState state;
+            while ((state = resultSet.tryNext()) == CursorState.OK) {
+              received.add(resultSet.getLong("id"));
+            }
+            if (state == CursorState.DONE) {
+              finishedLatch.countDown();
+            }
+            return CallbackResponse.CONTINUE;
+          });
+    }
+    finishedLatch.await();
+    // The last batch only contains one row.
+    assertThat(received).containsExactly(0L, 1L, 2L, 3L, 4L, 5L, 6L).inOrder();
+  }
+
+  @Test
+  public void callbackReceivesIncompleteBatchBeforeError() throws InterruptedException {
+    Executor executor = Executors.newSingleThreadExecutor();
+    ResultSet delegate = mock(ResultSet.class);
+    when(delegate.next())
+        .thenReturn(true, true)
+        .thenThrow(
+            SpannerExceptionFactory.newSpannerException(
+                ErrorCode.INVALID_ARGUMENT, "invalid query"));
+    when(delegate.getCurrentRowAsStruct()).thenReturn(mock(Struct.class));
+    final AtomicInteger rowCount = new AtomicInteger();
+    final BlockingDeque<Exception> receivedErr = new LinkedBlockingDeque<>(1);
+    try (AsyncResultSetImpl rs =
+        new AsyncResultSetImpl(
+            simpleProvider, delegate, AsyncResultSetImpl.DEFAULT_BUFFER_SIZE, 5)) {
+      rs.setCallback(
+          executor,
+          resultSet -> {
+            try {
+              while (resultSet.tryNext() == CursorState.OK) {
+                rowCount.incrementAndGet();
+              }
+              return CallbackResponse.CONTINUE;
+            } catch (SpannerException e) {
+              receivedErr.push(e);
+            }
+            return CallbackResponse.DONE;
+          });
+    }
+    Exception e = receivedErr.take();
+    assertThat(e).isInstanceOf(SpannerException.class);
+    assertThat(((SpannerException) e).getErrorCode()).isEqualTo(ErrorCode.INVALID_ARGUMENT);
+    assertThat(rowCount.get()).isEqualTo(2);
+  }
+
   @Test
   public void pauseResume() throws InterruptedException {
     Executor executor = Executors.newSingleThreadExecutor();
@@ -17,10 +17,7 @@
 package com.google.cloud.spanner;
 
 import static org.mockito.Mockito.any;
-import static org.mockito.Mockito.anyLong;
-import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.when;
 
 import com.google.api.core.ApiFutures;
@@ -41,14 +38,17 @@ abstract class BaseSessionPoolTest {
 
     @Override
     public ScheduledExecutorService get() {
-      ScheduledExecutorService realExecutor = new ScheduledThreadPoolExecutor(2);
-      mockExecutor = spy(realExecutor);
-      @SuppressWarnings("rawtypes")
-      ScheduledFuture mockFuture = mock(ScheduledFuture.class);
-      // To prevent maintenance loop from running.
-      doReturn(mockFuture)
-          .when(mockExecutor)
-          .scheduleAtFixedRate(any(Runnable.class), anyLong(), anyLong(), any(TimeUnit.class));
+      // Use a subclass instead of a Mockito spy, as a spy of a JDK executor does not copy the
+      // internal state of the executor on Java 9 and higher.
+      mockExecutor =
+          new ScheduledThreadPoolExecutor(2) {
+            @Override
+            public ScheduledFuture<?> scheduleAtFixedRate(
+                Runnable command, long initialDelay, long period, TimeUnit unit) {
+              // To prevent maintenance loop from running.
+              return mock(ScheduledFuture.class);
+            }
+          };
       return mockExecutor;
     }
 
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import com.google.cloud.spanner.AbstractResultSet.CloseableIterator;
+import com.google.cloud.spanner.AbstractResultSet.GrpcResultSet;
+import com.google.cloud.spanner.AbstractResultSet.Listener;
+import com.google.cloud.spanner.Options.DecodeMode;
+import com.google.common.base.Strings;
+import com.google.protobuf.ListValue;
+import com.google.spanner.v1.PartialResultSet;
+import com.google.spanner.v1.ResultSetMetadata;
+import com.google.spanner.v1.Transaction;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Stress benchmarks for merging large values that are split into many chunks across {@link
+ * PartialResultSet}s. The chunks are read from memory, so the benchmark only measures merging and
+ * decoding the values. Run these benchmarks from the command line like this: <code>
+ * mvn clean test -DskipTests -Pbenchmark -Dbenchmark.name=ChunkedValueBenchmark
+ * </code>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(value = 1, warmups = 0)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ChunkedValueBenchmark {
+  private static final int CHUNK_SIZE = 16 * 1024;
+
+  public enum ValueShape {
+    /** A single STRING value. */
+    STRING,
+    /** An ARRAY<STRING> with one large element. */
+    STRING_ARRAY,
+    /** An ARRAY<STRUCT<ARRAY<STRING>>> with one struct with one large element. */
+    NESTED_ARRAY,
+  }
+
+  @State(Scope.Thread)
+  public static class BenchmarkState {
+    @Param({"STRING", "STRING_ARRAY", "NESTED_ARRAY"})
+    ValueShape shape;
+
+    /** The size of the value in megabytes. */
+    @Param({"1", "8"})
+    int valueSizeMb;
+
+    private List<PartialResultSet> partialResultSets;
+
+    @Setup
+    public void setup() {
+      Type type;
+      switch (shape) {
+        case STRING:
+          type = Type.string();
+          break;
+        case STRING_ARRAY:
+          type = Type.array(Type.string());
+          break;
+        case NESTED_ARRAY:
+          type = Type.array(Type.struct(Type.StructField.of("tags", Type.array(Type.string()))));
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown shape: " + shape);
+      }
+      String chunk = Strings.repeat("x", CHUNK_SIZE);
+      int numChunks = valueSizeMb * 1024 * 1024 / CHUNK_SIZE;
+      partialResultSets = new ArrayList<>(numChunks);
+      for (int i = 0; i < numChunks; i++) {
+        PartialResultSet.Builder builder =
+            PartialResultSet.newBuilder()
+                .addValues(
+                    wrap(com.google.protobuf.Value.newBuilder().setStringValue(chunk).build()))
+                .setChunkedValue(i < numChunks - 1);
+        if (i == 0) {
+          builder.setMetadata(
+              ResultSetMetadata.newBuilder()
+                  .setRowType(
+                      Type.struct(Type.StructField.of("f", type)).toProto().getStructType()));
+        }
+        partialResultSets.add(builder.build());
+      }
+    }
+
+    /** Wraps a chunk of the large string in the lists of the shape of this benchmark. */
+    private com.google.protobuf.Value wrap(com.google.protobuf.Value chunk) {
+      switch (shape) {
+        case NESTED_ARRAY:
+          return list(list(list(chunk)));
+        case STRING_ARRAY:
+          return list(chunk);
+        default:
+          return chunk;
+      }
+    }
+
+    private static com.google.protobuf.Value list(com.google.protobuf.Value element) {
+      return com.google.protobuf.Value.newBuilder()
+          .setListValue(ListValue.newBuilder().addValues(element))
+          .build();
+    }
+  }
+
+  /** Iterator over the {@link PartialResultSet}s in memory. */
+  private static final class InMemoryIterator implements CloseableIterator<PartialResultSet> {
+    private final Iterator<PartialResultSet> delegate;
+
+    InMemoryIterator(List<PartialResultSet> partialResultSets) {
+      this.delegate = partialResultSets.iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return delegate.hasNext();
+    }
+
+    @Override
+    public PartialResultSet next() {
+      return delegate.next();
+    }
+
+    @Override
+    public void close(@Nullable String message) {}
+
+    @Override
+    public boolean isWithBeginTransaction() {
+      return false;
+    }
+  }
+
+  private static final class NoOpListener implements Listener {
+    @Override
+    public void onTransactionMetadata(Transaction transaction, boolean shouldIncludeId) {}
+
+    @Override
+    public SpannerException onError(SpannerException e, boolean withBeginTransaction) {
+      return e;
+    }
+
+    @Override
+    public void onDone(boolean withBeginTransaction) {}
+  }
+
+  @Benchmark
+  public long readChunkedValue(BenchmarkState state) {
+    long length = 0L;
+    try (ResultSet resultSet =
+        new GrpcResultSet(
+            new InMemoryIterator(state.partialResultSets), new NoOpListener(), DecodeMode.DIRECT)) {
+      while (resultSet.next()) {
+        switch (state.shape) {
+          case STRING:
+            length += resultSet.getString(0).length();
+            break;
+          case STRING_ARRAY:
+            length += resultSet.getStringList(0).get(0).length();
+            break;
+          case NESTED_ARRAY:
+            length += resultSet.getStructList(0).get(0).getStringList(0).get(0).length();
+            break;
+        }
+      }
+    }
+    return length;
+  }
+}
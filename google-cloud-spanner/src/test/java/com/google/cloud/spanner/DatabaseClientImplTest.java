@@ -43,6 +43,7 @@ import com.google.cloud.spanner.AsyncResultSet.CallbackResponse;
 import com.google.cloud.spanner.AsyncTransactionManager.TransactionContextFuture;
 import com.google.cloud.spanner.MockSpannerServiceImpl.SimulatedExecutionTime;
 import com.google.cloud.spanner.MockSpannerServiceImpl.StatementResult;
+import com.google.cloud.spanner.Options.DecodeMode;
 import com.google.cloud.spanner.Options.RpcPriority;
 import com.google.cloud.spanner.Options.TransactionOption;
 import com.google.cloud.spanner.ReadContext.QueryAnalyzeMode;
@@ -53,6 +54,7 @@ import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.SettableFuture;
 import com.google.protobuf.AbstractMessage;
+import com.google.spanner.v1.BatchCreateSessionsRequest;
 import com.google.spanner.v1.CommitRequest;
 import com.google.spanner.v1.ExecuteBatchDmlRequest;
 import com.google.spanner.v1.ExecuteSqlRequest;
@@ -170,6 +172,21 @@ public class DatabaseClientImplTest {
     mockSpanner.removeAllExecutionTimes();
   }
 
+  @Test
+  public void testWarmUp() throws Exception {
+    DatabaseClientImpl client =
+        (DatabaseClientImpl)
+            spannerWithEmptySessionPool.getDatabaseClient(
+                DatabaseId.of(TEST_PROJECT, TEST_INSTANCE, TEST_DATABASE));
+    client.warmUpAsync(20).get(10L, TimeUnit.SECONDS);
+    assertThat(client.pool.totalSessions()).isEqualTo(20);
+    // The sessions should be created with one BatchCreateSessions call per channel.
+    assertThat(mockSpanner.getRequestsOfType(BatchCreateSessionsRequest.class))
+        .hasSize(spannerWithEmptySessionPool.getOptions().getNumChannels());
+    // A pool that is already warm returns a future that is already done.
+    assertThat(client.warmUpAsync().isDone()).isTrue();
+  }
+
   @Test
   public void testWrite() {
     DatabaseClient client =
@@ -543,6 +560,86 @@ public class DatabaseClientImplTest {
     }
   }
 
+  @Test
+  public void singleUseNextBatch() {
+    DatabaseClient client =
+        spanner.getDatabaseClient(DatabaseId.of(TEST_PROJECT, TEST_INSTANCE, TEST_DATABASE));
+    try (ResultSet rs = client.singleUse().executeQuery(SELECT1)) {
+      ColumnarBatch batch = rs.nextBatch(10);
+      assertThat(batch.getRowCount()).isEqualTo(1);
+      assertThat(batch.getLongColumn(0)).isEqualTo(new long[] {1L});
+      assertThat(rs.nextBatch(10).getRowCount()).isEqualTo(0);
+    }
+    try (ReadOnlyTransaction transaction = client.readOnlyTransaction();
+        ResultSet rs = transaction.executeQuery(SELECT1)) {
+      assertThat(rs.nextBatch(1).getLongColumn(0)).isEqualTo(new long[] {1L});
+      assertThat(rs.next()).isFalse();
+    }
+  }
+
+  @Test
+  public void singleUsePrefetchChunks() {
+    DatabaseClient client =
+        spanner.getDatabaseClient(DatabaseId.of(TEST_PROJECT, TEST_INSTANCE, TEST_DATABASE));
+    try (ResultSet rs = client.singleUse().executeQuery(SELECT1, Options.prefetchChunks(5))) {
+      assertThat(rs.next()).isTrue();
+      assertThat(rs.getPrefetchChunks()).isEqualTo(5);
+    }
+    // The initial size of an adaptive window is clamped to its bounds.
+    try (ResultSet rs =
+        client
+            .singleUse()
+            .executeQuery(
+                SELECT1, Options.prefetchChunks(2), Options.adaptivePrefetchChunks(8, 16))) {
+      assertThat(rs.next()).isTrue();
+      assertThat(rs.getPrefetchChunks()).isEqualTo(8);
+    }
+    try (AsyncResultSet rs =
+        client.singleUse().executeQueryAsync(SELECT1, Options.prefetchChunks(3))) {
+      assertThat(rs.toList(row -> row.getLong(0))).containsExactly(1L);
+      assertThat(rs.getPrefetchChunks()).isEqualTo(3);
+    }
+    assertThat(ResultSets.forRows(Type.struct(), Collections.emptyList()).getPrefetchChunks())
+        .isEqualTo(0);
+  }
+
+  @Test
+  public void singleUseWithLazyDecoding() {
+    DatabaseClient client =
+        spanner.getDatabaseClient(DatabaseId.of(TEST_PROJECT, TEST_INSTANCE, TEST_DATABASE));
+    for (DecodeMode decodeMode : DecodeMode.values()) {
+      try (ResultSet rs =
+          client.singleUse().executeQuery(SELECT1, Options.decodeMode(decodeMode))) {
+        assertThat(rs.next()).isTrue();
+        assertThat(rs.getLong(0)).isEqualTo(1L);
+        assertThat(rs.next()).isFalse();
+      }
+    }
+  }
+
+  @Test
+  public void singleUseWithPipelinedDecoding() {
+    DatabaseClient client =
+        spanner.getDatabaseClient(DatabaseId.of(TEST_PROJECT, TEST_INSTANCE, TEST_DATABASE));
+    try (ResultSet rs = client.singleUse().executeQuery(SELECT1, Options.pipelinedDecoding(2))) {
+      assertThat(rs.next()).isTrue();
+      assertThat(rs.getLong(0)).isEqualTo(1L);
+      assertThat(rs.next()).isFalse();
+    }
+    try (ResultSet rs =
+        client
+            .singleUse()
+            .read(
+                READ_TABLE_NAME,
+                KeySet.singleKey(Key.of(1L)),
+                READ_COLUMN_NAMES,
+                Options.pipelinedDecoding(2))) {
+      assertThat(rs.next()).isTrue();
+      assertThat(rs.getType().getStructFields()).hasSize(2);
+      assertThat(rs.next()).isFalse();
+    }
+  }
+
   @Test
   public void singleUseIsNonBlocking() {
     mockSpanner.freeze();
@@ -838,6 +935,40 @@ public class DatabaseClientImplTest {
     executor.shutdown();
   }
 
+  @Test
+  public void testRunAsyncDoesNotBlockExecutorWhileWaitingForSession() throws Exception {
+    try (Spanner spanner =
+        this.spanner
+            .getOptions()
+            .toBuilder()
+            .setSessionPoolOption(
+                SessionPoolOptions.newBuilder().setMinSessions(1).setMaxSessions(1).build())
+            .build()
+            .getService()) {
+      DatabaseClient client =
+          spanner.getDatabaseClient(DatabaseId.of(TEST_PROJECT, TEST_INSTANCE, TEST_DATABASE));
+      ExecutorService executor = Executors.newSingleThreadExecutor();
+      List<ApiFuture<Long>> results = new ArrayList<>();
+      // Check out the only session in the pool.
+      try (ReadOnlyTransaction transaction = client.readOnlyTransaction()) {
+        for (int i = 0; i < 50; i++) {
+          results.add(
+              client
+                  .runAsync()
+                  .runAsync(txn -> txn.executeUpdateAsync(UPDATE_STATEMENT), executor));
+        }
+        // The executor should not be blocked by the transactions that are waiting for a session.
+        executor.submit(() -> null).get(10L, TimeUnit.SECONDS);
+        for (ApiFuture<Long> result : results) {
+          assertThat(result.isDone()).isFalse();
+        }
+      }
+      assertThat(ApiFutures.allAsList(results).get(30L, TimeUnit.SECONDS))
+          .containsExactlyElementsIn(Collections.nCopies(50, UPDATE_COUNT));
+      executor.shutdown();
+    }
+  }
+
   @Test
   public void testRunAsync_returnsCommitStats() {
     DatabaseClient client =
@@ -1840,7 +1971,7 @@ public class DatabaseClientImplTest {
   public void testReadWriteTransaction_usesOptions() {
     SessionPool pool = mock(SessionPool.class);
     PooledSessionFuture session = mock(PooledSessionFuture.class);
-    when(pool.getSession()).thenReturn(session);
+    when(pool.getSession(null)).thenReturn(session);
     TransactionOption option = mock(TransactionOption.class);
 
     DatabaseClientImpl client = new DatabaseClientImpl(pool);
@@ -1849,11 +1980,24 @@ public class DatabaseClientImplTest {
     verify(session).readWriteTransaction(option);
   }
 
+  @Test
+  public void testReadWriteTransaction_requestsSessionWithPriority() {
+    SessionPool pool = mock(SessionPool.class);
+    PooledSessionFuture session = mock(PooledSessionFuture.class);
+    when(pool.getSession(RpcPriority.LOW)).thenReturn(session);
+    TransactionOption option = Options.priority(RpcPriority.LOW);
+
+    DatabaseClientImpl client = new DatabaseClientImpl(pool);
+    client.readWriteTransaction(option);
+
+    verify(session).readWriteTransaction(option);
+  }
+
   @Test
   public void testTransactionManager_usesOptions() {
     SessionPool pool = mock(SessionPool.class);
     PooledSessionFuture session = mock(PooledSessionFuture.class);
-    when(pool.getSession()).thenReturn(session);
+    when(pool.getSession(null)).thenReturn(session);
     TransactionOption option = mock(TransactionOption.class);
 
     DatabaseClientImpl client = new DatabaseClientImpl(pool);
@@ -1866,7 +2010,7 @@ public class DatabaseClientImplTest {
   public void testRunAsync_usesOptions() {
     SessionPool pool = mock(SessionPool.class);
     PooledSessionFuture session = mock(PooledSessionFuture.class);
-    when(pool.getSession()).thenReturn(session);
+    when(pool.getSession(null)).thenReturn(session);
     TransactionOption option = mock(TransactionOption.class);
 
     DatabaseClientImpl client = new DatabaseClientImpl(pool);
@@ -1879,7 +2023,7 @@ public class DatabaseClientImplTest {
   public void testTransactionManagerAsync_usesOptions() {
     SessionPool pool = mock(SessionPool.class);
     PooledSessionFuture session = mock(PooledSessionFuture.class);
-    when(pool.getSession()).thenReturn(session);
+    when(pool.getSession(null)).thenReturn(session);
     TransactionOption option = mock(TransactionOption.class);
 
     DatabaseClientImpl client = new DatabaseClientImpl(pool);
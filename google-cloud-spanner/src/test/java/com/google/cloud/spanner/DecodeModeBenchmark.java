@@ -0,0 +1,166 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import com.google.cloud.ByteArray;
+import com.google.cloud.Date;
+import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.AbstractResultSet.CloseableIterator;
+import com.google.cloud.spanner.AbstractResultSet.GrpcResultSet;
+import com.google.cloud.spanner.AbstractResultSet.Listener;
+import com.google.cloud.spanner.Options.DecodeMode;
+import com.google.spanner.v1.PartialResultSet;
+import com.google.spanner.v1.ResultSetMetadata;
+import com.google.spanner.v1.Transaction;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for decoding the rows of a wide result set with the different {@link DecodeMode}s. The
+ * result set is read from memory, so the benchmark only measures the decoding of the rows. Run
+ * these benchmarks from the command line like this: <code>
+ * mvn clean test -DskipTests -Pbenchmark -Dbenchmark.name=DecodeModeBenchmark
+ * </code>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(value = 1, warmups = 0)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DecodeModeBenchmark {
+  private static final int NUM_ROWS = 1000;
+  private static final int NUM_COLUMNS_PER_TYPE = 4;
+
+  @State(Scope.Thread)
+  public static class BenchmarkState {
+    @Param({"DIRECT", "LAZY_PER_ROW", "LAZY_PER_COL"})
+    DecodeMode decodeMode;
+
+    /** The number of columns that is read from each row. */
+    @Param({"2", "20"})
+    int columnsRead;
+
+    private Type type;
+    private List<PartialResultSet> partialResultSets;
+
+    @Setup
+    public void setup() {
+      List<Type.StructField> fields = new ArrayList<>();
+      Type[] columnTypes =
+          new Type[] {Type.int64(), Type.timestamp(), Type.numeric(), Type.bytes(), Type.date()};
+      for (int i = 0; i < NUM_COLUMNS_PER_TYPE; i++) {
+        for (Type columnType : columnTypes) {
+          fields.add(Type.StructField.of(columnType.getCode().name() + i, columnType));
+        }
+      }
+      type = Type.struct(fields);
+      partialResultSets = new ArrayList<>();
+      PartialResultSet.Builder builder =
+          PartialResultSet.newBuilder()
+              .setMetadata(
+                  ResultSetMetadata.newBuilder()
+                      .setRowType(type.toProto().getStructType())
+                      .build());
+      for (int row = 0; row < NUM_ROWS; row++) {
+        for (int i = 0; i < NUM_COLUMNS_PER_TYPE; i++) {
+          builder.addValues(Value.int64(row).toProto());
+          builder.addValues(Value.timestamp(Timestamp.ofTimeMicroseconds(row * 1000L)).toProto());
+          builder.addValues(Value.numeric(BigDecimal.valueOf(row, 2)).toProto());
+          builder.addValues(Value.bytes(ByteArray.copyFrom("row " + row)).toProto());
+          builder.addValues(Value.date(Date.fromYearMonthDay(2021, 1, 1 + row % 28)).toProto());
+        }
+        // Use 100 rows per PartialResultSet.
+        if (row % 100 == 99) {
+          partialResultSets.add(builder.build());
+          builder = PartialResultSet.newBuilder();
+        }
+      }
+    }
+  }
+
+  /** Iterator over the {@link PartialResultSet}s in memory. */
+  private static final class InMemoryIterator implements CloseableIterator<PartialResultSet> {
+    private final Iterator<PartialResultSet> delegate;
+
+    InMemoryIterator(List<PartialResultSet> partialResultSets) {
+      this.delegate = partialResultSets.iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return delegate.hasNext();
+    }
+
+    @Override
+    public PartialResultSet next() {
+      return delegate.next();
+    }
+
+    @Override
+    public void close(@Nullable String message) {}
+
+    @Override
+    public boolean isWithBeginTransaction() {
+      return false;
+    }
+  }
+
+  private static final class NoOpListener implements Listener {
+    @Override
+    public void onTransactionMetadata(Transaction transaction, boolean shouldIncludeId) {}
+
+    @Override
+    public SpannerException onError(SpannerException e, boolean withBeginTransaction) {
+      return e;
+    }
+
+    @Override
+    public void onDone(boolean withBeginTransaction) {}
+  }
+
+  @Benchmark
+  public long readRows(BenchmarkState state) {
+    long count = 0L;
+    try (ResultSet resultSet =
+        new GrpcResultSet(
+            new InMemoryIterator(state.partialResultSets), new NoOpListener(), state.decodeMode)) {
+      while (resultSet.next()) {
+        for (int col = 0; col < state.columnsRead; col++) {
+          if (!resultSet.isNull(col)) {
+            count += resultSet.getValue(col).hashCode();
+          }
+        }
+      }
+    }
+    return count;
+  }
+}
@@ -24,12 +24,14 @@ import static org.junit.Assert.assertThrows;
 import com.google.cloud.ByteArray;
 import com.google.cloud.Date;
 import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.Options.DecodeMode;
 import com.google.cloud.spanner.spi.v1.SpannerRpc;
 import com.google.common.base.Function;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.ListValue;
 import com.google.spanner.v1.ExecuteSqlRequest.QueryMode;
 import com.google.spanner.v1.PartialResultSet;
 import com.google.spanner.v1.QueryPlan;
@@ -39,6 +41,7 @@ import com.google.spanner.v1.Transaction;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -55,6 +58,8 @@ public class GrpcResultSetTest {
   private AbstractResultSet.GrpcResultSet resultSet;
   private SpannerRpc.ResultStreamConsumer consumer;
   private AbstractResultSet.GrpcStreamIterator stream;
+  private DecodeMode decodeMode = DecodeMode.DIRECT;
+  private final List<Integer> requestedMessages = new ArrayList<>();
 
   private static class NoOpListener implements AbstractResultSet.Listener {
     @Override
@@ -79,7 +84,9 @@ public class GrpcResultSetTest {
           public void cancel(@Nullable String message) {}
 
           @Override
-          public void request(int numMessages) {}
+          public void request(int numMessages) {
+            requestedMessages.add(numMessages);
+          }
         },
         false);
     consumer = stream.consumer();
@@ -191,6 +198,109 @@ public class GrpcResultSetTest {
     assertThat(consumeAllString()).containsExactly("a", "b", "c", "d", "e", "f").inOrder();
   }
 
+  @Test
+  public void requestsConsumedMessagesInBatches() {
+    consumer.onPartialResultSet(
+        PartialResultSet.newBuilder()
+            .setMetadata(makeMetadata(Type.struct(Type.StructField.of("f", Type.int64()))))
+            .addValues(Value.int64(0L).toProto())
+            .build());
+    for (long i = 1L; i < 10L; i++) {
+      consumer.onPartialResultSet(
+          PartialResultSet.newBuilder().addValues(Value.int64(i).toProto()).build());
+    }
+    consumer.onCompleted();
+    int rows = 0;
+    while (resultSet.next()) {
+      rows++;
+    }
+    assertThat(rows).isEqualTo(10);
+    // The stream has a prefetch size of 10, so messages are requested in batches of 5.
+    assertThat(requestedMessages).containsExactly(5, 5);
+  }
+
+  @Test
+  public void exhaustedGovernorThrottlesRequests() {
+    ResultMemoryGovernor governor = ResultMemoryGovernor.create(1L);
+    stream = new AbstractResultSet.GrpcStreamIterator(null, PrefetchWindow.fixed(10), governor);
+    stream.setCall(
+        new SpannerRpc.StreamingCall() {
+          @Override
+          public void cancel(@Nullable String message) {}
+
+          @Override
+          public void request(int numMessages) {
+            requestedMessages.add(numMessages);
+          }
+        },
+        false);
+    consumer = stream.consumer();
+    resultSet = new AbstractResultSet.GrpcResultSet(stream, new NoOpListener());
+    // Another stream keeps the governor exhausted.
+    ResultMemoryGovernor.Reservation other = governor.newReservation();
+    other.add(100L);
+
+    consumer.onPartialResultSet(
+        PartialResultSet.newBuilder()
+            .setMetadata(makeMetadata(Type.struct(Type.StructField.of("f", Type.int64()))))
+            .addValues(Value.int64(0L).toProto())
+            .build());
+    for (long i = 1L; i < 10L; i++) {
+      consumer.onPartialResultSet(
+          PartialResultSet.newBuilder().addValues(Value.int64(i).toProto()).build());
+    }
+    assertThat(governor.getBufferedBytes()).isGreaterThan(100L);
+    for (int i = 0; i < 9; i++) {
+      assertThat(resultSet.next()).isTrue();
+    }
+    // The stream does not request any new messages while it still has requested messages.
+    assertThat(requestedMessages).isEmpty();
+    assertThat(resultSet.next()).isTrue();
+    assertThat(requestedMessages).containsExactly(1);
+
+    // The stream requests a full window again when the governor is no longer exhausted.
+    other.close();
+    consumer.onPartialResultSet(
+        PartialResultSet.newBuilder().addValues(Value.int64(10L).toProto()).build());
+    assertThat(resultSet.next()).isTrue();
+    assertThat(requestedMessages).containsExactly(1, 10).inOrder();
+
+    resultSet.close();
+    assertThat(governor.getBufferedBytes()).isEqualTo(0L);
+  }
+
+  @Test
+  public void adaptivePrefetchWindowShrinksForSlowConsumer() {
+    stream = new AbstractResultSet.GrpcStreamIterator(null, PrefetchWindow.adaptive(4, 2, 8, null));
+    stream.setCall(
+        new SpannerRpc.StreamingCall() {
+          @Override
+          public void cancel(@Nullable String message) {}
+
+          @Override
+          public void request(int numMessages) {}
+        },
+        false);
+    consumer = stream.consumer();
+    resultSet = new AbstractResultSet.GrpcResultSet(stream, new NoOpListener());
+    consumer.onPartialResultSet(
+        PartialResultSet.newBuilder()
+            .setMetadata(makeMetadata(Type.struct(Type.StructField.of("f", Type.int64()))))
+            .addValues(Value.int64(0L).toProto())
+            .build());
+    for (long i = 1L; i < 8L; i++) {
+      consumer.onPartialResultSet(
+          PartialResultSet.newBuilder().addValues(Value.int64(i).toProto()).build());
+    }
+    consumer.onCompleted();
+    assertThat(resultSet.getPrefetchChunks()).isEqualTo(4);
+    // Read the first four rows. The consumer never has to wait, and the buffer stays full.
+    for (int i = 0; i < 4; i++) {
+      assertThat(resultSet.next()).isTrue();
+    }
+    assertThat(resultSet.getPrefetchChunks()).isEqualTo(3);
+  }
+
   @Test
   public void multiResponseChunkingStreamClosed() {
     consumer.onPartialResultSet(
@@ -230,6 +340,64 @@ public class GrpcResultSetTest {
         .inOrder();
   }
 
+  @Test
+  public void multiResponseChunkingMultiByteStrings() {
+    consumer.onPartialResultSet(
+        PartialResultSet.newBuilder()
+            .setMetadata(makeMetadata(Type.struct(Type.StructField.of("f", Type.string()))))
+            .addValues(Value.string("ÄÖÜ").toProto())
+            .setChunkedValue(true)
+            .build());
+    consumer.onPartialResultSet(
+        PartialResultSet.newBuilder()
+            .addValues(Value.string("日本語").toProto())
+            .setChunkedValue(true)
+            .build());
+    consumer.onPartialResultSet(
+        PartialResultSet.newBuilder()
+            .addValues(Value.string("\uD83D\uDE00").toProto())
+            .setChunkedValue(false)
+            .build());
+    consumer.onCompleted();
+    assertThat(consumeAllString()).containsExactly("ÄÖÜ日本語\uD83D\uDE00");
+  }
+
+  @Test
+  public void bytesWithoutPadding() {
+    consumer.onPartialResultSet(
+        PartialResultSet.newBuilder()
+            .setMetadata(makeMetadata(Type.struct(Type.StructField.of("f", Type.bytes()))))
+            .addValues(com.google.protobuf.Value.newBuilder().setStringValue("AQID/w"))
+            .addValues(com.google.protobuf.Value.newBuilder().setStringValue("AQID/w=="))
+            .addValues(com.google.protobuf.Value.newBuilder().setStringValue(""))
+            .build());
+    consumer.onCompleted();
+    List<ByteArray> results = new ArrayList<>();
+    while (resultSet.next()) {
+      results.add(resultSet.getBytes(0));
+    }
+    ByteArray expected = ByteArray.copyFrom(new byte[] {1, 2, 3, (byte) 0xff});
+    assertThat(results).containsExactly(expected, expected, ByteArray.copyFrom("")).inOrder();
+  }
+
+  @Test
+  public void decodeBase64() {
+    for (int length = 0; length < 10; length++) {
+      byte[] bytes = new byte[length];
+      for (int i = 0; i < length; i++) {
+        bytes[i] = (byte) (i * 37);
+      }
+      String padded = Base64.getEncoder().encodeToString(bytes);
+      String unpadded = Base64.getEncoder().withoutPadding().encodeToString(bytes);
+      assertThat(AbstractResultSet.decodeBase64(ByteString.copyFromUtf8(padded))).isEqualTo(bytes);
+      assertThat(AbstractResultSet.decodeBase64(ByteString.copyFromUtf8(unpadded)))
+          .isEqualTo(bytes);
+    }
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> AbstractResultSet.decodeBase64(ByteString.copyFromUtf8("AQ*D")));
+  }
+
   @Test
   public void multiResponseChunkingBytes() {
     ByteArray expectedBytes = ByteArray.copyFrom("abcdefghijklmnopqrstuvwxyz");
@@ -325,6 +493,98 @@ public class GrpcResultSetTest {
     return ByteArray.copyFrom(data);
   }
 
+  private static com.google.protobuf.Value listProto(com.google.protobuf.Value... values) {
+    return com.google.protobuf.Value.newBuilder()
+        .setListValue(ListValue.newBuilder().addAllValues(Arrays.asList(values)))
+        .build();
+  }
+
+  private static com.google.protobuf.Value stringProto(String value) {
+    return com.google.protobuf.Value.newBuilder().setStringValue(value).build();
+  }
+
+  @Test
+  public void multiResponseChunkingStringArrayElementSplitAcrossChunks() {
+    consumer.onPartialResultSet(
+        PartialResultSet.newBuilder()
+            .setMetadata(
+                makeMetadata(Type.struct(Type.StructField.of("f", Type.array(Type.string())))))
+            .addValues(listProto(stringProto("a"), stringProto("bc")))
+            .setChunkedValue(true)
+            .build());
+    consumer.onPartialResultSet(
+        PartialResultSet.newBuilder()
+            .addValues(listProto(stringProto("de")))
+            .setChunkedValue(true)
+            .build());
+    consumer.onPartialResultSet(
+        PartialResultSet.newBuilder().addValues(listProto()).setChunkedValue(true).build());
+    consumer.onPartialResultSet(
+        PartialResultSet.newBuilder()
+            .addValues(listProto(stringProto("f"), stringProto("g")))
+            .setChunkedValue(false)
+            .build());
+    consumer.onCompleted();
+    assertThat(resultSet.next()).isTrue();
+    assertThat(resultSet.getStringList(0)).containsExactly("a", "bcdef", "g").inOrder();
+    assertThat(resultSet.next()).isFalse();
+  }
+
+  @Test
+  public void multiResponseChunkingNestedListSplitAcrossChunks() {
+    Type structType =
+        Type.struct(
+            Type.StructField.of("name", Type.string()),
+            Type.StructField.of("tags", Type.array(Type.string())));
+    consumer.onPartialResultSet(
+        PartialResultSet.newBuilder()
+            .setMetadata(
+                makeMetadata(Type.struct(Type.StructField.of("f", Type.array(structType)))))
+            .addValues(
+                listProto(
+                    listProto(stringProto("n1"), listProto(stringProto("x"))),
+                    listProto(stringProto("n2"), listProto(stringProto("p")))))
+            .setChunkedValue(true)
+            .build());
+    consumer.onPartialResultSet(
+        PartialResultSet.newBuilder()
+            .addValues(listProto(listProto(listProto(stringProto("q"), stringProto("r")))))
+            .setChunkedValue(true)
+            .build());
+    consumer.onPartialResultSet(
+        PartialResultSet.newBuilder()
+            .addValues(
+                listProto(
+                    listProto(listProto(stringProto("s"))),
+                    listProto(stringProto("n3"), listProto())))
+            .setChunkedValue(false)
+            .build());
+    consumer.onCompleted();
+    assertThat(resultSet.next()).isTrue();
+    assertThat(resultSet.getStructList(0))
+        .containsExactly(
+            Struct.newBuilder()
+                .set("name")
+                .to("n1")
+                .set("tags")
+                .toStringArray(Arrays.asList("x"))
+                .build(),
+            Struct.newBuilder()
+                .set("name")
+                .to("n2")
+                .set("tags")
+                .toStringArray(Arrays.asList("pq", "rs"))
+                .build(),
+            Struct.newBuilder()
+                .set("name")
+                .to("n3")
+                .set("tags")
+                .toStringArray(Collections.emptyList())
+                .build())
+        .inOrder();
+    assertThat(resultSet.next()).isFalse();
+  }
+
   @Test
   public void multiResponseChunkingBytesArray() {
     List<ByteArray> beforeValue = Collections.singletonList(b("before"));
@@ -540,6 +800,76 @@ public class GrpcResultSetTest {
         Value.structArray(structType, null));
   }
 
+  @Test
+  public void serializationWithLazyDecoding() {
+    decodeMode = DecodeMode.LAZY_PER_COL;
+    serialization();
+  }
+
+  @Test
+  public void lazyPerColDecoding() {
+    resultSet =
+        new AbstractResultSet.GrpcResultSet(stream, new NoOpListener(), DecodeMode.LAZY_PER_COL);
+    consumer.onPartialResultSet(
+        PartialResultSet.newBuilder()
+            .setMetadata(
+                makeMetadata(
+                    Type.struct(
+                        Type.StructField.of("a", Type.int64()),
+                        Type.StructField.of("b", Type.timestamp()),
+                        Type.StructField.of("c", Type.string()))))
+            .addValues(Value.int64(1L).toProto())
+            .addValues(Value.bool(true).toProto())
+            .addValues(Value.string(null).toProto())
+            .build());
+    consumer.onCompleted();
+
+    // The invalid value is not decoded until it is accessed.
+    assertThat(resultSet.next()).isTrue();
+    assertThat(resultSet.getLong(0)).isEqualTo(1L);
+    assertThat(resultSet.getLong(0)).isEqualTo(1L);
+    assertThat(resultSet.isNull(1)).isFalse();
+    assertThat(resultSet.isNull(2)).isTrue();
+    assertThrows(SpannerException.class, () -> resultSet.getTimestamp(1));
+    assertThat(resultSet.next()).isFalse();
+  }
+
+  @Test
+  public void lazyPerRowDecoding() {
+    resultSet =
+        new AbstractResultSet.GrpcResultSet(stream, new NoOpListener(), DecodeMode.LAZY_PER_ROW);
+    consumer.onPartialResultSet(
+        PartialResultSet.newBuilder()
+            .setMetadata(
+                makeMetadata(
+                    Type.struct(
+                        Type.StructField.of("a", Type.int64()),
+                        Type.StructField.of("b", Type.timestamp()))))
+            .addValues(Value.int64(1L).toProto())
+            .addValues(Value.bool(true).toProto())
+            .addValues(Value.int64(2L).toProto())
+            .addValues(Value.timestamp(Timestamp.ofTimeSecondsAndNanos(1, 2)).toProto())
+            .build());
+    consumer.onCompleted();
+
+    // The first row is decoded as a whole when the first column is accessed.
+    assertThat(resultSet.next()).isTrue();
+    assertThat(resultSet.isNull(0)).isFalse();
+    assertThrows(SpannerException.class, () -> resultSet.getLong(0));
+    assertThat(resultSet.next()).isTrue();
+    assertThat(resultSet.getLong(0)).isEqualTo(2L);
+    assertThat(resultSet.getTimestamp(1)).isEqualTo(Timestamp.ofTimeSecondsAndNanos(1, 2));
+    assertThat(resultSet.getCurrentRowAsStruct())
+        .isEqualTo(
+            Struct.newBuilder()
+                .set("a")
+                .to(2L)
+                .set("b")
+                .to(Timestamp.ofTimeSecondsAndNanos(1, 2))
+                .build());
+    assertThat(resultSet.next()).isFalse();
+  }
+
   @Test
   public void nestedStructSerialization() {
     Type structType =
@@ -576,7 +906,7 @@ public class GrpcResultSetTest {
 
   private void verifySerialization(
       Function<Value, com.google.protobuf.Value> protoFn, Value... values) {
-    resultSet = new AbstractResultSet.GrpcResultSet(stream, new NoOpListener());
+    resultSet = new AbstractResultSet.GrpcResultSet(stream, new NoOpListener(), decodeMode);
     PartialResultSet.Builder builder = PartialResultSet.newBuilder();
     List<Type.StructField> types = new ArrayList<>();
     for (Value value : values) {
@@ -710,6 +1040,352 @@ public class GrpcResultSetTest {
     assertThat(resultSet.getBooleanArray(0)).isEqualTo(boolArray);
   }
 
+  @Test
+  public void getBooleanListWithNulls() {
+    List<Boolean> boolList = Arrays.asList(true, null, false);
+    consumer.onPartialResultSet(
+        PartialResultSet.newBuilder()
+            .setMetadata(
+                makeMetadata(Type.struct(Type.StructField.of("f", Type.array(Type.bool())))))
+            .addValues(Value.boolArray(boolList).toProto())
+            .build());
+    consumer.onCompleted();
+    assertThat(resultSet.next()).isTrue();
+    assertThat(resultSet.getBooleanList(0)).isEqualTo(boolList);
+    NullPointerException e =
+        assertThrows(NullPointerException.class, () -> resultSet.getBooleanArray(0));
+    assertThat(e.getMessage()).contains("null");
+  }
+
+  private static final Type BATCH_TYPE =
+      Type.struct(
+          Type.StructField.of("b", Type.bool()),
+          Type.StructField.of("l", Type.int64()),
+          Type.StructField.of("d", Type.float64()),
+          Type.StructField.of("s", Type.string()),
+          Type.StructField.of("t", Type.timestamp()),
+          Type.StructField.of("a", Type.array(Type.int64())));
+
+  private static final List<Struct> BATCH_ROWS =
+      Arrays.asList(
+          Struct.newBuilder()
+              .set("b")
+              .to(true)
+              .set("l")
+              .to(1L)
+              .set("d")
+              .to(1.5d)
+              .set("s")
+              .to("x")
+              .set("t")
+              .to(Timestamp.ofTimeMicroseconds(1L))
+              .set("a")
+              .toInt64Array(new long[] {1L, 2L})
+              .build(),
+          Struct.newBuilder()
+              .set("b")
+              .to((Boolean) null)
+              .set("l")
+              .to((Long) null)
+              .set("d")
+              .to((Double) null)
+              .set("s")
+              .to((String) null)
+              .set("t")
+              .to((Timestamp) null)
+              .set("a")
+              .toInt64Array((long[]) null)
+              .build(),
+          Struct.newBuilder()
+              .set("b")
+              .to(false)
+              .set("l")
+              .to(3L)
+              .set("d")
+              .to(-2.5d)
+              .set("s")
+              .to("x")
+              .set("t")
+              .to(Timestamp.ofTimeMicroseconds(3L))
+              .set("a")
+              .toInt64Array(new long[] {})
+              .build(),
+          Struct.newBuilder()
+              .set("b")
+              .to(true)
+              .set("l")
+              .to(4L)
+              .set("d")
+              .to(0d)
+              .set("s")
+              .to("y")
+              .set("t")
+              .to(Timestamp.ofTimeMicroseconds(4L))
+              .set("a")
+              .toInt64Array(new long[] {4L})
+              .build());
+
+  private static void assertBatchOfFirstRows(ColumnarBatch batch) {
+    assertThat(batch.getType()).isEqualTo(BATCH_TYPE);
+    assertThat(batch.getRowCount()).isEqualTo(3);
+    assertThat(batch.getColumnCount()).isEqualTo(6);
+    assertThat(batch.getBooleanColumn(0)).isEqualTo(new boolean[] {true, false, false});
+    assertThat(batch.getLongColumn(1)).isEqualTo(new long[] {1L, 0L, 3L});
+    assertThat(batch.getDoubleColumn(2)).isEqualTo(new double[] {1.5d, 0d, -2.5d});
+    assertThat(batch.getStringDictionary(3)).containsExactly("x");
+    assertThat(batch.getStringIndices(3)).isEqualTo(new int[] {0, -1, 0});
+    assertThat(batch.getString(3, 2)).isEqualTo("x");
+    assertThat(batch.getString(3, 1)).isNull();
+    for (int col = 0; col < batch.getColumnCount(); col++) {
+      assertThat(batch.getNulls(col).cardinality()).isEqualTo(1);
+      assertThat(batch.isNull(col, 1)).isTrue();
+      for (int row = 0; row < batch.getRowCount(); row++) {
+        if (BATCH_ROWS.get(row).isNull(col)) {
+          assertThat(batch.getValue(col, row).isNull()).isTrue();
+        } else {
+          assertThat(batch.getValue(col, row)).isEqualTo(BATCH_ROWS.get(row).getValue(col));
+        }
+      }
+    }
+  }
+
+  private void sendBatchRows() {
+    PartialResultSet.Builder builder =
+        PartialResultSet.newBuilder().setMetadata(makeMetadata(BATCH_TYPE));
+    for (Struct row : BATCH_ROWS) {
+      for (int col = 0; col < BATCH_TYPE.getStructFields().size(); col++) {
+        builder.addValues(
+            row.isNull(col)
+                ? com.google.protobuf.Value.newBuilder()
+                    .setNullValue(com.google.protobuf.NullValue.NULL_VALUE)
+                    .build()
+                : row.getValue(col).toProto());
+      }
+    }
+    consumer.onPartialResultSet(builder.setStats(ResultSetStats.getDefaultInstance()).build());
+    consumer.onCompleted();
+  }
+
+  @Test
+  public void nextBatch() {
+    for (DecodeMode mode : DecodeMode.values()) {
+      setUp();
+      resultSet = new AbstractResultSet.GrpcResultSet(stream, new NoOpListener(), mode);
+      sendBatchRows();
+
+      assertBatchOfFirstRows(resultSet.nextBatch(3));
+      // Batches and single rows can be mixed.
+      assertThat(resultSet.next()).isTrue();
+      assertThat(resultSet.getCurrentRowAsStruct()).isEqualTo(BATCH_ROWS.get(3));
+      assertThat(resultSet.getStats()).isNull();
+      ColumnarBatch empty = resultSet.nextBatch(10);
+      assertThat(empty.getRowCount()).isEqualTo(0);
+      assertThat(empty.getLongColumn(1)).isEmpty();
+      assertThat(resultSet.getStats()).isNotNull();
+    }
+  }
+
+  @Test
+  public void nextBatchInvalidatesCurrentRow() {
+    sendBatchRows();
+    assertThat(resultSet.next()).isTrue();
+    assertThat(resultSet.getLong(1)).isEqualTo(1L);
+    assertThat(resultSet.nextBatch(2).getLongColumn(1)).isEqualTo(new long[] {0L, 3L});
+    // The current row was read before the batch, and is not the current position anymore.
+    assertThrows(IllegalStateException.class, () -> resultSet.getLong(1));
+    assertThrows(IllegalStateException.class, () -> resultSet.getCurrentRowAsStruct());
+    assertThat(resultSet.next()).isTrue();
+    assertThat(resultSet.getLong(1)).isEqualTo(4L);
+    assertThat(resultSet.next()).isFalse();
+  }
+
+  @Test
+  public void nextBatchFromRows() {
+    ResultSet rows = ResultSets.forRows(BATCH_TYPE, BATCH_ROWS);
+    assertBatchOfFirstRows(ColumnarBatch.readFrom(rows, 3));
+    ColumnarBatch last = rows.nextBatch(3);
+    assertThat(last.getRowCount()).isEqualTo(1);
+    assertThat(last.getStringDictionary(3)).containsExactly("y");
+    assertThat(rows.nextBatch(3).getRowCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void nextBatchDecodesTypedColumns() {
+    Type type =
+        Type.struct(
+            Type.StructField.of("b", Type.bytes()),
+            Type.StructField.of("n", Type.numeric()),
+            Type.StructField.of("d", Type.date()),
+            Type.StructField.of("t", Type.timestamp()));
+    List<Struct> rows =
+        Arrays.asList(
+            Struct.newBuilder()
+                .set("b")
+                .to(ByteArray.copyFrom(new byte[] {1, 2, 3}))
+                .set("n")
+                .to(new BigDecimal("-1.5"))
+                .set("d")
+                .to(Date.fromYearMonthDay(2021, 3, 1))
+                .set("t")
+                .to(Timestamp.parseTimestamp("2021-03-01T10:15:30.123456789Z"))
+                .build(),
+            Struct.newBuilder()
+                .set("b")
+                .to((ByteArray) null)
+                .set("n")
+                .to((BigDecimal) null)
+                .set("d")
+                .to((Date) null)
+                .set("t")
+                .to((Timestamp) null)
+                .build(),
+            Struct.newBuilder()
+                .set("b")
+                .to(ByteArray.copyFrom(""))
+                .set("n")
+                .to(BigDecimal.ZERO)
+                .set("d")
+                .to(Date.fromYearMonthDay(1969, 12, 31))
+                .set("t")
+                .to(Timestamp.parseTimestamp("1969-12-31T23:59:59.5Z"))
+                .build());
+    PartialResultSet.Builder builder =
+        PartialResultSet.newBuilder().setMetadata(makeMetadata(type));
+    for (Struct row : rows) {
+      for (int col = 0; col < type.getStructFields().size(); col++) {
+        builder.addValues(
+            row.isNull(col)
+                ? com.google.protobuf.Value.newBuilder()
+                    .setNullValue(com.google.protobuf.NullValue.NULL_VALUE)
+                    .build()
+                : row.getValue(col).toProto());
+      }
+    }
+    consumer.onPartialResultSet(builder.build());
+    consumer.onCompleted();
+
+    for (ColumnarBatch batch :
+        Arrays.asList(resultSet.nextBatch(10), ResultSets.forRows(type, rows).nextBatch(10))) {
+      assertThat(batch.getBytesColumn(0)).isEqualTo(new byte[][] {{1, 2, 3}, null, {}});
+      assertThat(batch.getNumericColumn(1))
+          .isEqualTo(new BigDecimal[] {new BigDecimal("-1.5"), null, BigDecimal.ZERO});
+      assertThat(batch.getDateColumn(2)).isEqualTo(new int[] {18687, 0, -1});
+      assertThat(batch.getTimestampSecondsColumn(3))
+          .isEqualTo(new long[] {1614593730L, 0L, -1L});
+      assertThat(batch.getTimestampNanosColumn(3)).isEqualTo(new int[] {123456789, 0, 500000000});
+      for (int col = 0; col < type.getStructFields().size(); col++) {
+        assertThat(batch.getValue(col, 1).isNull()).isTrue();
+        assertThat(batch.getValue(col, 0)).isEqualTo(rows.get(0).getValue(col));
+        assertThat(batch.getValue(col, 2)).isEqualTo(rows.get(2).getValue(col));
+      }
+    }
+  }
+
+  @Test
+  public void nextBatchGrowsColumns() {
+    Type type = Type.struct(Type.StructField.of("s", Type.string()));
+    PartialResultSet.Builder builder =
+        PartialResultSet.newBuilder().setMetadata(makeMetadata(type));
+    int numRows = 1000;
+    for (int i = 0; i < numRows; i++) {
+      builder.addValues(Value.string("v" + (i % 10)).toProto());
+    }
+    consumer.onPartialResultSet(builder.build());
+    consumer.onCompleted();
+
+    ColumnarBatch batch = resultSet.nextBatch(Integer.MAX_VALUE);
+    assertThat(batch.getRowCount()).isEqualTo(numRows);
+    assertThat(batch.getStringIndices(0)).hasLength(numRows);
+    assertThat(batch.getStringDictionary(0)).hasSize(10);
+    assertThat(batch.getString(0, numRows - 1)).isEqualTo("v9");
+  }
+
+  @Test
+  public void nextBatchInvalidArguments() {
+    consumer.onPartialResultSet(
+        PartialResultSet.newBuilder()
+            .setMetadata(makeMetadata(BATCH_TYPE))
+            .addAllValues(
+                Arrays.asList(
+                    BATCH_ROWS.get(0).getValue(0).toProto(),
+                    BATCH_ROWS.get(0).getValue(1).toProto(),
+                    BATCH_ROWS.get(0).getValue(2).toProto(),
+                    BATCH_ROWS.get(0).getValue(3).toProto(),
+                    BATCH_ROWS.get(0).getValue(4).toProto(),
+                    BATCH_ROWS.get(0).getValue(5).toProto()))
+            .build());
+    consumer.onCompleted();
+    assertThrows(IllegalArgumentException.class, () -> resultSet.nextBatch(0));
+    ColumnarBatch batch = resultSet.nextBatch(1);
+    IllegalStateException e =
+        assertThrows(IllegalStateException.class, () -> batch.getLongColumn(0));
+    assertThat(e.getMessage()).contains("not of type INT64");
+    assertThrows(IndexOutOfBoundsException.class, () -> batch.getValue(0, 1));
+  }
+
+  @Test
+  public void nextBatchIncompleteRow() {
+    consumer.onPartialResultSet(
+        PartialResultSet.newBuilder()
+            .setMetadata(makeMetadata(BATCH_TYPE))
+            .addValues(Value.bool(true).toProto())
+            .build());
+    consumer.onCompleted();
+    SpannerException e = assertThrows(SpannerException.class, () -> resultSet.nextBatch(10));
+    assertThat(e.getErrorCode()).isEqualTo(ErrorCode.INTERNAL);
+  }
+
+  @Test
+  public void primitiveColumns() {
+    Type type =
+        Type.struct(
+            Type.StructField.of("b", Type.bool()),
+            Type.StructField.of("l", Type.int64()),
+            Type.StructField.of("d", Type.float64()),
+            Type.StructField.of("s", Type.struct(Type.StructField.of("n", Type.int64()))));
+    for (DecodeMode mode : DecodeMode.values()) {
+      setUp();
+      resultSet = new AbstractResultSet.GrpcResultSet(stream, new NoOpListener(), mode);
+      consumer.onPartialResultSet(
+          PartialResultSet.newBuilder()
+              .setMetadata(makeMetadata(type))
+              .addValues(Value.bool(true).toProto())
+              .addValues(Value.int64(Long.MIN_VALUE).toProto())
+              .addValues(Value.float64(-0.5d).toProto())
+              .addValues(Value.struct(Struct.newBuilder().set("n").to(7L).build()).toProto())
+              .addValues(Value.bool(null).toProto())
+              .addValues(Value.int64(null).toProto())
+              .addValues(Value.float64(null).toProto())
+              .addValues(
+                  Value.struct(Struct.newBuilder().set("n").to((Long) null).build()).toProto())
+              .build());
+      consumer.onCompleted();
+
+      assertThat(resultSet.next()).isTrue();
+      assertThat(resultSet.getBoolean(0)).isTrue();
+      assertThat(resultSet.getLong(1)).isEqualTo(Long.MIN_VALUE);
+      assertThat(resultSet.getDouble(2)).isEqualTo(-0.5d);
+      assertThat(resultSet.getValue(3).getStruct().getLong(0)).isEqualTo(7L);
+      Struct copy = resultSet.getCurrentRowAsStruct();
+      assertThat(copy.toString()).isEqualTo("[true, -9223372036854775808, -0.5, [7]]");
+
+      // The primitive values of the previous row must not leak into the next row.
+      assertThat(resultSet.next()).isTrue();
+      assertThat(resultSet.isNull(0)).isTrue();
+      assertThat(resultSet.isNull(1)).isTrue();
+      assertThat(resultSet.isNull(2)).isTrue();
+      assertThat(resultSet.getValue(3).getStruct().isNull(0)).isTrue();
+      assertThat(resultSet.getCurrentRowAsStruct().toString())
+          .isEqualTo("[null, null, null, [null]]");
+
+      // The copy of the first row is not affected by reading the second row.
+      assertThat(copy.getBoolean(0)).isTrue();
+      assertThat(copy.getLong(1)).isEqualTo(Long.MIN_VALUE);
+      assertThat(copy.getDouble(2)).isEqualTo(-0.5d);
+      assertThat(resultSet.next()).isFalse();
+    }
+  }
+
   @Test
   public void getLongArray() {
     long[] longArray = {111, 333, 444, 0, -1, -2234, Long.MAX_VALUE, Long.MIN_VALUE};
@@ -23,6 +23,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
+import com.google.cloud.spanner.Options.DecodeMode;
 import com.google.cloud.spanner.Options.RpcPriority;
 import com.google.spanner.v1.RequestOptions.Priority;
 import org.junit.Test;
@@ -463,6 +464,75 @@ public class OptionsTest {
         optionsWithHighPriorityAndBufferRows.hashCode(), optionsWithHighPriority1.hashCode());
   }
 
+  @Test
+  public void testDecodeMode() {
+    Options options = Options.fromQueryOptions(Options.decodeMode(DecodeMode.LAZY_PER_COL));
+    assertThat(options.hasDecodeMode()).isTrue();
+    assertThat(options.decodeMode()).isEqualTo(DecodeMode.LAZY_PER_COL);
+    assertThat(options.toString()).isEqualTo("decodeMode: LAZY_PER_COL ");
+    assertEquals(options, Options.fromQueryOptions(Options.decodeMode(DecodeMode.LAZY_PER_COL)));
+    assertEquals(
+        options.hashCode(),
+        Options.fromQueryOptions(Options.decodeMode(DecodeMode.LAZY_PER_COL)).hashCode());
+    assertNotEquals(options, Options.fromQueryOptions(Options.decodeMode(DecodeMode.DIRECT)));
+    assertNotEquals(options, Options.fromQueryOptions());
+
+    assertThat(Options.fromReadOptions().hasDecodeMode()).isFalse();
+    assertThat(Options.fromReadOptions(Options.decodeMode(DecodeMode.LAZY_PER_ROW)).decodeMode())
+        .isEqualTo(DecodeMode.LAZY_PER_ROW);
+  }
+
+  @Test
+  public void testAdaptivePrefetchChunks() {
+    Options options = Options.fromQueryOptions(Options.adaptivePrefetchChunks(2, 64));
+    assertThat(options.hasAdaptivePrefetchChunks()).isTrue();
+    assertThat(options.minPrefetchChunks()).isEqualTo(2);
+    assertThat(options.maxPrefetchChunks()).isEqualTo(64);
+    assertThat(options.hasPrefetchChunks()).isFalse();
+    assertThat(options.toString()).isEqualTo("minPrefetchChunks: 2 maxPrefetchChunks: 64 ");
+    assertEquals(options, Options.fromQueryOptions(Options.adaptivePrefetchChunks(2, 64)));
+    assertEquals(
+        options.hashCode(),
+        Options.fromQueryOptions(Options.adaptivePrefetchChunks(2, 64)).hashCode());
+    assertNotEquals(options, Options.fromQueryOptions(Options.adaptivePrefetchChunks(2, 32)));
+    assertNotEquals(options, Options.fromQueryOptions());
+
+    assertThat(Options.fromReadOptions().hasAdaptivePrefetchChunks()).isFalse();
+    assertThrows(IllegalArgumentException.class, () -> Options.adaptivePrefetchChunks(0, 1));
+    assertThrows(IllegalArgumentException.class, () -> Options.adaptivePrefetchChunks(4, 2));
+  }
+
+  @Test
+  public void testPipelinedDecoding() {
+    Options options = Options.fromQueryOptions(Options.pipelinedDecoding(100));
+    assertThat(options.hasPipelinedDecoding()).isTrue();
+    assertThat(options.pipelinedDecodingRows()).isEqualTo(100);
+    assertThat(options.toString()).isEqualTo("pipelinedDecodingRows: 100 ");
+    assertEquals(options, Options.fromQueryOptions(Options.pipelinedDecoding(100)));
+    assertEquals(
+        options.hashCode(), Options.fromQueryOptions(Options.pipelinedDecoding(100)).hashCode());
+    assertNotEquals(options, Options.fromQueryOptions(Options.pipelinedDecoding(10)));
+    assertNotEquals(options, Options.fromQueryOptions());
+
+    assertThat(Options.fromReadOptions().hasPipelinedDecoding()).isFalse();
+    assertThrows(IllegalArgumentException.class, () -> Options.pipelinedDecoding(0));
+  }
+
+  @Test
+  public void testBatchRows() {
+    Options options = Options.fromReadOptions(Options.batchRows(50));
+    assertThat(options.hasBatchRows()).isTrue();
+    assertThat(options.batchRows()).isEqualTo(50);
+    assertThat(options.toString()).isEqualTo("batchRows: 50 ");
+    assertEquals(options, Options.fromReadOptions(Options.batchRows(50)));
+    assertEquals(options.hashCode(), Options.fromReadOptions(Options.batchRows(50)).hashCode());
+    assertNotEquals(options, Options.fromReadOptions(Options.batchRows(10)));
+    assertNotEquals(options, Options.fromReadOptions());
+
+    assertThat(Options.fromQueryOptions().hasBatchRows()).isFalse();
+    assertThrows(IllegalArgumentException.class, () -> Options.batchRows(0));
+  }
+
   @Test
   public void testFromUpdateOptions() {
     Options options = Options.fromUpdateOptions();
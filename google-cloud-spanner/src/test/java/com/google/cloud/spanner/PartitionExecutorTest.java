@@ -0,0 +1,332 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.api.core.ApiFuture;
+import com.google.cloud.spanner.PartitionExecutor.PartitionProgress;
+import com.google.cloud.spanner.PartitionExecutor.PartitionState;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.protobuf.ByteString;
+import io.grpc.Context;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.threeten.bp.Duration;
+
+@RunWith(JUnit4.class)
+public class PartitionExecutorTest {
+  private static final Type TYPE =
+      Type.struct(
+          Type.StructField.of("PARTITION", Type.int64()), Type.StructField.of("ID", Type.int64()));
+
+  private static List<Partition> createPartitions(int count) {
+    List<Partition> partitions = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      partitions.add(
+          Partition.createQueryPartition(
+              ByteString.copyFromUtf8(String.valueOf(i)),
+              PartitionOptions.getDefaultInstance(),
+              Statement.of("SELECT * FROM FOO"),
+              Options.fromQueryOptions()));
+    }
+    return partitions;
+  }
+
+  private static int partitionNumber(Partition partition) {
+    return Integer.parseInt(partition.getPartitionToken().toStringUtf8());
+  }
+
+  private static ResultSet createRows(int partition, int rowCount) {
+    List<Struct> rows = new ArrayList<>(rowCount);
+    for (int i = 0; i < rowCount; i++) {
+      rows.add(Struct.newBuilder().set("PARTITION").to(partition).set("ID").to(i).build());
+    }
+    return ResultSets.forRows(TYPE, rows);
+  }
+
+  /** Returns a result set that returns the given number of rows and then fails. */
+  private static ResultSet createFailingRows(int partition, int rowCount, ErrorCode code) {
+    return new ForwardingResultSet(createRows(partition, rowCount)) {
+      @Override
+      public boolean next() {
+        if (!super.next()) {
+          throw SpannerExceptionFactory.newSpannerException(code, "test error");
+        }
+        return true;
+      }
+    };
+  }
+
+  private static BatchReadOnlyTransaction createTransaction(int rowsPerPartition) {
+    BatchReadOnlyTransaction transaction = mock(BatchReadOnlyTransaction.class);
+    when(transaction.execute(any(Partition.class)))
+        .thenAnswer(
+            invocation ->
+                createRows(
+                    partitionNumber(invocation.getArgumentAt(0, Partition.class)),
+                    rowsPerPartition));
+    return transaction;
+  }
+
+  @Test
+  public void testExecuteMerged() {
+    PartitionExecutor executor =
+        PartitionExecutor.newBuilder(createTransaction(50))
+            .setParallelism(3)
+            .setBufferRows(5)
+            .build();
+    Map<Long, Long> lastIdPerPartition = new HashMap<>();
+    int rowCount = 0;
+    try (ResultSet resultSet = executor.executeMerged(createPartitions(10))) {
+      while (resultSet.next()) {
+        long partition = resultSet.getLong("PARTITION");
+        long id = resultSet.getLong("ID");
+        // The rows of each partition must be returned in order.
+        assertEquals(lastIdPerPartition.getOrDefault(partition, -1L) + 1L, id);
+        lastIdPerPartition.put(partition, id);
+        rowCount++;
+      }
+    }
+    assertEquals(500, rowCount);
+    assertThat(lastIdPerPartition).hasSize(10);
+
+    PartitionExecutor.Progress progress = executor.getProgress();
+    assertEquals(10, progress.getTotalPartitions());
+    assertEquals(10, progress.getCompletedPartitions());
+    assertEquals(0, progress.getFailedPartitions());
+    assertEquals(500L, progress.getRows());
+    assertThat(progress.getPartitionProgress()).hasSize(10);
+    for (int i = 0; i < 10; i++) {
+      PartitionProgress partitionProgress = progress.getPartitionProgress().get(i);
+      assertEquals(i, partitionNumber(partitionProgress.getPartition()));
+      assertEquals(PartitionState.COMPLETED, partitionProgress.getState());
+      assertEquals(1, partitionProgress.getAttempts());
+      assertEquals(50L, partitionProgress.getRows());
+    }
+  }
+
+  @Test
+  public void testExecuteMergedWithoutPartitions() {
+    PartitionExecutor executor = PartitionExecutor.newBuilder(createTransaction(10)).build();
+    try (ResultSet resultSet = executor.executeMerged(Collections.emptyList())) {
+      assertThat(resultSet.next()).isFalse();
+      assertThrows(IllegalStateException.class, resultSet::getType);
+    }
+  }
+
+  @Test
+  public void testTypeOfMergedResultSetWithoutRows() {
+    PartitionExecutor executor =
+        PartitionExecutor.newBuilder(createTransaction(0)).setParallelism(2).build();
+    try (ResultSet resultSet = executor.executeMerged(createPartitions(3))) {
+      assertThat(resultSet.next()).isFalse();
+      assertEquals(TYPE, resultSet.getType());
+    }
+  }
+
+  @Test
+  public void testExecuteWithCallback() throws Exception {
+    PartitionExecutor executor =
+        PartitionExecutor.newBuilder(createTransaction(20)).setParallelism(4).build();
+    Map<Integer, AtomicInteger> rowsPerPartition = new ConcurrentHashMap<>();
+    ApiFuture<Void> result =
+        executor.execute(
+            createPartitions(8),
+            (partition, row) ->
+                rowsPerPartition
+                    .computeIfAbsent(partitionNumber(partition), p -> new AtomicInteger())
+                    .incrementAndGet());
+    result.get(10L, TimeUnit.SECONDS);
+
+    assertThat(rowsPerPartition).hasSize(8);
+    for (AtomicInteger count : rowsPerPartition.values()) {
+      assertEquals(20, count.get());
+    }
+    assertEquals(8, executor.getProgress().getCompletedPartitions());
+  }
+
+  @Test
+  public void testRetryPartitionWithoutRows() {
+    BatchReadOnlyTransaction transaction = mock(BatchReadOnlyTransaction.class);
+    AtomicInteger attempts = new AtomicInteger();
+    when(transaction.execute(any(Partition.class)))
+        .thenAnswer(
+            invocation -> {
+              int partition = partitionNumber(invocation.getArgumentAt(0, Partition.class));
+              if (partition == 1 && attempts.incrementAndGet() == 1) {
+                return createFailingRows(partition, 0, ErrorCode.UNAVAILABLE);
+              }
+              return createRows(partition, 10);
+            });
+    PartitionExecutor executor =
+        PartitionExecutor.newBuilder(transaction).setRetryDelay(Duration.ZERO).build();
+    int rowCount = 0;
+    try (ResultSet resultSet = executor.executeMerged(createPartitions(3))) {
+      while (resultSet.next()) {
+        rowCount++;
+      }
+    }
+    assertEquals(30, rowCount);
+    assertEquals(1L, executor.getProgress().getRetries());
+    assertEquals(3, executor.getProgress().getCompletedPartitions());
+    assertEquals(2, executor.getProgress().getPartitionProgress().get(1).getAttempts());
+    assertEquals(10L, executor.getProgress().getPartitionProgress().get(1).getRows());
+  }
+
+  @Test
+  public void testNoRetryAfterRows() {
+    BatchReadOnlyTransaction transaction = mock(BatchReadOnlyTransaction.class);
+    when(transaction.execute(any(Partition.class)))
+        .thenAnswer(
+            invocation ->
+                createFailingRows(
+                    partitionNumber(invocation.getArgumentAt(0, Partition.class)),
+                    5,
+                    ErrorCode.UNAVAILABLE));
+    PartitionExecutor executor =
+        PartitionExecutor.newBuilder(transaction)
+            .setParallelism(1)
+            .setRetryDelay(Duration.ZERO)
+            .build();
+    try (ResultSet resultSet = executor.executeMerged(createPartitions(1))) {
+      SpannerException e =
+          assertThrows(
+              SpannerException.class,
+              () -> {
+                while (resultSet.next()) {}
+              });
+      assertEquals(ErrorCode.UNAVAILABLE, e.getErrorCode());
+    }
+    assertEquals(0L, executor.getProgress().getRetries());
+    assertEquals(1, executor.getProgress().getFailedPartitions());
+  }
+
+  @Test
+  public void testNonRetryableError() {
+    BatchReadOnlyTransaction transaction = mock(BatchReadOnlyTransaction.class);
+    when(transaction.execute(any(Partition.class)))
+        .thenAnswer(
+            invocation -> {
+              int partition = partitionNumber(invocation.getArgumentAt(0, Partition.class));
+              if (partition == 2) {
+                return createFailingRows(partition, 0, ErrorCode.INVALID_ARGUMENT);
+              }
+              return createRows(partition, 10);
+            });
+    PartitionExecutor executor = PartitionExecutor.newBuilder(transaction).build();
+    ApiFuture<Void> result = executor.execute(createPartitions(4), (partition, row) -> {});
+    ExecutionException e =
+        assertThrows(ExecutionException.class, () -> result.get(10L, TimeUnit.SECONDS));
+    assertThat(e.getCause()).isInstanceOf(SpannerException.class);
+    assertEquals(ErrorCode.INVALID_ARGUMENT, ((SpannerException) e.getCause()).getErrorCode());
+    assertEquals(1, executor.getProgress().getFailedPartitions());
+    assertEquals(
+        PartitionState.FAILED, executor.getProgress().getPartitionProgress().get(2).getState());
+  }
+
+  @Test
+  public void testCloseMergedResultSetStopsPartitions() throws InterruptedException {
+    ExecutorService threads = Executors.newFixedThreadPool(2);
+    PartitionExecutor executor =
+        PartitionExecutor.newBuilder(createTransaction(1000))
+            .setParallelism(2)
+            .setBufferRows(1)
+            .setExecutor(threads)
+            .build();
+    try (ResultSet resultSet = executor.executeMerged(createPartitions(10))) {
+      assertTrue(resultSet.next());
+    }
+    threads.shutdown();
+    assertTrue(threads.awaitTermination(10L, TimeUnit.SECONDS));
+    assertThat(executor.getProgress().getCompletedPartitions()).isLessThan(10);
+  }
+
+  @Test
+  public void testCloseCancelsStreamsOfPartitions() throws InterruptedException {
+    // The result sets of the partitions wait for data until their stream is cancelled.
+    Map<Integer, Thread> closingThreads = new ConcurrentHashMap<>();
+    CountDownLatch waiting = new CountDownLatch(2);
+    CountDownLatch closed = new CountDownLatch(2);
+    BatchReadOnlyTransaction transaction = mock(BatchReadOnlyTransaction.class);
+    when(transaction.execute(any(Partition.class)))
+        .thenAnswer(
+            invocation -> {
+              int partition = partitionNumber(invocation.getArgumentAt(0, Partition.class));
+              return new ForwardingResultSet(createRows(partition, 10)) {
+                @Override
+                public boolean next() {
+                  CountDownLatch cancelled = new CountDownLatch(1);
+                  Context.current()
+                      .addListener(
+                          ignored -> cancelled.countDown(), MoreExecutors.directExecutor());
+                  waiting.countDown();
+                  Uninterruptibles.awaitUninterruptibly(cancelled);
+                  throw SpannerExceptionFactory.newSpannerException(
+                      ErrorCode.CANCELLED, "cancelled");
+                }
+
+                @Override
+                public void close() {
+                  closingThreads.put(partition, Thread.currentThread());
+                  closed.countDown();
+                }
+              };
+            });
+    PartitionExecutor executor =
+        PartitionExecutor.newBuilder(transaction).setParallelism(2).build();
+    ResultSet resultSet = executor.executeMerged(createPartitions(2));
+    assertTrue(waiting.await(10L, TimeUnit.SECONDS));
+    resultSet.close();
+
+    assertTrue(closed.await(10L, TimeUnit.SECONDS));
+    // Each result set is closed by the worker that read it, and not by the thread that closed the
+    // merged result set.
+    assertThat(closingThreads).hasSize(2);
+    assertThat(closingThreads.values()).doesNotContain(Thread.currentThread());
+    for (PartitionProgress progress : executor.getProgress().getPartitionProgress()) {
+      assertEquals(PartitionState.CANCELLED, progress.getState());
+    }
+  }
+
+  @Test
+  public void testExecutorCanOnlyBeStartedOnce() {
+    PartitionExecutor executor = PartitionExecutor.newBuilder(createTransaction(1)).build();
+    executor.executeMerged(createPartitions(1)).close();
+    assertThrows(IllegalStateException.class, () -> executor.executeMerged(createPartitions(1)));
+  }
+}
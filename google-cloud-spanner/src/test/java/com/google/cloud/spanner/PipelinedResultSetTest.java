@@ -0,0 +1,221 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.spanner.v1.ResultSetStats;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class PipelinedResultSetTest {
+  private static final Type TYPE = Type.struct(Type.StructField.of("id", Type.int64()));
+
+  /** Delegate that counts the rows that are read from it and records when it is closed. */
+  private static class CountingResultSet extends ForwardingResultSet {
+    private final AtomicInteger nextCalls = new AtomicInteger();
+    private final CountDownLatch closed = new CountDownLatch(1);
+    private final int failAfterRows;
+
+    CountingResultSet(ResultSet delegate, int failAfterRows) {
+      super(delegate);
+      this.failAfterRows = failAfterRows;
+    }
+
+    @Override
+    public boolean next() {
+      if (nextCalls.incrementAndGet() > failAfterRows) {
+        throw SpannerExceptionFactory.newSpannerException(ErrorCode.UNAVAILABLE, "test error");
+      }
+      return super.next();
+    }
+
+    @Override
+    public ResultSetStats getStats() {
+      return null;
+    }
+
+    @Override
+    public void close() {
+      super.close();
+      closed.countDown();
+    }
+  }
+
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newSingleThreadExecutor();
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  private static List<Struct> rows(int count) {
+    List<Struct> rows = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      rows.add(Struct.newBuilder().set("id").to(i).build());
+    }
+    return rows;
+  }
+
+  private static CountingResultSet delegate(int rowCount) {
+    return delegate(rowCount, Integer.MAX_VALUE);
+  }
+
+  private static CountingResultSet delegate(int rowCount, int failAfterRows) {
+    return new CountingResultSet(ResultSets.forRows(TYPE, rows(rowCount)), failAfterRows);
+  }
+
+  @Test
+  public void testRowsAreReturnedInOrder() throws InterruptedException {
+    CountingResultSet delegate = delegate(1000);
+    try (ResultSet rs = new PipelinedResultSet(executor, delegate, () -> {}, 10)) {
+      for (int i = 0; i < 1000; i++) {
+        assertThat(rs.next()).isTrue();
+        assertThat(rs.getLong("id")).isEqualTo(i);
+        assertThat(rs.getCurrentRowAsStruct().getLong(0)).isEqualTo(i);
+      }
+      assertThat(rs.next()).isFalse();
+      assertThat(rs.next()).isFalse();
+      assertThat(rs.getStats()).isNull();
+    }
+    assertThat(delegate.closed.await(5L, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  public void testEmptyResultSet() {
+    try (ResultSet rs = new PipelinedResultSet(executor, delegate(0), () -> {}, 10)) {
+      assertThat(rs.next()).isFalse();
+      assertThat(rs.getType()).isEqualTo(TYPE);
+    }
+  }
+
+  @Test
+  public void testNextRequiredBeforeGetters() {
+    try (ResultSet rs = new PipelinedResultSet(executor, delegate(1), () -> {}, 10)) {
+      assertThrows(IllegalStateException.class, () -> rs.getLong(0));
+    }
+  }
+
+  @Test
+  public void testErrorIsThrownAfterBufferedRows() {
+    try (ResultSet rs = new PipelinedResultSet(executor, delegate(10, 2), () -> {}, 10)) {
+      assertThat(rs.next()).isTrue();
+      assertThat(rs.next()).isTrue();
+      SpannerException e = assertThrows(SpannerException.class, rs::next);
+      assertThat(e.getErrorCode()).isEqualTo(ErrorCode.UNAVAILABLE);
+      assertThat(rs.next()).isFalse();
+    }
+  }
+
+  @Test
+  public void testRowBudgetLimitsRowsReadAhead() throws InterruptedException {
+    CountingResultSet delegate = delegate(100);
+    try (ResultSet rs = new PipelinedResultSet(executor, delegate, () -> {}, 4)) {
+      // The background task fills the buffer and then waits with one more row.
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5L);
+      while (delegate.nextCalls.get() < 5 && System.nanoTime() < deadline) {
+        Thread.sleep(1L);
+      }
+      Thread.sleep(50L);
+      assertThat(delegate.nextCalls.get()).isEqualTo(5);
+
+      assertThat(rs.next()).isTrue();
+      assertThat(rs.getLong(0)).isEqualTo(0L);
+    }
+  }
+
+  @Test
+  public void testCloseStopsBackgroundTask() throws InterruptedException {
+    CountingResultSet delegate = delegate(100);
+    ResultSet rs = new PipelinedResultSet(executor, delegate, () -> {}, 2);
+    assertThat(rs.next()).isTrue();
+    rs.close();
+    assertThat(delegate.closed.await(5L, TimeUnit.SECONDS)).isTrue();
+    assertThat(delegate.nextCalls.get()).isLessThan(100);
+    assertThrows(IllegalStateException.class, rs::next);
+  }
+
+  @Test
+  public void testCloseCancelsStreamOfDelegate() throws InterruptedException {
+    // The delegate blocks in next() until its stream is cancelled, like a result set that waits
+    // for data from the network.
+    CountDownLatch cancelled = new CountDownLatch(1);
+    AtomicReference<String> producerThread = new AtomicReference<>();
+    CountingResultSet delegate =
+        new CountingResultSet(ResultSets.forRows(TYPE, rows(100)), Integer.MAX_VALUE) {
+          @Override
+          public boolean next() {
+            if (producerThread.getAndSet(Thread.currentThread().getName()) == null) {
+              return super.next();
+            }
+            Uninterruptibles.awaitUninterruptibly(cancelled);
+            throw SpannerExceptionFactory.newSpannerException(ErrorCode.CANCELLED, "cancelled");
+          }
+        };
+    ResultSet rs = PipelinedResultSet.create(delegate, cancelled::countDown, 10);
+    assertThat(rs.next()).isTrue();
+    rs.close();
+    assertThat(delegate.closed.await(5L, TimeUnit.SECONDS)).isTrue();
+    assertThat(producerThread.get()).startsWith("spanner-pipelined-decoding-");
+  }
+
+  @Test
+  public void testCloseBeforeBackgroundTaskStarts() throws InterruptedException {
+    List<Runnable> tasks = new ArrayList<>();
+    CountingResultSet delegate = delegate(100);
+    ResultSet rs = new PipelinedResultSet(tasks::add, delegate, () -> {}, 2);
+    rs.close();
+    assertThat(tasks).hasSize(1);
+    tasks.get(0).run();
+    assertThat(delegate.closed.getCount()).isEqualTo(0L);
+    assertThat(delegate.nextCalls.get()).isEqualTo(0);
+  }
+
+  @Test
+  public void testDecodesOnConsumerWhenNoThreadIsAvailable() {
+    CountingResultSet delegate = delegate(10);
+    ResultSet rs =
+        PipelinedResultSet.create(
+            task -> {
+              throw new RejectedExecutionException();
+            },
+            delegate,
+            () -> {},
+            2);
+    assertThat(rs).isSameInstanceAs(delegate);
+  }
+}
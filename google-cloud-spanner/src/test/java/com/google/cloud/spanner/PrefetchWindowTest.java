@@ -0,0 +1,104 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class PrefetchWindowTest {
+
+  /** Consumes one round of messages of the given window. */
+  private static void consumeRound(PrefetchWindow window, boolean waited, int buffered) {
+    int size = window.getSize();
+    for (int i = 0; i < size; i++) {
+      window.onMessageConsumed(waited && i == 0, buffered);
+    }
+  }
+
+  @Test
+  public void testFixedWindowNeverResizes() {
+    PrefetchWindow window = PrefetchWindow.fixed(4);
+    assertThat(window.isAdaptive()).isFalse();
+    assertThat(window.getMaxSize()).isEqualTo(4);
+    consumeRound(window, true, 0);
+    assertThat(window.getSize()).isEqualTo(4);
+    consumeRound(window, false, 4);
+    assertThat(window.getSize()).isEqualTo(4);
+  }
+
+  @Test
+  public void testInitialSizeIsClamped() {
+    assertThat(PrefetchWindow.adaptive(1, 2, 8, null).getSize()).isEqualTo(2);
+    assertThat(PrefetchWindow.adaptive(16, 2, 8, null).getSize()).isEqualTo(8);
+    assertThat(PrefetchWindow.adaptive(4, 2, 8, null).getSize()).isEqualTo(4);
+  }
+
+  @Test
+  public void testInvalidBounds() {
+    assertThrows(IllegalArgumentException.class, () -> PrefetchWindow.adaptive(1, 0, 8, null));
+    assertThrows(IllegalArgumentException.class, () -> PrefetchWindow.adaptive(4, 8, 2, null));
+    assertThrows(IllegalArgumentException.class, () -> PrefetchWindow.fixed(0));
+  }
+
+  @Test
+  public void testGrowsWhenConsumerWaits() {
+    PrefetchWindow window = PrefetchWindow.adaptive(4, 2, 20, null);
+    consumeRound(window, true, 0);
+    assertThat(window.getSize()).isEqualTo(8);
+    consumeRound(window, true, 0);
+    assertThat(window.getSize()).isEqualTo(16);
+    consumeRound(window, true, 0);
+    assertThat(window.getSize()).isEqualTo(20);
+    consumeRound(window, true, 0);
+    assertThat(window.getSize()).isEqualTo(20);
+  }
+
+  @Test
+  public void testShrinksWhenConsumerIsSlow() {
+    PrefetchWindow window = PrefetchWindow.adaptive(16, 10, 64, null);
+    // The consumer never drains the buffer below half of the window.
+    consumeRound(window, false, 8);
+    assertThat(window.getSize()).isEqualTo(12);
+    consumeRound(window, false, 8);
+    assertThat(window.getSize()).isEqualTo(10);
+    consumeRound(window, false, 8);
+    assertThat(window.getSize()).isEqualTo(10);
+  }
+
+  @Test
+  public void testKeepsSizeWhenBalanced() {
+    PrefetchWindow window = PrefetchWindow.adaptive(8, 2, 64, null);
+    consumeRound(window, false, 1);
+    assertThat(window.getSize()).isEqualTo(8);
+  }
+
+  @Test
+  public void testResizesOnlyAfterFullRound() {
+    PrefetchWindow window = PrefetchWindow.adaptive(4, 2, 64, null);
+    window.onMessageConsumed(true, 0);
+    window.onMessageConsumed(false, 0);
+    window.onMessageConsumed(false, 0);
+    assertThat(window.getSize()).isEqualTo(4);
+    window.onMessageConsumed(false, 0);
+    assertThat(window.getSize()).isEqualTo(8);
+  }
+}
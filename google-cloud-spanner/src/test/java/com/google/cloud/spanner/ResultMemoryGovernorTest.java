@@ -0,0 +1,96 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.cloud.spanner.MetricRegistryTestUtils.FakeMetricRegistry;
+import com.google.cloud.spanner.MetricRegistryTestUtils.PointWithFunction;
+import io.opencensus.metrics.LabelValue;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ResultMemoryGovernorTest {
+
+  @Test
+  public void testCreateRequiresPositiveLimit() {
+    assertThrows(IllegalArgumentException.class, () -> ResultMemoryGovernor.create(0L));
+  }
+
+  @Test
+  public void testReservationsAreAddedUp() {
+    ResultMemoryGovernor governor = ResultMemoryGovernor.create(100L);
+    ResultMemoryGovernor.Reservation r1 = governor.newReservation();
+    ResultMemoryGovernor.Reservation r2 = governor.newReservation();
+    r1.add(40L);
+    r2.add(50L);
+    assertThat(governor.getBufferedBytes()).isEqualTo(90L);
+    assertThat(governor.isExhausted()).isFalse();
+
+    r2.add(10L);
+    assertThat(governor.getBufferedBytes()).isEqualTo(100L);
+    assertThat(governor.isExhausted()).isTrue();
+
+    r1.remove(30L);
+    assertThat(r1.getBytes()).isEqualTo(10L);
+    assertThat(governor.getBufferedBytes()).isEqualTo(70L);
+    assertThat(governor.isExhausted()).isFalse();
+  }
+
+  @Test
+  public void testCloseReleasesAllBytes() {
+    ResultMemoryGovernor governor = ResultMemoryGovernor.create(100L);
+    ResultMemoryGovernor.Reservation reservation = governor.newReservation();
+    reservation.add(40L);
+    reservation.close();
+    assertThat(governor.getBufferedBytes()).isEqualTo(0L);
+
+    // Closing twice and using a closed reservation have no effect.
+    reservation.close();
+    reservation.add(20L);
+    reservation.remove(10L);
+    assertThat(reservation.getBytes()).isEqualTo(0L);
+    assertThat(governor.getBufferedBytes()).isEqualTo(0L);
+  }
+
+  @Test
+  public void testMetrics() {
+    FakeMetricRegistry metricRegistry = new FakeMetricRegistry();
+    ResultMemoryGovernor governor = ResultMemoryGovernor.create(100L);
+    governor.initMetricsCollection(
+        metricRegistry,
+        Arrays.asList(
+            LabelValue.create("client"),
+            LabelValue.create("database"),
+            LabelValue.create("instance"),
+            LabelValue.create("1.0.0")));
+    governor.newReservation().add(25L);
+
+    List<PointWithFunction> points =
+        metricRegistry.pollRecord().getMetrics().get(MetricRegistryConstants.BUFFERED_RESULT_BYTES);
+    assertThat(points).hasSize(2);
+    assertThat(points.get(0).value()).isEqualTo(25L);
+    assertThat(points.get(0).keys())
+        .isEqualTo(MetricRegistryConstants.SPANNER_LABEL_KEYS_WITH_TYPE);
+    assertThat(points.get(1).value()).isEqualTo(100L);
+  }
+}
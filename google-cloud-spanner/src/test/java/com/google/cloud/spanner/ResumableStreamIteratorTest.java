@@ -133,8 +133,12 @@ public class ResumableStreamIteratorTest {
   }
 
   private void initWithLimit(int maxBufferSize) {
+    initWithLimits(maxBufferSize, Long.MAX_VALUE);
+  }
+
+  private void initWithLimits(int maxBufferSize, long maxBufferBytes) {
     resumableStreamIterator =
-        new AbstractResultSet.ResumableStreamIterator(maxBufferSize, "", null) {
+        new AbstractResultSet.ResumableStreamIterator(maxBufferSize, maxBufferBytes, "", null) {
           @Override
           AbstractResultSet.CloseableIterator<PartialResultSet> startStream(
               @Nullable ByteString resumeToken) {
@@ -399,6 +403,128 @@ public class ResumableStreamIteratorTest {
     assertThat(consume(resumableStreamIterator)).containsExactly("a", "b", "c", "d").inOrder();
   }
 
+  @Test
+  public void byteLimitMissingTokensUnsafeToRetry() {
+    // Each chunk without a resume token is smaller than the limit, but two of them are not.
+    initWithLimits(Integer.MAX_VALUE, resultSet(null, "b").getSerializedSize() + 1);
+
+    ResultSetStream s1 = Mockito.mock(ResultSetStream.class);
+    Mockito.when(starter.startStream(null)).thenReturn(new ResultSetIterator(s1));
+    Mockito.when(s1.next())
+        .thenReturn(resultSet(ByteString.copyFromUtf8("r1"), "a"))
+        .thenReturn(resultSet(null, "b"))
+        .thenReturn(resultSet(null, "c"))
+        .thenThrow(new RetryableException(ErrorCode.UNAVAILABLE, "failed by test"));
+
+    assertThat(consumeAtMost(3, resumableStreamIterator)).containsExactly("a", "b", "c").inOrder();
+    assertThat(resumableStreamIterator.getBufferedBytes()).isEqualTo(0L);
+    SpannerException e = assertThrows(SpannerException.class, () -> resumableStreamIterator.next());
+    assertThat(e.getErrorCode()).isEqualTo(ErrorCode.UNAVAILABLE);
+  }
+
+  @Test
+  public void byteLimitSingleChunkExceedsLimit() {
+    initWithLimits(Integer.MAX_VALUE, 8L);
+
+    ResultSetStream s1 = Mockito.mock(ResultSetStream.class);
+    Mockito.when(starter.startStream(null)).thenReturn(new ResultSetIterator(s1));
+    Mockito.when(s1.next())
+        .thenReturn(resultSet(ByteString.copyFromUtf8("r1"), "a"))
+        .thenReturn(resultSet(null, "a chunk that is larger than the limit"))
+        .thenThrow(new RetryableException(ErrorCode.UNAVAILABLE, "failed by test"));
+
+    assertThat(consumeAtMost(2, resumableStreamIterator))
+        .containsExactly("a", "a chunk that is larger than the limit")
+        .inOrder();
+    SpannerException e = assertThrows(SpannerException.class, () -> resumableStreamIterator.next());
+    assertThat(e.getErrorCode()).isEqualTo(ErrorCode.UNAVAILABLE);
+  }
+
+  @Test
+  public void cancelCancelsCurrentStream() {
+    ResultSetStream s1 = Mockito.mock(ResultSetStream.class);
+    List<String> cancelMessages = new ArrayList<>();
+    Mockito.when(starter.startStream(null))
+        .thenReturn(
+            new ResultSetIterator(s1) {
+              @Override
+              public void cancel(@Nullable String message) {
+                cancelMessages.add(message);
+              }
+            });
+    Mockito.when(s1.next())
+        .thenReturn(resultSet(ByteString.copyFromUtf8("r1"), "a"))
+        .thenThrow(new NonRetryableException(ErrorCode.CANCELLED, "cancelled by test"));
+
+    assertThat(resumableStreamIterator.next().getValues(0).getStringValue()).isEqualTo("a");
+    resumableStreamIterator.cancel("test");
+    assertThat(cancelMessages).containsExactly("test");
+    SpannerException e = assertThrows(SpannerException.class, () -> resumableStreamIterator.next());
+    assertThat(e.getErrorCode()).isEqualTo(ErrorCode.CANCELLED);
+  }
+
+  @Test
+  public void cancelBeforeStreamIsStarted() {
+    resumableStreamIterator.cancel("test");
+    SpannerException e =
+        assertThrows(SpannerException.class, () -> resumableStreamIterator.hasNext());
+    assertThat(e.getErrorCode()).isEqualTo(ErrorCode.CANCELLED);
+    Mockito.verifyZeroInteractions(starter);
+  }
+
+  @Test
+  public void byteLimitRestartWithinLimit() {
+    initWithLimits(Integer.MAX_VALUE, 1024L);
+
+    ResultSetStream s1 = Mockito.mock(ResultSetStream.class);
+    Mockito.when(starter.startStream(null)).thenReturn(new ResultSetIterator(s1));
+    Mockito.when(s1.next())
+        .thenReturn(resultSet(ByteString.copyFromUtf8("r1"), "a"))
+        .thenReturn(resultSet(null, "XXXXXX"))
+        .thenReturn(resultSet(null, "XXXXXX"))
+        .thenThrow(new RetryableException(ErrorCode.UNAVAILABLE, "failed by test"));
+
+    ResultSetStream s2 = Mockito.mock(ResultSetStream.class);
+    Mockito.when(starter.startStream(ByteString.copyFromUtf8("r1")))
+        .thenReturn(new ResultSetIterator(s2));
+    Mockito.when(s2.next())
+        .thenReturn(resultSet(null, "b"))
+        .thenReturn(resultSet(ByteString.copyFromUtf8("r2"), "c"))
+        .thenReturn(null);
+
+    assertThat(consume(resumableStreamIterator)).containsExactly("a", "b", "c").inOrder();
+    assertThat(resumableStreamIterator.getBufferedBytes()).isEqualTo(0L);
+  }
+
+  @Test
+  public void bufferedChunksAreRecordedInGovernor() {
+    ResultMemoryGovernor governor = ResultMemoryGovernor.create(1024L);
+    resumableStreamIterator =
+        new AbstractResultSet.ResumableStreamIterator(
+            Integer.MAX_VALUE, Long.MAX_VALUE, governor, "", null) {
+          @Override
+          AbstractResultSet.CloseableIterator<PartialResultSet> startStream(
+              @Nullable ByteString resumeToken) {
+            return starter.startStream(resumeToken);
+          }
+        };
+    ResultSetStream s1 = Mockito.mock(ResultSetStream.class);
+    Mockito.when(starter.startStream(null)).thenReturn(new ResultSetIterator(s1));
+    Mockito.when(s1.next())
+        .thenReturn(resultSet(null, "a"))
+        .thenReturn(resultSet(null, "b"))
+        .thenReturn(resultSet(ByteString.copyFromUtf8("r1"), "c"))
+        .thenReturn(null);
+
+    // Consuming the first chunk buffers all chunks up to the resume token.
+    assertThat(consumeAtMost(1, resumableStreamIterator)).containsExactly("a");
+    assertThat(governor.getBufferedBytes()).isEqualTo(resumableStreamIterator.getBufferedBytes());
+    assertThat(governor.getBufferedBytes()).isGreaterThan(0L);
+
+    resumableStreamIterator.close("closed");
+    assertThat(governor.getBufferedBytes()).isEqualTo(0L);
+  }
+
   static PartialResultSet resultSet(@Nullable ByteString resumeToken, String... data) {
     PartialResultSet.Builder builder = PartialResultSet.newBuilder();
     if (resumeToken != null) {
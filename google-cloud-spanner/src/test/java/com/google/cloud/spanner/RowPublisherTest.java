@@ -0,0 +1,284 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.api.gax.core.ExecutorProvider;
+import com.google.cloud.spanner.RowPublisher.Subscriber;
+import com.google.cloud.spanner.RowPublisher.Subscription;
+import com.google.common.collect.Range;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class RowPublisherTest {
+  private static final Type TYPE = Type.struct(Type.StructField.of("ID", Type.int64()));
+
+  private ExecutorProvider executorProvider;
+  private ExecutorService executor;
+
+  @Before
+  public void setup() {
+    executorProvider = SpannerOptions.createAsyncExecutorProvider(1, 1L, TimeUnit.SECONDS);
+    executor = Executors.newSingleThreadExecutor();
+  }
+
+  @After
+  public void teardown() {
+    executor.shutdown();
+  }
+
+  private AsyncResultSet createResultSet(int rowCount) {
+    List<Struct> rows = new ArrayList<>(rowCount);
+    for (int i = 0; i < rowCount; i++) {
+      rows.add(Struct.newBuilder().set("ID").to(i).build());
+    }
+    return ResultSets.toAsyncResultSet(
+        ResultSets.forRows(TYPE, rows), executorProvider, Options.bufferRows(4));
+  }
+
+  /**
+   * Subscriber that requests {@code initialRequest} elements when subscribed, and {@code
+   * requestPerElement} elements for each element it receives.
+   */
+  private static class TestSubscriber<T> implements Subscriber<T> {
+    private final long initialRequest;
+    private final long requestPerElement;
+    private final List<T> items = new ArrayList<>();
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    private volatile Subscription subscription;
+    private volatile Throwable error;
+    private volatile Thread errorThread;
+    private volatile boolean completed;
+    private volatile boolean signalAfterTermination;
+
+    TestSubscriber(long initialRequest, long requestPerElement) {
+      this.initialRequest = initialRequest;
+      this.requestPerElement = requestPerElement;
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+      this.subscription = subscription;
+      if (initialRequest != 0L) {
+        subscription.request(initialRequest);
+      }
+    }
+
+    @Override
+    public void onNext(T item) {
+      if (terminated.getCount() == 0L) {
+        signalAfterTermination = true;
+      }
+      synchronized (items) {
+        items.add(item);
+      }
+      if (requestPerElement > 0L) {
+        subscription.request(requestPerElement);
+      }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      if (terminated.getCount() == 0L) {
+        signalAfterTermination = true;
+      }
+      error = throwable;
+      errorThread = Thread.currentThread();
+      terminated.countDown();
+    }
+
+    @Override
+    public void onComplete() {
+      if (terminated.getCount() == 0L) {
+        signalAfterTermination = true;
+      }
+      completed = true;
+      terminated.countDown();
+    }
+
+    List<T> getItems() {
+      synchronized (items) {
+        return new ArrayList<>(items);
+      }
+    }
+
+    void awaitTermination() throws InterruptedException {
+      assertTrue(terminated.await(10L, TimeUnit.SECONDS));
+    }
+  }
+
+  @Test
+  public void testUnboundedRequest() throws InterruptedException {
+    TestSubscriber<Struct> subscriber = new TestSubscriber<>(Long.MAX_VALUE, 0L);
+    RowPublisher.forRows(createResultSet(100), executor).subscribe(subscriber);
+    subscriber.awaitTermination();
+
+    assertThat(subscriber.completed).isTrue();
+    assertThat(subscriber.error).isNull();
+    assertThat(subscriber.getItems()).hasSize(100);
+    for (int i = 0; i < 100; i++) {
+      assertThat(subscriber.getItems().get(i).getLong(0)).isEqualTo(i);
+    }
+  }
+
+  @Test
+  public void testRequestOneAtATime() throws InterruptedException {
+    // Requesting from within onNext resumes the result set while the callback is running.
+    TestSubscriber<Struct> subscriber = new TestSubscriber<>(1L, 1L);
+    RowPublisher.forRows(createResultSet(50), executor).subscribe(subscriber);
+    subscriber.awaitTermination();
+
+    assertThat(subscriber.completed).isTrue();
+    assertThat(subscriber.getItems()).hasSize(50);
+    assertThat(subscriber.signalAfterTermination).isFalse();
+  }
+
+  @Test
+  public void testDeliversNoMoreThanRequested() throws InterruptedException {
+    TestSubscriber<Struct> subscriber = new TestSubscriber<>(3L, 0L);
+    RowPublisher.forRows(createResultSet(20), executor).subscribe(subscriber);
+    // Give the publisher time to (incorrectly) deliver more rows.
+    Thread.sleep(100L);
+    assertThat(subscriber.getItems()).hasSize(3);
+    assertThat(subscriber.completed).isFalse();
+
+    subscriber.subscription.request(Long.MAX_VALUE);
+    subscriber.awaitTermination();
+    assertThat(subscriber.completed).isTrue();
+    assertThat(subscriber.getItems()).hasSize(20);
+  }
+
+  @Test
+  public void testCompletesWhenAllRowsHaveBeenRequested() throws InterruptedException {
+    // The end of the result set is signalled without any demand after the last row.
+    TestSubscriber<Struct> subscriber = new TestSubscriber<>(5L, 0L);
+    RowPublisher.forRows(createResultSet(5), executor).subscribe(subscriber);
+    subscriber.awaitTermination();
+
+    assertThat(subscriber.completed).isTrue();
+    assertThat(subscriber.getItems()).hasSize(5);
+  }
+
+  @Test
+  public void testErrorAfterLastRequestedRow() throws InterruptedException {
+    ResultSet delegate = mock(ResultSet.class);
+    when(delegate.next())
+        .thenReturn(true, true)
+        .thenThrow(
+            SpannerExceptionFactory.newSpannerException(ErrorCode.INVALID_ARGUMENT, "invalid"));
+    when(delegate.getCurrentRowAsStruct()).thenReturn(Struct.newBuilder().set("ID").to(1L).build());
+    AsyncResultSet resultSet = ResultSets.toAsyncResultSet(delegate, executorProvider);
+    TestSubscriber<Struct> subscriber = new TestSubscriber<>(2L, 0L);
+    RowPublisher.forRows(resultSet, executor).subscribe(subscriber);
+    subscriber.awaitTermination();
+
+    assertThat(subscriber.getItems()).hasSize(2);
+    assertThat(subscriber.completed).isFalse();
+    assertThat(subscriber.error).isInstanceOf(SpannerException.class);
+    assertThat(((SpannerException) subscriber.error).getErrorCode())
+        .isEqualTo(ErrorCode.INVALID_ARGUMENT);
+  }
+
+  @Test
+  public void testBatches() throws InterruptedException {
+    TestSubscriber<List<Struct>> subscriber = new TestSubscriber<>(1L, 1L);
+    RowPublisher.forBatches(createResultSet(25), executor, 3).subscribe(subscriber);
+    subscriber.awaitTermination();
+
+    assertThat(subscriber.completed).isTrue();
+    int expected = 0;
+    for (List<Struct> batch : subscriber.getItems()) {
+      assertThat(batch.size()).isIn(Range.closed(1, 3));
+      for (Struct row : batch) {
+        assertThat(row.getLong(0)).isEqualTo(expected++);
+      }
+    }
+    assertThat(expected).isEqualTo(25);
+  }
+
+  @Test
+  public void testCancel() throws InterruptedException {
+    TestSubscriber<Struct> subscriber = new TestSubscriber<>(2L, 0L);
+    RowPublisher.forRows(createResultSet(20), executor).subscribe(subscriber);
+    Thread.sleep(50L);
+    subscriber.subscription.cancel();
+    subscriber.subscription.request(10L);
+    Thread.sleep(100L);
+
+    assertThat(subscriber.getItems()).hasSize(2);
+    assertThat(subscriber.completed).isFalse();
+    assertThat(subscriber.error).isNull();
+  }
+
+  @Test
+  public void testError() throws InterruptedException {
+    ResultSet delegate = mock(ResultSet.class);
+    when(delegate.next())
+        .thenThrow(
+            SpannerExceptionFactory.newSpannerException(ErrorCode.INVALID_ARGUMENT, "invalid"));
+    AsyncResultSet resultSet = ResultSets.toAsyncResultSet(delegate, executorProvider);
+    TestSubscriber<Struct> subscriber = new TestSubscriber<>(Long.MAX_VALUE, 0L);
+    RowPublisher.forRows(resultSet, executor).subscribe(subscriber);
+    subscriber.awaitTermination();
+
+    assertThat(subscriber.completed).isFalse();
+    assertThat(subscriber.error).isInstanceOf(SpannerException.class);
+    assertThat(((SpannerException) subscriber.error).getErrorCode())
+        .isEqualTo(ErrorCode.INVALID_ARGUMENT);
+  }
+
+  @Test
+  public void testInvalidRequest() throws InterruptedException {
+    TestSubscriber<Struct> subscriber = new TestSubscriber<>(0L, 0L);
+    RowPublisher.forRows(createResultSet(10), executor).subscribe(subscriber);
+    subscriber.subscription.request(0L);
+    subscriber.awaitTermination();
+
+    assertThat(subscriber.error).isInstanceOf(IllegalArgumentException.class);
+    // The error is signalled on the executor and not on the thread that made the request.
+    assertThat(subscriber.errorThread).isNotSameInstanceAs(Thread.currentThread());
+    assertThat(subscriber.getItems()).isEmpty();
+  }
+
+  @Test
+  public void testSecondSubscriberFails() throws InterruptedException {
+    RowPublisher<Struct> publisher = RowPublisher.forRows(createResultSet(10), executor);
+    TestSubscriber<Struct> first = new TestSubscriber<>(Long.MAX_VALUE, 0L);
+    TestSubscriber<Struct> second = new TestSubscriber<>(Long.MAX_VALUE, 0L);
+    publisher.subscribe(first);
+    publisher.subscribe(second);
+    first.awaitTermination();
+    second.awaitTermination();
+
+    assertThat(first.getItems()).hasSize(10);
+    assertThat(second.error).isInstanceOf(IllegalStateException.class);
+  }
+}
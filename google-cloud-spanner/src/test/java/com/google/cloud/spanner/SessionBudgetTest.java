@@ -0,0 +1,231 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class SessionBudgetTest {
+  private static final DatabaseId DB1 = DatabaseId.of("p", "i", "d1");
+  private static final DatabaseId DB2 = DatabaseId.of("p", "i", "d2");
+
+  /** Member that keeps track of its idle sessions and releases budget when it sheds one. */
+  private static final class FakeMember implements SessionBudget.Member {
+    private SessionBudget.Allocation allocation;
+    private int idle;
+    private int notified;
+
+    @Override
+    public int getNumberOfIdleSessions() {
+      return idle;
+    }
+
+    @Override
+    public boolean shedIdleSession() {
+      if (idle == 0) {
+        return false;
+      }
+      idle--;
+      allocation.release(1);
+      return true;
+    }
+
+    @Override
+    public void onBudgetAvailable() {
+      notified++;
+    }
+  }
+
+  private final List<Runnable> tasks = new ArrayList<>();
+  private SessionBudget budget;
+
+  @Before
+  public void setUp() {
+    budget =
+        new SessionBudget(
+            SessionBudgetOptions.newBuilder().setMaxTotalSessions(10).build(), tasks::add);
+  }
+
+  private FakeMember register(int min, int max) {
+    FakeMember member = new FakeMember();
+    member.allocation = budget.register(member, min, max);
+    return member;
+  }
+
+  private void runTasks() {
+    while (!tasks.isEmpty()) {
+      tasks.remove(0).run();
+    }
+  }
+
+  @Test
+  public void testAcquireAndRelease() {
+    FakeMember member = register(0, 20);
+    assertThat(member.allocation.acquire(4)).isEqualTo(4);
+    assertThat(member.allocation.acquire(10)).isEqualTo(6);
+    assertThat(budget.getTotalAllocated()).isEqualTo(10);
+    member.allocation.release(3);
+    assertThat(member.allocation.getAllocated()).isEqualTo(7);
+    assertThat(budget.getTotalAllocated()).isEqualTo(7);
+  }
+
+  @Test
+  public void testAcquireIsLimitedByMaxSessionsOfMember() {
+    FakeMember member = register(0, 3);
+    assertThat(member.allocation.acquire(5)).isEqualTo(3);
+    // The member is at its own maximum, so there is no demand for the budget.
+    assertThat(tasks).isEmpty();
+  }
+
+  @Test
+  public void testMinSessionsAreReserved() {
+    FakeMember first = register(0, 10);
+    FakeMember second = register(4, 10);
+    assertThat(first.allocation.acquire(10)).isEqualTo(6);
+    assertThat(second.allocation.acquire(10)).isEqualTo(4);
+    assertThat(budget.getTotalAllocated()).isEqualTo(10);
+  }
+
+  @Test
+  public void testIdleSessionsAreShedForStarvedMember() {
+    FakeMember first = register(2, 10);
+    FakeMember second = register(0, 10);
+    assertThat(first.allocation.acquire(10)).isEqualTo(10);
+    first.idle = 5;
+    assertThat(second.allocation.acquire(3)).isEqualTo(0);
+    assertThat(tasks).hasSize(1);
+
+    runTasks();
+    assertThat(first.idle).isEqualTo(2);
+    assertThat(first.allocation.getAllocated()).isEqualTo(7);
+    assertThat(first.allocation.getNumSessionsShed()).isEqualTo(3);
+    assertThat(second.notified).isEqualTo(1);
+    assertThat(second.allocation.acquire(3)).isEqualTo(3);
+    assertThat(budget.getTotalAllocated()).isEqualTo(10);
+  }
+
+  @Test
+  public void testSessionsBelowMinAreNotShed() {
+    FakeMember first = register(10, 10);
+    FakeMember second = register(0, 10);
+    assertThat(first.allocation.acquire(10)).isEqualTo(10);
+    first.idle = 10;
+    assertThat(second.allocation.acquire(1)).isEqualTo(0);
+
+    runTasks();
+    assertThat(first.idle).isEqualTo(10);
+    assertThat(second.notified).isEqualTo(0);
+  }
+
+  @Test
+  public void testStarvedMemberIsNotifiedWhenBudgetIsReleased() {
+    FakeMember first = register(5, 10);
+    FakeMember second = register(0, 10);
+    assertThat(first.allocation.acquire(10)).isEqualTo(10);
+    // All sessions of the first member are in use, so nothing can be shed.
+    assertThat(second.allocation.acquire(1)).isEqualTo(0);
+    runTasks();
+    assertThat(second.notified).isEqualTo(0);
+
+    first.allocation.release(1);
+    runTasks();
+    assertThat(second.notified).isEqualTo(1);
+    assertThat(second.allocation.acquire(1)).isEqualTo(1);
+  }
+
+  @Test
+  public void testCloseReleasesBudget() {
+    FakeMember first = register(2, 10);
+    FakeMember second = register(0, 10);
+    assertThat(first.allocation.acquire(10)).isEqualTo(10);
+    assertThat(second.allocation.acquire(1)).isEqualTo(0);
+
+    first.allocation.close();
+    assertThat(budget.getTotalAllocated()).isEqualTo(0);
+    runTasks();
+    assertThat(second.notified).isEqualTo(1);
+    assertThat(second.allocation.acquire(10)).isEqualTo(10);
+  }
+
+  @Test
+  public void testOptions() {
+    SessionPoolOptions poolOptions =
+        SessionPoolOptions.newBuilder().setMinSessions(5).setMaxSessions(50).build();
+    SessionBudgetOptions options =
+        SessionBudgetOptions.newBuilder()
+            .setMaxTotalSessions(100)
+            .setDatabaseSessionLimits(DB1, 10, 20)
+            .build();
+    assertThat(options.getMaxTotalSessions()).isEqualTo(100);
+    assertThat(options.getMinSessions(DB1, poolOptions)).isEqualTo(10);
+    assertThat(options.getMaxSessions(DB1, poolOptions)).isEqualTo(20);
+    assertThat(options.getMinSessions(DB2, poolOptions)).isEqualTo(5);
+    assertThat(options.getMaxSessions(DB2, poolOptions)).isEqualTo(50);
+    assertThat(options.toBuilder().build()).isEqualTo(options);
+    assertThat(options.toBuilder().build().hashCode()).isEqualTo(options.hashCode());
+    assertThat(options.toBuilder().setMaxTotalSessions(200).build()).isNotEqualTo(options);
+  }
+
+  @Test
+  public void testInvalidOptions() {
+    try {
+      SessionBudgetOptions.newBuilder().build();
+      fail("missing expected exception");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    try {
+      SessionBudgetOptions.newBuilder().setMaxTotalSessions(0);
+      fail("missing expected exception");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      SessionBudgetOptions.newBuilder().setDatabaseSessionLimits(DB1, 20, 10);
+      fail("missing expected exception");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      // The minimums of the databases together exceed the total number of sessions.
+      SessionBudgetOptions.newBuilder()
+          .setMaxTotalSessions(10)
+          .setDatabaseSessionLimits(DB1, 6, 10)
+          .setDatabaseSessionLimits(DB2, 5, 10)
+          .build();
+      fail("missing expected exception");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    assertThat(
+            SessionBudgetOptions.newBuilder()
+                .setMaxTotalSessions(10)
+                .setDatabaseSessionLimits(DB1, 5, 10)
+                .setDatabaseSessionLimits(DB2, 5, 10)
+                .build()
+                .getMinSessions(DB2, SessionPoolOptions.newBuilder().build()))
+        .isEqualTo(5);
+  }
+}
@@ -386,4 +386,53 @@ public class SessionClientTest {
     }
     assertThat(returnedSessionCount.get()).isEqualTo(numSessions);
   }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void batchCreateSessionsSplitsLargeBatchesPerChannel() {
+    DatabaseId db = DatabaseId.of(dbName);
+    final String sessionName = dbName + "/sessions/s%d";
+    final List<Integer> requestedSessionCounts = Collections.synchronizedList(new ArrayList<>());
+    final Set<Long> usedChannelHints = Collections.synchronizedSet(new HashSet<>());
+    when(rpc.batchCreateSessions(
+            Mockito.eq(dbName), Mockito.anyInt(), Mockito.anyMap(), Mockito.anyMap()))
+        .then(
+            invocation -> {
+              Map<Option, Object> options = invocation.getArgumentAt(3, Map.class);
+              usedChannelHints.add((Long) options.get(Option.CHANNEL_HINT));
+              int sessionCount = invocation.getArgumentAt(1, Integer.class);
+              requestedSessionCounts.add(sessionCount);
+              List<com.google.spanner.v1.Session> res = new ArrayList<>();
+              for (int i = 1; i <= sessionCount; i++) {
+                res.add(
+                    com.google.spanner.v1.Session.newBuilder()
+                        .setName(String.format(sessionName, i))
+                        .build());
+              }
+              return res;
+            });
+
+    final AtomicInteger returnedSessionCount = new AtomicInteger();
+    SessionConsumer consumer =
+        new SessionConsumer() {
+          @Override
+          public void onSessionReady(SessionImpl session) {
+            returnedSessionCount.incrementAndGet();
+          }
+
+          @Override
+          public void onSessionCreateFailure(Throwable t, int createFailureForSessionCount) {}
+        };
+    // Create 2.5 times the max number of sessions per batch for each channel.
+    final int numSessions = numChannels * SessionClient.MAX_SESSIONS_PER_BATCH * 5 / 2;
+    try (SessionClient client = new SessionClient(spanner, db, new TestExecutorFactory())) {
+      client.asyncBatchCreateSessions(numSessions, true, consumer);
+    }
+    assertThat(returnedSessionCount.get()).isEqualTo(numSessions);
+    assertThat(requestedSessionCounts).hasSize(numChannels * 3);
+    for (int count : requestedSessionCounts) {
+      assertThat(count).isAtMost(SessionClient.MAX_SESSIONS_PER_BATCH);
+    }
+    assertThat(usedChannelHints).hasSize(numChannels);
+  }
 }
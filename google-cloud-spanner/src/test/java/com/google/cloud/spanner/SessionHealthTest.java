@@ -0,0 +1,70 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.cloud.spanner.SessionHealth.RpcType;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class SessionHealthTest {
+
+  @Test
+  public void testLatency() {
+    SessionHealth health = new SessionHealth();
+    assertThat(health.getNumRpcs()).isEqualTo(0L);
+    health.recordLatency(RpcType.COMMIT, 1000L);
+    assertThat(health.getLatencyMicros(RpcType.COMMIT)).isEqualTo(1000L);
+    health.recordLatency(RpcType.COMMIT, 2000L);
+    assertThat(health.getLatencyMicros(RpcType.COMMIT)).isEqualTo(1100L);
+    assertThat(health.getNumRpcs()).isEqualTo(2L);
+    assertThat(health.getErrorRate()).isEqualTo(0d);
+  }
+
+  @Test
+  public void testLatencyPerRpcType() {
+    SessionHealth health = new SessionHealth();
+    health.recordLatency(RpcType.COMMIT, 50_000L);
+    health.recordLatency(RpcType.KEEP_ALIVE, 1000L);
+    health.recordLatency(RpcType.KEEP_ALIVE, 2000L);
+    assertThat(health.getLatencyMicros(RpcType.COMMIT)).isEqualTo(50_000L);
+    assertThat(health.getLatencyMicros(RpcType.KEEP_ALIVE)).isEqualTo(1100L);
+    assertThat(health.getLatencyMicros(RpcType.BEGIN_TRANSACTION)).isEqualTo(0L);
+    assertThat(health.getNumSuccessfulRpcs(RpcType.COMMIT)).isEqualTo(1L);
+    assertThat(health.getNumSuccessfulRpcs(RpcType.KEEP_ALIVE)).isEqualTo(2L);
+    assertThat(health.getNumRpcs()).isEqualTo(3L);
+  }
+
+  @Test
+  public void testErrorRate() {
+    SessionHealth health = new SessionHealth();
+    health.recordFailure(
+        SpannerExceptionFactory.newSpannerException(ErrorCode.UNAVAILABLE, "unavailable"));
+    assertThat(health.getErrorRate()).isWithin(0.0001d).of(0.1d);
+    // Errors that are not caused by the session do not affect the score.
+    health.recordFailure(
+        SpannerExceptionFactory.newSpannerException(ErrorCode.INVALID_ARGUMENT, "invalid"));
+    assertThat(health.getNumRpcs()).isEqualTo(1L);
+    health.recordLatency(RpcType.KEEP_ALIVE, 1000L);
+    assertThat(health.getErrorRate()).isWithin(0.0001d).of(0.09d);
+    // The latency is not affected by failed RPCs.
+    assertThat(health.getLatencyMicros(RpcType.KEEP_ALIVE)).isEqualTo(1000L);
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import com.google.api.gax.rpc.TransportChannelProvider;
+import com.google.cloud.NoCredentials;
+import com.google.cloud.spanner.SessionPool.PooledSessionFuture;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for lock contention in the session pool. Each benchmark thread checks out a session
+ * and immediately releases it again without executing any RPCs, so the benchmarks measure the
+ * overhead of the pool itself. The benchmarks are bound to the Maven profile `benchmark` and can be
+ * executed like this: <code>
+ * mvn clean test -DskipTests -Pbenchmark -Dbenchmark.name=SessionPoolContentionBenchmark
+ * </code>
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(value = 1, warmups = 0)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SessionPoolContentionBenchmark {
+  private static final String TEST_PROJECT = "my-project";
+  private static final String TEST_INSTANCE = "my-instance";
+  private static final String TEST_DATABASE = "my-database";
+
+  @State(Scope.Benchmark)
+  public static class BenchmarkState {
+    private StandardBenchmarkMockServer mockServer;
+    private Spanner spanner;
+    private SessionPool pool;
+
+    /**
+     * The number of sessions in the pool. A value that is lower than the number of benchmark
+     * threads means that threads will regularly have to wait for a session.
+     */
+    @Param({"32", "400"})
+    int numSessions;
+
+    @Param({"false", "true"})
+    boolean lockFreeCheckout;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+      mockServer = new StandardBenchmarkMockServer();
+      TransportChannelProvider channelProvider = mockServer.start();
+
+      SpannerOptions options =
+          SpannerOptions.newBuilder()
+              .setProjectId(TEST_PROJECT)
+              .setChannelProvider(channelProvider)
+              .setCredentials(NoCredentials.getInstance())
+              .setSessionPoolOption(
+                  SessionPoolOptions.newBuilder()
+                      .setMinSessions(numSessions)
+                      .setMaxSessions(numSessions)
+                      .setLockFreeCheckout(lockFreeCheckout)
+                      .build())
+              .build();
+
+      spanner = options.getService();
+      pool =
+          ((DatabaseClientImpl)
+                  spanner.getDatabaseClient(
+                      DatabaseId.of(TEST_PROJECT, TEST_INSTANCE, TEST_DATABASE)))
+              .pool;
+      // Wait until the session pool has initialized.
+      while (pool.getNumberOfSessionsInPool() < numSessions) {
+        Thread.sleep(1L);
+      }
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws Exception {
+      spanner.close();
+      mockServer.shutdown();
+    }
+  }
+
+  /** Measures the throughput of checking out and releasing a session from 64 threads. */
+  @Benchmark
+  @Threads(64)
+  public void checkoutAndRelease64Threads(BenchmarkState state) {
+    checkoutAndRelease(state);
+  }
+
+  /** Measures the throughput of checking out and releasing a session from 8 threads. */
+  @Benchmark
+  @Threads(8)
+  public void checkoutAndRelease8Threads(BenchmarkState state) {
+    checkoutAndRelease(state);
+  }
+
+  private static void checkoutAndRelease(BenchmarkState state) {
+    PooledSessionFuture session = state.pool.getSession();
+    session.get();
+    session.close();
+  }
+}
@@ -19,10 +19,10 @@ package com.google.cloud.spanner;
 import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.doAnswer;
-import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
+import com.google.api.core.ApiFutures;
 import com.google.cloud.spanner.SessionClient.SessionConsumer;
 import com.google.cloud.spanner.SessionPool.PooledSession;
 import com.google.cloud.spanner.SessionPool.PooledSessionFuture;
@@ -34,6 +34,7 @@ import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -92,10 +93,7 @@ public class SessionPoolMaintainerTest extends BaseSessionPoolTest {
   }
 
   private SessionImpl setupMockSession(final SessionImpl session) {
-    ReadContext mockContext = mock(ReadContext.class);
-    final ResultSet mockResult = mock(ResultSet.class);
-    when(session.singleUse(any(TimestampBound.class))).thenReturn(mockContext);
-    when(mockContext.executeQuery(any(Statement.class)))
+    when(session.keepAliveAsync())
         .thenAnswer(
             invocation -> {
               Integer currentValue = pingedSessions.get(session.getName());
@@ -103,9 +101,8 @@ public class SessionPoolMaintainerTest extends BaseSessionPoolTest {
                 currentValue = 0;
               }
               pingedSessions.put(session.getName(), ++currentValue);
-              return mockResult;
+              return ApiFutures.immediateFuture(null);
             });
-    when(mockResult.next()).thenReturn(true);
     return session;
   }
 
@@ -298,4 +295,51 @@ public class SessionPoolMaintainerTest extends BaseSessionPoolTest {
     }
     assertThat(pool.totalSessions()).isEqualTo(options.getMinSessions());
   }
+
+  @Test
+  public void testSizingPolicyGrowsAndShrinksPool() throws Exception {
+    AtomicInteger target = new AtomicInteger(8);
+    options =
+        options
+            .toBuilder()
+            .setMaxSessions(10)
+            .setSizingPolicy(() -> (currentTime, numCheckouts, maxSessionsInUse) -> target.get())
+            .build();
+    SessionPool pool = createPool();
+    runMaintenanceLoop(clock, pool, 1);
+    waitForTotalSessions(pool, 8);
+    assertThat(pool.totalSessions()).isEqualTo(8);
+
+    // The pool should never grow beyond max sessions.
+    target.set(100);
+    runMaintenanceLoop(clock, pool, 1);
+    waitForTotalSessions(pool, 10);
+    assertThat(pool.totalSessions()).isEqualTo(10);
+
+    // Check out some sessions. These should not be removed when the pool shrinks.
+    List<Session> checkedOut = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      PooledSessionFuture session = pool.getSession();
+      session.get();
+      checkedOut.add(session);
+    }
+    // The pool should shrink gradually.
+    target.set(0);
+    runMaintenanceLoop(clock, pool, 1);
+    assertThat(pool.totalSessions()).isEqualTo(9);
+    runMaintenanceLoop(clock, pool, 30);
+    assertThat(pool.totalSessions()).isEqualTo(3);
+    for (Session session : checkedOut) {
+      session.close();
+    }
+    runMaintenanceLoop(clock, pool, 30);
+    assertThat(pool.totalSessions()).isEqualTo(options.getMinSessions());
+  }
+
+  private static void waitForTotalSessions(SessionPool pool, int numSessions)
+      throws InterruptedException {
+    while (pool.totalSessions() < numSessions) {
+      Thread.sleep(1L);
+    }
+  }
 }
@@ -19,6 +19,7 @@ import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.fail;
 
+import com.google.cloud.spanner.Options.RpcPriority;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -27,6 +28,7 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 import org.junit.runners.Parameterized.Parameter;
 import org.junit.runners.Parameterized.Parameters;
+import org.threeten.bp.Duration;
 
 /** Unit tests for {@link com.google.cloud.spanner.SessionPoolOptions} */
 @RunWith(Parameterized.class)
@@ -117,4 +119,127 @@ public class SessionPoolOptionsTest {
   public void setNegativeMaxSessions() {
     SessionPoolOptions.newBuilder().setMaxSessions(-1);
   }
+
+  @Test
+  public void setLockFreeCheckout() {
+    assertThat(SessionPoolOptions.newBuilder().build().isLockFreeCheckout()).isFalse();
+    SessionPoolOptions options =
+        SessionPoolOptions.newBuilder()
+            .setMinSessions(minSessions)
+            .setMaxSessions(Math.max(minSessions, maxSessions))
+            .setLockFreeCheckout(true)
+            .build();
+    assertThat(options.isLockFreeCheckout()).isTrue();
+    assertThat(options.toBuilder().build()).isEqualTo(options);
+    assertThat(options.toBuilder().setLockFreeCheckout(false).build()).isNotEqualTo(options);
+  }
+
+  @Test
+  public void setChannelAwareCheckout() {
+    assertThat(SessionPoolOptions.newBuilder().build().isChannelAwareCheckout()).isFalse();
+    SessionPoolOptions options =
+        SessionPoolOptions.newBuilder().setChannelAwareCheckout(true).build();
+    assertThat(options.isChannelAwareCheckout()).isTrue();
+    assertThat(options.toBuilder().build()).isEqualTo(options);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void setChannelAwareCheckoutWithLockFreeCheckout() {
+    SessionPoolOptions.newBuilder().setChannelAwareCheckout(true).setLockFreeCheckout(true).build();
+  }
+
+  @Test
+  public void setSizingPolicy() {
+    assertThat(SessionPoolOptions.newBuilder().build().getSizingPolicy()).isNull();
+    SessionPoolSizingPolicy policy =
+        AdaptiveSessionPoolSizingPolicy.newBuilder().setHeadroom(0.5d).build();
+    SessionPoolOptions options = SessionPoolOptions.newBuilder().setSizingPolicy(policy).build();
+    assertThat(options.getSizingPolicy()).isSameInstanceAs(policy);
+    assertThat(options.toBuilder().build()).isEqualTo(options);
+    assertThat(
+            SessionPoolOptions.newBuilder()
+                .setSizingPolicy(
+                    AdaptiveSessionPoolSizingPolicy.newBuilder().setHeadroom(0.5d).build())
+                .build())
+        .isEqualTo(options);
+  }
+
+  @Test
+  public void setReservedSessions() {
+    SessionPoolOptions defaults = SessionPoolOptions.newBuilder().build();
+    for (RpcPriority priority : RpcPriority.values()) {
+      assertThat(defaults.getReservedSessions(priority)).isEqualTo(0);
+    }
+    SessionPoolOptions options =
+        SessionPoolOptions.newBuilder()
+            .setMaxSessions(10)
+            .setReservedSessions(RpcPriority.HIGH, 4)
+            .setReservedSessions(RpcPriority.MEDIUM, 2)
+            .build();
+    assertThat(options.getReservedSessions(RpcPriority.HIGH)).isEqualTo(4);
+    assertThat(options.getReservedSessions(RpcPriority.MEDIUM)).isEqualTo(2);
+    assertThat(options.getReservedSessions(RpcPriority.LOW)).isEqualTo(0);
+    assertThat(options.toBuilder().build()).isEqualTo(options);
+    assertThat(options.toBuilder().setReservedSessions(RpcPriority.HIGH, 3).build())
+        .isNotEqualTo(options);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void setReservedSessionsForLowestPriority() {
+    SessionPoolOptions.newBuilder().setReservedSessions(RpcPriority.LOW, 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void setReservedSessionsLargerThanMaxSessions() {
+    SessionPoolOptions.newBuilder()
+        .setMaxSessions(4)
+        .setReservedSessions(RpcPriority.HIGH, 2)
+        .setReservedSessions(RpcPriority.MEDIUM, 2)
+        .build();
+  }
+
+  @Test
+  public void setPriorityAgingInterval() {
+    assertThat(SessionPoolOptions.newBuilder().build().getPriorityAgingInterval())
+        .isEqualTo(Duration.ofSeconds(1L));
+    SessionPoolOptions options =
+        SessionPoolOptions.newBuilder().setPriorityAgingInterval(Duration.ofMillis(500L)).build();
+    assertThat(options.getPriorityAgingInterval()).isEqualTo(Duration.ofMillis(500L));
+    assertThat(options.toBuilder().build()).isEqualTo(options);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void setZeroPriorityAgingInterval() {
+    SessionPoolOptions.newBuilder().setPriorityAgingInterval(Duration.ZERO);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void setSubMillisecondPriorityAgingInterval() {
+    SessionPoolOptions.newBuilder().setPriorityAgingInterval(Duration.ofNanos(999_999L));
+  }
+
+  @Test
+  public void setLeakStackTraceSampleRate() {
+    assertThat(SessionPoolOptions.newBuilder().build().getLeakStackTraceSampleRate()).isEqualTo(1);
+    SessionPoolOptions options =
+        SessionPoolOptions.newBuilder().setLeakStackTraceSampleRate(100).build();
+    assertThat(options.getLeakStackTraceSampleRate()).isEqualTo(100);
+    assertThat(options.toBuilder().build()).isEqualTo(options);
+    assertThat(options.toBuilder().setLeakStackTraceSampleRate(0).build()).isNotEqualTo(options);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void setNegativeLeakStackTraceSampleRate() {
+    SessionPoolOptions.newBuilder().setLeakStackTraceSampleRate(-1);
+  }
+
+  @Test
+  public void setRetireUnhealthySessions() {
+    assertThat(SessionPoolOptions.newBuilder().build().isRetireUnhealthySessions()).isFalse();
+    SessionPoolOptions options =
+        SessionPoolOptions.newBuilder().setRetireUnhealthySessions(true).build();
+    assertThat(options.isRetireUnhealthySessions()).isTrue();
+    assertThat(options.toBuilder().build()).isEqualTo(options);
+    assertThat(options.toBuilder().setRetireUnhealthySessions(false).build()).isNotEqualTo(options);
+  }
 }
@@ -17,7 +17,6 @@
 package com.google.cloud.spanner;
 
 import static com.google.common.truth.Truth.assertThat;
-import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -59,6 +58,9 @@ public class SessionPoolStressTest extends BaseSessionPoolTest {
   @Parameter(0)
   public boolean shouldBlock;
 
+  @Parameter(1)
+  public boolean lockFreeCheckout;
+
   DatabaseId db = DatabaseId.of("projects/p/instances/i/databases/unused");
   SessionPool pool;
   SessionPoolOptions options;
@@ -77,11 +79,13 @@ public class SessionPoolStressTest extends BaseSessionPoolTest {
   int minSessionsWhenSessionClosed = Integer.MAX_VALUE;
   Exception e;
 
-  @Parameters(name = "should block = {0}")
+  @Parameters(name = "should block = {0}, lock-free checkout = {1}")
   public static Collection<Object[]> data() {
     List<Object[]> params = new ArrayList<>();
-    params.add(new Object[] {true});
-    params.add(new Object[] {false});
+    params.add(new Object[] {true, false});
+    params.add(new Object[] {false, false});
+    params.add(new Object[] {true, true});
+    params.add(new Object[] {false, true});
     return params;
   }
 
@@ -120,16 +124,12 @@ public class SessionPoolStressTest extends BaseSessionPoolTest {
   }
 
   private void setupSession(final SessionImpl session) {
-    ReadContext mockContext = mock(ReadContext.class);
-    final ResultSet mockResult = mock(ResultSet.class);
-    when(session.singleUse(any(TimestampBound.class))).thenReturn(mockContext);
-    when(mockContext.executeQuery(any(Statement.class)))
+    when(session.keepAliveAsync())
         .thenAnswer(
             invocation -> {
               resetTransaction(session);
-              return mockResult;
+              return ApiFutures.immediateFuture(null);
             });
-    when(mockResult.next()).thenReturn(true);
     doAnswer(
             invocation -> {
               synchronized (lock) {
@@ -210,7 +210,10 @@ public class SessionPoolStressTest extends BaseSessionPoolTest {
     int minSessions = 2;
     int maxSessions = concurrentThreads / 2;
     SessionPoolOptions.Builder builder =
-        SessionPoolOptions.newBuilder().setMinSessions(minSessions).setMaxSessions(maxSessions);
+        SessionPoolOptions.newBuilder()
+            .setMinSessions(minSessions)
+            .setMaxSessions(maxSessions)
+            .setLockFreeCheckout(lockFreeCheckout);
     if (shouldBlock) {
       builder.setBlockIfPoolExhausted();
     } else {
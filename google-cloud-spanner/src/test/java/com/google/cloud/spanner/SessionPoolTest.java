@@ -20,7 +20,10 @@ import static com.google.cloud.spanner.MetricRegistryConstants.NUM_IN_USE_SESSIO
 import static com.google.cloud.spanner.MetricRegistryConstants.NUM_READ_SESSIONS;
 import static com.google.cloud.spanner.MetricRegistryConstants.NUM_SESSIONS_BEING_PREPARED;
 import static com.google.cloud.spanner.MetricRegistryConstants.NUM_WRITE_SESSIONS;
+import static com.google.cloud.spanner.MetricRegistryConstants.SPANNER_DEFAULT_LABEL_VALUES;
 import static com.google.cloud.spanner.MetricRegistryConstants.SPANNER_LABEL_KEYS;
+import static com.google.cloud.spanner.MetricRegistryConstants.SPANNER_LABEL_KEYS_WITH_CHANNEL;
+import static com.google.cloud.spanner.MetricRegistryConstants.SPANNER_LABEL_KEYS_WITH_PRIORITY;
 import static com.google.cloud.spanner.MetricRegistryConstants.SPANNER_LABEL_KEYS_WITH_TYPE;
 import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertEquals;
@@ -33,6 +36,7 @@ import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.atMost;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -41,14 +45,19 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
+import com.google.api.core.ApiFuture;
 import com.google.api.core.ApiFutures;
+import com.google.api.core.SettableApiFuture;
 import com.google.cloud.Timestamp;
 import com.google.cloud.spanner.MetricRegistryTestUtils.FakeMetricRegistry;
 import com.google.cloud.spanner.MetricRegistryTestUtils.MetricsRecord;
 import com.google.cloud.spanner.MetricRegistryTestUtils.PointWithFunction;
+import com.google.cloud.spanner.Options.RpcPriority;
 import com.google.cloud.spanner.ReadContext.QueryAnalyzeMode;
 import com.google.cloud.spanner.SessionClient.SessionConsumer;
+import com.google.cloud.spanner.SessionHealth.RpcType;
 import com.google.cloud.spanner.SessionPool.Clock;
+import com.google.cloud.spanner.SessionPool.LeakedSessionException;
 import com.google.cloud.spanner.SessionPool.PooledSession;
 import com.google.cloud.spanner.SessionPool.PooledSessionFuture;
 import com.google.cloud.spanner.SessionPool.SessionConsumerImpl;
@@ -57,6 +66,9 @@ import com.google.cloud.spanner.TransactionRunner.TransactionCallable;
 import com.google.cloud.spanner.TransactionRunnerImpl.TransactionContextImpl;
 import com.google.cloud.spanner.spi.v1.SpannerRpc;
 import com.google.cloud.spanner.spi.v1.SpannerRpc.ResultStreamConsumer;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.protobuf.ByteString;
@@ -79,12 +91,16 @@ import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -93,6 +109,7 @@ import org.junit.runners.Parameterized.Parameter;
 import org.junit.runners.Parameterized.Parameters;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.threeten.bp.Duration;
 
 /** Tests for SessionPool that mock out the underlying stub. */
 @RunWith(Parameterized.class)
@@ -101,6 +118,9 @@ public class SessionPoolTest extends BaseSessionPoolTest {
   private final ExecutorService executor = Executors.newSingleThreadExecutor();
   @Parameter public int minSessions;
 
+  @Parameter(1)
+  public boolean lockFreeCheckout;
+
   @Mock SpannerImpl client;
   @Mock SessionClient sessionClient;
   @Mock SpannerOptions spannerOptions;
@@ -109,9 +129,9 @@ public class SessionPoolTest extends BaseSessionPoolTest {
   SessionPoolOptions options;
   private String sessionName = String.format("%s/sessions/s", db.getName());
 
-  @Parameters(name = "min sessions = {0}")
+  @Parameters(name = "min sessions = {0}, lock-free checkout = {1}")
   public static Collection<Object[]> data() {
-    return Arrays.asList(new Object[][] {{0}, {1}});
+    return Arrays.asList(new Object[][] {{0, false}, {1, false}, {0, true}, {1, true}});
   }
 
   private SessionPool createPool() {
@@ -146,6 +166,7 @@ public class SessionPoolTest extends BaseSessionPoolTest {
             .setMaxSessions(2)
             .setIncStep(1)
             .setBlockIfPoolExhausted()
+            .setLockFreeCheckout(lockFreeCheckout)
             .build();
   }
 
@@ -579,9 +600,9 @@ public class SessionPoolTest extends BaseSessionPoolTest {
     session1.close();
     session2.close();
     runMaintenanceLoop(clock, pool, pool.poolMaintainer.numKeepAliveCycles);
-    verify(session, never()).singleUse(any(TimestampBound.class));
+    verify(session, never()).keepAliveAsync();
     runMaintenanceLoop(clock, pool, pool.poolMaintainer.numKeepAliveCycles);
-    verify(session, times(2)).singleUse(any(TimestampBound.class));
+    verify(session, times(2)).keepAliveAsync();
     clock.currentTimeMillis +=
         clock.currentTimeMillis + (options.getKeepAliveIntervalMinutes() + 5) * 60 * 1000;
     session1 = pool.getSession();
@@ -590,10 +611,361 @@ public class SessionPoolTest extends BaseSessionPoolTest {
     runMaintenanceLoop(clock, pool, pool.poolMaintainer.numKeepAliveCycles);
     // The session pool only keeps MinSessions + MaxIdleSessions alive.
     verify(session, times(options.getMinSessions() + options.getMaxIdleSessions()))
-        .singleUse(any(TimestampBound.class));
+        .keepAliveAsync();
     pool.closeAsync(new SpannerImpl.ClosedException()).get(5L, TimeUnit.SECONDS);
   }
 
+  @Test
+  public void testUnhealthySessionsAreRetired() throws Exception {
+    options =
+        options
+            .toBuilder()
+            .setMinSessions(4)
+            .setMaxSessions(5)
+            .setRetireUnhealthySessions(true)
+            .build();
+    final List<SessionImpl> healthySessions = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      healthySessions.add(mockSessionWithLatency(1_000L));
+    }
+    final SessionImpl slowSession = mockSessionWithLatency(50_000L);
+    final Queue<SessionImpl> sessions = new ConcurrentLinkedQueue<>(healthySessions);
+    sessions.add(slowSession);
+    doAnswer(
+            invocation -> {
+              executor.submit(
+                  () -> {
+                    int sessionCount = invocation.getArgumentAt(0, Integer.class);
+                    SessionConsumerImpl consumer =
+                        invocation.getArgumentAt(2, SessionConsumerImpl.class);
+                    for (int i = 0; i < sessionCount; i++) {
+                      SessionImpl session = sessions.poll();
+                      consumer.onSessionReady(session == null ? mockSession() : session);
+                    }
+                  });
+              return null;
+            })
+        .when(sessionClient)
+        .asyncBatchCreateSessions(anyInt(), Mockito.anyBoolean(), any(SessionConsumer.class));
+    FakeClock clock = new FakeClock();
+    clock.currentTimeMillis = System.currentTimeMillis();
+    FakeMetricRegistry metricRegistry = new FakeMetricRegistry();
+    pool = createPool(clock, metricRegistry, SPANNER_DEFAULT_LABEL_VALUES);
+    while (pool.getNumberOfSessionsInPool() < 4) {
+      Thread.sleep(1L);
+    }
+
+    runMaintenanceLoop(clock, pool, 1);
+    verify(slowSession).asyncClose();
+    for (SessionImpl session : healthySessions) {
+      verify(session, never()).asyncClose();
+    }
+    // The retired session is replaced by a new session.
+    while (pool.getNumberOfSessionsInPool() < 4) {
+      Thread.sleep(1L);
+    }
+    assertThat(pool.totalSessions()).isEqualTo(4);
+
+    MetricsRecord record = metricRegistry.pollRecord();
+    List<PointWithFunction> latency =
+        record.getMetrics().get(MetricRegistryConstants.SESSION_LATENCY);
+    assertThat(latency.size()).isEqualTo(2);
+    assertThat(latency.get(0).value()).isEqualTo(1_000L);
+    assertThat(latency.get(1).value()).isEqualTo(50_000L);
+    assertThat(
+            record.getMetrics().get(MetricRegistryConstants.NUM_UNHEALTHY_SESSIONS).get(0).value())
+        .isEqualTo(1L);
+    assertThat(
+            record
+                .getMetrics()
+                .get(MetricRegistryConstants.NUM_UNHEALTHY_SESSIONS_RETIRED)
+                .get(0)
+                .value())
+        .isEqualTo(1L);
+  }
+
+  @Test
+  public void testUnhealthySessionsAreNotRetiredByDefault() throws Exception {
+    options = options.toBuilder().setMinSessions(4).setMaxSessions(5).build();
+    final Queue<SessionImpl> sessions = new ConcurrentLinkedQueue<>();
+    for (int i = 0; i < 3; i++) {
+      sessions.add(mockSessionWithLatency(1_000L));
+    }
+    final SessionImpl slowSession = mockSessionWithLatency(50_000L);
+    sessions.add(slowSession);
+    doAnswer(
+            invocation -> {
+              executor.submit(
+                  () -> {
+                    int sessionCount = invocation.getArgumentAt(0, Integer.class);
+                    SessionConsumerImpl consumer =
+                        invocation.getArgumentAt(2, SessionConsumerImpl.class);
+                    for (int i = 0; i < sessionCount; i++) {
+                      consumer.onSessionReady(sessions.poll());
+                    }
+                  });
+              return null;
+            })
+        .when(sessionClient)
+        .asyncBatchCreateSessions(anyInt(), Mockito.anyBoolean(), any(SessionConsumer.class));
+    FakeClock clock = new FakeClock();
+    clock.currentTimeMillis = System.currentTimeMillis();
+    FakeMetricRegistry metricRegistry = new FakeMetricRegistry();
+    pool = createPool(clock, metricRegistry, SPANNER_DEFAULT_LABEL_VALUES);
+    while (pool.getNumberOfSessionsInPool() < 4) {
+      Thread.sleep(1L);
+    }
+
+    runMaintenanceLoop(clock, pool, 1);
+    verify(slowSession, never()).asyncClose();
+    MetricsRecord record = metricRegistry.pollRecord();
+    assertThat(
+            record.getMetrics().get(MetricRegistryConstants.NUM_UNHEALTHY_SESSIONS).get(0).value())
+        .isEqualTo(1L);
+  }
+
+  @Test
+  public void testLatencyIsOnlyComparedWithSameRpcType() throws Exception {
+    options =
+        options
+            .toBuilder()
+            .setMinSessions(4)
+            .setMaxSessions(5)
+            .setRetireUnhealthySessions(true)
+            .build();
+    final Queue<SessionImpl> sessions = new ConcurrentLinkedQueue<>();
+    for (int i = 0; i < 3; i++) {
+      sessions.add(mockSessionWithLatency(RpcType.KEEP_ALIVE, 1_000L));
+    }
+    // Commits are slower than keep-alive pings, but this session is the only one that committed.
+    final SessionImpl commitSession = mockSessionWithLatency(RpcType.COMMIT, 50_000L);
+    sessions.add(commitSession);
+    doAnswer(
+            invocation -> {
+              executor.submit(
+                  () -> {
+                    int sessionCount = invocation.getArgumentAt(0, Integer.class);
+                    SessionConsumerImpl consumer =
+                        invocation.getArgumentAt(2, SessionConsumerImpl.class);
+                    for (int i = 0; i < sessionCount; i++) {
+                      consumer.onSessionReady(sessions.poll());
+                    }
+                  });
+              return null;
+            })
+        .when(sessionClient)
+        .asyncBatchCreateSessions(anyInt(), Mockito.anyBoolean(), any(SessionConsumer.class));
+    FakeClock clock = new FakeClock();
+    clock.currentTimeMillis = System.currentTimeMillis();
+    FakeMetricRegistry metricRegistry = new FakeMetricRegistry();
+    pool = createPool(clock, metricRegistry, SPANNER_DEFAULT_LABEL_VALUES);
+    while (pool.getNumberOfSessionsInPool() < 4) {
+      Thread.sleep(1L);
+    }
+
+    runMaintenanceLoop(clock, pool, 1);
+    verify(commitSession, never()).asyncClose();
+    MetricsRecord record = metricRegistry.pollRecord();
+    assertThat(
+            record.getMetrics().get(MetricRegistryConstants.NUM_UNHEALTHY_SESSIONS).get(0).value())
+        .isEqualTo(0L);
+  }
+
+  private SessionImpl mockSessionWithLatency(long latencyMicros) {
+    return mockSessionWithLatency(RpcType.KEEP_ALIVE, latencyMicros);
+  }
+
+  private SessionImpl mockSessionWithLatency(RpcType type, long latencyMicros) {
+    SessionImpl session = mockSession();
+    SessionHealth health = new SessionHealth();
+    for (int i = 0; i < SessionPool.MIN_RPCS_FOR_SESSION_HEALTH; i++) {
+      health.recordLatency(type, latencyMicros);
+    }
+    when(session.getHealth()).thenReturn(health);
+    return session;
+  }
+
+  @Test
+  public void testIdleSessionIsShedForPoolThatSharesBudget() throws Exception {
+    options = options.toBuilder().setMinSessions(0).setMaxSessions(2).build();
+    setupMockSessionCreation();
+    ExecutorService budgetExecutor = Executors.newSingleThreadExecutor();
+    SessionBudget budget =
+        new SessionBudget(
+            SessionBudgetOptions.newBuilder().setMaxTotalSessions(2).build(), budgetExecutor);
+    SessionPool first =
+        SessionPool.createPool(
+            options,
+            new TestExecutorFactory(),
+            client.getSessionClient(db),
+            new FakeClock(),
+            new FakeMetricRegistry(),
+            SPANNER_DEFAULT_LABEL_VALUES,
+            budget);
+    pool =
+        SessionPool.createPool(
+            options,
+            new TestExecutorFactory(),
+            client.getSessionClient(db),
+            new FakeClock(),
+            new FakeMetricRegistry(),
+            SPANNER_DEFAULT_LABEL_VALUES,
+            budget);
+    Session session1 = first.getSession().get();
+    Session session2 = first.getSession().get();
+    session1.close();
+    session2.close();
+    assertThat(first.totalSessions()).isEqualTo(2);
+    assertThat(budget.getTotalAllocated()).isEqualTo(2);
+
+    // The second pool takes over the budget of an idle session of the first pool.
+    Session session3 = pool.getSession().get();
+    assertThat(pool.totalSessions()).isEqualTo(1);
+    assertThat(first.totalSessions()).isEqualTo(1);
+    assertThat(budget.getTotalAllocated()).isEqualTo(2);
+    session3.close();
+    first.closeAsync(new SpannerImpl.ClosedException()).get(5L, TimeUnit.SECONDS);
+    assertThat(budget.getTotalAllocated()).isEqualTo(1);
+    budgetExecutor.shutdown();
+  }
+
+  @Test
+  public void testSessionBudgetMetricsUseLabelsOfPool() throws Exception {
+    options = options.toBuilder().setMinSessions(0).setMaxSessions(2).build();
+    setupMockSessionCreation();
+    SessionBudget budget =
+        new SessionBudget(
+            SessionBudgetOptions.newBuilder().setMaxTotalSessions(2).build(), Runnable::run);
+    FakeMetricRegistry metricRegistry = new FakeMetricRegistry();
+    List<LabelValue> firstLabelValues =
+        Arrays.asList(
+            LabelValue.create("client1"),
+            LabelValue.create("database1"),
+            LabelValue.create("instance1"),
+            LabelValue.create("1.0.0"));
+    List<LabelValue> secondLabelValues =
+        Arrays.asList(
+            LabelValue.create("client2"),
+            LabelValue.create("database2"),
+            LabelValue.create("instance1"),
+            LabelValue.create("1.0.0"));
+    SessionPool first =
+        SessionPool.createPool(
+            options,
+            new TestExecutorFactory(),
+            client.getSessionClient(db),
+            new FakeClock(),
+            metricRegistry,
+            firstLabelValues,
+            budget);
+    pool =
+        SessionPool.createPool(
+            options,
+            new TestExecutorFactory(),
+            client.getSessionClient(db),
+            new FakeClock(),
+            metricRegistry,
+            secondLabelValues,
+            budget);
+    first.getSession().get().close();
+
+    MetricsRecord record = metricRegistry.pollRecord();
+    List<PointWithFunction> points =
+        record.getMetrics().get(MetricRegistryConstants.SESSION_BUDGET_SESSIONS);
+    assertThat(points).hasSize(4);
+    for (PointWithFunction point : points) {
+      assertThat(point.keys()).isEqualTo(SPANNER_LABEL_KEYS_WITH_TYPE);
+    }
+    // Each pool reports the totals of the shared budget with its own labels.
+    assertThat(points.get(0).values())
+        .containsExactlyElementsIn(
+            ImmutableList.builder()
+                .addAll(firstLabelValues)
+                .add(MetricRegistryConstants.TOTAL_ALLOCATED_SESSIONS)
+                .build())
+        .inOrder();
+    assertThat(points.get(0).value()).isEqualTo(1L);
+    assertThat(points.get(1).value()).isEqualTo(2L);
+    assertThat(points.get(2).values())
+        .containsExactlyElementsIn(
+            ImmutableList.builder()
+                .addAll(secondLabelValues)
+                .add(MetricRegistryConstants.TOTAL_ALLOCATED_SESSIONS)
+                .build())
+        .inOrder();
+    assertThat(points.get(2).value()).isEqualTo(1L);
+    first.closeAsync(new SpannerImpl.ClosedException()).get(5L, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testSessionIsAvailableWhileKeepAlivePingIsInFlight() throws Exception {
+    options = options.toBuilder().setMinSessions(1).setMaxSessions(1).build();
+    final SessionImpl session = mockSession();
+    SettableApiFuture<Void> ping = SettableApiFuture.create();
+    when(session.keepAliveAsync()).thenReturn(ping);
+    doAnswer(
+            invocation -> {
+              executor.submit(
+                  () -> {
+                    SessionConsumerImpl consumer =
+                        invocation.getArgumentAt(2, SessionConsumerImpl.class);
+                    consumer.onSessionReady(session);
+                  });
+              return null;
+            })
+        .when(sessionClient)
+        .asyncBatchCreateSessions(anyInt(), Mockito.anyBoolean(), any(SessionConsumer.class));
+    FakeClock clock = new FakeClock();
+    clock.currentTimeMillis = System.currentTimeMillis();
+    FakeMetricRegistry metricRegistry = new FakeMetricRegistry();
+    pool = createPool(clock, metricRegistry, SPANNER_DEFAULT_LABEL_VALUES);
+    while (pool.getNumberOfSessionsInPool() < 1) {
+      Thread.sleep(1L);
+    }
+
+    clock.currentTimeMillis += TimeUnit.MINUTES.toMillis(options.getKeepAliveIntervalMinutes()) + 1;
+    long pingSentAt = clock.currentTimeMillis;
+    runMaintenanceLoop(clock, pool, 1);
+    verify(session).keepAliveAsync();
+
+    // The session should still be available while the ping is in flight.
+    PooledSessionFuture checkedOut = pool.getSession();
+    assertThat(checkedOut.isDone()).isTrue();
+    assertThat(checkedOut.get().delegate).isSameInstanceAs(session);
+    checkedOut.close();
+
+    // No new ping should be sent for the session while the previous ping is in flight.
+    clock.currentTimeMillis += TimeUnit.MINUTES.toMillis(options.getKeepAliveIntervalMinutes()) + 1;
+    runMaintenanceLoop(clock, pool, 1);
+    verify(session).keepAliveAsync();
+
+    clock.currentTimeMillis += 50L;
+    long pingCompletedAt = clock.currentTimeMillis;
+    ping.setException(
+        SpannerExceptionFactory.newSpannerException(ErrorCode.UNAVAILABLE, "unavailable"));
+    assertThat(pool.getNumberOfSessionsInPool()).isEqualTo(1);
+
+    MetricsRecord record = metricRegistry.pollRecord();
+    assertThat(record.getMetrics().get(MetricRegistryConstants.NUM_KEEP_ALIVE_PINGS).get(0).value())
+        .isEqualTo(1L);
+    assertThat(
+            record
+                .getMetrics()
+                .get(MetricRegistryConstants.NUM_FAILED_KEEP_ALIVE_PINGS)
+                .get(0)
+                .value())
+        .isEqualTo(1L);
+    assertThat(record.getMetrics().get(MetricRegistryConstants.KEEP_ALIVE_PING_TIME).get(0).value())
+        .isEqualTo(pingCompletedAt - pingSentAt);
+
+    // A new ping is sent in a later cycle after the previous ping finished.
+    when(session.keepAliveAsync()).thenReturn(ApiFutures.immediateFuture(null));
+    runMaintenanceLoop(clock, pool, 1);
+    verify(session, times(2)).keepAliveAsync();
+    assertThat(record.getMetrics().get(MetricRegistryConstants.NUM_KEEP_ALIVE_PINGS).get(0).value())
+        .isEqualTo(2L);
+  }
+
   @Test
   public void blockAndTimeoutOnPoolExhaustion() throws Exception {
     // Create a session pool with max 1 session and a low timeout for waiting for a session.
@@ -1061,7 +1433,7 @@ public class SessionPoolTest extends BaseSessionPoolTest {
     session2.get();
 
     MetricsRecord record = metricRegistry.pollRecord();
-    assertThat(record.getMetrics().size()).isEqualTo(6);
+    assertThat(record.getMetrics().size()).isEqualTo(14);
 
     List<PointWithFunction> maxInUseSessions =
         record.getMetrics().get(MetricRegistryConstants.MAX_IN_USE_SESSIONS);
@@ -1176,12 +1548,181 @@ public class SessionPoolTest extends BaseSessionPoolTest {
     assertThat(writePreparedSessions.value()).isEqualTo(0L);
   }
 
-  private void mockKeepAlive(Session session) {
-    ReadContext context = mock(ReadContext.class);
-    ResultSet resultSet = mock(ResultSet.class);
-    when(resultSet.next()).thenReturn(true, false);
-    when(session.singleUse(any(TimestampBound.class))).thenReturn(context);
-    when(context.executeQuery(any(Statement.class))).thenReturn(resultSet);
+  @Test
+  public void testWarmUpWaitsForSessionsOnAllChannels() throws Exception {
+    when(sessionClient.getNumChannels()).thenReturn(2);
+    final AtomicLong channelHint = new AtomicLong();
+    final CountDownLatch releaseCreation = new CountDownLatch(1);
+    doAnswer(
+            invocation -> {
+              executor.submit(
+                  () -> {
+                    releaseCreation.await();
+                    int sessionCount = invocation.getArgumentAt(0, Integer.class);
+                    SessionConsumerImpl consumer =
+                        invocation.getArgumentAt(2, SessionConsumerImpl.class);
+                    for (int i = 0; i < sessionCount; i++) {
+                      SessionImpl session = mockSession();
+                      doReturn(
+                              ImmutableMap.of(
+                                  SpannerRpc.Option.CHANNEL_HINT, channelHint.getAndIncrement()))
+                          .when(session)
+                          .getOptions();
+                      consumer.onSessionReady(session);
+                    }
+                    return null;
+                  });
+              return null;
+            })
+        .when(sessionClient)
+        .asyncBatchCreateSessions(
+            Mockito.anyInt(), Mockito.anyBoolean(), any(SessionConsumer.class));
+    options = options.toBuilder().setMaxSessions(4).build();
+    pool = createPool();
+
+    ApiFuture<Void> warmUp = pool.warmUpAsync(3);
+    assertThat(warmUp.isDone()).isFalse();
+    // The missing sessions should be distributed over all channels.
+    verify(sessionClient).asyncBatchCreateSessions(eq(3 - minSessions), eq(true), any());
+    releaseCreation.countDown();
+    warmUp.get(10L, TimeUnit.SECONDS);
+    assertThat(pool.totalSessions()).isEqualTo(3);
+
+    // The number of sessions is capped by max sessions.
+    pool.warmUpAsync(10).get(10L, TimeUnit.SECONDS);
+    assertThat(pool.totalSessions()).isEqualTo(4);
+    // A warm pool should return a future that is already done.
+    assertThat(pool.warmUpAsync(2).isDone()).isTrue();
+  }
+
+  @Test
+  public void testWarmUpFailsIfSessionCreationFails() throws Exception {
+    doAnswer(
+            invocation -> {
+              executor.submit(
+                  () -> {
+                    int sessionCount = invocation.getArgumentAt(0, Integer.class);
+                    SessionConsumerImpl consumer =
+                        invocation.getArgumentAt(2, SessionConsumerImpl.class);
+                    consumer.onSessionCreateFailure(
+                        SpannerExceptionFactory.newSpannerException(
+                            ErrorCode.PERMISSION_DENIED, "no access"),
+                        sessionCount);
+                  });
+              return null;
+            })
+        .when(sessionClient)
+        .asyncBatchCreateSessions(
+            Mockito.anyInt(), Mockito.anyBoolean(), any(SessionConsumer.class));
+    pool = createPool();
+    ExecutionException e =
+        assertThrows(
+            ExecutionException.class, () -> pool.warmUpAsync(2).get(10L, TimeUnit.SECONDS));
+    assertThat(e.getCause()).isInstanceOf(SpannerException.class);
+    assertThat(((SpannerException) e.getCause()).getErrorCode())
+        .isEqualTo(ErrorCode.PERMISSION_DENIED);
+  }
+
+  @Test
+  public void testWarmUpFailsIfPoolIsClosed() throws Exception {
+    // Never return any sessions.
+    doAnswer(invocation -> null)
+        .when(sessionClient)
+        .asyncBatchCreateSessions(
+            Mockito.anyInt(), Mockito.anyBoolean(), any(SessionConsumer.class));
+    pool = createPool();
+    ApiFuture<Void> warmUp = pool.warmUpAsync(2);
+    assertThat(warmUp.isDone()).isFalse();
+    closePoolWithStacktrace();
+    ExecutionException e =
+        assertThrows(ExecutionException.class, () -> warmUp.get(10L, TimeUnit.SECONDS));
+    assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+    e =
+        assertThrows(
+            ExecutionException.class, () -> pool.warmUpAsync(2).get(10L, TimeUnit.SECONDS));
+    assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  public void testChannelAwareCheckoutUsesLeastLoadedChannel() throws Exception {
+    when(sessionClient.getNumChannels()).thenReturn(2);
+    final List<SessionImpl> sessions = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      SessionImpl session = mockSession();
+      doReturn(ImmutableMap.of(SpannerRpc.Option.CHANNEL_HINT, (long) i % 2))
+          .when(session)
+          .getOptions();
+      sessions.add(session);
+    }
+    doAnswer(
+            invocation -> {
+              executor.submit(
+                  () -> {
+                    SessionConsumerImpl consumer =
+                        invocation.getArgumentAt(2, SessionConsumerImpl.class);
+                    for (SessionImpl session : sessions) {
+                      consumer.onSessionReady(session);
+                    }
+                  });
+              return null;
+            })
+        .when(sessionClient)
+        .asyncBatchCreateSessions(
+            Mockito.anyInt(), Mockito.anyBoolean(), any(SessionConsumer.class));
+    options =
+        SessionPoolOptions.newBuilder()
+            .setMinSessions(4)
+            .setMaxSessions(4)
+            .setChannelAwareCheckout(true)
+            .build();
+    FakeMetricRegistry metricRegistry = new FakeMetricRegistry();
+    pool = createPool(new FakeClock(), metricRegistry, SPANNER_DEFAULT_LABEL_VALUES);
+    while (pool.getNumberOfSessionsInPool() < 4) {
+      Thread.sleep(1L);
+    }
+
+    PooledSessionFuture session1 = pool.getSession();
+    session1.get();
+    PooledSessionFuture session2 = pool.getSession();
+    session2.get();
+    assertThat(pool.getNumberOfSessionsInUse(0)).isEqualTo(1);
+    assertThat(pool.getNumberOfSessionsInUse(1)).isEqualTo(1);
+
+    PooledSessionFuture session3 = pool.getSession();
+    session3.get();
+    PooledSessionFuture session4 = pool.getSession();
+    session4.get();
+    assertThat(pool.getNumberOfSessionsInUse(0)).isEqualTo(2);
+    assertThat(pool.getNumberOfSessionsInUse(1)).isEqualTo(2);
+
+    // Releasing a session makes its channel the least loaded channel.
+    String releasedSession = session3.getName();
+    session3.close();
+    session4.close();
+    PooledSessionFuture session5 = pool.getSession();
+    PooledSessionFuture session6 = pool.getSession();
+    assertThat(ImmutableSet.of(session5.getName(), session6.getName())).contains(releasedSession);
+    assertThat(pool.getNumberOfSessionsInUse(0)).isEqualTo(2);
+    assertThat(pool.getNumberOfSessionsInUse(1)).isEqualTo(2);
+
+    MetricsRecord record = metricRegistry.pollRecord();
+    List<PointWithFunction> inUsePerChannel =
+        record.getMetrics().get(MetricRegistryConstants.NUM_IN_USE_SESSIONS_PER_CHANNEL);
+    assertThat(inUsePerChannel).hasSize(2);
+    assertThat(inUsePerChannel.get(0).keys()).isEqualTo(SPANNER_LABEL_KEYS_WITH_CHANNEL);
+    assertThat(inUsePerChannel.get(0).value()).isEqualTo(2L);
+    assertThat(inUsePerChannel.get(1).value()).isEqualTo(2L);
+
+    session1.close();
+    session2.close();
+    session5.close();
+    session6.close();
+    assertThat(pool.getNumberOfSessionsInUse(0)).isEqualTo(0);
+    assertThat(pool.getNumberOfSessionsInUse(1)).isEqualTo(0);
+  }
+
+  private void mockKeepAlive(SessionImpl session) {
+    when(session.keepAliveAsync()).thenReturn(ApiFutures.immediateFuture(null));
   }
 
   private void getSessionAsync(final CountDownLatch latch, final AtomicBoolean failed) {
@@ -1199,4 +1740,189 @@ public class SessionPoolTest extends BaseSessionPoolTest {
             })
         .start();
   }
+
+  @Test
+  public void testWaitersAreServedInOrderOfPriority() throws Exception {
+    options = options.toBuilder().setMinSessions(1).setMaxSessions(1).build();
+    setupMockSessionCreation();
+    FakeClock clock = new FakeClock();
+    FakeMetricRegistry metricRegistry = new FakeMetricRegistry();
+    pool = createPool(clock, metricRegistry, SPANNER_DEFAULT_LABEL_VALUES);
+    while (pool.getNumberOfSessionsInPool() < 1) {
+      Thread.sleep(1L);
+    }
+    PooledSessionFuture session = pool.getSession();
+    session.get();
+
+    PooledSessionFuture low = pool.getSession(RpcPriority.LOW);
+    PooledSessionFuture medium = pool.getSession(RpcPriority.MEDIUM);
+    PooledSessionFuture high = pool.getSession(RpcPriority.HIGH);
+    assertThat(low.isDone()).isFalse();
+    assertThat(medium.isDone()).isFalse();
+    assertThat(high.isDone()).isFalse();
+
+    clock.currentTimeMillis += 100L;
+    session.close();
+    assertThat(high.isDone()).isTrue();
+    assertThat(medium.isDone()).isFalse();
+    assertThat(low.isDone()).isFalse();
+    high.get();
+    high.close();
+    assertThat(medium.isDone()).isTrue();
+    assertThat(low.isDone()).isFalse();
+    medium.get();
+    medium.close();
+    assertThat(low.isDone()).isTrue();
+    low.get();
+    low.close();
+
+    MetricsRecord record = metricRegistry.pollRecord();
+    List<PointWithFunction> numWaits =
+        record.getMetrics().get(MetricRegistryConstants.NUM_WAITS_FOR_SESSION);
+    List<PointWithFunction> waitTime =
+        record.getMetrics().get(MetricRegistryConstants.WAIT_FOR_SESSION_TIME);
+    assertThat(numWaits.size()).isEqualTo(RpcPriority.values().length);
+    assertThat(waitTime.size()).isEqualTo(RpcPriority.values().length);
+    for (int i = 0; i < numWaits.size(); i++) {
+      assertThat(numWaits.get(i).keys()).isEqualTo(SPANNER_LABEL_KEYS_WITH_PRIORITY);
+      assertThat(numWaits.get(i).value()).isEqualTo(1L);
+      assertThat(waitTime.get(i).value()).isEqualTo(100L);
+    }
+  }
+
+  @Test
+  public void testLowPriorityWaiterIsNotStarved() throws Exception {
+    options =
+        options
+            .toBuilder()
+            .setMinSessions(1)
+            .setMaxSessions(1)
+            .setPriorityAgingInterval(Duration.ofSeconds(1L))
+            .build();
+    setupMockSessionCreation();
+    FakeClock clock = new FakeClock();
+    pool = createPool(clock);
+    PooledSessionFuture session = pool.getSession();
+    session.get();
+
+    PooledSessionFuture low = pool.getSession(RpcPriority.LOW);
+    // LOW is raised by one level per second of waiting, and is therefore served before a new HIGH
+    // request after it has waited for three seconds.
+    clock.currentTimeMillis += 3_000L;
+    PooledSessionFuture high = pool.getSession(RpcPriority.HIGH);
+    session.close();
+    assertThat(low.isDone()).isTrue();
+    assertThat(high.isDone()).isFalse();
+    low.get();
+    low.close();
+    high.get();
+    high.close();
+  }
+
+  @Test
+  public void testWaiterPriorityCanBeChanged() throws Exception {
+    options = options.toBuilder().setMinSessions(1).setMaxSessions(1).build();
+    setupMockSessionCreation();
+    pool = createPool(new FakeClock());
+    PooledSessionFuture session = pool.getSession();
+    session.get();
+
+    PooledSessionFuture first = pool.getSession();
+    PooledSessionFuture second = pool.getSession();
+    first.setPriority(RpcPriority.LOW);
+    session.close();
+    assertThat(second.isDone()).isTrue();
+    assertThat(first.isDone()).isFalse();
+    second.get();
+    second.close();
+    first.get();
+    first.close();
+  }
+
+  @Test
+  public void testReservedSessionsAreNotUsedByLowerPriority() throws Exception {
+    options =
+        options
+            .toBuilder()
+            .setMinSessions(0)
+            .setMaxSessions(2)
+            .setReservedSessions(RpcPriority.HIGH, 1)
+            .build();
+    setupMockSessionCreation();
+    pool = createPool(new FakeClock());
+
+    PooledSessionFuture low1 = pool.getSession(RpcPriority.LOW);
+    low1.get();
+    // The last available session is reserved for HIGH priority requests.
+    PooledSessionFuture low2 = pool.getSession(RpcPriority.LOW);
+    while (pool.totalSessions() < 2) {
+      Thread.sleep(1L);
+    }
+    assertThat(low2.isDone()).isFalse();
+    PooledSessionFuture high = pool.getSession(RpcPriority.HIGH);
+    assertThat(high.isDone()).isTrue();
+    high.get();
+    high.close();
+    assertThat(low2.isDone()).isFalse();
+
+    // Releasing the first LOW session makes two sessions available.
+    low1.close();
+    assertThat(low2.isDone()).isTrue();
+    low2.get();
+    low2.close();
+  }
+
+  @Test
+  public void testReservedSessionsFailIfPoolExhausted() throws Exception {
+    options =
+        options
+            .toBuilder()
+            .setMinSessions(0)
+            .setMaxSessions(2)
+            .setReservedSessions(RpcPriority.HIGH, 1)
+            .setFailIfPoolExhausted()
+            .build();
+    setupMockSessionCreation();
+    pool = createPool(new FakeClock());
+
+    PooledSessionFuture low = pool.getSession(RpcPriority.LOW);
+    low.get();
+    SpannerException e =
+        assertThrows(SpannerException.class, () -> pool.getSession(RpcPriority.LOW));
+    assertThat(e.getErrorCode()).isEqualTo(ErrorCode.RESOURCE_EXHAUSTED);
+    PooledSessionFuture high = pool.getSession(RpcPriority.HIGH);
+    high.get();
+    high.close();
+    low.close();
+  }
+
+  @Test
+  public void testLeakedSessionWithStackTrace() {
+    options = options.toBuilder().setFailOnSessionLeak().setLeakStackTraceSampleRate(1).build();
+    setupMockSessionCreation();
+    pool = createPool();
+    pool.getSession().get();
+
+    LeakedSessionException e =
+        assertThrows(
+            LeakedSessionException.class, () -> pool.closeAsync(new SpannerImpl.ClosedException()));
+    assertThat(e.getMessage()).startsWith("Session was checked out from the pool at ");
+    assertThat(e.getStackTrace()).isNotEmpty();
+  }
+
+  @Test
+  public void testLeakedSessionWithoutStackTrace() {
+    options = options.toBuilder().setFailOnSessionLeak().setLeakStackTraceSampleRate(0).build();
+    setupMockSessionCreation();
+    pool = createPool();
+    pool.getSession().get();
+
+    LeakedSessionException e =
+        assertThrows(
+            LeakedSessionException.class, () -> pool.closeAsync(new SpannerImpl.ClosedException()));
+    // Only the checkout time and the calling class are recorded.
+    assertThat(e.getMessage()).startsWith("Session was checked out from the pool at ");
+    assertThat(e.getMessage()).contains(" by ");
+    assertThat(e.getStackTrace()).isEmpty();
+  }
 }
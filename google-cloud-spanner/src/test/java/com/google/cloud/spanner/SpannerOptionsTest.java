@@ -76,6 +76,7 @@ public class SpannerOptionsTest {
       assertThat(options.getHost()).isEqualTo("http://" + System.getenv("SPANNER_EMULATOR_HOST"));
     }
     assertThat(options.getPrefetchChunks()).isEqualTo(4);
+    assertThat(options.getMaxResumeBufferBytes()).isEqualTo(64L << 20);
     assertThat(options.getSessionLabels()).isNull();
   }
 
@@ -90,12 +91,40 @@ public class SpannerOptionsTest {
             .setHost(host)
             .setProjectId(projectId)
             .setPrefetchChunks(2)
+            .setMaxResumeBufferBytes(1024L)
             .setSessionLabels(labels)
             .build();
     assertThat(options.getHost()).isEqualTo(host);
     assertThat(options.getProjectId()).isEqualTo(projectId);
     assertThat(options.getPrefetchChunks()).isEqualTo(2);
+    assertThat(options.getMaxResumeBufferBytes()).isEqualTo(1024L);
     assertThat(options.getSessionLabels()).containsExactlyEntriesIn(labels);
+    assertThat(options.toBuilder().build().getMaxResumeBufferBytes()).isEqualTo(1024L);
+  }
+
+  @Test
+  public void testResultMemoryGovernor() {
+    assertThat(
+            SpannerOptions.newBuilder()
+                .setProjectId("test-project")
+                .build()
+                .getResultMemoryGovernor())
+        .isNull();
+    ResultMemoryGovernor governor = ResultMemoryGovernor.create(1024L);
+    SpannerOptions options =
+        SpannerOptions.newBuilder()
+            .setProjectId("test-project")
+            .setResultMemoryGovernor(governor)
+            .build();
+    assertThat(options.getResultMemoryGovernor()).isSameInstanceAs(governor);
+    assertThat(options.toBuilder().build().getResultMemoryGovernor()).isSameInstanceAs(governor);
+  }
+
+  @Test
+  public void testNegativeMaxResumeBufferBytes() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> SpannerOptions.newBuilder().setMaxResumeBufferBytes(-1L));
   }
 
   @Test
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class SpscRingBufferTest {
+
+  @Test
+  public void testPutAndTakeInOrder() throws InterruptedException {
+    SpscRingBuffer<Integer> buffer = new SpscRingBuffer<>(3);
+    for (int round = 0; round < 5; round++) {
+      buffer.putUninterruptibly(1);
+      buffer.putUninterruptibly(2);
+      buffer.putUninterruptibly(3);
+      assertThat(buffer.size()).isEqualTo(3);
+      assertThat(buffer.take()).isEqualTo(1);
+      assertThat(buffer.take()).isEqualTo(2);
+      assertThat(buffer.take()).isEqualTo(3);
+      assertThat(buffer.size()).isEqualTo(0);
+    }
+  }
+
+  @Test
+  public void testInvalidCapacity() {
+    assertThrows(IllegalArgumentException.class, () -> new SpscRingBuffer<>(0));
+  }
+
+  @Test
+  public void testTakeWaitsForElement() throws Exception {
+    SpscRingBuffer<String> buffer = new SpscRingBuffer<>(1);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<String> taken = executor.submit(buffer::take);
+      Thread.sleep(10L);
+      assertThat(taken.isDone()).isFalse();
+      buffer.putUninterruptibly("foo");
+      assertThat(taken.get(10L, TimeUnit.SECONDS)).isEqualTo("foo");
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testPutWaitsForSpace() throws Exception {
+    SpscRingBuffer<String> buffer = new SpscRingBuffer<>(1);
+    buffer.putUninterruptibly("foo");
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<?> put = executor.submit(() -> buffer.putUninterruptibly("bar"));
+      Thread.sleep(10L);
+      assertThat(put.isDone()).isFalse();
+      assertThat(buffer.take()).isEqualTo("foo");
+      put.get(10L, TimeUnit.SECONDS);
+      assertThat(buffer.take()).isEqualTo("bar");
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testTakeIsInterruptible() throws Exception {
+    SpscRingBuffer<String> buffer = new SpscRingBuffer<>(1);
+    Thread.currentThread().interrupt();
+    assertThrows(InterruptedException.class, buffer::take);
+    assertThat(Thread.interrupted()).isFalse();
+  }
+
+  @Test
+  public void testTransferManyElements() throws Exception {
+    final int numElements = 100_000;
+    SpscRingBuffer<Integer> buffer = new SpscRingBuffer<>(4);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<?> producer =
+          executor.submit(
+              () -> {
+                for (int i = 0; i < numElements; i++) {
+                  buffer.putUninterruptibly(i);
+                }
+              });
+      for (int i = 0; i < numElements; i++) {
+        assertThat(buffer.take()).isEqualTo(i);
+      }
+      producer.get(10L, TimeUnit.SECONDS);
+      assertThat(buffer.size()).isEqualTo(0);
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
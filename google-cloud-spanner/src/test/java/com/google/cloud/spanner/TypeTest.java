@@ -338,6 +338,48 @@ public class TypeTest {
     assertNotNull(e.getMessage());
   }
 
+  @Test
+  public void rowTypeIsCached() {
+    Type type =
+        Type.struct(
+            StructField.of("id", Type.int64()),
+            StructField.of("names", Type.array(Type.string())),
+            StructField.of("id", Type.string()));
+    com.google.spanner.v1.StructType rowType = type.toProto().getStructType();
+
+    Type fromRowType = Type.fromRowTypeProto(rowType);
+    assertThat(fromRowType).isEqualTo(type);
+    assertThat(fromRowType.getFieldIndex("names")).isEqualTo(1);
+    assertThrows(IllegalArgumentException.class, () -> fromRowType.getFieldIndex("id"));
+    // An equal proto that is not the same instance returns the cached type.
+    assertThat(Type.fromRowTypeProto(type.toProto().getStructType())).isSameInstanceAs(fromRowType);
+  }
+
+  @Test
+  public void parseErrorRowTypeIsNotCached() {
+    com.google.spanner.v1.StructType rowType =
+        com.google.spanner.v1.StructType.newBuilder()
+            .addFields(com.google.spanner.v1.StructType.Field.newBuilder().setName("f1"))
+            .build();
+    assertThrows(IllegalArgumentException.class, () -> Type.fromRowTypeProto(rowType));
+    assertThrows(IllegalArgumentException.class, () -> Type.fromRowTypeProto(rowType));
+  }
+
+  @Test
+  public void primitiveFields() {
+    Type type =
+        Type.struct(
+            StructField.of("b", Type.bool()),
+            StructField.of("s", Type.string()),
+            StructField.of("i", Type.int64()),
+            StructField.of("a", Type.array(Type.int64())),
+            StructField.of("f", Type.float64()));
+    assertThat(type.getPrimitiveFields().stream().toArray()).asList().containsExactly(0, 2, 4);
+    // The fields are computed once for each type.
+    assertThat(type.getPrimitiveFields()).isSameInstanceAs(type.getPrimitiveFields());
+    assertThrows(IllegalStateException.class, () -> Type.int64().getPrimitiveFields());
+  }
+
   private static void assertProtoEquals(com.google.spanner.v1.Type proto, String expected) {
     MatcherAssert.assertThat(
         proto, SpannerMatchers.matchesProto(com.google.spanner.v1.Type.class, expected));
@@ -53,7 +53,8 @@ public class DirectExecuteResultSetTest {
   public void testMethodCallBeforeNext()
       throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
     List<String> excludedMethods =
-        Arrays.asList("getStats", "next", "close", "ofResultSet", "equals", "hashCode");
+        Arrays.asList(
+            "getStats", "getPrefetchChunks", "next", "close", "ofResultSet", "equals", "hashCode");
     DirectExecuteResultSet subject = createSubject();
     callMethods(subject, excludedMethods, IllegalStateException.class);
   }
@@ -64,6 +65,7 @@ public class DirectExecuteResultSetTest {
     List<String> excludedMethods =
         Arrays.asList(
             "getStats",
+            "getPrefetchChunks",
             "next",
             "close",
             "getType",
@@ -85,6 +87,7 @@ public class DirectExecuteResultSetTest {
     List<String> excludedMethods =
         Arrays.asList(
             "getStats",
+            "getPrefetchChunks",
             "next",
             "close",
             "getType",